@@ -26,12 +26,17 @@
 
 package com.verificatum.arithm;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import com.verificatum.eio.ByteTree;
+import com.verificatum.eio.ByteTreePackedF;
+import com.verificatum.eio.ByteTreePacking;
 import com.verificatum.eio.ByteTreeReader;
+import com.verificatum.eio.EIOException;
 import com.verificatum.util.ArrayWorker;
 
 
@@ -46,6 +51,12 @@ import com.verificatum.util.ArrayWorker;
  */
 public abstract class BPGroup extends PGroup {
 
+    /**
+     * Layout of the representations of elements, or
+     * <code>null</code> if it has not been computed.
+     */
+    private ByteTreePacking packing;
+
     /**
      * Creates a group. It is the responsibility of the programmer to
      * initialize this instance by calling {@link PGroup#init(PRing)}.
@@ -105,6 +116,119 @@ public abstract class BPGroup extends PGroup {
         }
     }
 
+    /**
+     * Returns the layout of the representations of elements. All
+     * elements are represented by byte trees with identical headers,
+     * so only the data of the leaves needs to be stored in the packed
+     * format of {@link ByteTreePackedF}.
+     *
+     * @return Layout of the representations of elements.
+     */
+    public synchronized ByteTreePacking getPacking() {
+        if (packing == null) {
+            final byte[] template = getONE().toByteTree().toByteArray();
+            try {
+                packing = new ByteTreePacking(template);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to derive packing!", eioe);
+            }
+        }
+        return packing;
+    }
+
+    /**
+     * Creates an element from its packed representation without
+     * verifying it. Subclasses may override this method to avoid
+     * unpacking the data.
+     *
+     * @param data Packed representations of elements.
+     * @param offset Position of the packed representation of the
+     * element.
+     * @return Element represented by the input.
+     */
+    protected PGroupElement unsafeToElement(final byte[] data,
+                                            final int offset) {
+        final ByteTreePacking layout = getPacking();
+        final byte[] encoding = new byte[layout.getWidth()];
+        layout.unpack(data, offset, encoding, 0);
+        try {
+            final ByteTree bt = new ByteTree(encoding, null);
+            return unsafeToElement(bt.getByteTreeReader());
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Malformed packed element!", eioe);
+        }
+    }
+
+    /**
+     * Creates the elements with the given packed representations
+     * without verifying them. Use {@link
+     * #verifyUnsafe(PGroupElement[])} to verify them.
+     *
+     * @param data Packed representations of elements.
+     * @param count Number of elements.
+     * @return Elements represented by the input.
+     */
+    public PGroupElement[] unsafeToElements(final byte[] data,
+                                            final int count) {
+        final int dataWidth = getPacking().getDataWidth();
+        final PGroupElement[] res = new PGroupElement[count];
+
+        final ArrayWorker worker =
+            new ArrayWorker(count) {
+                public void work(final int start, final int end) {
+                    for (int i = start; i < end; i++) {
+                        res[i] = unsafeToElement(data, i * dataWidth);
+                    }
+                }
+            };
+        worker.work();
+        return res;
+    }
+
+    /**
+     * Returns the array of elements stored on the given file, which
+     * contains a node of representations of elements in the standard
+     * or packed format of {@link ByteTreePackedF}. The elements are
+     * decoded directly from the packed data and verified.
+     *
+     * @param file Representation of an array.
+     * @return Array of elements.
+     *
+     * @throws ArithmFormatException If the file does not contain a
+     * representation of an array of elements.
+     */
+    public PGroupElementArray unpackElementArray(final File file)
+        throws ArithmFormatException {
+
+        ByteTreePackedF packed = null;
+        try {
+            packed = new ByteTreePackedF(file, getPacking());
+
+            if (packed.getRemaining() > Integer.MAX_VALUE) {
+                throw new ArithmFormatException("Too many elements!");
+            }
+
+            if (LargeIntegerArray.inMemory) {
+
+                final int size = (int) packed.getRemaining();
+                final PGroupElement[] res =
+                    unsafeToElements(packed.read(size), size);
+                verifyUnsafe(res);
+                return new BPGroupElementArrayIM(this, res);
+
+            } else {
+                return new BPGroupElementArrayF(this, packed, true);
+            }
+
+        } catch (final EIOException eioe) {
+            throw new ArithmFormatException("Malformed array!", eioe);
+        } finally {
+            if (packed != null) {
+                packed.close();
+            }
+        }
+    }
+
     // Documented in PGroup.java
 
     @Override
@@ -94,7 +94,7 @@ public abstract class BPGroupElement extends PGroupElement {
         final int width =
             PGroupFixExpTab.optimalWidth(bitLength, integers.length);
 
-        final PGroupFixExpTab tab = new PGroupFixExpTab(this, bitLength, width);
+        final PGroupFixExp tab = pGroup.fixExpTab(this, bitLength, width);
 
         // Compute result.
         final PGroupElement[] res = new PGroupElement[integers.length];
@@ -106,13 +106,14 @@ public abstract class BPGroupElement extends PGroupElement {
                 }
                 @Override
                 public void work(final int start, final int end) {
-                    for (int i = start; i < end; i++) {
-
-                        res[i] = tab.exp(integers[i]);
-                    }
+                    tab.exp(integers, res, start, end);
                 }
             };
-        worker.work();
+        try {
+            worker.work();
+        } finally {
+            tab.free();
+        }
 
         return res;
     }
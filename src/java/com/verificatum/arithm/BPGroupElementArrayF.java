@@ -32,6 +32,9 @@ import java.io.IOException;
 
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeF;
+import com.verificatum.eio.ByteTreeIndexF;
+import com.verificatum.eio.ByteTreeMappedF;
+import com.verificatum.eio.ByteTreePackedF;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.ByteTreeWriterF;
 import com.verificatum.eio.EIOException;
@@ -56,6 +59,18 @@ public class BPGroupElementArrayF extends PGroupElementArray {
      */
     protected File file;
 
+    /**
+     * Mapped view of the file of this instance, or <code>null</code>
+     * if it has not been mapped.
+     */
+    private ByteTreeMappedF mapped;
+
+    /**
+     * Index of the file of this instance, or <code>null</code> if it
+     * has not been built.
+     */
+    private ByteTreeIndexF byteTreeIndex;
+
     /**
      * Creates an empty instance. It is the responsibility of the
      * programmer to fill this instance with data.
@@ -131,13 +146,92 @@ public class BPGroupElementArrayF extends PGroupElementArray {
         return new ByteTreeF(file).getByteTreeReader();
     }
 
+    /**
+     * Returns a mapped view of the file of this instance. Every
+     * element is represented by a byte tree with the layout given by
+     * {@link BPGroup#getPacking()}, so this allows reading any element
+     * directly. If the file does not have the expected length, then
+     * <code>null</code> is returned.
+     *
+     * @return Mapped view of the file of this instance or
+     * <code>null</code>.
+     */
+    protected synchronized ByteTreeMappedF getMapped() {
+        if (mapped == null) {
+            final int width = ((BPGroup) pGroup).getPacking().getWidth();
+            mapped = ByteTreeMappedF.map(file, size, width);
+        }
+        return mapped;
+    }
+
+    /**
+     * Returns the index of the file of this instance, which allows
+     * reading any element directly. The index is built the first
+     * time it is needed.
+     *
+     * @return Index of the file of this instance.
+     */
+    protected synchronized ByteTreeIndexF getIndex() {
+        if (byteTreeIndex == null) {
+            try {
+                byteTreeIndex = ByteTreeIndexF.index(file);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to index array!", eioe);
+            }
+        }
+        return byteTreeIndex;
+    }
+
+    /**
+     * Reads the element with the given index from the mapped view.
+     *
+     * @param pGroup Group to which the elements of this array belong.
+     * @param mapped Mapped view of the file of an array.
+     * @param index Index of element.
+     * @return Element with the given index.
+     */
+    protected static PGroupElement readMapped(final PGroup pGroup,
+                                              final ByteTreeMappedF mapped,
+                                              final int index) {
+        try {
+            return pGroup.unsafeToElement(mapped.getChildReader(index));
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to read from array!", eioe);
+        }
+    }
+
+    /**
+     * Returns a reader of the packed representations of the elements
+     * of this instance if the file has the length expected by {@link
+     * #getMapped()}, and <code>null</code> otherwise. This allows
+     * decoding batches of elements without parsing every element as a
+     * byte tree.
+     *
+     * @return Reader of packed elements or <code>null</code>.
+     */
+    protected ByteTreePackedF getPackedReader() {
+        if (getMapped() == null) {
+            return null;
+        }
+        try {
+            return new ByteTreePackedF(file, ((BPGroup) pGroup).getPacking());
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to create packed reader!", eioe);
+        }
+    }
+
     /**
      * Returns a reader that allows reading batches of group elements.
      *
      * @return Reader for the contents of this instance.
      */
     protected BPGroupElementBatchReader getBatchReader() {
-        return new BPGroupElementBatchReader(pGroup, getReader());
+        final ByteTreePackedF packed = getPackedReader();
+        if (packed == null) {
+            return new BPGroupElementBatchReader(pGroup, getReader());
+        } else {
+            return new BPGroupElementBatchReader(pGroup, packed);
+        }
     }
 
     /**
@@ -236,6 +330,11 @@ public class BPGroupElementArrayF extends PGroupElementArray {
         // former may be zero when the latter is not.
         this(pGroup, zeroMapped(size, btr.getRemaining()));
 
+        // Arrays are indexed by ints, so a node in large-tree mode
+        // can not be converted.
+        if (btr.getLongRemaining() > Integer.MAX_VALUE) {
+            throw new ArithmFormatException("Too many elements!");
+        }
         if (size != 0 && btr.getRemaining() != size) {
             throw new ArithmFormatException("Unexpected number of integers!");
         }
@@ -257,6 +356,44 @@ public class BPGroupElementArrayF extends PGroupElementArray {
         }
     }
 
+    /**
+     * Constructs an array of elements from the packed representations
+     * of elements read from the given reader.
+     *
+     * @param pGroup Group to which the elements of this array belong.
+     * @param packed Source of packed representations of elements.
+     * @param safe Indicates if inputs should be verified or not.
+     *
+     * @throws ArithmFormatException If the input does not represent
+     *  an instance.
+     */
+    protected BPGroupElementArrayF(final PGroup pGroup,
+                                   final ByteTreePackedF packed,
+                                   final boolean safe)
+        throws ArithmFormatException {
+        this(pGroup, (int) packed.getRemaining());
+
+        final BPGroup bPGroup = (BPGroup) this.pGroup;
+        final ByteTreeWriterF btw = getWriter();
+
+        try {
+            while (packed.getRemaining() > 0) {
+                final int len =
+                    (int) Math.min(batchSize(), packed.getRemaining());
+                final PGroupElement[] elements =
+                    bPGroup.unsafeToElements(packed.read(len), len);
+                if (safe) {
+                    bPGroup.verifyUnsafe(elements);
+                }
+                btw.unsafeWrite(elements);
+            }
+        } catch (final EIOException eioe) {
+            throw new ArithmFormatException("Malformed array!", eioe);
+        } finally {
+            btw.close();
+        }
+    }
+
     /**
      * Constructs an array of elements from the given representation.
      *
@@ -316,14 +453,78 @@ public class BPGroupElementArrayF extends PGroupElementArray {
         return readBatch(pGroup, len, btr);
     }
 
+    /**
+     * Reads and decodes a batch of packed group elements. The size of
+     * the batch is the minimum of {@link #batchSize()} and the
+     * remaining number of elements in the reader.
+     *
+     * @param pGroup Group to which the elements of this array belong.
+     * @param packed Source of packed elements.
+     * @return Array of elements.
+     */
+    protected static PGroupElement[] readBatch(final PGroup pGroup,
+                                               final ByteTreePackedF packed) {
+        final int len = (int) Math.min(batchSize(), packed.getRemaining());
+        try {
+            return ((BPGroup) pGroup).unsafeToElements(packed.read(len), len);
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to read data!", eioe);
+        }
+    }
+
     // Documented in PGroupElementArray.java
     @Override
     public ByteTreeBasic toByteTree() {
         return new ByteTreeF(file);
     }
 
+    /**
+     * Returns a representation of this instance in the packed format
+     * of {@link ByteTreePackedF}, which stores a single header
+     * followed by the data of the elements. This can be converted
+     * losslessly to the representation returned by {@link
+     * #toByteTree()}, e.g., using {@link
+     * BPGroup#unpackElementArray(File)}.
+     *
+     * @return Packed representation of this instance.
+     *
+     * @throws ArithmError If the elements are not represented by
+     * byte trees of identical layout.
+     */
+    public ByteTreeF toPackedByteTree() {
+        if (getMapped() == null) {
+            throw new ArithmError("Elements do not have fixed width!");
+        }
+        final File packedFile = TempFile.getFile();
+        try {
+            ByteTreePackedF.pack(file, packedFile,
+                                 ((BPGroup) pGroup).getPacking());
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to pack array!", eioe);
+        }
+        return new ByteTreeF(packedFile);
+    }
+
     @Override
     public PGroupElement[] elements() {
+
+        final ByteTreePackedF packed = getPackedReader();
+        if (packed != null) {
+
+            final PGroupElement[] res = new PGroupElement[size];
+            try {
+                int offset = 0;
+                while (packed.getRemaining() > 0) {
+                    final PGroupElement[] tmp = readBatch(pGroup, packed);
+                    System.arraycopy(tmp, 0, res, offset, tmp.length);
+                    offset += tmp.length;
+                }
+            } finally {
+                packed.close();
+            }
+            return res;
+        }
+
         final ByteTreeReader btr = getReader();
         final PGroupElement[] res = readBatch(pGroup, size, btr);
         btr.close();
@@ -337,9 +538,15 @@ public class BPGroupElementArrayF extends PGroupElementArray {
 
     @Override
     public PGroupElement get(final int index) {
+
+        final ByteTreeMappedF mapped = getMapped();
+        if (mapped != null) {
+            return readMapped(pGroup, mapped, index);
+        }
+
         try {
-            final ByteTreeReader btr = getReader();
-            btr.skipChildren(index);
+            final ByteTreeReader btr =
+                getIndex().getByteTreeReader(index, index + 1);
             final PGroupElement res =
                 pGroup.unsafeToElement(btr.getNextChild());
             btr.close();
@@ -357,19 +564,21 @@ public class BPGroupElementArrayF extends PGroupElementArray {
         }
 
         final BPGroupElementArrayF res = new BPGroupElementArrayF(pGroup, size);
-        final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr1 = getReader();
-        final ByteTreeReader btr2 =
-            ((BPGroupElementArrayF) factorsArray).getReader();
+        final BPGroupElementBatchWriter bw = res.getBatchWriter();
+        final BPGroupElementBatchReader br1 = getBatchReader();
+        final BPGroupElementBatchReader br2 =
+            ((BPGroupElementArrayF) factorsArray).getBatchReader();
 
-        while (btr1.getRemaining() > 0) {
-            final PGroupElement[] elements1 = readBatch(pGroup, btr1);
-            final PGroupElement[] elements2 = readBatch(pGroup, btr2);
-            btw.unsafeWrite(pGroup.mul(elements1, elements2));
+        PGroupElement[] elements1 = br1.readNext();
+        PGroupElement[] elements2 = br2.readNext();
+        while (elements1 != null && elements2 != null) {
+            bw.writeNext(pGroup.mul(elements1, elements2));
+            elements1 = br1.readNext();
+            elements2 = br2.readNext();
         }
-        btr2.close();
-        btr1.close();
-        btw.close();
+        br2.close();
+        br1.close();
+        bw.close();
 
         return res;
     }
@@ -378,16 +587,16 @@ public class BPGroupElementArrayF extends PGroupElementArray {
     public PGroupElementArray inv() {
 
         final BPGroupElementArrayF res = new BPGroupElementArrayF(pGroup, size);
-        final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr = getReader();
-
-        while (btr.getRemaining() > 0) {
+        final BPGroupElementBatchWriter bw = res.getBatchWriter();
+        final BPGroupElementBatchReader br = getBatchReader();
 
-            final PGroupElement[] elements = readBatch(pGroup, btr);
-            btw.unsafeWrite(pGroup.inv(elements));
+        PGroupElement[] elements = br.readNext();
+        while (elements != null) {
+            bw.writeNext(pGroup.inv(elements));
+            elements = br.readNext();
         }
-        btr.close();
-        btw.close();
+        br.close();
+        bw.close();
 
         return res;
     }
@@ -596,10 +805,22 @@ public class BPGroupElementArrayF extends PGroupElementArray {
 
         final BPGroupElementArrayF res = new BPGroupElementArrayF(pGroup, size);
         final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr = getReader();
 
         btw.unsafeWrite(el);
 
+        final ByteTreeMappedF mapped = getMapped();
+        if (mapped != null) {
+            try {
+                mapped.transferTo(0, size - 1, btw);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to read from array!", eioe);
+            } finally {
+                btw.close();
+            }
+            return res;
+        }
+
+        final ByteTreeReader btr = getReader();
         while (btr.getRemaining() > 1) {
 
             final int len = Math.min(batchSize(), btr.getRemaining() - 1);
@@ -616,29 +837,26 @@ public class BPGroupElementArrayF extends PGroupElementArray {
     public PGroupElementArray copyOfRange(final int startIndex,
                                           final int endIndex) {
 
-        final ByteTreeReader btr = getReader();
+        final ByteTreeMappedF mapped = getMapped();
+        if (mapped != null && endIndex > startIndex) {
 
-        try {
-            btr.skipChildren(startIndex);
-        } catch (final EIOException eioe) {
-            throw new ArithmError("Unable to skip content!", eioe);
+            // The encodings are copied without decoding.
+            final BPGroupElementArrayF res =
+                new BPGroupElementArrayF(pGroup, endIndex - startIndex);
+            try {
+                mapped.copyOfRange(startIndex, endIndex, res.file);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to read from array!", eioe);
+            }
+            return res;
         }
 
-        int resSize = endIndex - startIndex;
-
+        // The encodings are located using the index and copied
+        // without decoding.
         final BPGroupElementArrayF res =
-            new BPGroupElementArrayF(pGroup, resSize);
+            new BPGroupElementArrayF(pGroup, endIndex - startIndex);
         final ByteTreeWriterF btw = res.getWriter();
-
-        while (resSize > 0) {
-
-            final int len = Math.min(batchSize(), resSize);
-            final PGroupElement[] elements = readBatch(pGroup, len, btr);
-            btw.unsafeWrite(elements);
-            resSize -= len;
-
-        }
-        btr.close();
+        getIndex().transferTo(startIndex, endIndex, btw);
         btw.close();
 
         return res;
@@ -677,6 +895,8 @@ public class BPGroupElementArrayF extends PGroupElementArray {
 
     @Override
     public void free() {
+        mapped = null;
+        byteTreeIndex = null;
         TempFile.delete(file);
     }
 }
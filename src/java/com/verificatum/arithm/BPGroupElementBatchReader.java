@@ -26,9 +26,7 @@
 
 package com.verificatum.arithm;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-
+import com.verificatum.eio.ByteTreePackedF;
 import com.verificatum.eio.ByteTreeReader;
 
 /**
@@ -37,22 +35,25 @@ import com.verificatum.eio.ByteTreeReader;
  *
  * @author Douglas Wikstrom
  */
-public final class BPGroupElementBatchReader {
+public final class BPGroupElementBatchReader
+    extends BatchReader<PGroupElement> {
 
     /**
-     * Delay between reading attempts in milliseconds.
+     * Underlying group.
      */
-    public static final int BATCH_SLEEP_TIME = 100;
+    final PGroup pGroup;
 
     /**
-     * Queue used for the producer-consumer pattern.
+     * Source of elements, or <code>null</code> if packed elements
+     * are read.
      */
-    BlockingQueue<PGroupElement[]> bq;
+    final ByteTreeReader btr;
 
     /**
-     * Producer thread of batches of element arrays.
+     * Source of packed elements, or <code>null</code> if elements
+     * are read as byte trees.
      */
-    BPGroupElementBatchReaderThread reader;
+    final ByteTreePackedF packed;
 
     /**
      * Creates a group element reader.
@@ -60,106 +61,54 @@ public final class BPGroupElementBatchReader {
      * @param pGroup Underlying group.
      * @param btr Source of group elements.
      */
-    BPGroupElementBatchReader(final PGroup pGroup, final ByteTreeReader btr) {
-        this.bq = new LinkedBlockingQueue<PGroupElement[]>(2);
-        this.reader = new BPGroupElementBatchReaderThread(pGroup, btr, bq);
-        reader.start();
+    BPGroupElementBatchReader(final PGroup pGroup,
+                              final ByteTreeReader btr) {
+        super(new PGroupElement[0]);
+        this.pGroup = pGroup;
+        this.btr = btr;
+        this.packed = null;
+        start();
     }
 
     /**
-     * Return the next batch of elements in this reader, or null if
-     * there are no more elements.
+     * Creates a group element reader that decodes packed elements.
      *
-     * @return Next batch of elements.
-     */
-    PGroupElement[] readNext() {
-        try {
-            final PGroupElement[] elements = bq.take();
-            if (elements.length == 0) {
-                return null;
-            } else {
-                return elements;
-            }
-        } catch (final InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            throw new ArithmError("Failed to read next batch!", ie);
-        }
-    }
-
-    /**
-     * Release allocated resources.
-     */
-    void close() {
-        reader.close();
-    }
-}
-
-/**
- * Thread running in the background that reads batches of group
- * elements.
- */
-final class BPGroupElementBatchReaderThread extends Thread {
-
-    /**
-     * Underlying group.
-     */
-    PGroup pGroup;
-
-    /**
-     * Source of elements.
-     */
-    ByteTreeReader btr;
-
-    /**
-     * Blocking queue.
-     */
-    BlockingQueue<PGroupElement[]> bq;
-
-    /**
-     * Used to abort execution.
-     */
-    boolean running;
-
-    /**
-     * Creates thread running in the background that reads batches of
-     * group elements.
-     *
-     * @param pGroup Group containing the elements read.
-     * @param btr Source of group elements.
-     * @param bq Destination of batches of group elements.
+     * @param pGroup Underlying group.
+     * @param packed Source of packed group elements.
      */
-    BPGroupElementBatchReaderThread(final PGroup pGroup,
-                                    final ByteTreeReader btr,
-                                    final BlockingQueue<PGroupElement[]> bq) {
+    BPGroupElementBatchReader(final PGroup pGroup,
+                              final ByteTreePackedF packed) {
+        super(new PGroupElement[0]);
         this.pGroup = pGroup;
-        this.btr = btr;
-        this.bq = bq;
-        this.running = true;
+        this.btr = null;
+        this.packed = packed;
+        start();
     }
 
-    /**
-     * Halt this producer thread.
-     */
-    public void close() {
-        running = false;
+    @Override
+    boolean hasRemaining() {
+        if (packed == null) {
+            return btr.getRemaining() > 0;
+        } else {
+            return packed.getRemaining() > 0;
+        }
     }
 
     @Override
-    public void run() {
-        while (running && btr.getRemaining() > 0) {
-            if (bq.size() == 0) {
-                bq.add(BPGroupElementArrayF.readBatch(pGroup, btr));
-            } else {
-                try {
-                    Thread.sleep(BPGroupElementBatchReader.BATCH_SLEEP_TIME);
-                } catch (final InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+    PGroupElement[] readBatch() {
+        if (packed == null) {
+            return BPGroupElementArrayF.readBatch(pGroup, btr);
+        } else {
+            return BPGroupElementArrayF.readBatch(pGroup, packed);
         }
+    }
 
-        // We use the zero length array as the end of stream indicator.
-        bq.add(new BPGroupElement[0]);
-        btr.close();
+    @Override
+    void closeSource() {
+        if (packed == null) {
+            btr.close();
+        } else {
+            packed.close();
+        }
     }
 }
@@ -34,17 +34,12 @@ import com.verificatum.eio.ByteTreeWriterF;
  *
  * @author Douglas Wikstrom
  */
-public class BPGroupElementBatchWriter {
+public class BPGroupElementBatchWriter extends BatchWriter<PGroupElement> {
 
     /**
      * Destination of group elements.
      */
-    ByteTreeWriterF btw;
-
-    /**
-     * Indicates if this instance is still writing.
-     */
-    boolean active;
+    final ByteTreeWriterF btw;
 
     /**
      * Creates a group element writer.
@@ -52,50 +47,18 @@ public class BPGroupElementBatchWriter {
      * @param btw Destination of group elements.
      */
     BPGroupElementBatchWriter(final ByteTreeWriterF btw) {
+        super(new PGroupElement[0]);
         this.btw = btw;
-        this.active = false;
+        start();
     }
 
-    /**
-     * Write the next batch of group element to this writer.
-     *
-     * @param batch Next batch of group elements.
-     */
-    void writeNext(final PGroupElement[] batch) {
-
-        while (active) {
-            try {
-                Thread.sleep(100);
-            } catch (final InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-        }
-
-        active = true;
-
-        final Thread thread = new Thread() {
-
-                @Override
-                public void run() {
-                    btw.unsafeWrite(batch);
-                    active = false;
-                }
-            };
-        thread.start();
+    @Override
+    void writeBatch(final PGroupElement[] batch) {
+        btw.unsafeWrite(batch);
     }
 
-    /**
-     * Release allocated resources. This returns only after all
-     * elements in the last write operation have been written.
-     */
-    void close() {
-        while (active) {
-            try {
-                Thread.sleep(100);
-            } catch (final InterruptedException ie) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    @Override
+    void closeDestination() {
         btw.close();
     }
 }
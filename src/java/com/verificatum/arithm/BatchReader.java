@@ -0,0 +1,197 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * First stage of a pipeline that reads and decodes batches in a
+ * separate thread while the caller computes on previous batches. The
+ * number of pending batches is bounded, and threads block on the
+ * queue instead of polling it.
+ *
+ * @param <T> Type of elements in batches.
+ *
+ * @author Douglas Wikstrom
+ */
+abstract class BatchReader<T> {
+
+    /**
+     * Maximal number of decoded batches waiting to be processed.
+     */
+    static final int CAPACITY = 2;
+
+    /**
+     * Queue of decoded batches.
+     */
+    private final BlockingQueue<T[]> queue;
+
+    /**
+     * Batch used as end of stream indicator. It is only compared by
+     * identity.
+     */
+    private final T[] end;
+
+    /**
+     * Thread reading batches.
+     */
+    private final Thread thread;
+
+    /**
+     * Indicates that the consumer still accepts batches.
+     */
+    private volatile boolean running;
+
+    /**
+     * Failure in the reading thread, or <code>null</code>.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Indicates that the end of stream indicator has been taken.
+     */
+    private boolean done;
+
+    /**
+     * Creates a reader. The subclass must call {@link #start()}
+     * once it is initialized.
+     *
+     * @param end Empty batch used as end of stream indicator.
+     */
+    BatchReader(final T[] end) {
+        this.queue = new ArrayBlockingQueue<T[]>(CAPACITY);
+        this.end = end;
+        this.running = true;
+        this.thread = new Thread() {
+                @Override
+                public void run() {
+                    produce();
+                }
+            };
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts reading batches in the background.
+     */
+    protected void start() {
+        thread.start();
+    }
+
+    /**
+     * Returns true if there are more elements to read.
+     *
+     * @return True if there are more elements to read.
+     */
+    abstract boolean hasRemaining();
+
+    /**
+     * Reads and decodes the next batch.
+     *
+     * @return Next batch.
+     */
+    abstract T[] readBatch();
+
+    /**
+     * Releases the source of elements.
+     */
+    abstract void closeSource();
+
+    /**
+     * Reads batches until the source is exhausted or the consumer
+     * closes this reader.
+     */
+    private void produce() {
+        try {
+            try {
+                while (running && hasRemaining()) {
+                    queue.put(readBatch());
+                }
+            } catch (final RuntimeException re) {
+                failure = re;
+            } catch (final Error e) {
+                failure = e;
+            } finally {
+                closeSource();
+            }
+
+            // If the consumer has closed this reader, then nobody is
+            // waiting for the indicator.
+            if (running) {
+                queue.put(end);
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the next batch of this reader, or null if there are no
+     * more elements.
+     *
+     * @return Next batch.
+     */
+    T[] readNext() {
+        if (done) {
+            return null;
+        }
+        try {
+            final T[] batch = queue.take();
+            if (batch == end) {
+                done = true;
+                if (failure != null) {
+                    throw new ArithmError("Failed to read next batch!",
+                                          failure);
+                }
+                return null;
+            } else {
+                return batch;
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ArithmError("Failed to read next batch!", ie);
+        }
+    }
+
+    /**
+     * Release allocated resources. This may be called before all
+     * batches have been read.
+     */
+    void close() {
+        running = false;
+
+        // Clearing the queue after the flag is set guarantees that a
+        // blocked producer makes progress and then halts.
+        queue.clear();
+        try {
+            thread.join();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
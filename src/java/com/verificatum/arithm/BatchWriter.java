@@ -0,0 +1,173 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Last stage of a pipeline that encodes and writes batches in a
+ * separate thread while the caller computes the following
+ * batches. The number of pending batches is bounded, so the caller
+ * blocks if it computes faster than batches can be written.
+ *
+ * @param <T> Type of elements in batches.
+ *
+ * @author Douglas Wikstrom
+ */
+abstract class BatchWriter<T> {
+
+    /**
+     * Maximal number of computed batches waiting to be written.
+     */
+    static final int CAPACITY = 2;
+
+    /**
+     * Queue of computed batches.
+     */
+    private final BlockingQueue<T[]> queue;
+
+    /**
+     * Batch used as end of stream indicator. It is only compared by
+     * identity.
+     */
+    private final T[] end;
+
+    /**
+     * Thread writing batches.
+     */
+    private final Thread thread;
+
+    /**
+     * Failure in the writing thread, or <code>null</code>.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Creates a writer. The subclass must call {@link #start()}
+     * once it is initialized.
+     *
+     * @param end Empty batch used as end of stream indicator.
+     */
+    BatchWriter(final T[] end) {
+        this.queue = new ArrayBlockingQueue<T[]>(CAPACITY);
+        this.end = end;
+        this.thread = new Thread() {
+                @Override
+                public void run() {
+                    consume();
+                }
+            };
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts writing batches in the background.
+     */
+    protected void start() {
+        thread.start();
+    }
+
+    /**
+     * Encodes and writes the given batch.
+     *
+     * @param batch Batch to write.
+     */
+    abstract void writeBatch(T[] batch);
+
+    /**
+     * Releases the destination of elements.
+     */
+    abstract void closeDestination();
+
+    /**
+     * Writes batches until the end of stream indicator is taken. If
+     * writing fails, then remaining batches are discarded to avoid
+     * blocking the producer.
+     */
+    private void consume() {
+        try {
+            T[] batch = queue.take();
+            while (batch != end) {
+                if (failure == null) {
+                    try {
+                        writeBatch(batch);
+                    } catch (final RuntimeException re) {
+                        failure = re;
+                    } catch (final Error e) {
+                        failure = e;
+                    }
+                }
+                batch = queue.take();
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throws an error if writing has failed.
+     */
+    private void checkFailure() {
+        if (failure != null) {
+            throw new ArithmError("Failed to write batch!", failure);
+        }
+    }
+
+    /**
+     * Writes the next batch in the background. This blocks only if
+     * too many batches are already waiting to be written.
+     *
+     * @param batch Next batch.
+     */
+    void writeNext(final T[] batch) {
+        checkFailure();
+        try {
+            queue.put(batch);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ArithmError("Failed to write batch!", ie);
+        }
+    }
+
+    /**
+     * Release allocated resources. This returns only after all
+     * batches have been written and the destination is closed.
+     */
+    void close() {
+        try {
+            queue.put(end);
+            thread.join();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ArithmError("Failed to close writer!", ie);
+        } finally {
+            closeDestination();
+        }
+        checkFailure();
+    }
+}
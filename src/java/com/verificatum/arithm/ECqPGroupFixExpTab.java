@@ -0,0 +1,187 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+/**
+ * Fixed base exponentiation for elliptic curve groups implemented in
+ * pure Java using the comb method. This is the same technique as in
+ * {@link PGroupFixExpTab}, but the table is normalized to affine
+ * coordinates and the exponentiation is computed in Jacobian
+ * coordinates. Thus, each step of the main loop is a doubling and a
+ * mixed addition, and a single inversion is needed to convert the
+ * result.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ECqPGroupFixExpTab implements PGroupFixExp {
+
+    /**
+     * Number of bases, or teeth of the comb.
+     */
+    private final int width;
+
+    /**
+     * Bit length of each slice of an exponent.
+     */
+    private final int sliceSize;
+
+    /**
+     * Table of pre-computed values in Jacobian coordinates with Z
+     * coordinate equal to one.
+     */
+    private final ECqPGroupJacobianPoint[] pre;
+
+    /**
+     * Creates a pre-computed table.
+     *
+     * @param basis Fixed basis used for pre-computation.
+     * @param bitLength Bit length of exponents used to compute
+     * power-products.
+     * @param width Number of bases elements to use.
+     */
+    ECqPGroupFixExpTab(final ECqPGroupElement basis,
+                       final int bitLength,
+                       final int width) {
+        this.width = width;
+
+        // Determine the number of bits associated with each bases.
+        sliceSize = (bitLength + width - 1) / width;
+
+        // Create generators, i.e., the basis to the powers 2^(j *
+        // sliceSize) for j = 0,...,width - 1.
+        final ECqPGroupJacobianPoint[] bases =
+            new ECqPGroupJacobianPoint[width];
+        bases[0] = new ECqPGroupJacobianPoint(basis);
+        for (int i = 1; i < bases.length; i++) {
+            ECqPGroupJacobianPoint tmp = bases[i - 1];
+            for (int j = 0; j < sliceSize; j++) {
+                tmp = tmp.square();
+            }
+            bases[i] = tmp;
+        }
+
+        // Compute all products of subsets of the generators.
+        final ECqPGroupJacobianPoint[] jpre =
+            new ECqPGroupJacobianPoint[1 << width];
+        jpre[0] = bases[0].getONE();
+        for (int i = 1, j = 0; i < jpre.length; i = i * 2, j++) {
+            jpre[i] = bases[j];
+        }
+        for (int mask = 1; mask < jpre.length; mask++) {
+            final int onemask = mask & (-mask);
+            if (mask != onemask) {
+                jpre[mask] = jpre[mask ^ onemask].mul(jpre[onemask]);
+            }
+        }
+
+        // Normalize to get cheaper additions in the main loop.
+        final PGroupElement[] affine = new PGroupElement[jpre.length];
+        ECqPGroupJacobianPoint.toElements(jpre, affine, 0);
+
+        pre = new ECqPGroupJacobianPoint[jpre.length];
+        for (int i = 0; i < pre.length; i++) {
+            pre[i] = new ECqPGroupJacobianPoint((ECqPGroupElement) affine[i]);
+        }
+    }
+
+    /**
+     * Returns true if and only if this table is identical to the
+     * table that would be constructed for the given parameters.
+     *
+     * @param bitLength Bit length of exponents used to compute
+     * power-products.
+     * @param width Number of bases elements to use.
+     * @return True if and only if this table can be used for the
+     * given parameters.
+     */
+    boolean compatible(final int bitLength, final int width) {
+        return this.width == width
+            && sliceSize == (bitLength + width - 1) / width;
+    }
+
+    /**
+     * Compute power using the given integer in Jacobian coordinates.
+     *
+     * @param integer Integer exponent.
+     * @return Power of element used for pre-computing.
+     */
+    ECqPGroupJacobianPoint jacobianExp(final LargeInteger integer) {
+
+        if (integer.value.signum() < 0) {
+            return jacobianExp(integer.neg()).inv();
+        }
+
+        ECqPGroupJacobianPoint res = pre[0];
+        for (int i = sliceSize - 1; i >= 0; i--) {
+
+            int k = 0;
+            for (int j = width - 1; j >= 0; j--) {
+                k <<= 1;
+                if (integer.testBit(j * sliceSize + i)) {
+                    k |= 1;
+                }
+            }
+
+            res = res.square();
+            if (k != 0) {
+                res = res.mul(pre[k]);
+            }
+        }
+        return res;
+    }
+
+    // Documented in PGroupFixExp.java
+
+    @Override
+    public PGroupElement exp(final LargeInteger integer) {
+        return jacobianExp(integer).toElement();
+    }
+
+    @Override
+    public void exp(final LargeInteger[] integers,
+                    final PGroupElement[] res,
+                    final int start,
+                    final int end) {
+
+        final ECqPGroupJacobianPoint[] points =
+            new ECqPGroupJacobianPoint[end - start];
+        for (int i = start, j = 0; i < end; i++, j++) {
+            points[j] = jacobianExp(integers[i]);
+        }
+        ECqPGroupJacobianPoint.toElements(points, res, start);
+    }
+
+    /**
+     * The table only contains points represented in Java, so nothing
+     * needs to be released. This allows the table of the standard
+     * generator to be shared.
+     */
+    @Override
+    public void free() {
+        // Nothing to release.
+    }
+}
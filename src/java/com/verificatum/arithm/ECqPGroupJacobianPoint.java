@@ -0,0 +1,629 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+import java.math.BigInteger;
+
+/**
+ * Point on an elliptic curve represented by an instance of {@link
+ * ECqPGroup} in Jacobian projective coordinates. An affine point
+ * <i>(x, y)</i> is represented by any triple <i>(X, Y, Z)</i> such
+ * that <i>x = X/Z^2</i> and <i>y = Y/Z^3</i>, and the point at
+ * infinity is represented by any triple with <i>Z = 0</i>.
+ *
+ * <p>
+ *
+ * This allows adding and doubling points using only multiplications
+ * in the underlying field. A single inversion is needed when the
+ * result is converted back to an {@link ECqPGroupElement} using
+ * {@link #toElement()}. This class is only used internally to speed
+ * up exponentiation in pure Java.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ECqPGroupJacobianPoint {
+
+    /**
+     * Group to which this point belongs.
+     */
+    final ECqPGroup pGroup;
+
+    /**
+     * Order of the underlying prime order field.
+     */
+    final BigInteger p;
+
+    /**
+     * First coefficient of the polynomial that defines the curve.
+     */
+    final BigInteger a;
+
+    /**
+     * The X coordinate of this point.
+     */
+    final BigInteger x;
+
+    /**
+     * The Y coordinate of this point.
+     */
+    final BigInteger y;
+
+    /**
+     * The Z coordinate of this point.
+     */
+    final BigInteger z;
+
+    /**
+     * Creates a point from the given coordinates.
+     *
+     * @param pGroup Group to which this point belongs.
+     * @param p Order of the underlying prime order field.
+     * @param a First coefficient of the polynomial that defines the
+     * curve.
+     * @param x The X coordinate.
+     * @param y The Y coordinate.
+     * @param z The Z coordinate.
+     */
+    private ECqPGroupJacobianPoint(final ECqPGroup pGroup,
+                                   final BigInteger p,
+                                   final BigInteger a,
+                                   final BigInteger x,
+                                   final BigInteger y,
+                                   final BigInteger z) {
+        this.pGroup = pGroup;
+        this.p = p;
+        this.a = a;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Creates the Jacobian representation of the given affine point.
+     *
+     * @param el Affine point.
+     */
+    ECqPGroupJacobianPoint(final ECqPGroupElement el) {
+        this.pGroup = el.getPGroup();
+        this.p = pGroup.primeOrderField.getOrder().value;
+        this.a = pGroup.A.value.value;
+
+        if (el.x.equals(ECqPGroupElement.MINUS_ONE)) {
+            this.x = BigInteger.ONE;
+            this.y = BigInteger.ONE;
+            this.z = BigInteger.ZERO;
+        } else {
+            this.x = el.x.value;
+            this.y = el.y.value;
+            this.z = BigInteger.ONE;
+        }
+    }
+
+    /**
+     * Creates a point in the same group as this point.
+     *
+     * @param x The X coordinate.
+     * @param y The Y coordinate.
+     * @param z The Z coordinate.
+     * @return Point with the given coordinates.
+     */
+    private ECqPGroupJacobianPoint point(final BigInteger x,
+                                         final BigInteger y,
+                                         final BigInteger z) {
+        return new ECqPGroupJacobianPoint(pGroup, p, a, x, y, z);
+    }
+
+    /**
+     * Returns the point at infinity of the group of this point.
+     *
+     * @return Point at infinity.
+     */
+    ECqPGroupJacobianPoint getONE() {
+        return point(BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO);
+    }
+
+    /**
+     * Returns true if and only if this point is the point at
+     * infinity.
+     *
+     * @return True if and only if this point is the point at
+     * infinity.
+     */
+    boolean isUnity() {
+        return z.signum() == 0;
+    }
+
+    /**
+     * Returns the inverse of this point.
+     *
+     * @return Inverse of this point.
+     */
+    ECqPGroupJacobianPoint inv() {
+        if (isUnity() || y.signum() == 0) {
+            return this;
+        }
+        return point(x, p.subtract(y), z);
+    }
+
+    /**
+     * Doubling of this point. Since we are using multiplicative
+     * notation throughout this is called squaring here.
+     *
+     * @return Square of this point.
+     */
+    ECqPGroupJacobianPoint square() {
+
+        if (isUnity() || y.signum() == 0) {
+            return getONE();
+        }
+
+        // yy = y^2, zz = z^2
+        final BigInteger yy = y.multiply(y).mod(p);
+        final BigInteger zz = z.multiply(z).mod(p);
+
+        // s = 4xy^2
+        final BigInteger s = x.multiply(yy).shiftLeft(2).mod(p);
+
+        // m = 3x^2 + az^4
+        BigInteger m = x.multiply(x);
+        m = m.add(m.shiftLeft(1));
+        if (a.signum() != 0) {
+            m = m.add(a.multiply(zz.multiply(zz).mod(p)));
+        }
+        m = m.mod(p);
+
+        // rx = m^2 - 2s
+        final BigInteger rx = m.multiply(m).subtract(s.shiftLeft(1)).mod(p);
+
+        // ry = m(s - rx) - 8y^4
+        final BigInteger ry = m.multiply(s.subtract(rx))
+            .subtract(yy.multiply(yy).shiftLeft(3)).mod(p);
+
+        // rz = 2yz
+        final BigInteger rz = y.multiply(z).shiftLeft(1).mod(p);
+
+        return point(rx, ry, rz);
+    }
+
+    /**
+     * Computes the product of this point and the input, i.e., the sum
+     * of the two points in additive notation. If the Z coordinate of
+     * either point is one, then the corresponding multiplications are
+     * avoided.
+     *
+     * @param e Other factor.
+     * @return Product of this point and the input.
+     */
+    ECqPGroupJacobianPoint mul(final ECqPGroupJacobianPoint e) {
+
+        if (isUnity()) {
+            return e;
+        }
+        if (e.isUnity()) {
+            return this;
+        }
+
+        final boolean zOne = BigInteger.ONE.equals(z);
+        final boolean ezOne = BigInteger.ONE.equals(e.z);
+
+        // u1 = x * e.z^2, s1 = y * e.z^3
+        BigInteger u1 = x;
+        BigInteger s1 = y;
+        if (!ezOne) {
+            final BigInteger ezz = e.z.multiply(e.z).mod(p);
+            u1 = x.multiply(ezz).mod(p);
+            s1 = y.multiply(ezz.multiply(e.z).mod(p)).mod(p);
+        }
+
+        // u2 = e.x * z^2, s2 = e.y * z^3
+        BigInteger u2 = e.x;
+        BigInteger s2 = e.y;
+        if (!zOne) {
+            final BigInteger zz = z.multiply(z).mod(p);
+            u2 = e.x.multiply(zz).mod(p);
+            s2 = e.y.multiply(zz.multiply(z).mod(p)).mod(p);
+        }
+
+        // h = u2 - u1, r = s2 - s1
+        final BigInteger h = u2.subtract(u1).mod(p);
+        final BigInteger r = s2.subtract(s1).mod(p);
+
+        // If the points have identical affine x coordinates, then
+        // they are either equal or inverses of each other.
+        if (h.signum() == 0) {
+            if (r.signum() == 0) {
+                return square();
+            } else {
+                return getONE();
+            }
+        }
+
+        final BigInteger hh = h.multiply(h).mod(p);
+        final BigInteger hhh = hh.multiply(h).mod(p);
+        final BigInteger v = u1.multiply(hh).mod(p);
+
+        // rx = r^2 - h^3 - 2 * u1 * h^2
+        final BigInteger rx =
+            r.multiply(r).subtract(hhh).subtract(v.shiftLeft(1)).mod(p);
+
+        // ry = r * (u1 * h^2 - rx) - s1 * h^3
+        final BigInteger ry =
+            r.multiply(v.subtract(rx)).subtract(s1.multiply(hhh)).mod(p);
+
+        // rz = h * z * e.z
+        BigInteger rz = h;
+        if (!zOne) {
+            rz = rz.multiply(z).mod(p);
+        }
+        if (!ezOne) {
+            rz = rz.multiply(e.z).mod(p);
+        }
+
+        return point(rx, ry, rz);
+    }
+
+    /**
+     * Returns the window width that minimizes the number of
+     * multiplications needed to compute a power with an exponent of
+     * the given bit length using {@link #exp(LargeInteger)}.
+     *
+     * @param bitLength Bit length of exponent.
+     * @return Optimal width of window.
+     */
+    static int wnafWidth(final int bitLength) {
+
+        // A width w table contains 2^(w-2) odd powers and on average
+        // every (w+1)th digit of the representation is non-zero.
+        int width = 2;
+        double cost = 1 + ((double) bitLength) / 3;
+        double oldCost;
+        do {
+
+            oldCost = cost;
+
+            width++;
+            cost = (1 << (width - 2)) + ((double) bitLength) / (width + 1);
+
+        } while (width < 8 && cost < oldCost);
+
+        return width - 1;
+    }
+
+    /**
+     * Returns the width-<i>w</i> non-adjacent form of the input
+     * non-negative integer, i.e., digits <i>d_i</i> such that the
+     * integer equals the sum of <i>d_i 2^i</i>, each non-zero digit
+     * is odd and bounded by <i>2^(w-1)</i> in absolute value, and at
+     * most one of any <i>w</i> consecutive digits is non-zero.
+     *
+     * @param integer Non-negative integer.
+     * @param width Width of window.
+     * @return Digits of the representation starting with the least
+     * significant digit.
+     */
+    static int[] wnaf(final BigInteger integer, final int width) {
+
+        final int[] digits = new int[integer.bitLength() + 1];
+
+        final int mask = (1 << width) - 1;
+        final int half = 1 << (width - 1);
+
+        BigInteger k = integer;
+        int i = 0;
+        while (k.signum() > 0) {
+
+            // Skip runs of zeros.
+            final int zeros = k.getLowestSetBit();
+            k = k.shiftRight(zeros);
+            i += zeros;
+
+            // Extract a signed odd digit and cancel it.
+            int digit = k.intValue() & mask;
+            if (digit >= half) {
+                digit -= 1 << width;
+            }
+            digits[i] = digit;
+            k = k.subtract(BigInteger.valueOf(digit));
+        }
+        return digits;
+    }
+
+    /**
+     * Compute the power of this point to the given exponent. This
+     * uses sliding windows over the signed non-adjacent form of the
+     * exponent, which is cheap for elliptic curves since inverting a
+     * point is essentially free.
+     *
+     * @param exponent Exponent.
+     * @return Power of this point to the given exponent.
+     */
+    ECqPGroupJacobianPoint exp(final LargeInteger exponent) {
+
+        if (exponent.value.signum() < 0) {
+            return inv().exp(exponent.neg());
+        }
+
+        final BigInteger e = exponent.value;
+        if (e.signum() == 0 || isUnity()) {
+            return getONE();
+        }
+
+        final int width = wnafWidth(e.bitLength());
+        final int[] digits = wnaf(e, width);
+
+        // Odd powers of this point, i.e., odd[i] = this^(2i+1).
+        final ECqPGroupJacobianPoint[] odd =
+            new ECqPGroupJacobianPoint[1 << (width - 2)];
+        odd[0] = this;
+        if (odd.length > 1) {
+            final ECqPGroupJacobianPoint sq = square();
+            for (int i = 1; i < odd.length; i++) {
+                odd[i] = odd[i - 1].mul(sq);
+            }
+        }
+
+        ECqPGroupJacobianPoint res = getONE();
+        for (int i = digits.length - 1; i >= 0; i--) {
+            res = res.square();
+            final int digit = digits[i];
+            if (digit > 0) {
+                res = res.mul(odd[digit >> 1]);
+            } else if (digit < 0) {
+                res = res.mul(odd[(-digit) >> 1].inv());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Computes the power-product of the given bases and exponents
+     * using simultaneous exponentiation, i.e., as in {@link
+     * PGroupSimExpTab}, but with the pre-computed table and all
+     * intermediate values in Jacobian coordinates.
+     *
+     * @param bases Bases.
+     * @param integers Exponents.
+     * @param offset Position of the first basis and exponent to use.
+     * @param width Number of bases and exponents to use.
+     * @param bitLength Maximal bit length of the exponents.
+     * @return Power product of the given bases and exponents.
+     */
+    static ECqPGroupJacobianPoint expProd(final PGroupElement[] bases,
+                                          final LargeInteger[] integers,
+                                          final int offset,
+                                          final int width,
+                                          final int bitLength) {
+
+        // Make room for table.
+        final ECqPGroupJacobianPoint[] pre =
+            new ECqPGroupJacobianPoint[1 << width];
+
+        // Init table with the bases provided.
+        pre[0] = new ECqPGroupJacobianPoint((ECqPGroupElement) bases[offset])
+            .getONE();
+        for (int i = 1, j = offset; i < pre.length; i = i * 2, j++) {
+            pre[i] = new ECqPGroupJacobianPoint((ECqPGroupElement) bases[j]);
+        }
+
+        // Perform precalculation using masking for efficiency.
+        for (int mask = 1; mask < pre.length; mask++) {
+            final int onemask = mask & (-mask);
+            if (mask != onemask) {
+                pre[mask] = pre[mask ^ onemask].mul(pre[onemask]);
+            }
+        }
+
+        // Loop over bits in integers starting at bitLength - 1.
+        ECqPGroupJacobianPoint res = pre[0];
+        for (int i = bitLength - 1; i >= 0; i--) {
+
+            int k = 0;
+
+            // Form a word from all the bits at a given position.
+            for (int j = offset; j < offset + width; j++) {
+                if (integers[j].testBit(i)) {
+                    k |= 1 << (j - offset);
+                }
+            }
+
+            res = res.square();
+            if (k != 0) {
+                res = res.mul(pre[k]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Computes the power-product of the given bases and exponents
+     * using the bucket method, i.e., as in {@link PGroupBucketExp},
+     * but with the buckets and all intermediate values in Jacobian
+     * coordinates.
+     *
+     * @param bases Bases.
+     * @param integers Exponents.
+     * @param offset Position of the first basis and exponent to use.
+     * @param size Number of bases and exponents to use.
+     * @param bitLength Maximal bit length of the exponents.
+     * @param width Width of windows.
+     * @return Power product of the given bases and exponents.
+     */
+    static ECqPGroupJacobianPoint bucketExpProd(final PGroupElement[] bases,
+                                                final LargeInteger[] integers,
+                                                final int offset,
+                                                final int size,
+                                                final int bitLength,
+                                                final int width) {
+
+        // Bases in Jacobian coordinates with Z = 1 to get cheaper
+        // additions.
+        final ECqPGroupJacobianPoint[] points =
+            new ECqPGroupJacobianPoint[size];
+        for (int i = 0, j = offset; i < size; i++, j++) {
+            points[i] = new ECqPGroupJacobianPoint((ECqPGroupElement) bases[j]);
+        }
+
+        final ECqPGroupJacobianPoint[] buckets =
+            new ECqPGroupJacobianPoint[1 << width];
+
+        ECqPGroupJacobianPoint res = points[0].getONE();
+        for (int w = (bitLength + width - 1) / width - 1; w >= 0; w--) {
+
+            for (int i = 0; i < width; i++) {
+                res = res.square();
+            }
+
+            // Sort the bases into buckets indexed by their digits.
+            for (int i = 0; i < size; i++) {
+                final int digit =
+                    LargeIntegerBucketModPow.digit(integers[offset + i], w,
+                                                   width, bitLength);
+                if (digit != 0) {
+                    if (buckets[digit] == null) {
+                        buckets[digit] = points[i];
+                    } else {
+                        buckets[digit] = buckets[digit].mul(points[i]);
+                    }
+                }
+            }
+
+            // Combine the buckets using running sums.
+            ECqPGroupJacobianPoint run = null;
+            ECqPGroupJacobianPoint sum = null;
+            for (int k = buckets.length - 1; k > 0; k--) {
+                if (buckets[k] != null) {
+                    if (run == null) {
+                        run = buckets[k];
+                    } else {
+                        run = run.mul(buckets[k]);
+                    }
+                    buckets[k] = null;
+                }
+                if (run != null) {
+                    if (sum == null) {
+                        sum = run;
+                    } else {
+                        sum = sum.mul(run);
+                    }
+                }
+            }
+            if (sum != null) {
+                res = res.mul(sum);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Converts this point to affine coordinates. This requires a
+     * single inversion in the underlying field.
+     *
+     * @return Affine representation of this point.
+     */
+    ECqPGroupElement toElement() {
+
+        if (isUnity()) {
+            return pGroup.one;
+        }
+
+        BigInteger ax = x;
+        BigInteger ay = y;
+
+        if (!BigInteger.ONE.equals(z)) {
+            final BigInteger zinv = z.modInverse(p);
+            final BigInteger zinv2 = zinv.multiply(zinv).mod(p);
+            ax = x.multiply(zinv2).mod(p);
+            ay = y.multiply(zinv2.multiply(zinv).mod(p)).mod(p);
+        }
+
+        return new ECqPGroupElement(pGroup,
+                                    new LargeInteger(ax),
+                                    new LargeInteger(ay),
+                                    true);
+    }
+
+    /**
+     * Converts the given points to affine coordinates using
+     * simultaneous inversion, i.e., a single inversion in the
+     * underlying field and a few multiplications per point.
+     *
+     * @param points Points to convert.
+     * @param res Destination of the affine representations.
+     * @param offset Index in the destination of the first point.
+     */
+    static void toElements(final ECqPGroupJacobianPoint[] points,
+                           final PGroupElement[] res,
+                           final int offset) {
+
+        // Indices of the points that need an inversion.
+        final int[] indices = new int[points.length];
+        int size = 0;
+        for (int i = 0; i < points.length; i++) {
+            final ECqPGroupJacobianPoint point = points[i];
+            if (point.isUnity() || BigInteger.ONE.equals(point.z)) {
+                res[offset + i] = point.toElement();
+            } else {
+                indices[size++] = i;
+            }
+        }
+        if (size == 0) {
+            return;
+        }
+
+        final BigInteger p = points[indices[0]].p;
+
+        // Partial products of the Z coordinates.
+        final BigInteger[] prods = new BigInteger[size];
+        prods[0] = points[indices[0]].z;
+        for (int j = 1; j < size; j++) {
+            prods[j] = prods[j - 1].multiply(points[indices[j]].z).mod(p);
+        }
+
+        // Peel off one Z coordinate at a time from the inverse of the
+        // full product.
+        BigInteger acc = prods[size - 1].modInverse(p);
+        for (int j = size - 1; j >= 0; j--) {
+            final ECqPGroupJacobianPoint point = points[indices[j]];
+
+            BigInteger zinv = acc;
+            if (j > 0) {
+                zinv = acc.multiply(prods[j - 1]).mod(p);
+                acc = acc.multiply(point.z).mod(p);
+            }
+            final BigInteger zinv2 = zinv.multiply(zinv).mod(p);
+            final BigInteger ax = point.x.multiply(zinv2).mod(p);
+            final BigInteger ay =
+                point.y.multiply(zinv2.multiply(zinv).mod(p)).mod(p);
+
+            res[offset + indices[j]] =
+                new ECqPGroupElement(point.pGroup,
+                                     new LargeInteger(ax),
+                                     new LargeInteger(ay),
+                                     true);
+        }
+    }
+}
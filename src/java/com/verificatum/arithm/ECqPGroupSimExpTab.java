@@ -0,0 +1,111 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+/**
+ * Simultaneous exponentiation for elliptic curve groups implemented
+ * in pure Java. This is the same technique as in {@link
+ * PGroupSimExpTab}, but the table is normalized to affine coordinates
+ * and the power-product is computed in Jacobian coordinates. Thus,
+ * each step of the main loop is a doubling and a mixed addition, and
+ * a single inversion is needed to convert the result.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ECqPGroupSimExpTab extends PGroupSimExpTab {
+
+    /**
+     * Table of pre-computed values in Jacobian coordinates with Z
+     * coordinate equal to one.
+     */
+    private final ECqPGroupJacobianPoint[] jpre;
+
+    /**
+     * Creates a pre-computed table.
+     *
+     * @param bases Bases used for pre-computation.
+     * @param offset Position of first basis element to use.
+     * @param width Number of bases elements to use.
+     */
+    ECqPGroupSimExpTab(final PGroupElement[] bases,
+                       final int offset,
+                       final int width) {
+        super();
+
+        this.width = width;
+
+        // Compute all products of subsets of the bases.
+        final ECqPGroupJacobianPoint[] tmp =
+            new ECqPGroupJacobianPoint[1 << width];
+        tmp[0] = new ECqPGroupJacobianPoint((ECqPGroupElement) bases[offset])
+            .getONE();
+        for (int i = 1, j = offset; i < tmp.length; i = i * 2, j++) {
+            tmp[i] = new ECqPGroupJacobianPoint((ECqPGroupElement) bases[j]);
+        }
+        for (int mask = 1; mask < tmp.length; mask++) {
+            final int onemask = mask & (-mask);
+            if (mask != onemask) {
+                tmp[mask] = tmp[mask ^ onemask].mul(tmp[onemask]);
+            }
+        }
+
+        // Normalize to get cheaper additions in the main loop.
+        final PGroupElement[] affine = new PGroupElement[tmp.length];
+        ECqPGroupJacobianPoint.toElements(tmp, affine, 0);
+
+        jpre = new ECqPGroupJacobianPoint[affine.length];
+        for (int i = 0; i < jpre.length; i++) {
+            jpre[i] = new ECqPGroupJacobianPoint((ECqPGroupElement) affine[i]);
+        }
+    }
+
+    @Override
+    public PGroupElement expProd(final LargeInteger[] integers,
+                                 final int offset,
+                                 final int bitLength) {
+
+        // Loop over bits in integers starting at bitLength - 1.
+        ECqPGroupJacobianPoint res = jpre[0];
+        for (int i = bitLength - 1; i >= 0; i--) {
+
+            int k = 0;
+
+            // Form a word from all the bits at a given position.
+            for (int j = offset; j < offset + width; j++) {
+                if (integers[j].testBit(i)) {
+                    k |= 1 << (j - offset);
+                }
+            }
+
+            res = res.square();
+            if (k != 0) {
+                res = res.mul(jpre[k]);
+            }
+        }
+        return res.toElement();
+    }
+}
@@ -26,10 +26,13 @@
 
 package com.verificatum.arithm;
 
+import java.io.File;
+
 import com.verificatum.annotation.CoberturaIgnore;
 import com.verificatum.crypto.RandomSource;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeConvertible;
+import com.verificatum.eio.ByteTreePackedF;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.EIOException;
 import com.verificatum.util.Pair;
@@ -182,6 +185,55 @@ public abstract class LargeIntegerArray implements ByteTreeConvertible {
         }
     }
 
+    /**
+     * Returns the array of integers stored on the given file, which
+     * contains a node of integers, each represented by the given
+     * number of bytes, in the standard or packed format of {@link
+     * ByteTreePackedF}. The integers are decoded directly from the
+     * packed data.
+     *
+     * @param expectedByteLength Number of bytes representing each
+     * integer.
+     * @param file Representation of an array.
+     * @return Array of integers.
+     *
+     * @throws ArithmFormatException If the file does not contain a
+     * representation of an array of integers.
+     */
+    public static LargeIntegerArray unpack(final int expectedByteLength,
+                                           final File file)
+        throws ArithmFormatException {
+
+        if (expectedByteLength <= 0) {
+            throw new ArithmFormatException("Non-positive byte length!");
+        }
+
+        ByteTreePackedF packed = null;
+        try {
+            packed = new ByteTreePackedF(file, LargeIntegerArrayF
+                                         .getPacking(expectedByteLength));
+
+            if (packed.getRemaining() > Integer.MAX_VALUE) {
+                throw new ArithmFormatException("Too many integers!");
+            }
+
+            if (inMemory) {
+                final int size = (int) packed.getRemaining();
+                return new LargeIntegerArrayIM(LargeIntegerArrayF
+                    .unpack(packed.read(size), expectedByteLength));
+            } else {
+                return new LargeIntegerArrayF(packed, expectedByteLength);
+            }
+
+        } catch (final EIOException eioe) {
+            throw new ArithmFormatException("Malformed array!", eioe);
+        } finally {
+            if (packed != null) {
+                packed.close();
+            }
+        }
+    }
+
     /**
      * Generates an array of random integers modulo the given modulus.
      *
@@ -425,8 +477,27 @@ public abstract class LargeIntegerArray implements ByteTreeConvertible {
      * @return Modular product of all elements in this instance to the
      *         corresponding powers in the input array.
      */
-    public abstract LargeInteger modPowProd(LargeIntegerArray exponentsArray,
-                                            LargeInteger modulus);
+    public LargeInteger modPowProd(final LargeIntegerArray exponentsArray,
+                                   final LargeInteger modulus) {
+        return modPowProd(exponentsArray, modulus, null);
+    }
+
+    /**
+     * Computes the modular product of all elements in this instance
+     * to the corresponding powers in the input array using the given
+     * Montgomery context of the modulus.
+     *
+     * @param exponentsArray Array of exponents.
+     * @param modulus Modulus.
+     * @param montgomery Montgomery context of the modulus or
+     * <code>null</code>.
+     * @return Modular product of all elements in this instance to the
+     *         corresponding powers in the input array.
+     */
+    public abstract LargeInteger
+        modPowProd(LargeIntegerArray exponentsArray,
+                   LargeInteger modulus,
+                   LargeIntegerMontgomery montgomery);
 
     /**
      * Computes the partial modular products of all elements in this
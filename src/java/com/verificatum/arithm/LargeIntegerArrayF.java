@@ -31,12 +31,18 @@ import java.io.IOException;
 
 import com.verificatum.annotation.CoberturaIgnore;
 import com.verificatum.crypto.RandomSource;
+import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeF;
+import com.verificatum.eio.ByteTreeIndexF;
+import com.verificatum.eio.ByteTreeMappedF;
+import com.verificatum.eio.ByteTreePackedF;
+import com.verificatum.eio.ByteTreePacking;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.ByteTreeWriterF;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.TempFile;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Pair;
 import com.verificatum.util.Functions;
 
@@ -64,6 +70,18 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
      */
     public int expectedByteLength;
 
+    /**
+     * Mapped view of the file of this instance, or <code>null</code>
+     * if it has not been mapped.
+     */
+    private ByteTreeMappedF mapped;
+
+    /**
+     * Index of the file of this instance, or <code>null</code> if it
+     * has not been built.
+     */
+    private ByteTreeIndexF byteTreeIndex;
+
     /**
      * Creates an empty instance. It is the responsibility of the
      * programmer to fill this instance with data.
@@ -105,6 +123,94 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         return new ByteTreeF(file).getByteTreeReader();
     }
 
+    /**
+     * Returns a mapped view of the file of this instance if all
+     * integers are known to be represented by {@link
+     * #expectedByteLength} bytes, and <code>null</code>
+     * otherwise. This allows reading any integer directly.
+     *
+     * @return Mapped view of the file of this instance or
+     * <code>null</code>.
+     */
+    protected synchronized ByteTreeMappedF getMapped() {
+        if (mapped == null && expectedByteLength > 0) {
+            mapped = ByteTreeMappedF.map(file, size, expectedByteLength + 5);
+        }
+        return mapped;
+    }
+
+    /**
+     * Returns the index of the file of this instance, which allows
+     * reading any integer directly. The index is built the first
+     * time it is needed.
+     *
+     * @return Index of the file of this instance.
+     */
+    protected synchronized ByteTreeIndexF getIndex() {
+        if (byteTreeIndex == null) {
+            try {
+                byteTreeIndex = ByteTreeIndexF.index(file);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to index array!", eioe);
+            }
+        }
+        return byteTreeIndex;
+    }
+
+    /**
+     * Reads the integer with the given index from the mapped view.
+     *
+     * @param mapped Mapped view of the file of this instance.
+     * @param index Index of integer.
+     * @return Integer with the given index.
+     */
+    protected static LargeInteger readMapped(final ByteTreeMappedF mapped,
+                                             final int index) {
+        try {
+            return
+                LargeInteger.unsafeLargeInteger(mapped.getChildReader(index));
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to read from array!", eioe);
+        }
+    }
+
+    /**
+     * Returns the layout of the representations of integers that are
+     * represented by the given number of bytes.
+     *
+     * @param expectedByteLength Number of bytes representing each
+     * integer.
+     * @return Layout of the representations of integers.
+     */
+    static ByteTreePacking getPacking(final int expectedByteLength) {
+        final ByteTree bt = new ByteTree(new byte[expectedByteLength]);
+        try {
+            return new ByteTreePacking(bt.toByteArray());
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to derive packing!", eioe);
+        }
+    }
+
+    /**
+     * Returns a reader of the packed representations of the integers
+     * of this instance if all integers are known to be represented by
+     * {@link #expectedByteLength} bytes, and <code>null</code>
+     * otherwise. This allows decoding batches of integers without
+     * parsing every integer as a byte tree.
+     *
+     * @return Reader of packed integers or <code>null</code>.
+     */
+    protected ByteTreePackedF getPackedReader() {
+        if (getMapped() == null) {
+            return null;
+        }
+        try {
+            return new ByteTreePackedF(file, getPacking(expectedByteLength));
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to create packed reader!", eioe);
+        }
+    }
+
     /**
      * Returns a threaded batch reader that allows reading the next
      * batch in the background when processing.
@@ -112,7 +218,12 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
      * @return Threaded batch reader.
      */
     protected LargeIntegerBatchReader getBatchReader() {
-        return new LargeIntegerBatchReader(getReader());
+        final ByteTreePackedF packed = getPackedReader();
+        if (packed == null) {
+            return new LargeIntegerBatchReader(getReader());
+        } else {
+            return new LargeIntegerBatchReader(packed, expectedByteLength);
+        }
     }
 
     /**
@@ -247,7 +358,8 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
      * constructor requires that each integer falls into the given
      * interval, but also that the representation of each integer is
      * of equal size to the byte tree representation of the upper
-     * bound.
+     * bound. The integers are stored with this width, so the result
+     * is mapped, see {@link #getMapped()}.
      *
      * @param size Expected number of elements in array. If the
      * expected size (number of elements) is set to zero, then the
@@ -272,6 +384,11 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         // former may be zero when the latter is not.
         this(zeroMapped(size, btr.getRemaining()));
 
+        // Arrays are indexed by ints, so a node in large-tree mode
+        // can not be converted.
+        if (btr.getLongRemaining() > Integer.MAX_VALUE) {
+            throw new ArithmFormatException("Too many integers!");
+        }
         if (size != 0 && btr.getRemaining() != size) {
             throw new ArithmFormatException("Unexpected number of integers!");
         }
@@ -288,7 +405,7 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
 
             if (lb.compareTo(integer) <= 0 && integer.compareTo(ub) < 0) {
 
-                btw.unsafeWrite(integer);
+                btw.unsafeWrite(integer.toByteTree(ebl));
 
             } else {
 
@@ -298,6 +415,10 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
             }
         }
         btw.close();
+
+        // The integers are stored with the fixed width of the input,
+        // so the file can be mapped.
+        expectedByteLength = ebl;
     }
 
     /**
@@ -335,6 +456,110 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         }
     }
 
+    /**
+     * Decodes the given packed integers, each represented by the
+     * given number of bytes.
+     *
+     * @param data Packed integers.
+     * @param width Number of bytes representing each integer.
+     * @return Array of integers.
+     */
+    protected static LargeInteger[] unpack(final byte[] data,
+                                           final int width) {
+        final LargeInteger[] res = new LargeInteger[data.length / width];
+
+        final ArrayWorker worker =
+            new ArrayWorker(res.length) {
+                public void work(final int start, final int end) {
+                    for (int i = start; i < end; i++) {
+                        res[i] = new LargeInteger(data, i * width, width);
+                    }
+                }
+            };
+        worker.work();
+        return res;
+    }
+
+    /**
+     * Reads and decodes a batch of packed integers. The size of the
+     * batch is the minimum of {@link #batchSize} and the remaining
+     * number of integers in the reader.
+     *
+     * @param packed Source of packed integers.
+     * @param width Number of bytes representing each integer.
+     * @return Array of integers.
+     */
+    protected static LargeInteger[] readBatch(final ByteTreePackedF packed,
+                                              final int width) {
+        final int len = (int) Math.min(batchSize, packed.getRemaining());
+        try {
+            return unpack(packed.read(len), width);
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to read data!", eioe);
+        }
+    }
+
+    /**
+     * Constructs an instance from the packed integers read from the
+     * given reader.
+     *
+     * @param packed Source of packed integers.
+     * @param expectedByteLength Number of bytes representing each
+     * integer.
+     *
+     * @throws EIOException If the input does not represent an
+     * instance.
+     */
+    LargeIntegerArrayF(final ByteTreePackedF packed,
+                       final int expectedByteLength)
+        throws EIOException {
+        this((int) packed.getRemaining());
+        this.expectedByteLength = expectedByteLength;
+
+        final ByteTreeWriterF btw = getWriter();
+        try {
+            while (packed.getRemaining() > 0) {
+                final int len =
+                    (int) Math.min(batchSize, packed.getRemaining());
+                final LargeInteger[] tmp =
+                    unpack(packed.read(len), expectedByteLength);
+                for (int i = 0; i < tmp.length; i++) {
+                    btw.unsafeWrite(tmp[i].toByteTree(expectedByteLength));
+                }
+            }
+        } finally {
+            btw.close();
+        }
+    }
+
+    /**
+     * Returns a representation of this instance in the packed format
+     * of {@link ByteTreePackedF}, which stores a single header
+     * followed by the data of the integers. This requires that the
+     * expected byte length has been set using {@link
+     * #toByteTree(int)}, and the result can be converted losslessly
+     * to the representation returned by that method, e.g., using
+     * {@link LargeIntegerArray#unpack(int,File)}.
+     *
+     * @return Packed representation of this instance.
+     *
+     * @throws ArithmError If the integers are not represented by a
+     * fixed number of bytes.
+     */
+    public ByteTreeF toPackedByteTree() {
+        if (getMapped() == null) {
+            throw new ArithmError("Integers do not have fixed width!");
+        }
+        final File packedFile = TempFile.getFile();
+        try {
+            ByteTreePackedF.pack(file, packedFile,
+                                 getPacking(expectedByteLength));
+        } catch (final EIOException eioe) {
+            throw new ArithmError("Unable to pack array!", eioe);
+        }
+        return new ByteTreeF(packedFile);
+    }
+
     // Documented in LargeIntegerArray.java
 
     @Override
@@ -347,16 +572,20 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         throws ArithmException {
 
         final LargeIntegerArrayF res = new LargeIntegerArrayF(size);
-        final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr = getReader();
-
-        while (btr.getRemaining() > 0) {
+        final LargeIntegerBatchWriter bw =
+            new LargeIntegerBatchWriter(res.getWriter());
+        final LargeIntegerBatchReader br = getBatchReader();
 
-            final LargeInteger[] integers = readBatch(btr);
-            btw.unsafeWrite(LargeInteger.modInv(integers, modulus));
+        try {
+            LargeInteger[] integers = br.readNext();
+            while (integers != null) {
+                bw.writeNext(LargeInteger.modInv(integers, modulus));
+                integers = br.readNext();
+            }
+        } finally {
+            br.close();
+            bw.close();
         }
-        btr.close();
-        btw.close();
 
         return res;
     }
@@ -365,21 +594,27 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
     public LargeIntegerArray copyOfRange(final int startIndex,
                                          final int endIndex) {
 
-        final ByteTreeReader btr = getReader();
-        btr.unsafeSkipChildren(startIndex);
-
-        int resSize = endIndex - startIndex;
-        final LargeIntegerArrayF res = new LargeIntegerArrayF(resSize);
-        final ByteTreeWriterF btw = res.getWriter();
+        final ByteTreeMappedF mapped = getMapped();
+        if (mapped != null && endIndex > startIndex) {
 
-        while (resSize > 0) {
-
-            final int len = Math.min(batchSize, resSize);
-            final LargeInteger[] integers = readBatch(len, btr);
-            btw.unsafeWrite(integers);
-            resSize -= integers.length;
+            // The encodings are copied without decoding.
+            final LargeIntegerArrayF res =
+                new LargeIntegerArrayF(endIndex - startIndex);
+            try {
+                mapped.copyOfRange(startIndex, endIndex, res.file);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to read from array!", eioe);
+            }
+            res.expectedByteLength = expectedByteLength;
+            return res;
         }
-        btr.close();
+
+        // The encodings are located using the index and copied
+        // without decoding.
+        final LargeIntegerArrayF res =
+            new LargeIntegerArrayF(endIndex - startIndex);
+        final ByteTreeWriterF btw = res.getWriter();
+        getIndex().transferTo(startIndex, endIndex, btw);
         btw.close();
 
         return res;
@@ -387,6 +622,25 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
 
     @Override
     public LargeInteger[] integers() {
+
+        final ByteTreePackedF packed = getPackedReader();
+        if (packed != null) {
+
+            final LargeInteger[] res = new LargeInteger[size];
+            try {
+                int offset = 0;
+                while (packed.getRemaining() > 0) {
+                    final LargeInteger[] tmp =
+                        readBatch(packed, expectedByteLength);
+                    System.arraycopy(tmp, 0, res, offset, tmp.length);
+                    offset += tmp.length;
+                }
+            } finally {
+                packed.close();
+            }
+            return res;
+        }
+
         final ByteTreeReader btr = getReader();
         final LargeInteger[] res = readBatch(size, btr);
         btr.close();
@@ -496,21 +750,29 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
     public LargeIntegerArray modMul(final LargeIntegerArray factorsArray,
                                     final LargeInteger modulus) {
         final LargeIntegerArrayF res = new LargeIntegerArrayF(size);
-        final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr1 = getReader();
-        final ByteTreeReader btr2 =
-            ((LargeIntegerArrayF) factorsArray).getReader();
+        final LargeIntegerBatchWriter bw =
+            new LargeIntegerBatchWriter(res.getWriter());
+        final LargeIntegerBatchReader br1 = getBatchReader();
+        final LargeIntegerBatchReader br2 =
+            ((LargeIntegerArrayF) factorsArray).getBatchReader();
 
-        while (btr1.getRemaining() > 0) {
+        try {
+            LargeInteger[] integers1 = br1.readNext();
+            LargeInteger[] integers2 = br2.readNext();
+            while (integers1 != null && integers2 != null) {
 
-            final LargeInteger[] integers1 = readBatch(btr1);
-            final LargeInteger[] integers2 = readBatch(btr2);
+                bw.writeNext(LargeInteger.modMul(integers1,
+                                                 integers2,
+                                                 modulus));
 
-            btw.unsafeWrite(LargeInteger.modMul(integers1, integers2, modulus));
+                integers1 = br1.readNext();
+                integers2 = br2.readNext();
+            }
+        } finally {
+            br2.close();
+            br1.close();
+            bw.close();
         }
-        btr2.close();
-        btr1.close();
-        btw.close();
 
         return res;
     }
@@ -520,16 +782,21 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
                                     final LargeInteger modulus) {
 
         final LargeIntegerArrayF res = new LargeIntegerArrayF(size);
-        final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr = getReader();
+        final LargeIntegerBatchWriter bw =
+            new LargeIntegerBatchWriter(res.getWriter());
+        final LargeIntegerBatchReader br = getBatchReader();
 
-        while (btr.getRemaining() > 0) {
+        try {
+            LargeInteger[] integers = br.readNext();
+            while (integers != null) {
 
-            final LargeInteger[] integers = readBatch(btr);
-            btw.unsafeWrite(LargeInteger.modMul(integers, scalar, modulus));
+                bw.writeNext(LargeInteger.modMul(integers, scalar, modulus));
+                integers = br.readNext();
+            }
+        } finally {
+            br.close();
+            bw.close();
         }
-        btr.close();
-        btw.close();
 
         return res;
     }
@@ -547,18 +814,23 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         final LargeIntegerBatchReader br2 = new LargeIntegerBatchReader(btr2);
         final LargeIntegerBatchWriter bw = new LargeIntegerBatchWriter(btw);
 
-        LargeInteger[] integers1 = br1.readNext();
-        LargeInteger[] integers2 = br2.readNext();
-        while (integers1 != null && integers2 != null) {
+        try {
+            LargeInteger[] integers1 = br1.readNext();
+            LargeInteger[] integers2 = br2.readNext();
+            while (integers1 != null && integers2 != null) {
 
-            bw.writeNext(LargeInteger.modPow(integers1, integers2, modulus));
+                bw.writeNext(LargeInteger.modPow(integers1,
+                                                 integers2,
+                                                 modulus));
 
-            integers1 = br1.readNext();
-            integers2 = br2.readNext();
+                integers1 = br1.readNext();
+                integers2 = br2.readNext();
+            }
+        } finally {
+            br2.close();
+            br1.close();
+            bw.close();
         }
-        br2.close();
-        br1.close();
-        bw.close();
 
         return res;
     }
@@ -574,14 +846,18 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         final LargeIntegerBatchReader br = new LargeIntegerBatchReader(btr);
         final LargeIntegerBatchWriter bw = new LargeIntegerBatchWriter(btw);
 
-        LargeInteger[] integers = br.readNext();
-        while (integers != null) {
+        try {
+            LargeInteger[] integers = br.readNext();
+            while (integers != null) {
 
-            bw.writeNext(LargeInteger.modPow(integers, exponent, modulus));
-            integers = br.readNext();
+                bw.writeNext(LargeInteger.modPow(integers, exponent,
+                                                 modulus));
+                integers = br.readNext();
+            }
+        } finally {
+            br.close();
+            bw.close();
         }
-        br.close();
-        bw.close();
 
         return res;
     }
@@ -597,22 +873,26 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         final LargeIntegerBatchReader br = new LargeIntegerBatchReader(btr);
         final LargeIntegerBatchWriter bw = new LargeIntegerBatchWriter(btw);
 
-        LargeInteger[] integers = br.readNext();
-        while (integers != null) {
+        try {
+            LargeInteger[] integers = br.readNext();
+            while (integers != null) {
 
-            bw.writeNext(basis.modPow(integers, modulus));
-            integers = br.readNext();
+                bw.writeNext(basis.modPow(integers, modulus));
+                integers = br.readNext();
+            }
+        } finally {
+            bw.close();
+            br.close();
         }
 
-        bw.close();
-        br.close();
-
         return res;
     }
 
     @Override
-    public LargeInteger modPowProd(final LargeIntegerArray exponentsArray,
-                                   final LargeInteger modulus) {
+    public LargeInteger
+        modPowProd(final LargeIntegerArray exponentsArray,
+                   final LargeInteger modulus,
+                   final LargeIntegerMontgomery montgomery) {
         final ByteTreeReader btr1 = getReader();
         final ByteTreeReader btr2 =
             ((LargeIntegerArrayF) exponentsArray).getReader();
@@ -622,19 +902,23 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
 
         LargeInteger res = LargeInteger.ONE;
 
-        LargeInteger[] integers1 = br1.readNext();
-        LargeInteger[] integers2 = br2.readNext();
-        while (integers1 != null && integers2 != null) {
+        try {
+            LargeInteger[] integers1 = br1.readNext();
+            LargeInteger[] integers2 = br2.readNext();
+            while (integers1 != null && integers2 != null) {
 
-            final LargeInteger tmp =
-                LargeInteger.modPowProd(integers1, integers2, modulus);
-            res = res.mul(tmp).mod(modulus);
+                final LargeInteger tmp =
+                    LargeInteger.modPowProd(integers1, integers2, modulus,
+                                            montgomery);
+                res = res.mul(tmp).mod(modulus);
 
-            integers1 = br1.readNext();
-            integers2 = br2.readNext();
+                integers1 = br1.readNext();
+                integers2 = br2.readNext();
+            }
+        } finally {
+            br2.close();
+            br1.close();
         }
-        br2.close();
-        br1.close();
 
         return res;
     }
@@ -645,14 +929,18 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         final LargeIntegerBatchReader br = new LargeIntegerBatchReader(btr);
 
         LargeInteger res = LargeInteger.ONE;
-        LargeInteger[] integers = br.readNext();
-        while (integers != null) {
+        try {
+            LargeInteger[] integers = br.readNext();
+            while (integers != null) {
 
-            final LargeInteger tmp = LargeInteger.modProd(integers, modulus);
-            res = res.mul(tmp).mod(modulus);
-            integers = br.readNext();
+                final LargeInteger tmp =
+                    LargeInteger.modProd(integers, modulus);
+                res = res.mul(tmp).mod(modulus);
+                integers = br.readNext();
+            }
+        } finally {
+            br.close();
         }
-        br.close();
 
         return res;
     }
@@ -681,8 +969,14 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
 
     @Override
     public LargeInteger get(final int index) {
-        final ByteTreeReader btr = getReader();
-        btr.unsafeSkipChildren(index);
+
+        final ByteTreeMappedF mapped = getMapped();
+        if (mapped != null) {
+            return readMapped(mapped, index);
+        }
+
+        final ByteTreeReader btr =
+            getIndex().getByteTreeReader(index, index + 1);
         final LargeInteger res =
             LargeInteger.unsafeLargeInteger(btr.unsafeGetNextChild());
         btr.close();
@@ -694,10 +988,22 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
 
         final LargeIntegerArrayF res = new LargeIntegerArrayF(size);
         final ByteTreeWriterF btw = res.getWriter();
-        final ByteTreeReader btr = getReader();
 
         btw.unsafeWrite(integer);
 
+        final ByteTreeMappedF mapped = getMapped();
+        if (mapped != null) {
+            try {
+                mapped.transferTo(0, size - 1, btw);
+            } catch (final EIOException eioe) {
+                throw new ArithmError("Unable to read from array!", eioe);
+            } finally {
+                btw.close();
+            }
+            return res;
+        }
+
+        final ByteTreeReader btr = getReader();
         while (btr.getRemaining() > 1) {
 
             final int len = Math.min(batchSize, btr.getRemaining() - 1);
@@ -779,6 +1085,7 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         btr.close();
 
         TempFile.delete(file);
+        byteTreeIndex = null;
 
         if (!btFile.renameTo(file)) {
             throw new ArithmError("Unable to rename temporary file!");
@@ -795,13 +1102,16 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
         final LargeIntegerBatchReader br = new LargeIntegerBatchReader(btr);
 
         boolean res = true;
-        LargeInteger[] integers = br.readNext();
-        while (integers != null && res) {
+        try {
+            LargeInteger[] integers = br.readNext();
+            while (integers != null && res) {
 
-            res = LargeInteger.quadraticResidues(integers, prime);
-            integers = br.readNext();
+                res = LargeInteger.quadraticResidues(integers, prime);
+                integers = br.readNext();
+            }
+        } finally {
+            br.close();
         }
-        br.close();
 
         return res;
     }
@@ -813,6 +1123,8 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
 
     @Override
     public void free() {
+        mapped = null;
+        byteTreeIndex = null;
         TempFile.delete(file);
     }
 
@@ -822,17 +1134,12 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
      *
      * @author Douglas Wikstrom
      */
-    static class LargeIntegerBatchWriter {
+    static class LargeIntegerBatchWriter extends BatchWriter<LargeInteger> {
 
         /**
          * Underlying byte tree writer.
          */
-        ByteTreeWriterF btw;
-
-        /**
-         * Underlying byte tree writer.
-         */
-        boolean active;
+        final ByteTreeWriterF btw;
 
         /**
          * Creates a threaded writer on top of the given byte tree
@@ -841,53 +1148,18 @@ public final class LargeIntegerArrayF extends LargeIntegerArray {
          * @param btw Underlying byte tree writer.
          */
         LargeIntegerBatchWriter(final ByteTreeWriterF btw) {
+            super(new LargeInteger[0]);
             this.btw = btw;
-            this.active = false;
+            start();
         }
 
-        /**
-         * Writes a batch of large integers to file as a back ground
-         * process. This method blocks if the previous batch has not
-         * yet been written to file.
-         *
-         * @param batch Integers to write.
-         */
-        void writeNext(final LargeInteger[] batch) {
-
-            while (active) {
-                try {
-                    Thread.sleep(100);
-                } catch (final InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-
-            active = true;
-
-            final Thread thread = new Thread() {
-
-                    @Override
-                    public void run() {
-                        btw.unsafeWrite(batch);
-                        active = false;
-                    }
-                };
-            thread.start();
+        @Override
+        void writeBatch(final LargeInteger[] batch) {
+            btw.unsafeWrite(batch);
         }
 
-        /**
-         * Closes the writer. This method blocks until this writer has
-         * written all pending data and closed the underlying byte
-         * tree writer.
-         */
-        void close() {
-            while (active) {
-                try {
-                    Thread.sleep(100);
-                } catch (final InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+        @Override
+        void closeDestination() {
             btw.close();
         }
     }
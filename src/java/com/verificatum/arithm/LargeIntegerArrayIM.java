@@ -298,11 +298,13 @@ public final class LargeIntegerArrayIM extends LargeIntegerArray {
     }
 
     @Override
-    public LargeInteger modPowProd(final LargeIntegerArray exponentsArray,
-                                   final LargeInteger modulus) {
+    public LargeInteger
+        modPowProd(final LargeIntegerArray exponentsArray,
+                   final LargeInteger modulus,
+                   final LargeIntegerMontgomery montgomery) {
         final LargeInteger[] exponents =
             ((LargeIntegerArrayIM) exponentsArray).li;
-        return LargeInteger.modPowProd(li, exponents, modulus);
+        return LargeInteger.modPowProd(li, exponents, modulus, montgomery);
     }
 
     @Override
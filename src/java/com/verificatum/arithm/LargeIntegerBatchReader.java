@@ -26,9 +26,7 @@
 
 package com.verificatum.arithm;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-
+import com.verificatum.eio.ByteTreePackedF;
 import com.verificatum.eio.ByteTreeReader;
 
 /**
@@ -37,22 +35,25 @@ import com.verificatum.eio.ByteTreeReader;
  *
  * @author Douglas Wikstrom
  */
-public final class LargeIntegerBatchReader {
+public final class LargeIntegerBatchReader
+    extends BatchReader<LargeInteger> {
 
     /**
-     * Delay between reading attempts in milliseconds.
+     * Source of integers, or <code>null</code> if packed integers
+     * are read.
      */
-    public static final int BATCH_SLEEP_TIME = 100;
+    final ByteTreeReader btr;
 
     /**
-     * Queue used for the producer-consumer pattern.
+     * Source of packed integers, or <code>null</code> if integers
+     * are read as byte trees.
      */
-    BlockingQueue<LargeInteger[]> bq;
+    final ByteTreePackedF packed;
 
     /**
-     * Producer thread of batches of integer arrays.
+     * Number of bytes representing each packed integer.
      */
-    LargeIntegerBatchReaderThread reader;
+    final int width;
 
     /**
      * Creates a reader using the given source.
@@ -60,96 +61,52 @@ public final class LargeIntegerBatchReader {
      * @param btr Source of integers.
      */
     LargeIntegerBatchReader(final ByteTreeReader btr) {
-        this.bq = new LinkedBlockingQueue<LargeInteger[]>(2);
-        this.reader = new LargeIntegerBatchReaderThread(btr, bq);
-        reader.start();
+        super(new LargeInteger[0]);
+        this.btr = btr;
+        this.packed = null;
+        this.width = 0;
+        start();
     }
 
     /**
-     * Return the next batch of integers in this reader, or null if
-     * there are no more elements.
+     * Creates a reader that decodes packed integers from the given
+     * source.
      *
-     * @return Next batch of integers.
-     */
-    LargeInteger[] readNext() {
-        try {
-            final LargeInteger[] integers = bq.take();
-            if (integers.length == 0) {
-                return null;
-            } else {
-                return integers;
-            }
-        } catch (final InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            throw new ArithmError("Failed to read next batch!", ie);
-        }
-    }
-
-    /**
-     * Release allocated resources.
+     * @param packed Source of packed integers.
+     * @param width Number of bytes representing each integer.
      */
-    void close() {
-        reader.close();
+    LargeIntegerBatchReader(final ByteTreePackedF packed, final int width) {
+        super(new LargeInteger[0]);
+        this.btr = null;
+        this.packed = packed;
+        this.width = width;
+        start();
     }
-}
-
-/**
- * Thread reading batches in the backgrounds.
- */
-final class LargeIntegerBatchReaderThread extends Thread {
-
-    /**
-     * Source of integers.
-     */
-    ByteTreeReader btr;
-
-    /**
-     * Blocking queue.
-     */
-    BlockingQueue<LargeInteger[]> bq;
-
-    /**
-     * Used to abort execution.
-     */
-    boolean running;
 
-    /**
-     * Creates a thread reading from the byte tree reader and putting
-     * batches in the queue.
-     *
-     * @param btr Source of integers.
-     * @param bq Destination for batches of integers.
-     */
-    LargeIntegerBatchReaderThread(final ByteTreeReader btr,
-                                  final BlockingQueue<LargeInteger[]> bq) {
-        this.btr = btr;
-        this.bq = bq;
-        this.running = true;
+    @Override
+    boolean hasRemaining() {
+        if (packed == null) {
+            return btr.getRemaining() > 0;
+        } else {
+            return packed.getRemaining() > 0;
+        }
     }
 
-    /**
-     * Halt this producer thread.
-     */
-    public void close() {
-        running = false;
+    @Override
+    LargeInteger[] readBatch() {
+        if (packed == null) {
+            return LargeIntegerArrayF.readBatch(btr);
+        } else {
+            return LargeIntegerArrayF.readBatch(packed, width);
+        }
     }
 
     @Override
-    public void run() {
-        while (running && btr.getRemaining() > 0) {
-            if (bq.size() == 0) {
-                bq.add(LargeIntegerArrayF.readBatch(btr));
-            } else {
-                try {
-                    Thread.sleep(LargeIntegerBatchReader.BATCH_SLEEP_TIME);
-                } catch (final InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+    void closeSource() {
+        if (packed == null) {
+            btr.close();
+        } else {
+            packed.close();
         }
-
-        // We use the zero length array as the end of stream indicator.
-        bq.add(new LargeInteger[0]);
-        btr.close();
     }
 }
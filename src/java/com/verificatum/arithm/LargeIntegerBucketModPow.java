@@ -0,0 +1,295 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+import java.math.BigInteger;
+
+/**
+ * Implementation of the bucket method for computing modular
+ * power-products of many bases, sometimes attributed to
+ * Pippenger. The exponents are cut into windows of a given width. For
+ * each window every basis is multiplied into the bucket indexed by its
+ * digit, and the buckets are then combined using running products. The
+ * cost per basis is roughly the bit length divided by the width of a
+ * window, and the width grows with the number of bases, so this is
+ * faster than simultaneous exponentiation for large arrays. The same
+ * method is used for groups in {@link PGroupBucketExp}.
+ *
+ * @author Douglas Wikstrom
+ */
+final class LargeIntegerBucketModPow {
+
+    /**
+     * Avoid instantiation of this class.
+     */
+    private LargeIntegerBucketModPow() {
+    }
+
+    /**
+     * Theoretical cost, counted in multiplications, of computing a
+     * power-product of the given number of bases using buckets of the
+     * given width.
+     *
+     * @param bitLength Bit length of exponents.
+     * @param size Number of bases.
+     * @param width Width of windows.
+     * @return Theoretical cost.
+     */
+    static double cost(final int bitLength, final int size, final int width) {
+        final int windows = (bitLength + width - 1) / width;
+        return ((double) windows) * (size + 2.0 * (1 << width)) + bitLength;
+    }
+
+    /**
+     * Theoretically optimal width of windows, or zero if
+     * simultaneous exponentiation with a table of the given width is
+     * expected to be faster.
+     *
+     * @param bitLength Bit length of exponents.
+     * @param size Number of bases.
+     * @param simWidth Width of table used for simultaneous
+     * exponentiation.
+     * @return Theoretically optimal width of windows, or zero.
+     */
+    static int optimalWidth(final int bitLength,
+                            final int size,
+                            final int simWidth) {
+
+        // Cost of simultaneous exponentiation over all bases.
+        final int simExp = 1 << simWidth;
+        final double simCost =
+            size * (simExp + (2 - 1.0 / simExp) * bitLength) / simWidth;
+
+        int width = 1;
+        double cost = cost(bitLength, size, width);
+        double oldCost;
+        do {
+            oldCost = cost;
+            width++;
+            cost = cost(bitLength, size, width);
+        } while (width < 20 && cost < oldCost);
+        width--;
+
+        if (oldCost < simCost) {
+            return width;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the digit of the given integer in the given window. Only
+     * the bits below the given bit length are considered, i.e., the
+     * result is consistent with simultaneous exponentiation.
+     *
+     * @param integer Integer.
+     * @param index Index of window.
+     * @param width Width of windows.
+     * @param bitLength Maximal bit length of exponents.
+     * @return Digit of integer.
+     */
+    static int digit(final LargeInteger integer,
+                     final int index,
+                     final int width,
+                     final int bitLength) {
+        final int offset = index * width;
+        int digit = 0;
+        for (int i = Math.min(width, bitLength - offset) - 1; i >= 0; i--) {
+            digit <<= 1;
+            if (integer.testBit(offset + i)) {
+                digit |= 1;
+            }
+        }
+        return digit;
+    }
+
+    /**
+     * Returns the product of the given bases to the powers of the
+     * given exponents modulo the modulus. If a Montgomery context of
+     * the modulus is given, then all intermediate values are kept in
+     * Montgomery form.
+     *
+     * @param bases Bases to be exponentiated.
+     * @param exponents Powers to be taken.
+     * @param offset Position of first basis and exponent to use.
+     * @param size Number of bases and exponents to use.
+     * @param bitLength Maximal bit length of exponents.
+     * @param width Width of windows.
+     * @param modulus Modulus.
+     * @param montgomery Montgomery context of the modulus or
+     * <code>null</code>.
+     * @return Modular power-product of the given bases and exponents.
+     */
+    static LargeInteger modPowProd(final LargeInteger[] bases,
+                                   final LargeInteger[] exponents,
+                                   final int offset,
+                                   final int size,
+                                   final int bitLength,
+                                   final int width,
+                                   final LargeInteger modulus,
+                                   final LargeIntegerMontgomery montgomery) {
+
+        if (montgomery != null) {
+            return new LargeInteger(
+                montgomery.fromMontgomery(montModPowProd(bases,
+                                                         exponents,
+                                                         offset,
+                                                         size,
+                                                         bitLength,
+                                                         width,
+                                                         montgomery)));
+        }
+
+        final BigInteger m = modulus.value;
+        final BigInteger[] buckets = new BigInteger[1 << width];
+
+        BigInteger res = BigInteger.ONE;
+        for (int w = (bitLength + width - 1) / width - 1; w >= 0; w--) {
+
+            for (int i = 0; i < width; i++) {
+                res = res.multiply(res).mod(m);
+            }
+
+            // Sort the bases into buckets indexed by their digits.
+            for (int j = offset; j < offset + size; j++) {
+                final int digit = digit(exponents[j], w, width, bitLength);
+                if (digit != 0) {
+                    if (buckets[digit] == null) {
+                        buckets[digit] = bases[j].value.mod(m);
+                    } else {
+                        buckets[digit] =
+                            buckets[digit].multiply(bases[j].value).mod(m);
+                    }
+                }
+            }
+
+            // The running product after processing bucket k is the
+            // product of the buckets with index at least k, so the
+            // product of the running products is the product of each
+            // bucket to the power of its index.
+            BigInteger run = null;
+            BigInteger sum = null;
+            for (int k = buckets.length - 1; k > 0; k--) {
+                if (buckets[k] != null) {
+                    if (run == null) {
+                        run = buckets[k];
+                    } else {
+                        run = run.multiply(buckets[k]).mod(m);
+                    }
+                    buckets[k] = null;
+                }
+                if (run != null) {
+                    if (sum == null) {
+                        sum = run;
+                    } else {
+                        sum = sum.multiply(run).mod(m);
+                    }
+                }
+            }
+            if (sum != null) {
+                res = res.multiply(sum).mod(m);
+            }
+        }
+        return new LargeInteger(res.mod(m));
+    }
+
+    /**
+     * Returns the product of the given bases to the powers of the
+     * given exponents in Montgomery form.
+     *
+     * @param bases Bases to be exponentiated.
+     * @param exponents Powers to be taken.
+     * @param offset Position of first basis and exponent to use.
+     * @param size Number of bases and exponents to use.
+     * @param bitLength Maximal bit length of exponents.
+     * @param width Width of windows.
+     * @param montgomery Montgomery context of the modulus.
+     * @return Modular power-product in Montgomery form.
+     */
+    static int[] montModPowProd(final LargeInteger[] bases,
+                                final LargeInteger[] exponents,
+                                final int offset,
+                                final int size,
+                                final int bitLength,
+                                final int width,
+                                final LargeIntegerMontgomery montgomery) {
+
+        final int[][] mont = new int[size][];
+        for (int i = 0; i < size; i++) {
+            mont[i] = montgomery.toMontgomery(bases[offset + i].value);
+        }
+
+        final int[][] buckets = new int[1 << width][];
+
+        int[] res = montgomery.one();
+        for (int w = (bitLength + width - 1) / width - 1; w >= 0; w--) {
+
+            for (int i = 0; i < width; i++) {
+                res = montgomery.mul(res, res);
+            }
+
+            // Sort the bases into buckets indexed by their digits.
+            for (int i = 0; i < size; i++) {
+                final int digit =
+                    digit(exponents[offset + i], w, width, bitLength);
+                if (digit != 0) {
+                    if (buckets[digit] == null) {
+                        buckets[digit] = mont[i];
+                    } else {
+                        buckets[digit] = montgomery.mul(buckets[digit],
+                                                        mont[i]);
+                    }
+                }
+            }
+
+            // Combine the buckets using running products.
+            int[] run = null;
+            int[] sum = null;
+            for (int k = buckets.length - 1; k > 0; k--) {
+                if (buckets[k] != null) {
+                    if (run == null) {
+                        run = buckets[k];
+                    } else {
+                        run = montgomery.mul(run, buckets[k]);
+                    }
+                    buckets[k] = null;
+                }
+                if (run != null) {
+                    if (sum == null) {
+                        sum = run;
+                    } else {
+                        sum = montgomery.mul(sum, run);
+                    }
+                }
+            }
+            if (sum != null) {
+                res = montgomery.mul(res, sum);
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,272 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+import java.math.BigInteger;
+
+/**
+ * Montgomery arithmetic modulo a fixed odd modulus implemented in
+ * pure Java. Integers in Montgomery form are represented by
+ * <code>int[]</code> of fixed length with the least significant limb
+ * first, and products are computed using the coarsely integrated
+ * operand scanning method with <code>long</code> accumulators. A
+ * good reference for this technique is Koc et al., Analyzing and
+ * Comparing Montgomery Multiplication Algorithms.
+ *
+ * <p>
+ *
+ * Instances are created and kept by the objects that own a modulus
+ * and use it repeatedly, e.g., {@link ModPGroup}, which pass the
+ * context explicitly to the exponentiation routines of {@link
+ * LargeInteger}. Thus, a sequence of multiplications, e.g., building
+ * a table and computing a simultaneous exponentiation, never leaves
+ * Montgomery form.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class LargeIntegerMontgomery {
+
+    /**
+     * Mask used to interpret an int as an unsigned integer.
+     */
+    private static final long MASK = 0xFFFFFFFFL;
+
+    /**
+     * Modulus.
+     */
+    final BigInteger modulus;
+
+    /**
+     * Number of limbs of the modulus.
+     */
+    final int n;
+
+    /**
+     * Limbs of the modulus.
+     */
+    private final int[] m;
+
+    /**
+     * Negated inverse of the least significant limb of the modulus
+     * modulo 2^32.
+     */
+    private final int mInv;
+
+    /**
+     * Montgomery representation of one.
+     */
+    private final int[] one;
+
+    /**
+     * Creates a context for the given modulus.
+     *
+     * @param modulus Odd modulus greater than one.
+     */
+    private LargeIntegerMontgomery(final BigInteger modulus) {
+        this.modulus = modulus;
+        this.n = (modulus.bitLength() + 31) / 32;
+        this.m = toLimbs(modulus);
+
+        // Newton iteration for the inverse of m[0] modulo 2^32.
+        int inv = m[0];
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - m[0] * inv;
+        }
+        this.mInv = -inv;
+
+        this.one = toMontgomery(BigInteger.ONE);
+    }
+
+    /**
+     * Returns a context for the given modulus if the modulus is odd
+     * and greater than one. The caller should keep the context as
+     * long as it uses the modulus.
+     *
+     * @param modulus Modulus.
+     * @return Context of the modulus, or <code>null</code> if the
+     * modulus is not odd and greater than one.
+     */
+    public static LargeIntegerMontgomery newInstance(final LargeInteger
+                                                     modulus) {
+        final BigInteger bi = modulus.value;
+        if (!bi.testBit(0) || bi.compareTo(BigInteger.ONE) <= 0) {
+            return null;
+        }
+        return new LargeIntegerMontgomery(bi);
+    }
+
+    /**
+     * Converts a non-negative integer to its limbs.
+     *
+     * @param x Integer smaller than the modulus.
+     * @return Limbs of the input with the least significant limb
+     * first.
+     */
+    private int[] toLimbs(final BigInteger x) {
+        final byte[] bytes = x.toByteArray();
+        final int[] res = new int[n];
+        for (int i = bytes.length - 1, j = 0; i >= 0 && j < 4 * n; i--, j++) {
+            res[j >>> 2] |= (bytes[i] & 0xFF) << (8 * (j & 3));
+        }
+        return res;
+    }
+
+    /**
+     * Converts limbs to an integer.
+     *
+     * @param a Limbs with the least significant limb first.
+     * @return Integer represented by the limbs.
+     */
+    private static BigInteger fromLimbs(final int[] a) {
+        final byte[] bytes = new byte[4 * a.length + 1];
+        for (int i = 0, j = bytes.length - 1; i < a.length; i++) {
+            int limb = a[i];
+            for (int k = 0; k < 4; k++, j--) {
+                bytes[j] = (byte) limb;
+                limb >>>= 8;
+            }
+        }
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Returns the Montgomery form of the input.
+     *
+     * @param x Integer.
+     * @return Montgomery form of the input.
+     */
+    public int[] toMontgomery(final BigInteger x) {
+        return toLimbs(x.shiftLeft(32 * n).mod(modulus));
+    }
+
+    /**
+     * Returns the integer represented by the input in Montgomery
+     * form.
+     *
+     * @param a Integer in Montgomery form.
+     * @return Integer represented by the input.
+     */
+    public BigInteger fromMontgomery(final int[] a) {
+        final int[] unit = new int[n];
+        unit[0] = 1;
+        return fromLimbs(mul(a, unit));
+    }
+
+    /**
+     * Returns the Montgomery form of one.
+     *
+     * @return Montgomery form of one.
+     */
+    public int[] one() {
+        return one.clone();
+    }
+
+    /**
+     * Returns the Montgomery product of the inputs, i.e., if the
+     * inputs are in Montgomery form, then so is the output and it
+     * represents the modular product of the integers represented by
+     * the inputs.
+     *
+     * @param a Left factor in Montgomery form.
+     * @param b Right factor in Montgomery form.
+     * @return Product in Montgomery form.
+     */
+    public int[] mul(final int[] a, final int[] b) {
+
+        final int[] t = new int[n + 2];
+
+        for (int i = 0; i < n; i++) {
+
+            // t = t + a * b[i]
+            final long bi = b[i] & MASK;
+            long c = 0;
+            for (int j = 0; j < n; j++) {
+                c += (t[j] & MASK) + (a[j] & MASK) * bi;
+                t[j] = (int) c;
+                c >>>= 32;
+            }
+            c += t[n] & MASK;
+            t[n] = (int) c;
+            t[n + 1] = (int) (c >>> 32);
+
+            // t = (t + q * m) / 2^32, where q is chosen to make the
+            // least significant limb vanish.
+            final long q = (t[0] * mInv) & MASK;
+            c = ((t[0] & MASK) + q * (m[0] & MASK)) >>> 32;
+            for (int j = 1; j < n; j++) {
+                c += (t[j] & MASK) + q * (m[j] & MASK);
+                t[j - 1] = (int) c;
+                c >>>= 32;
+            }
+            c += t[n] & MASK;
+            t[n - 1] = (int) c;
+            t[n] = t[n + 1] + (int) (c >>> 32);
+        }
+
+        // The result is smaller than twice the modulus.
+        final int[] res = new int[n];
+        System.arraycopy(t, 0, res, 0, n);
+        if (t[n] != 0 || !lessThanModulus(res)) {
+            subtractModulus(res);
+        }
+        return res;
+    }
+
+    /**
+     * Returns true if and only if the input is smaller than the
+     * modulus.
+     *
+     * @param a Limbs of integer.
+     * @return True if and only if the input is smaller than the
+     * modulus.
+     */
+    private boolean lessThanModulus(final int[] a) {
+        for (int i = n - 1; i >= 0; i--) {
+            final long ai = a[i] & MASK;
+            final long mi = m[i] & MASK;
+            if (ai != mi) {
+                return ai < mi;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Subtracts the modulus from the input in place modulo
+     * 2^(32n).
+     *
+     * @param a Limbs of integer.
+     */
+    private void subtractModulus(final int[] a) {
+        long c = 0;
+        for (int i = 0; i < n; i++) {
+            c += (a[i] & MASK) - (m[i] & MASK);
+            a[i] = (int) c;
+            c >>= 32;
+        }
+    }
+}
@@ -42,7 +42,8 @@ public final class LargeIntegerSimModPowTab {
     final int width;
 
     /**
-     * Table of pre-computed values.
+     * Table of pre-computed values, or <code>null</code> if the table
+     * is kept in Montgomery form.
      */
     final LargeInteger[] pre;
 
@@ -51,6 +52,18 @@ public final class LargeIntegerSimModPowTab {
      */
     final LargeInteger modulus;
 
+    /**
+     * Montgomery context of the modulus, or <code>null</code> if the
+     * table is not kept in Montgomery form.
+     */
+    final LargeIntegerMontgomery montgomery;
+
+    /**
+     * Table of pre-computed values in Montgomery form, or
+     * <code>null</code> if {@link #montgomery} is <code>null</code>.
+     */
+    final int[][] montPre;
+
     /**
      * Theoretically optimal width of pre-computed table.
      *
@@ -90,8 +103,50 @@ public final class LargeIntegerSimModPowTab {
                                     final int offset,
                                     final int width,
                                     final LargeInteger modulus) {
+        this(bases, offset, width, modulus, null);
+    }
+
+    /**
+     * Creates a pre-computed table using the given Montgomery context
+     * of the modulus.
+     *
+     * @param bases Bases used for pre-computation.
+     * @param offset Position of first basis element to use.
+     * @param width Number of bases elements to use.
+     * @param modulus Underlying modulus.
+     * @param montgomery Montgomery context of the modulus or
+     * <code>null</code>.
+     */
+    public LargeIntegerSimModPowTab(final LargeInteger[] bases,
+                                    final int offset,
+                                    final int width,
+                                    final LargeInteger modulus,
+                                    final LargeIntegerMontgomery montgomery) {
         this.width = width;
         this.modulus = modulus;
+        this.montgomery = montgomery;
+
+        // If there is a Montgomery context for the modulus, then the
+        // table is computed and kept in Montgomery form.
+        if (montgomery != null) {
+
+            pre = null;
+            montPre = new int[1 << width][];
+            montPre[0] = montgomery.one();
+
+            for (int i = 1, j = offset; i < montPre.length; i = i * 2, j++) {
+                montPre[i] = montgomery.toMontgomery(bases[j].value);
+            }
+            for (int mask = 1; mask < montPre.length; mask++) {
+                final int onemask = mask & (-mask);
+                if (mask != onemask) {
+                    montPre[mask] = montgomery.mul(montPre[mask ^ onemask],
+                                                   montPre[onemask]);
+                }
+            }
+            return;
+        }
+        montPre = null;
 
         // Make room for table.
         pre = new LargeInteger[1 << width];
@@ -124,6 +179,11 @@ public final class LargeIntegerSimModPowTab {
                                    final int offset,
                                    final int bitLength) {
 
+        if (montgomery != null) {
+            return new LargeInteger(montgomery.fromMontgomery(
+                montModPowProd(integers, offset, bitLength)));
+        }
+
         // Loop over bits in integers starting at bitLength - 1.
         LargeInteger res = LargeInteger.ONE;
 
@@ -149,4 +209,48 @@ public final class LargeIntegerSimModPowTab {
         }
         return res;
     }
+
+    /**
+     * Compute a power-product using the given integer exponents in
+     * Montgomery form. This may only be called if {@link
+     * #montgomery} is not <code>null</code>.
+     *
+     * @param integers Integer exponents.
+     * @param offset Position of first exponent to use.
+     * @param bitLength Expected bit length of exponents.
+     * @return Power product in Montgomery form of the generators used
+     * during pre-computation to the given exponents.
+     */
+    int[] montModPowProd(final LargeInteger[] integers,
+                         final int offset,
+                         final int bitLength) {
+
+        int[] res = null;
+
+        for (int i = bitLength - 1; i >= 0; i--) {
+
+            int k = 0;
+            for (int j = offset; j < offset + width; j++) {
+                if (integers[j].testBit(i)) {
+                    k |= 1 << (j - offset);
+                }
+            }
+
+            // We skip squaring and multiplying by one.
+            if (res != null) {
+                res = montgomery.mul(res, res);
+            }
+            if (k != 0) {
+                if (res == null) {
+                    res = montPre[k];
+                } else {
+                    res = montgomery.mul(res, montPre[k]);
+                }
+            }
+        }
+        if (res == null) {
+            return montPre[0];
+        }
+        return res;
+    }
 }
@@ -99,6 +99,12 @@ public final class ModPGroup extends PGroup {
      */
     LargeInteger modulus;
 
+    /**
+     * Montgomery context of the modulus, or <code>null</code> if the
+     * modulus is not odd.
+     */
+    LargeIntegerMontgomery montgomery;
+
     /**
      * Bit length of the modulus.
      */
@@ -219,6 +225,7 @@ public final class ModPGroup extends PGroup {
         throws ArithmFormatException {
 
         this.modulus = modulus;
+        this.montgomery = LargeIntegerMontgomery.newInstance(modulus);
 
         this.bitLength = modulus.bitLength();
 
@@ -774,6 +781,22 @@ public final class ModPGroup extends PGroup {
 
     // Documented in PGroup.java.
 
+    @Override
+    public PGroupSimExpTab simExpTab(final PGroupElement[] bases,
+                                     final int offset,
+                                     final int width) {
+        return new ModPGroupSimExpTab(this, toLargeIntegers(bases),
+                                      offset, width);
+    }
+
+    @Override
+    public PGroupFixExp fixExpTab(final PGroupElement basis,
+                                  final int bitLength,
+                                  final int width) {
+        return new ModPGroupFixExpTab((ModPGroupElement) basis,
+                                      bitLength, width);
+    }
+
     @Override
     public PGroupElementArray randomElementArray(final int size,
                                                  final RandomSource rs,
@@ -852,7 +875,20 @@ public final class ModPGroup extends PGroup {
 
         final LargeInteger li = LargeInteger.modPowProd(toLargeIntegers(bases),
                                                         liExponents,
-                                                        modulus);
+                                                        modulus,
+                                                        montgomery);
+        return new ModPGroupElement(this, li);
+    }
+
+    @Override
+    public PGroupElement expProd(final PGroupElement[] bases,
+                                 final LargeInteger[] integers,
+                                 final int bitLength) {
+        final LargeInteger li = LargeInteger.modPowProd(toLargeIntegers(bases),
+                                                        integers,
+                                                        bitLength,
+                                                        modulus,
+                                                        montgomery);
         return new ModPGroupElement(this, li);
     }
 
@@ -899,6 +935,19 @@ public final class ModPGroup extends PGroup {
                                               modulus));
     }
 
+    @Override
+    public PGroupElement[] inv(final PGroupElement[] elements) {
+        try {
+            return toElements(LargeInteger.modInv(toLargeIntegers(elements),
+                                                  modulus));
+        } catch (final ArithmException ae) {
+
+            // UNCOVERABLE (Every element is invertible.)
+            throw new ArithmError("This is a bug in the instantiation code!",
+                                  ae);
+        }
+    }
+
     @Override
     public boolean equals(final Object obj) {
         if (obj == this) {
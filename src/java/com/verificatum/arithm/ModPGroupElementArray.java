@@ -298,7 +298,9 @@ public final class ModPGroupElementArray extends PGroupElementArray {
      */
     public PGroupElement expProd(final LargeIntegerArray exponents) {
         final LargeInteger li =
-            values.modPowProd(exponents, ((ModPGroup) pGroup).modulus);
+            values.modPowProd(exponents,
+                              ((ModPGroup) pGroup).modulus,
+                              ((ModPGroup) pGroup).montgomery);
         return new ModPGroupElement(pGroup, li);
     }
 
@@ -0,0 +1,89 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+/**
+ * Fixed base exponentiation for multiplicative groups modulo a
+ * prime. The table is computed using integer arithmetic, which
+ * allows it to be kept in Montgomery form using the Montgomery
+ * context of the group.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ModPGroupFixExpTab implements PGroupFixExp {
+
+    /**
+     * Underlying group.
+     */
+    private final ModPGroup pGroup;
+
+    /**
+     * Table of pre-computed integers.
+     */
+    private final LargeIntegerFixModPowTab tab;
+
+    /**
+     * Creates a pre-computed table.
+     *
+     * @param basis Fixed basis used for pre-computation.
+     * @param bitLength Bit length of exponents used to compute
+     * power-products.
+     * @param width Number of bases elements to use.
+     */
+    ModPGroupFixExpTab(final ModPGroupElement basis,
+                       final int bitLength,
+                       final int width) {
+        this.pGroup = (ModPGroup) basis.getPGroup();
+        this.tab = new LargeIntegerFixModPowTab(basis.value,
+                                                bitLength,
+                                                width,
+                                                pGroup.modulus,
+                                                pGroup.montgomery);
+    }
+
+    // Documented in PGroupFixExp.java
+
+    @Override
+    public PGroupElement exp(final LargeInteger integer) {
+        return new ModPGroupElement(pGroup, tab.modPow(integer));
+    }
+
+    @Override
+    public void exp(final LargeInteger[] integers,
+                    final PGroupElement[] res,
+                    final int start,
+                    final int end) {
+        for (int i = start; i < end; i++) {
+            res[i] = exp(integers[i]);
+        }
+    }
+
+    @Override
+    public void free() {
+        tab.free();
+    }
+}
@@ -0,0 +1,81 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+/**
+ * Simultaneous exponentiation for multiplicative groups modulo a
+ * prime. The table is computed using integer arithmetic, which
+ * allows it to be kept in Montgomery form using the Montgomery
+ * context of the group.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ModPGroupSimExpTab extends PGroupSimExpTab {
+
+    /**
+     * Underlying group.
+     */
+    private final ModPGroup pGroup;
+
+    /**
+     * Table of pre-computed integers.
+     */
+    private final LargeIntegerSimModPowTab tab;
+
+    /**
+     * Creates a pre-computed table.
+     *
+     * @param pGroup Underlying group.
+     * @param bases Integer representatives of the bases used for
+     * pre-computation.
+     * @param offset Position of first basis element to use.
+     * @param width Number of bases elements to use.
+     */
+    ModPGroupSimExpTab(final ModPGroup pGroup,
+                       final LargeInteger[] bases,
+                       final int offset,
+                       final int width) {
+        super();
+        this.width = width;
+        this.pGroup = pGroup;
+        this.tab = new LargeIntegerSimModPowTab(bases,
+                                                offset,
+                                                width,
+                                                pGroup.modulus,
+                                                pGroup.montgomery);
+    }
+
+    @Override
+    public PGroupElement expProd(final LargeInteger[] integers,
+                                 final int offset,
+                                 final int bitLength) {
+        return new ModPGroupElement(pGroup,
+                                    tab.modPowProd(integers,
+                                                   offset,
+                                                   bitLength));
+    }
+}
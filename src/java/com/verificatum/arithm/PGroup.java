@@ -521,7 +521,9 @@ public abstract class PGroup implements Marshalizable, PRingAssociated {
     /**
      * Returns the product of all elements in <code>bases</code> to
      * the respective powers in <code>exponents</code>. This uses
-     * simultaneous exponentiation and threading.
+     * simultaneous exponentiation and threading, or the bucket method
+     * when the part of the arrays processed by a thread is large
+     * enough.
      *
      * @param bases Bases to be exponentiated.
      * @param integers Powers to be taken.
@@ -547,6 +549,20 @@ public abstract class PGroup implements Marshalizable, PRingAssociated {
                 @Override
                 public void work(final int start, final int end) {
 
+                    final int bucketWidth =
+                        LargeIntegerBucketModPow.optimalWidth(bitLength,
+                                                              end - start,
+                                                              maxWidth);
+                    if (bucketWidth > 0) {
+                        parts.add(PGroupBucketExp.expProd(bases,
+                                                          integers,
+                                                          start,
+                                                          end - start,
+                                                          bitLength,
+                                                          bucketWidth));
+                        return;
+                    }
+
                     PGroupElement part = getONE();
 
                     int offset = start;
@@ -597,6 +613,40 @@ public abstract class PGroup implements Marshalizable, PRingAssociated {
     public abstract PGroupElement expProd(final PGroupElement[] bases,
                                           final PRingElement[] exponents);
 
+    /**
+     * Returns a pre-computed table for simultaneous exponentiation of
+     * the given bases. Subclasses may override this method to provide
+     * implementations that are more efficient for a particular
+     * representation of group elements.
+     *
+     * @param bases Bases used for pre-computation.
+     * @param offset Position of first basis element to use.
+     * @param width Number of bases elements to use.
+     * @return Table for simultaneous exponentiation.
+     */
+    public PGroupSimExpTab simExpTab(final PGroupElement[] bases,
+                                     final int offset,
+                                     final int width) {
+        return new PGroupSimExpTab(bases, offset, width);
+    }
+
+    /**
+     * Returns a pre-computed table for fixed-base exponentiation of
+     * the given basis. Subclasses may override this method to provide
+     * implementations that are more efficient for a particular
+     * representation of group elements.
+     *
+     * @param basis Fixed basis used for pre-computation.
+     * @param bitLength Bit length of exponents.
+     * @param width Width of pre-computed table.
+     * @return Table for fixed-base exponentiation.
+     */
+    public PGroupFixExp fixExpTab(final PGroupElement basis,
+                                  final int bitLength,
+                                  final int width) {
+        return new PGroupFixExpTab(basis, bitLength, width);
+    }
+
     /**
      * Computes the element-wise product of the inputs.
      *
@@ -625,12 +675,14 @@ public abstract class PGroup implements Marshalizable, PRingAssociated {
     }
 
     /**
-     * Returns the element-wise inverse of the input array.
+     * Returns the element-wise inverse of the input array. Subclasses
+     * where inversion is expensive should override this method and
+     * use simultaneous inversion.
      *
      * @param elements Elements to be inverted.
      * @return Array of results.
      */
-    public final PGroupElement[] inv(final PGroupElement[] elements) {
+    public PGroupElement[] inv(final PGroupElement[] elements) {
         final PGroupElement[] res = new PGroupElement[elements.length];
 
         final ArrayWorker worker = new ArrayWorker(res.length) {
@@ -0,0 +1,117 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+/**
+ * Implementation of the bucket method for computing power-products of
+ * many group elements. This is the same algorithm as in {@link
+ * LargeIntegerBucketModPow}, but for arbitrary groups. The width of
+ * windows is chosen using {@link
+ * LargeIntegerBucketModPow#optimalWidth(int,int,int)}.
+ *
+ * @author Douglas Wikstrom
+ */
+final class PGroupBucketExp {
+
+    /**
+     * Avoid instantiation of this class.
+     */
+    private PGroupBucketExp() {
+    }
+
+    /**
+     * Returns the product of the given bases to the powers of the
+     * given exponents.
+     *
+     * @param bases Bases to be exponentiated.
+     * @param integers Powers to be taken.
+     * @param offset Position of first basis and exponent to use.
+     * @param size Number of bases and exponents to use.
+     * @param bitLength Maximal bit length of exponents.
+     * @param width Width of windows.
+     * @return Power-product of the given bases and exponents.
+     */
+    static PGroupElement expProd(final PGroupElement[] bases,
+                                 final LargeInteger[] integers,
+                                 final int offset,
+                                 final int size,
+                                 final int bitLength,
+                                 final int width) {
+
+        final PGroupElement[] buckets = new PGroupElement[1 << width];
+
+        PGroupElement res = bases[offset].getPGroup().getONE();
+        for (int w = (bitLength + width - 1) / width - 1; w >= 0; w--) {
+
+            for (int i = 0; i < width; i++) {
+                res = res.mul(res);
+            }
+
+            // Sort the bases into buckets indexed by their digits.
+            for (int j = offset; j < offset + size; j++) {
+                final int digit =
+                    LargeIntegerBucketModPow.digit(integers[j], w, width,
+                                                   bitLength);
+                if (digit != 0) {
+                    if (buckets[digit] == null) {
+                        buckets[digit] = bases[j];
+                    } else {
+                        buckets[digit] = buckets[digit].mul(bases[j]);
+                    }
+                }
+            }
+
+            // The running product after processing bucket k is the
+            // product of the buckets with index at least k, so the
+            // product of the running products is the product of each
+            // bucket to the power of its index.
+            PGroupElement run = null;
+            PGroupElement sum = null;
+            for (int k = buckets.length - 1; k > 0; k--) {
+                if (buckets[k] != null) {
+                    if (run == null) {
+                        run = buckets[k];
+                    } else {
+                        run = run.mul(buckets[k]);
+                    }
+                    buckets[k] = null;
+                }
+                if (run != null) {
+                    if (sum == null) {
+                        sum = run;
+                    } else {
+                        sum = sum.mul(run);
+                    }
+                }
+            }
+            if (sum != null) {
+                res = res.mul(sum);
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,69 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+/**
+ * Interface of a pre-computed table for fixed-base exponentiation,
+ * i.e., the same basis is raised to many exponents. Instances are
+ * returned by {@link PGroup#fixExpTab(PGroupElement,int,int)}, which
+ * allows each group to use the representation of its elements that
+ * is the most efficient.
+ *
+ * @author Douglas Wikstrom
+ */
+public interface PGroupFixExp {
+
+    /**
+     * Compute power using the given integer.
+     *
+     * @param integer Integer exponent.
+     * @return Power of element used for pre-computing.
+     */
+    PGroupElement exp(LargeInteger integer);
+
+    /**
+     * Compute powers using the integers in the given range.
+     *
+     * @param integers Integer exponents.
+     * @param res Destination of the powers.
+     * @param start Index of first exponent to use.
+     * @param end Index after last exponent to use.
+     */
+    void exp(LargeInteger[] integers,
+             PGroupElement[] res,
+             int start,
+             int end);
+
+    /**
+     * Explicitly free allocated resources. Tables may be represented
+     * in native memory, so this must be called when a table is no
+     * longer used. The default implementation does nothing.
+     */
+    default void free() {
+        // Tables represented in Java need not release anything.
+    }
+}
@@ -32,7 +32,7 @@ package com.verificatum.arithm;
  *
  * @author Douglas Wikstrom
  */
-public class PGroupFixExpTab {
+public class PGroupFixExpTab implements PGroupFixExp {
 
     /**
      * Width of table of pre-computed values.
@@ -141,12 +141,9 @@ public class PGroupFixExpTab {
         return res;
     }
 
-    /**
-     * Compute power using the given integer.
-     *
-     * @param integer Integer exponent.
-     * @return Power of element used for pre-computing.
-     */
+    // Documented in PGroupFixExp.java
+
+    @Override
     public PGroupElement exp(final LargeInteger integer) {
 
         final int[] sliced = slice(integer);
@@ -158,4 +155,14 @@ public class PGroupFixExpTab {
         }
         return res;
     }
+
+    @Override
+    public void exp(final LargeInteger[] integers,
+                    final PGroupElement[] res,
+                    final int start,
+                    final int end) {
+        for (int i = start; i < end; i++) {
+            res[i] = exp(integers[i]);
+        }
+    }
 }
@@ -73,6 +73,13 @@ public class PGroupSimExpTab {
         return Math.max(1, width - 1);
     }
 
+    /**
+     * Allows subclasses to use their own representation of the
+     * table.
+     */
+    protected PGroupSimExpTab() {
+    }
+
     /**
      * Creates a pre-computed table.
      *
@@ -104,6 +111,15 @@ public class PGroupSimExpTab {
         }
     }
 
+    /**
+     * Returns the number of bases of the table.
+     *
+     * @return Number of bases of the table.
+     */
+    public int getWidth() {
+        return width;
+    }
+
     /**
      * Compute a power-product using the given integer exponents.
      *
@@ -26,17 +26,28 @@
 
 package com.verificatum.arithm;
 
+import java.util.BitSet;
+
 import com.verificatum.crypto.RandomSource;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeConvertible;
-import com.verificatum.util.Functions;
 import com.verificatum.eio.ByteTreeReader;
+import com.verificatum.eio.EIOException;
+import com.verificatum.util.Functions;
 
 
 /**
  * Represents an immutable permutation which allows the permutation
  * and its inverse to be applied to arrays of elements.
  *
+ * <p>
+ *
+ * Subclasses store the permutation as a table of primitive
+ * integers. The byte tree representation is a node with one leaf for
+ * each index, where all leaves have the byte length of the
+ * representation of the size of the permutation as a
+ * {@link LargeInteger}.
+ *
  * @author Douglas Wikstrom
  */
 public abstract class Permutation implements ByteTreeConvertible {
@@ -47,7 +58,14 @@ public abstract class Permutation implements ByteTreeConvertible {
     static final LargeInteger UPPER_BOUND = LargeInteger.ONE.shiftLeft(64);
 
     /**
-     * Permutation as an array of integers.
+     * Default expected number of indices in each block when sampling
+     * a random permutation.
+     */
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /**
+     * Permutation as an array of integers. This is only used by
+     * subclasses that do not store the permutation themselves.
      */
     LargeIntegerArray table;
 
@@ -146,6 +164,27 @@ public abstract class Permutation implements ByteTreeConvertible {
      * Generates a random permutation of a given size using the given
      * source of randomness.
      *
+     * <p>
+     *
+     * If there are at most <code>blockSize =
+     * 2<sup>20</sup></code> elements, then the identity permutation
+     * is shuffled using the Fisher-Yates algorithm with indices
+     * sampled by {@link PermutationSampler}. Otherwise, each index is
+     * first assigned to one of roughly <code>numberOfElements /
+     * blockSize</code> blocks independently and uniformly at random,
+     * the indices are listed block by block, and each block is
+     * shuffled separately. This gives a uniformly random permutation, since
+     * the assignment to blocks determines which indices end up in
+     * which contiguous part of the table, and the shuffling makes
+     * every ordering within each part equally likely. The result is
+     * the same for permutations stored in memory and on file.
+     *
+     * <p>
+     *
+     * Rejection sampling gives exactly uniform indices if the source
+     * of randomness is uniform, so the statistical distance is zero
+     * and <code>statDist</code> is not used.
+     *
      * @param numberOfElements Number of elements to permute.
      * @param statDist Decides the statistical distance from the
      * uniform distribution.
@@ -156,10 +195,178 @@ public abstract class Permutation implements ByteTreeConvertible {
     public static Permutation random(final int numberOfElements,
                                      final RandomSource randomSource,
                                      final int statDist) {
+        return random(numberOfElements,
+                      randomSource,
+                      statDist,
+                      DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Generates a random permutation of a given size using the given
+     * source of randomness and the given expected number of indices
+     * in each block, see {@link #random(int,RandomSource,int)}. The
+     * block size changes the permutation sampled for a given source
+     * of randomness, so the default should be used except for
+     * testing.
+     *
+     * @param numberOfElements Number of elements to permute.
+     * @param statDist Decides the statistical distance from the
+     * uniform distribution.
+     * @param randomSource Source of randomness used to generate the
+     * permutation.
+     * @param blockSize Expected number of indices in each block.
+     * @return Random permutation of the given size.
+     */
+    public static Permutation random(final int numberOfElements,
+                                     final RandomSource randomSource,
+                                     final int statDist,
+                                     final int blockSize) {
+        if (blockSize < 1) {
+            throw new ArithmError("Non-positive block size!");
+        }
         if (LargeIntegerArray.inMemory) {
-            return new PermutationIM(numberOfElements, randomSource, statDist);
+            return new PermutationIM(numberOfElements, blockSize,
+                                     randomSource);
+        } else {
+            return new PermutationF(numberOfElements, blockSize,
+                                    randomSource);
+        }
+    }
+
+    /**
+     * Returns the number of blocks used when sampling a random
+     * permutation of the given size.
+     *
+     * @param size Size of permutation.
+     * @param blockSize Expected number of indices in each block.
+     * @return Number of blocks.
+     */
+    static int blocks(final int size, final int blockSize) {
+        return Math.max(1, (size + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Returns a sampler for sampling a random permutation of the
+     * given size.
+     *
+     * @param size Size of permutation.
+     * @param blockSize Expected number of indices in each block.
+     * @param randomSource Source of randomness.
+     * @return Sampler of indices.
+     */
+    static PermutationSampler sampler(final int size,
+                                      final int blockSize,
+                                      final RandomSource randomSource) {
+        if (blocks(size, blockSize) == 1) {
+            return new PermutationSampler(randomSource, size, size);
+        } else {
+            return new PermutationSampler(randomSource, 2 * size, blockSize);
+        }
+    }
+
+    /**
+     * Returns the number of bytes used to represent each index in the
+     * byte tree representation of a permutation of the given size.
+     *
+     * @param size Size of permutation.
+     * @return Number of bytes used to represent each index.
+     */
+    static int indexByteLength(final int size) {
+        return new LargeInteger(size).toByteArray().length;
+    }
+
+    /**
+     * Writes the fixed-size big-endian representation of an index to
+     * the given array.
+     *
+     * @param index Index to write.
+     * @param destination Destination of representation.
+     */
+    static void writeIndex(final int index, final byte[] destination) {
+        int tmp = index;
+        for (int i = destination.length - 1; i >= 0; i--) {
+            destination[i] = (byte) tmp;
+            tmp >>>= 8;
+        }
+    }
+
+    /**
+     * Reads the representation of a permutation of the given size
+     * and passes each index to the given table.
+     *
+     * @param size Expected size of the permutation.
+     * @param btr Representation of permutation.
+     * @param table Destination of indices.
+     * @throws ArithmFormatException If the input is incorrect or has
+     *  wrong size.
+     */
+    static void readTable(final int size,
+                          final ByteTreeReader btr,
+                          final IndexTable table)
+        throws ArithmFormatException {
+
+        if (btr.getRemaining() != size) {
+            throw new ArithmFormatException("Unexpected number of integers!");
+        }
+
+        final BitSet seen = new BitSet(size);
+
+        try {
+
+            for (int i = 0; i < size; i++) {
+
+                final byte[] bytes = btr.getNextChild().read();
+
+                // Indices are written with a fixed byte length, but
+                // any two's complement big-endian representation is
+                // accepted.
+                final int index;
+                if (bytes.length == 0) {
+                    throw new ArithmFormatException("Malformed integer!");
+                } else if (bytes.length <= 4) {
+                    int tmp = bytes[0];
+                    for (int j = 1; j < bytes.length; j++) {
+                        tmp = (tmp << 8) | (bytes[j] & 0xFF);
+                    }
+                    index = tmp;
+                } else {
+                    index = toIndex(new LargeInteger(bytes), size);
+                }
+
+                if (index < 0) {
+                    throw new ArithmFormatException("Integer is too small!");
+                }
+                if (index >= size) {
+                    throw new ArithmFormatException("Integer is too large!");
+                }
+                if (seen.get(index)) {
+                    throw new ArithmFormatException("Repeated index!");
+                }
+                seen.set(index);
+
+                table.put(i, index);
+            }
+
+        } catch (final EIOException eioe) {
+            throw new ArithmFormatException("Malformed ByteTree!", eioe);
+        }
+    }
+
+    /**
+     * Converts an integer to an index, or -1 or the given size if it
+     * is negative or too large respectively.
+     *
+     * @param integer Integer to convert.
+     * @param size Size of permutation.
+     * @return Index, or an invalid index.
+     */
+    private static int toIndex(final LargeInteger integer, final int size) {
+        if (integer.compareTo(LargeInteger.ZERO) < 0) {
+            return -1;
+        } else if (integer.compareTo(new LargeInteger(size)) >= 0) {
+            return size;
         } else {
-            return new PermutationF(numberOfElements, randomSource, statDist);
+            return integer.intValue();
         }
     }
 
@@ -210,23 +417,18 @@ public abstract class Permutation implements ByteTreeConvertible {
 
         // Make sure that we use fixed size representation of all
         // indices.
-        final LargeInteger liSize = new LargeInteger(size());
-        final int expectedByteLength = liSize.toByteArray().length;
-
-        return table.toByteTree(expectedByteLength);
+        return table.toByteTree(indexByteLength(size()));
     }
 
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
 
-        final LargeIntegerIterator lii = this.table.getIterator();
-
-        while (lii.hasNext()) {
+        final int size = size();
+        for (int i = 0; i < size; i++) {
             sb.append(", ");
-            sb.append(lii.next().intValue());
+            sb.append(map(i));
         }
-        lii.close();
 
         return "[" + sb.substring(1) + " ]";
     }
@@ -235,4 +437,19 @@ public abstract class Permutation implements ByteTreeConvertible {
     public int hashCode() {
         return Functions.hashCode(this);
     }
+
+    /**
+     * Destination of the indices of a permutation read from a byte
+     * tree.
+     */
+    interface IndexTable {
+
+        /**
+         * Stores the image of an index.
+         *
+         * @param index Index.
+         * @param image Image of index.
+         */
+        void put(int index, int image);
+    }
 }
@@ -27,10 +27,12 @@
 package com.verificatum.arithm;
 
 import com.verificatum.eio.ByteTree;
-import com.verificatum.eio.ByteTreeComparator;
+import com.verificatum.eio.ByteTreeBasic;
+import com.verificatum.eio.ByteTreeRawComparator;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.EIOError;
 import com.verificatum.eio.EIOException;
+import com.verificatum.eio.ExtIO;
 
 /**
  * Comparator used to implement permutations using sorting. It
@@ -41,9 +43,15 @@ import com.verificatum.eio.EIOException;
  * such "integers" are first compared with respect to length, i.e.,
  * shorter means smaller, and then content.
  *
+ * <p>
+ *
+ * Byte trees can also be compared directly from their encodings,
+ * which is how the comparator is used when sorting byte trees on
+ * file.
+ *
  * @author Douglas Wikstrom
  */
-public final class PermutationComparator implements ByteTreeComparator {
+public final class PermutationComparator implements ByteTreeRawComparator {
 
     /**
      * Validate that the width is two.
@@ -67,6 +75,78 @@ public final class PermutationComparator implements ByteTreeComparator {
         }
     }
 
+    /**
+     * Compares two indexes represented as arrays of bytes.
+     *
+     * @param left Array containing left index.
+     * @param leftOffset Offset of left index.
+     * @param leftLength Number of bytes of left index.
+     * @param right Array containing right index.
+     * @param rightOffset Offset of right index.
+     * @param rightLength Number of bytes of right index.
+     * @return Result of comparison.
+     */
+    private int compare(final byte[] left,
+                        final int leftOffset,
+                        final int leftLength,
+                        final byte[] right,
+                        final int rightOffset,
+                        final int rightLength) {
+
+        // Indexes are binary representations of integer indexes, so
+        // if one is shorter, then it represents a smaller index.
+        if (leftLength < rightLength) {
+            return -1;
+        } else if (leftLength > rightLength) {
+            return 1;
+        }
+
+        // Integer comparison of indexes of the same byte length.
+        for (int i = 0; i < leftLength; i++) {
+
+            final int li = (int) left[leftOffset + i] & 0xFF;
+            final int ri = (int) right[rightOffset + i] & 0xFF;
+
+            if (li < ri) {
+                return -1;
+            } else if (li > ri) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of bytes of the index in the encoding of a
+     * byte tree, which follows at offset ten.
+     *
+     * @param encoding Encoding of byte tree.
+     * @return Number of bytes of index.
+     */
+    private int indexLength(final byte[] encoding) {
+        if (encoding.length < 10 || encoding[0] != ByteTreeBasic.NODE) {
+            throw new EIOError("Not a node!");
+        }
+        validatePair(ExtIO.readInt(encoding, 1));
+        if (encoding[5] != ByteTreeBasic.LEAF) {
+            throw new EIOError("Not a leaf!");
+        }
+        final int length = ExtIO.readInt(encoding, 6);
+        if (length < 0 || length > encoding.length - 10) {
+            throw new EIOError("Invalid length of index!");
+        }
+        return length;
+    }
+
+    @Override
+    public int compare(final byte[] left, final byte[] right) {
+
+        // The indexes are compared in place in the encodings, which
+        // is fast in particular for fixed-width indexes.
+        return compare(left, 10, indexLength(left),
+                       right, 10, indexLength(right));
+    }
+
     @Override
     public int compare(final ByteTree leftByteTree,
                        final ByteTree rightByteTree) {
@@ -89,29 +169,7 @@ public final class PermutationComparator implements ByteTreeComparator {
             validateLeaf(rir);
             final byte[] right = rir.read();
 
-
-            // Indexes are binary representations of integer indexes,
-            // so if one is shorter, then it represents a smaller
-            // index.
-            if (left.length < right.length) {
-                return -1;
-            } else if (left.length > right.length) {
-                return 1;
-            }
-
-            // Integer comparison of indexes of the same byte length.
-            for (int i = 0; i < left.length; i++) {
-
-                final int li = (int) left[i] & 0xFF;
-                final int ri = (int) right[i] & 0xFF;
-
-                if (li < ri) {
-                    return -1;
-                } else if (li > ri) {
-                    return 1;
-                }
-            }
-            return 0;
+            return compare(left, 0, left.length, right, 0, right.length);
 
         } catch (final EIOException eioe) {
             throw new EIOError("Fatal comparison!", eioe);
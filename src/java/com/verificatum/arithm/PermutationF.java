@@ -26,35 +26,89 @@
 
 package com.verificatum.arithm;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
 import com.verificatum.crypto.RandomSource;
+import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeF;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.ByteTreeUtil;
+import com.verificatum.eio.ExtIO;
+import com.verificatum.eio.MappedFile;
+import com.verificatum.eio.TempFile;
 
 /**
  * Represents an immutable permutation stored on file which allows the
  * permutation and its inverse to be applied to arrays of elements.
  *
+ * <p>
+ *
+ * The permutation is stored as a table of four-byte integers in a
+ * temporary file that is mapped into memory, so mapping an index is
+ * a lookup in the table and the operating system decides which parts
+ * of the table are kept in memory.
+ *
  * @author Douglas Wikstrom
  */
 public final class PermutationF extends Permutation {
 
     /**
-     * Generates an instance represented by the input.
+     * Size of buffers used when reading and writing files.
+     */
+    static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Number of permuted elements.
+     */
+    final int size;
+
+    /**
+     * Permutation as a table of integers mapped into memory.
+     */
+    final MappedFile indices;
+
+    /**
+     * Byte tree representation of this permutation, or
+     * <code>null</code> if it has not been requested.
+     */
+    private ByteTreeF byteTree;
+
+    /**
+     * Generates the identity permutation of a given size.
      *
-     * @param table Representation of a permutation.
+     * @param size Number of elements to permute.
      */
-    protected PermutationF(final LargeIntegerArray table) {
-        super(table);
+    public PermutationF(final int size) {
+        this.size = size;
+        this.indices = MappedFile.unsafeMappedFile(TempFile.getFile(),
+                                                   4L * size,
+                                                   true);
+        for (int i = 0; i < size; i++) {
+            put(i, i);
+        }
     }
 
     /**
-     * Generates the identity permutation of a given size.
+     * Allocates an uninitialized table of the given size in a
+     * temporary file.
      *
-     * @param numberOfElements Number of elements to permute.
+     * @param size Number of elements to permute.
+     * @param obj Dummy parameter to distinguish from the constructor
+     * of the identity permutation.
      */
-    public PermutationF(final int numberOfElements) {
-        super(numberOfElements);
+    private PermutationF(final int size, final Object obj) { // NOPMD
+        this.size = size;
+        this.indices = MappedFile.unsafeMappedFile(TempFile.getFile(),
+                                                   4L * size,
+                                                   true);
     }
 
     /**
@@ -67,118 +121,174 @@ public final class PermutationF extends Permutation {
      */
     public PermutationF(final int size, final ByteTreeReader btr)
         throws ArithmFormatException {
-        super(size, btr);
+        this(size, (Object) null);
+        try {
+            readTable(size, btr, new IndexTable() {
+                    public void put(final int index, final int image) {
+                        PermutationF.this.put(index, image);
+                    }
+                });
+        } catch (final ArithmFormatException afe) {
+            free();
+            throw afe;
+        }
     }
 
     /**
      * Generates a random permutation of suitable size using the given
-     * source of randomness.
+     * source of randomness as explained in {@link
+     * Permutation#random(int,RandomSource,int)}.
      *
      * @param numberOfElements Number of elements to permute.
      * @param statDist Decides the statistical distance from the
-     * uniform distribution.
+     * uniform distribution, but it is not used since the permutation
+     * is uniformly distributed.
      * @param randomSource Source of randomness used to generate the
      * permutation.
      */
     public PermutationF(final int numberOfElements,
                         final RandomSource randomSource,
                         final int statDist) {
+        this(numberOfElements, DEFAULT_BLOCK_SIZE, randomSource);
+    }
+
+    /**
+     * Generates a random permutation of suitable size using the given
+     * source of randomness and the given expected number of indices
+     * in each block as explained in {@link
+     * Permutation#random(int,RandomSource,int,int)}.
+     *
+     * @param numberOfElements Number of elements to permute.
+     * @param blockSize Expected number of indices in each block.
+     * @param randomSource Source of randomness used to generate the
+     * permutation.
+     */
+    PermutationF(final int numberOfElements,
+                 final int blockSize,
+                 final RandomSource randomSource) {
+        this(numberOfElements, (Object) null);
 
-        final int aprLog = MathExt.log2c(numberOfElements);
+        final PermutationSampler sampler =
+            sampler(numberOfElements, blockSize, randomSource);
+        final int blocks = blocks(numberOfElements, blockSize);
 
-        // The union bound gives this overly conservative bit size.
-        final int bitLength = statDist + aprLog + aprLog;
+        if (blocks == 1) {
+            final int[] block = new int[numberOfElements];
+            for (int i = 0; i < block.length; i++) {
+                block[i] = i;
+            }
+            sampler.shuffle(block, 0, block.length);
+            for (int i = 0; i < block.length; i++) {
+                put(i, block[i]);
+            }
+            return;
+        }
 
-        // Generate array of random positive integers of the given
-        // nominal bit size.
-        final LargeIntegerArrayF randomIntegers =
-            new LargeIntegerArrayF(numberOfElements, bitLength, randomSource);
-        final ByteTreeF randomByteTree = new ByteTreeF(randomIntegers.file);
+        // Assign each index to a random block and count the number
+        // of indices in each block. The choices are stored on file.
+        final MappedFile choices =
+            MappedFile.unsafeMappedFile(TempFile.getFile(),
+                                        4L * numberOfElements,
+                                        true);
+        final int[] starts = new int[blocks + 1];
+        for (int i = 0; i < numberOfElements; i++) {
+            final int choice = sampler.next(blocks);
+            choices.putInt(4L * i, choice);
+            starts[choice + 1]++;
+        }
+        for (int i = 0; i < blocks; i++) {
+            starts[i + 1] += starts[i];
+        }
 
-        // Generate array of the integers 0, 1, 2, 3, ...
-        final LargeIntegerArrayF consecutive =
-            new LargeIntegerArrayF(0, numberOfElements);
-        final ByteTreeF consecutiveByteTree = new ByteTreeF(consecutive.file);
+        // List the indices block by block. Each block is written
+        // sequentially.
+        final int[] positions = Arrays.copyOf(starts, blocks);
+        for (int i = 0; i < numberOfElements; i++) {
+            put(positions[choices.getInt(4L * i)]++, i);
+        }
+        TempFile.delete(choices.getFile());
 
-        // Zip the two arrays together, sort with respect to the
-        // first, and then project to the second to get randomly
-        // re-ordered consecutive integers.
-       final  ByteTreeF projected =
-            ByteTreeUtil.zipSortProject(randomByteTree,
-                                        consecutiveByteTree,
-                                        new PermutationComparator());
-        randomIntegers.free();
-        consecutive.free();
+        // Shuffle each block in memory.
+        for (int i = 0; i < blocks; i++) {
 
-        this.table = new LargeIntegerArrayF(numberOfElements, projected.file);
+            final int[] block = new int[starts[i + 1] - starts[i]];
+            for (int j = 0; j < block.length; j++) {
+                block[j] = map(starts[i] + j);
+            }
+            sampler.shuffle(block, 0, block.length);
+            for (int j = 0; j < block.length; j++) {
+                put(starts[i] + j, block[j]);
+            }
+        }
     }
 
     /**
-     * Converts the input to a byte tree on file.
+     * Stores the image of an index.
      *
-     * @param lia Array of integers to be converted.
-     * @return Byte tree on file representing the input array of
-     * integers.
+     * @param index Index.
+     * @param image Image of index.
      */
-    private static ByteTreeF toByteTreeF(final LargeIntegerArray lia) {
-        return (ByteTreeF) lia.toByteTree();
+    void put(final int index, final int image) {
+        indices.putInt(4L * index, image);
     }
 
     @Override
-    public Permutation inv() {
-        final LargeIntegerArrayF consecutiveIntegers =
-            new LargeIntegerArrayF(0, table.size());
-        final ByteTreeF consecutiveByteTree =
-            new ByteTreeF(consecutiveIntegers.file);
-
-        final ByteTreeF projected =
-            ByteTreeUtil.zipSortProject(toByteTreeF(table),
-                                        consecutiveByteTree,
-                                        new PermutationComparator());
-        consecutiveIntegers.free();
-
-        final LargeIntegerArrayF newTable =
-            new LargeIntegerArrayF(table.size(), projected.file);
-        return new PermutationF(newTable);
+    public int size() {
+        return size;
     }
 
     @Override
-    public Permutation shrink(final int size) {
-        final LargeInteger outside = new LargeInteger(table.size());
-
-        final LargeIntegerArrayF cut = new LargeIntegerArrayF(0, size);
-        final LargeIntegerArrayF mo =
-            new LargeIntegerArrayF(table.size() - size, outside);
-
-        final LargeIntegerArrayF hybrid = new LargeIntegerArrayF(cut, mo);
-        final ByteTreeF hybridByteTree = new ByteTreeF(hybrid.file);
-
-        cut.free();
-        mo.free();
+    public int map(final int index) {
+        return indices.getInt(4L * index);
+    }
 
-        final ByteTreeF permHyb =
-            ByteTreeUtil.zipSortProject(toByteTreeF(table),
-                                        hybridByteTree,
-                                        new PermutationComparator());
+    @Override
+    public void free() {
+        synchronized (this) {
+            if (byteTree != null) {
+                byteTree.free();
+                byteTree = null;
+            }
+        }
+        TempFile.delete(indices.getFile());
+    }
 
-        final LargeIntegerArrayF consecutive =
-            new LargeIntegerArrayF(0, table.size());
-        final ByteTreeF consecutiveByteTree = new ByteTreeF(consecutive.file);
+    @Override
+    public Permutation inv() {
+        final PermutationF res = new PermutationF(size, (Object) null);
+        for (int i = 0; i < size; i++) {
+            res.put(map(i), i);
+        }
+        return res;
+    }
 
-        final ByteTreeF withJunk =
-            ByteTreeUtil.zipSortProject(permHyb,
-                                        consecutiveByteTree,
-                                        new PermutationComparator());
-        permHyb.free();
-        consecutive.free();
+    @Override
+    public Permutation shrink(final int size) {
 
-        final LargeIntegerArrayF withJunkArray =
-            new LargeIntegerArrayF(table.size(), withJunk.file);
+        // One plus the rank of each position among the images of the
+        // first size indices, or zero if it is not such an image.
+        final MappedFile rank =
+            MappedFile.unsafeMappedFile(TempFile.getFile(),
+                                        4L * this.size,
+                                        true);
+        for (int i = 0; i < size; i++) {
+            rank.putInt(4L * map(i), 1);
+        }
+        int l = 1;
+        for (int i = 0; i < this.size; i++) {
+            if (rank.getInt(4L * i) != 0) {
+                rank.putInt(4L * i, l);
+                l++;
+            }
+        }
 
-        final LargeIntegerArray result = withJunkArray.copyOfRange(0, size);
-        withJunk.free();
+        final PermutationF res = new PermutationF(size, (Object) null);
+        for (int i = 0; i < size; i++) {
+            res.put(i, rank.getInt(4L * map(i)) - 1);
+        }
+        TempFile.delete(rank.getFile());
 
-        return new PermutationF(result);
+        return res;
     }
 
     /**
@@ -187,13 +297,134 @@ public final class PermutationF extends Permutation {
      * single byte trees, i.e., the children of the first byte tree
      * are permuted.
      *
+     * <p>
+     *
+     * If all children have the same byte length, then they are
+     * written directly to their positions in the output. Otherwise
+     * the input is sorted on disk.
+     *
      * @param input Byte tree representing an array of byte trees.
      * @return Permuted array of byte trees represented as a byte tree.
      */
     public ByteTreeF applyPermutation(final ByteTreeF input) {
-        return ByteTreeUtil.zipSortProject(toByteTreeF(table),
-                                           input,
-                                           new PermutationComparator());
+
+        final ByteTreeF res = applyPermutationFixed(input);
+        if (res == null) {
+            return ByteTreeUtil.zipSortProject((ByteTreeF) toByteTree(),
+                                               input,
+                                               new PermutationComparator());
+        } else {
+            return res;
+        }
+    }
+
+    /**
+     * Applies this permutation to the input byte tree viewed as an
+     * array of byte trees if all children have the same byte length.
+     *
+     * @param input Byte tree representing an array of byte trees.
+     * @return Permuted array of byte trees represented as a byte
+     * tree, or <code>null</code> if the children do not have the
+     * same byte length.
+     */
+    private ByteTreeF applyPermutationFixed(final ByteTreeF input) {
+
+        final long total = input.file.length() - 5;
+        if (size == 0 || total % size != 0 || total / size > BUFFER_SIZE) {
+            return null;
+        }
+        final int width = (int) (total / size);
+
+        final File file = TempFile.getFile();
+        final MappedFile output =
+            MappedFile.unsafeMappedFile(file, 5 + total, true);
+
+        boolean fixed = true;
+        DataInputStream dis = null;
+        try {
+            final FileInputStream fis = new FileInputStream(input.file);
+            dis = new DataInputStream(new BufferedInputStream(fis,
+                                                              BUFFER_SIZE));
+
+            final byte[] header = new byte[5];
+            dis.readFully(header);
+            final int children = ((header[1] & 0xFF) << 24)
+                | ((header[2] & 0xFF) << 16)
+                | ((header[3] & 0xFF) << 8)
+                | (header[4] & 0xFF);
+            if (header[0] != ByteTreeBasic.NODE || children != size) {
+                fixed = false;
+            }
+            output.put(0, header, 0, 5);
+
+            final byte[] child = new byte[width];
+            for (int i = 0; fixed && i < size; i++) {
+                dis.readFully(child);
+                if (ByteTreeUtil.encodedLength(child, 0, width) == width) {
+                    output.put(5 + ((long) map(i)) * width, child, 0, width);
+                } else {
+                    fixed = false;
+                }
+            }
+
+        } catch (final IOException ioe) {
+            throw new ArithmError("Unable to permute file!", ioe);
+        } finally {
+            ExtIO.strictClose(dis);
+        }
+
+        if (fixed) {
+            return new ByteTreeF(file);
+        } else {
+            TempFile.delete(file);
+            return null;
+        }
+    }
+
+    @Override
+    public ByteTreeBasic toByteTree() {
+        synchronized (this) {
+            if (byteTree == null) {
+                byteTree = writeByteTree();
+            }
+            return byteTree;
+        }
+    }
+
+    /**
+     * Writes the byte tree representation of this permutation to a
+     * temporary file.
+     *
+     * @return Byte tree representation of this permutation.
+     */
+    private ByteTreeF writeByteTree() {
+
+        // Make sure that we use fixed size representation of all
+        // indices.
+        final int byteLength = indexByteLength(size);
+
+        final File file = TempFile.getFile();
+        DataOutputStream dos = null;
+        try {
+            final FileOutputStream fos = new FileOutputStream(file);
+            dos = new DataOutputStream(new BufferedOutputStream(fos,
+                                                                BUFFER_SIZE));
+            dos.writeByte(ByteTreeBasic.NODE);
+            dos.writeInt(size);
+
+            final byte[] bytes = new byte[byteLength];
+            for (int i = 0; i < size; i++) {
+                writeIndex(map(i), bytes);
+                dos.writeByte(ByteTreeBasic.LEAF);
+                dos.writeInt(byteLength);
+                dos.write(bytes);
+            }
+        } catch (final IOException ioe) {
+            throw new ArithmError("Unable to write permutation!", ioe);
+        } finally {
+            ExtIO.strictClose(dos);
+        }
+        return new ByteTreeF(file);
     }
 
     @Override
@@ -204,8 +435,15 @@ public final class PermutationF extends Permutation {
         if (!(obj instanceof PermutationF)) {
             return false;
         }
-        final LargeIntegerArray otherTable = ((PermutationF) obj).table;
-
-        return table.equals(otherTable);
+        final PermutationF other = (PermutationF) obj;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (map(i) != other.map(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -29,25 +29,33 @@ package com.verificatum.arithm;
 import java.util.Arrays;
 
 import com.verificatum.crypto.RandomSource;
+import com.verificatum.eio.ByteTree;
+import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeReader;
 
 
 /**
- * Represents an immutable permutation stored in memory which allows
- * the permutation and its inverse to be applied to arrays of
- * elements.
+ * Represents an immutable permutation stored in memory as an array of
+ * primitive integers which allows the permutation and its inverse to
+ * be applied to arrays of elements.
  *
  * @author Douglas Wikstrom
  */
 public final class PermutationIM extends Permutation {
 
     /**
-     * Generates an instance represented by the input.
+     * Permutation as an array of integers.
+     */
+    final int[] indices;
+
+    /**
+     * Generates an instance represented by the input. The input is
+     * not copied.
      *
-     * @param table Representation of a permutation.
+     * @param indices Representation of a permutation.
      */
-    protected PermutationIM(final LargeIntegerArray table) {
-        super(table);
+    PermutationIM(final int[] indices) {
+        this.indices = indices;
     }
 
     /**
@@ -56,7 +64,10 @@ public final class PermutationIM extends Permutation {
      * @param numberOfElements Number of elements to permute.
      */
     public PermutationIM(final int numberOfElements) {
-        super(numberOfElements);
+        indices = new int[numberOfElements];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
     }
 
     /**
@@ -69,79 +80,134 @@ public final class PermutationIM extends Permutation {
      */
     public PermutationIM(final int size, final ByteTreeReader btr)
         throws ArithmFormatException {
-        super(size, btr);
+        indices = new int[size];
+        readTable(size, btr, new IndexTable() {
+                public void put(final int index, final int image) {
+                    indices[index] = image;
+                }
+            });
     }
 
     /**
      * Generates a random permutation of suitable size using the given
-     * source of randomness.
+     * source of randomness as explained in {@link
+     * Permutation#random(int,RandomSource,int)}.
      *
      * @param numberOfElements Number of elements to permute.
      * @param statDist Decides the statistical distance from the
-     * uniform distribution.
+     * uniform distribution, but it is not used since the permutation
+     * is uniformly distributed.
      * @param randomSource Source of randomness used to generate the
      * permutation.
      */
     public PermutationIM(final int numberOfElements,
                          final RandomSource randomSource,
                          final int statDist) {
+        this(numberOfElements, DEFAULT_BLOCK_SIZE, randomSource);
+    }
 
-        final int aprLog = MathExt.log2c(numberOfElements);
+    /**
+     * Generates a random permutation of suitable size using the given
+     * source of randomness and the given expected number of indices
+     * in each block as explained in {@link
+     * Permutation#random(int,RandomSource,int,int)}.
+     *
+     * @param numberOfElements Number of elements to permute.
+     * @param blockSize Expected number of indices in each block.
+     * @param randomSource Source of randomness used to generate the
+     * permutation.
+     */
+    PermutationIM(final int numberOfElements,
+                  final int blockSize,
+                  final RandomSource randomSource) {
+
+        final PermutationSampler sampler =
+            sampler(numberOfElements, blockSize, randomSource);
+        final int blocks = blocks(numberOfElements, blockSize);
 
-        // The union bound gives this overly conservative bit size.
-        final int bits = statDist + aprLog + aprLog;
+        indices = new int[numberOfElements];
 
-        final PermutationPair[] randomTable =
-            new PermutationPair[numberOfElements];
+        if (blocks == 1) {
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i;
+            }
+            sampler.shuffle(indices, 0, indices.length);
+            return;
+        }
 
-        for (int i = 0; i < numberOfElements; i++) {
-            randomTable[i] = new PermutationPair(i, bits, randomSource);
+        // Assign each index to a random block and count the number
+        // of indices in each block.
+        final int[] choices = new int[numberOfElements];
+        final int[] starts = new int[blocks + 1];
+        for (int i = 0; i < choices.length; i++) {
+            choices[i] = sampler.next(blocks);
+            starts[choices[i] + 1]++;
+        }
+        for (int i = 0; i < blocks; i++) {
+            starts[i + 1] += starts[i];
         }
 
-        Arrays.sort(randomTable);
+        // List the indices block by block.
+        final int[] positions = Arrays.copyOf(starts, blocks);
+        for (int i = 0; i < choices.length; i++) {
+            indices[positions[choices[i]]++] = i;
+        }
 
-        final LargeInteger[] integers = new LargeInteger[numberOfElements];
-        for (int i = 0; i < numberOfElements; i++) {
-            integers[i] = randomTable[i].index;
+        // Shuffle each block.
+        for (int i = 0; i < blocks; i++) {
+            sampler.shuffle(indices, starts[i], starts[i + 1]);
         }
-        table = LargeIntegerArray.toLargeIntegerArray(integers);
+    }
+
+    @Override
+    public int size() {
+        return indices.length;
+    }
+
+    @Override
+    public void free() {
+        // Memory is released by the garbage collector.
+    }
+
+    @Override
+    public int map(final int index) {
+        return indices[index];
     }
 
     @Override
     public Permutation inv() {
-        final LargeInteger[] invtable = new LargeInteger[table.size()];
-        final LargeInteger[] orig = table.integers();
+        final int[] invtable = new int[indices.length];
 
-        for (int i = 0; i < orig.length; i++) {
-            invtable[orig[i].intValue()] = new LargeInteger(i);
+        for (int i = 0; i < indices.length; i++) {
+            invtable[indices[i]] = i;
         }
-        return new PermutationIM(new LargeIntegerArrayIM(invtable));
+        return new PermutationIM(invtable);
     }
 
     @Override
     public Permutation shrink(final int size) {
 
-        final LargeInteger outside = new LargeInteger(table.size());
-
-        final LargeInteger[] tmpTable = new LargeInteger[table.size()];
-        Arrays.fill(tmpTable, outside);
-        final LargeInteger[] orig = table.integers();
-
+        // Rank of each position among the images of the first size
+        // indices, or -1 if it is not such an image.
+        final int[] rank = new int[indices.length];
+        Arrays.fill(rank, -1);
         for (int i = 0; i < size; i++) {
-            tmpTable[orig[i].intValue()] = new LargeInteger(i);
+            rank[indices[i]] = 0;
         }
-
-        final LargeInteger[] newTable = new LargeInteger[size];
-
         int l = 0;
-        for (int i = 0; i < tmpTable.length; i++) {
-            if (tmpTable[i].compareTo(outside) != 0) {
-                newTable[tmpTable[i].intValue()] = new LargeInteger(l);
+        for (int i = 0; i < rank.length; i++) {
+            if (rank[i] == 0) {
+                rank[i] = l;
                 l++;
             }
         }
 
-        return new PermutationIM(new LargeIntegerArrayIM(newTable));
+        final int[] newTable = new int[size];
+        for (int i = 0; i < size; i++) {
+            newTable[i] = rank[indices[i]];
+        }
+
+        return new PermutationIM(newTable);
     }
 
     /**
@@ -154,80 +220,35 @@ public final class PermutationIM extends Permutation {
      */
     public void applyPermutation(final Object[] array,
                                  final Object[] permutedArray) {
-        final LargeInteger[] integers = table.integers();
         for (int i = 0; i < array.length; i++) {
-            permutedArray[integers[i].intValue()] = array[i];
+            permutedArray[indices[i]] = array[i];
         }
     }
 
     @Override
-    public boolean equals(final Object obj) {
-        if (obj == this) {
-            return true;
-        }
-        if (!(obj instanceof PermutationIM)) {
-            return false;
-        }
-        final LargeIntegerArray otherTable = ((PermutationIM) obj).table;
+    public ByteTreeBasic toByteTree() {
 
-        return table.equals(otherTable);
-    }
-}
-
-/**
- * Class used to sample a uniformly random permutation.
- *
- * @author Douglas Wikstrom
- */
-class PermutationPair implements Comparable<PermutationPair> {
-
-    /**
-     * Randomly chosen prefix used for ordering instances.
-     */
-    LargeInteger randomPrefix;
+        // Make sure that we use fixed size representation of all
+        // indices.
+        final int byteLength = indexByteLength(indices.length);
 
-    /**
-     * Index of this instance.
-     */
-    LargeInteger index;
-
-    /**
-     * Creates an instance with the given index and a randomly chosen
-     * random prefix of the given bitlength. The bitlength determines
-     * the statistical distance from the uniform distribution of the
-     * resulting permutation.
-     *
-     * @param index Index of this instance.
-     * @param bits Bitlength of random prefix used for sorting.
-     * @param randomSource Source of randomness.
-     */
-    PermutationPair(final int index,
-                    final int bits,
-                    final RandomSource randomSource) {
-        this.randomPrefix = new LargeInteger(bits, randomSource);
-        this.index = new LargeInteger(index);
-    }
-
-    @Override
-    public int compareTo(final PermutationPair permutationPair) {
-        return randomPrefix.compareTo(permutationPair.randomPrefix);
-    }
-
-    @Override
-    public int hashCode() {
-        return randomPrefix.intValue();
+        final ByteTree[] children = new ByteTree[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            final byte[] bytes = new byte[byteLength];
+            writeIndex(indices[i], bytes);
+            children[i] = new ByteTree(bytes);
+        }
+        return new ByteTree(children);
     }
 
     @Override
     public boolean equals(final Object obj) {
-        if (this == obj) {
+        if (obj == this) {
             return true;
         }
-        if (!(obj instanceof PermutationPair)) {
+        if (!(obj instanceof PermutationIM)) {
             return false;
         }
-        final PermutationPair pp = (PermutationPair) obj;
-
-        return index == pp.index && randomPrefix.equals(pp.randomPrefix);
+        return Arrays.equals(indices, ((PermutationIM) obj).indices);
     }
 }
@@ -0,0 +1,160 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.arithm;
+
+import com.verificatum.crypto.RandomSource;
+
+/**
+ * Samples uniformly random indices by rejection sampling from the
+ * bytes of a source of randomness, and uses them to shuffle arrays of
+ * integers with the Fisher-Yates algorithm.
+ *
+ * <p>
+ *
+ * To sample an index smaller than a bound <i>b</i>, the minimal
+ * number of bytes needed to represent <i>b</i>-1 is read, the
+ * integer is truncated to the bit length of <i>b</i>-1, and the
+ * process is repeated until the result is smaller than <i>b</i>. If
+ * the bytes of the source are uniformly distributed, then so are the
+ * indices, i.e., the statistical distance from the uniform
+ * distribution is zero. Each attempt succeeds with probability at
+ * least 1/2, so the expected number of bytes consumed per index is
+ * at most twice the byte length of the bound.
+ *
+ * @author Douglas Wikstrom
+ */
+final class PermutationSampler {
+
+    /**
+     * Maximal number of random bytes read from the source at a time.
+     */
+    static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Source of randomness.
+     */
+    private final RandomSource randomSource;
+
+    /**
+     * Buffered random bytes.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Index of the next unused byte in the buffer.
+     */
+    private int index;
+
+    /**
+     * Creates a sampler that is expected to sample about the given
+     * number of indices smaller than the given bound.
+     *
+     * @param randomSource Source of randomness.
+     * @param samples Expected number of indices to sample.
+     * @param bound Upper bound for indices.
+     */
+    PermutationSampler(final RandomSource randomSource,
+                       final int samples,
+                       final int bound) {
+        this.randomSource = randomSource;
+
+        // Avoid reading much more randomness than needed.
+        final long expected = 2L * samples * byteLength(bound) + 8;
+        this.buffer = new byte[(int) Math.min(BUFFER_SIZE, expected)];
+        this.index = buffer.length;
+    }
+
+    /**
+     * Returns the number of bytes read for each attempt to sample an
+     * index smaller than the given bound.
+     *
+     * @param bound Upper bound for indices.
+     * @return Number of bytes read for each attempt.
+     */
+    static int byteLength(final int bound) {
+        final int bits = 32 - Integer.numberOfLeadingZeros(bound - 1);
+        return (bits + 7) / 8;
+    }
+
+    /**
+     * Returns the next random byte.
+     *
+     * @return Next random byte.
+     */
+    private int nextByte() {
+        if (index == buffer.length) {
+            randomSource.getBytes(buffer);
+            index = 0;
+        }
+        return buffer[index++] & 0xFF;
+    }
+
+    /**
+     * Returns a uniformly random non-negative index smaller than the
+     * given positive bound.
+     *
+     * @param bound Upper bound for indices.
+     * @return Random index.
+     */
+    int next(final int bound) {
+        if (bound == 1) {
+            return 0;
+        }
+
+        final int bits = 32 - Integer.numberOfLeadingZeros(bound - 1);
+        final int bytes = (bits + 7) / 8;
+        final int mask = (int) ((1L << bits) - 1);
+
+        int res;
+        do {
+            res = 0;
+            for (int i = 0; i < bytes; i++) {
+                res = (res << 8) | nextByte();
+            }
+            res &= mask;
+        } while (res >= bound);
+
+        return res;
+    }
+
+    /**
+     * Shuffles the given part of the array using the Fisher-Yates
+     * algorithm, i.e., every reordering is equally likely.
+     *
+     * @param array Array to be shuffled.
+     * @param start Index of first integer to shuffle.
+     * @param end Index after last integer to shuffle.
+     */
+    void shuffle(final int[] array, final int start, final int end) {
+        for (int i = end - start - 1; i > 0; i--) {
+            final int j = next(i + 1);
+            final int tmp = array[start + i];
+            array[start + i] = array[start + j];
+            array[start + j] = tmp;
+        }
+    }
+}
@@ -29,12 +29,18 @@ package com.verificatum.crypto;
 import com.verificatum.annotation.CoberturaIgnore;
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.arithm.LargeInteger;
+import com.verificatum.arithm.PField;
 import com.verificatum.arithm.PFieldElement;
 import com.verificatum.arithm.PGroup;
 import com.verificatum.arithm.PGroupElement;
+import com.verificatum.arithm.PGroupFixExp;
+import com.verificatum.arithm.PGroupFixExpTab;
 import com.verificatum.arithm.PPGroup;
+import com.verificatum.arithm.PPRing;
+import com.verificatum.arithm.PPRingElement;
 import com.verificatum.arithm.PRing;
 import com.verificatum.arithm.PRingElement;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Functions;
 import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeBasic;
@@ -191,38 +197,110 @@ public final class CryptoPKeyNaorYung implements CryptoPKey {
         }
     }
 
-    // Documented in CryptoPKey.java
+    /**
+     * Returns fixed-base exponentiation tables for the given bases,
+     * or <code>null</code> if exponents of the underlying group can
+     * not be represented as integers.
+     *
+     * @param sizes Number of exponentiations computed with the table
+     * of each basis.
+     * @param bases Fixed bases.
+     * @return Tables for the given bases.
+     */
+    static PGroupFixExp[] fixExpTabs(final int[] sizes,
+                                     final PGroupElement... bases) {
 
-    @Override
-    public byte[] encrypt(final byte[] label,
-                          final byte[] message,
-                          final RandomSource randomSource,
-                          final int statDist) {
+        final PGroup pGroup = bases[0].getPGroup();
+        if (!(pGroup.getPRing() instanceof PField)) {
+            return null;
+        }
 
-        // Convert into a list of group elements.
-        final PGroupElement[] els =
-            g1.getPGroup().encode(message, randomSource);
+        final int bitLength = pGroup.getElementOrder().bitLength();
 
-        // Map to product group.
-        final PPGroup pPGroup = new PPGroup(g1.getPGroup(), els.length);
+        final PGroupFixExp[] res = new PGroupFixExp[bases.length];
+        for (int i = 0; i < res.length; i++) {
+            final int width =
+                PGroupFixExpTab.optimalWidth(bitLength, sizes[i]);
+            res[i] = pGroup.fixExpTab(bases[i], bitLength, width);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the given basis element to the power of each factor of
+     * the given exponent, using the given table if it is not
+     * <code>null</code>.
+     *
+     * @param pPGroup Product group of the result.
+     * @param g Basis element.
+     * @param tab Fixed-base exponentiation table of the basis element
+     * or <code>null</code>.
+     * @param r Exponent.
+     * @return Product group element.
+     */
+    static PGroupElement exp(final PPGroup pPGroup,
+                             final PGroupElement g,
+                             final PGroupFixExp tab,
+                             final PRingElement r) {
+        if (tab == null) {
+            return pPGroup.product(g).exp(r);
+        }
+
+        final PRingElement[] rs = ((PPRingElement) r).getFactors();
+        final PGroupElement[] res = new PGroupElement[rs.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = tab.exp(((PFieldElement) rs[i]).toLargeInteger());
+        }
+        return pPGroup.product(res);
+    }
+
+    /**
+     * Frees the given fixed-base exponentiation tables.
+     *
+     * @param tabs Tables or <code>null</code>.
+     */
+    static void free(final PGroupFixExp[] tabs) {
+        if (tabs != null) {
+            for (int i = 0; i < tabs.length; i++) {
+                tabs[i].free();
+            }
+        }
+    }
+
+    /**
+     * Encrypts the given encoded message using the given randomness
+     * and fixed-base exponentiation tables if they are not
+     * <code>null</code>.
+     *
+     * @param label Label used when encrypting.
+     * @param pPGroup Product group of the encoded message.
+     * @param els Encoded message.
+     * @param r Randomness used to encrypt.
+     * @param s Randomness used in the proof commitment.
+     * @param tabs Tables of the fixed bases or <code>null</code>.
+     * @return Ciphertext.
+     */
+    private byte[] encrypt(final byte[] label,
+                           final PPGroup pPGroup,
+                           final PGroupElement[] els,
+                           final PRingElement r,
+                           final PRingElement s,
+                           final PGroupFixExp[] tabs) {
 
         final PGroupElement m = pPGroup.product(els);
-        final PGroupElement pg1 = pPGroup.product(g1);
-        final PGroupElement pg2 = pPGroup.product(g2);
-        final PGroupElement ph = pPGroup.product(h);
 
-        final PRing pPRing = pPGroup.getPRing();
+        final PGroupFixExp tab1 = tabs == null ? null : tabs[0];
+        final PGroupFixExp tab2 = tabs == null ? null : tabs[1];
+        final PGroupFixExp tabh = tabs == null ? null : tabs[2];
 
         // Perform encryption in product group.
-        final PRingElement r = pPRing.randomElement(randomSource, statDist);
-        final PGroupElement u1 = pg1.exp(r);
-        final PGroupElement u2 = pg2.exp(r);
-        final PGroupElement e = ph.exp(r).mul(m);
+        final PGroupElement u1 = exp(pPGroup, g1, tab1, r);
+        final PGroupElement u2 = exp(pPGroup, g2, tab2, r);
+        final PGroupElement e = exp(pPGroup, h, tabh, r).mul(m);
 
         // Compute proof commitment.
-        final PRingElement s = pPRing.randomElement(randomSource, statDist);
-        final PGroupElement a1 = pg1.exp(s);
-        final PGroupElement a2 = pg2.exp(s);
+        final PGroupElement a1 = exp(pPGroup, g1, tab1, s);
+        final PGroupElement a2 = exp(pPGroup, g2, tab2, s);
 
         // Compute challenge.
         final ByteTreeBasic data =
@@ -234,9 +312,10 @@ public final class CryptoPKeyNaorYung implements CryptoPKey {
                                   a2.toByteTree());
 
         final RandomOracle ro = new RandomOracle(roh, secpro);
-        final byte[] challenge = ro.hash(data.toByteArray());
+        final byte[] challenge = ro.hash(data);
         final PFieldElement pFieldChallenge =
-            pPRing.getPField().toElement(LargeInteger.toPositive(challenge));
+            pPGroup.getPRing().getPField()
+            .toElement(LargeInteger.toPositive(challenge));
 
         final PRingElement d = r.mul(pFieldChallenge).add(s);
 
@@ -252,6 +331,157 @@ public final class CryptoPKeyNaorYung implements CryptoPKey {
         return btb.toByteArray();
     }
 
+    // Documented in CryptoPKey.java
+
+    @Override
+    public byte[] encrypt(final byte[] label,
+                          final byte[] message,
+                          final RandomSource randomSource,
+                          final int statDist) {
+
+        // Convert into a list of group elements.
+        final PGroupElement[] els =
+            g1.getPGroup().encode(message, randomSource);
+
+        // Map to product group.
+        final PPGroup pPGroup = new PPGroup(g1.getPGroup(), els.length);
+        final PRing pPRing = pPGroup.getPRing();
+
+        final PRingElement r = pPRing.randomElement(randomSource, statDist);
+        final PRingElement s = pPRing.randomElement(randomSource, statDist);
+
+        return encrypt(label, pPGroup, els, r, s, null);
+    }
+
+    /**
+     * Encrypts each of the given messages using the same label. This
+     * is equivalent to encrypting the messages one by one, but the
+     * randomness is drawn in bulk, the messages are encrypted in
+     * parallel, and fixed-base exponentiation tables of the bases of
+     * this key are computed once and reused for all messages.
+     *
+     * @param label Label used when encrypting.
+     * @param messages Messages to be encrypted.
+     * @param randomSource Source of randomness.
+     * @param statDist Statistical distance from the uniform
+     * distribution assuming a perfect random source.
+     * @return Ciphertexts of the messages.
+     */
+    public byte[][] encrypt(final byte[] label,
+                            final byte[][] messages,
+                            final RandomSource randomSource,
+                            final int statDist) {
+
+        final PGroup pGroup = g1.getPGroup();
+
+        // Convert into lists of group elements.
+        final PGroupElement[][] els = new PGroupElement[messages.length][];
+        int total = 0;
+        for (int i = 0; i < messages.length; i++) {
+            els[i] = pGroup.encode(messages[i], randomSource);
+            total += els[i].length;
+        }
+
+        // The randomness and the proof commitment of each element
+        // give two exponentiations of g1 and g2, and one of h.
+        final PGroupFixExp[] tabs =
+            fixExpTabs(new int[] {2 * total, 2 * total, total}, g1, g2, h);
+        try {
+            return encrypt(label, els, total, randomSource, statDist, tabs);
+        } finally {
+            free(tabs);
+        }
+    }
+
+    /**
+     * Encrypts each of the given encoded messages using the same
+     * label and the given tables.
+     *
+     * @param label Label used when encrypting.
+     * @param els Encoded messages to be encrypted.
+     * @param total Total number of group elements of the encoded
+     * messages.
+     * @param randomSource Source of randomness.
+     * @param statDist Statistical distance from the uniform
+     * distribution assuming a perfect random source.
+     * @param tabs Tables of the fixed bases or <code>null</code>.
+     * @return Ciphertexts of the messages.
+     */
+    private byte[][] encrypt(final byte[] label,
+                             final PGroupElement[][] els,
+                             final int total,
+                             final RandomSource randomSource,
+                             final int statDist,
+                             final PGroupFixExp[] tabs) {
+
+        final PGroup pGroup = g1.getPGroup();
+
+        // Map to product groups.
+        final PPGroup[] pPGroups = new PPGroup[els.length];
+        for (int i = 0; i < els.length; i++) {
+            pPGroups[i] = new PPGroup(pGroup, els[i].length);
+        }
+
+        // Draw randomness.
+        final PRingElement[] rs = new PRingElement[els.length];
+        final PRingElement[] ss = new PRingElement[els.length];
+
+        if (tabs == null) {
+
+            for (int i = 0; i < els.length; i++) {
+                final PRing pPRing = pPGroups[i].getPRing();
+                rs[i] = pPRing.randomElement(randomSource, statDist);
+                ss[i] = pPRing.randomElement(randomSource, statDist);
+            }
+
+        } else {
+
+            final PField pField = (PField) pGroup.getPRing();
+            final LargeInteger[] randoms =
+                LargeInteger.random(2 * total,
+                                    pField.getOrder(),
+                                    statDist,
+                                    randomSource);
+
+            int offset = 0;
+            for (int i = 0; i < els.length; i++) {
+
+                final PPRing pPRing = (PPRing) pPGroups[i].getPRing();
+                final PRingElement[] r = new PRingElement[els[i].length];
+                final PRingElement[] s = new PRingElement[els[i].length];
+
+                for (int j = 0; j < r.length; j++) {
+                    r[j] = pField.toElement(randoms[offset + j]);
+                    s[j] = pField.toElement(randoms[total + offset + j]);
+                }
+                rs[i] = pPRing.product(r);
+                ss[i] = pPRing.product(s);
+
+                offset += r.length;
+            }
+        }
+
+        // Encrypt in parallel.
+        final byte[][] res = new byte[els.length][];
+
+        final ArrayWorker worker = new ArrayWorker(res.length) {
+                @Override
+                public boolean divide() {
+                    return res.length > 1;
+                }
+                @Override
+                public void work(final int start, final int end) {
+                    for (int i = start; i < end; i++) {
+                        res[i] = encrypt(label, pPGroups[i], els[i],
+                                         rs[i], ss[i], tabs);
+                    }
+                }
+            };
+        worker.work();
+
+        return res;
+    }
+
     @Override
     public int hashCode() {
         return Functions.hashCode(this);
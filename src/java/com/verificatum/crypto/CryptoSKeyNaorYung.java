@@ -32,6 +32,7 @@ import com.verificatum.arithm.LargeInteger;
 import com.verificatum.arithm.PFieldElement;
 import com.verificatum.arithm.PGroup;
 import com.verificatum.arithm.PGroupElement;
+import com.verificatum.arithm.PGroupFixExp;
 import com.verificatum.arithm.PPGroup;
 import com.verificatum.arithm.PPGroupElement;
 import com.verificatum.arithm.PRing;
@@ -40,9 +41,11 @@ import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeContainer;
 import com.verificatum.eio.ByteTreeReader;
+import com.verificatum.eio.ByteTreeWriterF;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.Marshalizer;
 import com.verificatum.ui.Util;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Functions;
 
 /**
@@ -52,6 +55,12 @@ import com.verificatum.util.Functions;
  */
 public final class CryptoSKeyNaorYung implements CryptoSKey {
 
+    /**
+     * Number of ciphertexts read, decrypted, and written as a unit
+     * by the bulk decryption.
+     */
+    static final int BATCH_SIZE = 1000;
+
     /**
      * Underlying group.
      */
@@ -202,10 +211,20 @@ public final class CryptoSKeyNaorYung implements CryptoSKey {
         }
     }
 
-    // Documented in CryptoSKey.java
-
-    @Override
-    public byte[] decrypt(final byte[] label, final byte[] ciphertext) {
+    /**
+     * Decrypts the given ciphertext using the given fixed-base
+     * exponentiation tables of the basis elements if they are not
+     * <code>null</code>.
+     *
+     * @param label Label used when decrypting.
+     * @param ciphertext Ciphertext to be decrypted.
+     * @param tabs Tables of the basis elements or <code>null</code>.
+     * @return Plaintext or <code>null</code> if the ciphertext is
+     * invalid.
+     */
+    private byte[] decrypt(final byte[] label,
+                           final byte[] ciphertext,
+                           final PGroupFixExp[] tabs) {
 
         if (ciphertext.length == 0) {
             return new byte[0];
@@ -242,17 +261,19 @@ public final class CryptoSKeyNaorYung implements CryptoSKey {
                                       a2.toByteTree());
 
             final RandomOracle ro = new RandomOracle(roh, secpro);
-            final byte[] challenge = ro.hash(data.toByteArray());
+            final byte[] challenge = ro.hash(data);
             final PFieldElement pFieldChallenge =
                 pPRing.getPField().
                 toElement(LargeInteger.toPositive(challenge));
 
-            final PGroupElement pg1 = pPGroup.product(g1);
-            final PGroupElement pg2 = pPGroup.product(g2);
+            final PGroupFixExp tab1 = tabs == null ? null : tabs[0];
+            final PGroupFixExp tab2 = tabs == null ? null : tabs[1];
 
             // Check proof.
-            if (u1.exp(pFieldChallenge).mul(a1).equals(pg1.exp(d))
-                && u2.exp(pFieldChallenge).mul(a2).equals(pg2.exp(d))) {
+            if (u1.exp(pFieldChallenge).mul(a1)
+                .equals(CryptoPKeyNaorYung.exp(pPGroup, g1, tab1, d))
+                && u2.exp(pFieldChallenge).mul(a2)
+                .equals(CryptoPKeyNaorYung.exp(pPGroup, g2, tab2, d))) {
 
                 final PPGroupElement mel =
                     (PPGroupElement) e.mul(u1.exp(z.neg()));
@@ -271,6 +292,131 @@ public final class CryptoSKeyNaorYung implements CryptoSKey {
         }
     }
 
+    // Documented in CryptoSKey.java
+
+    @Override
+    public byte[] decrypt(final byte[] label, final byte[] ciphertext) {
+        return decrypt(label, ciphertext, null);
+    }
+
+    /**
+     * Decrypts all ciphertexts in the given source and writes the
+     * plaintexts in order to the given destination. Each ciphertext
+     * is read from a leaf as output by {@link #decrypt(byte[],
+     * byte[])}, and its plaintext is written as a leaf. An invalid
+     * ciphertext, including a child that is not a leaf, gives an
+     * empty leaf in its place. The ciphertexts
+     * are processed in batches that are decrypted in parallel using
+     * shared fixed-base exponentiation tables of the basis elements.
+     *
+     * @param label Label used when decrypting.
+     * @param ciphertexts Source of ciphertexts.
+     * @param plaintexts Destination of plaintexts.
+     * @return Array indicating which ciphertexts are valid.
+     *
+     * @throws EIOException If the ciphertexts can not be read or the
+     * plaintexts can not be written.
+     */
+    public boolean[] decrypt(final byte[] label,
+                             final ByteTreeReader ciphertexts,
+                             final ByteTreeWriterF plaintexts)
+        throws EIOException {
+
+        // Each ciphertext gives at least one exponentiation of each
+        // basis.
+        final int size = ciphertexts.getRemaining();
+        final PGroupFixExp[] tabs =
+            CryptoPKeyNaorYung.fixExpTabs(new int[] {size, size}, g1, g2);
+        try {
+            return decrypt(label, ciphertexts, plaintexts, tabs);
+        } finally {
+            CryptoPKeyNaorYung.free(tabs);
+        }
+    }
+
+    /**
+     * Reads a ciphertext from the given reader. A child that is not a
+     * leaf, or a leaf that does not fit in memory, is skipped and
+     * gives <code>null</code>, i.e., it is treated as an invalid
+     * ciphertext like any other malformed ciphertext.
+     *
+     * @param btr Reader of a ciphertext.
+     * @return Ciphertext or <code>null</code>.
+     *
+     * @throws EIOException If the ciphertext can not be read.
+     */
+    private static byte[] readCiphertext(final ByteTreeReader btr)
+        throws EIOException {
+        if (btr.isLeaf() && btr.getLongRemaining() <= Integer.MAX_VALUE) {
+            return btr.read();
+        } else {
+            btr.skip();
+            return null;
+        }
+    }
+
+    /**
+     * Decrypts all ciphertexts in the given source using the given
+     * tables and writes the plaintexts in order to the given
+     * destination.
+     *
+     * @param label Label used when decrypting.
+     * @param ciphertexts Source of ciphertexts.
+     * @param plaintexts Destination of plaintexts.
+     * @param tabs Tables of the basis elements or <code>null</code>.
+     * @return Array indicating which ciphertexts are valid.
+     *
+     * @throws EIOException If the ciphertexts can not be read or the
+     * plaintexts can not be written.
+     */
+    private boolean[] decrypt(final byte[] label,
+                              final ByteTreeReader ciphertexts,
+                              final ByteTreeWriterF plaintexts,
+                              final PGroupFixExp[] tabs)
+        throws EIOException {
+
+        final boolean[] valid = new boolean[ciphertexts.getRemaining()];
+        int index = 0;
+        while (ciphertexts.getRemaining() > 0) {
+
+            final int size = Math.min(BATCH_SIZE, ciphertexts.getRemaining());
+
+            final byte[][] batch = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                batch[i] = readCiphertext(ciphertexts.getNextChild());
+            }
+
+            final byte[][] res = new byte[size][];
+
+            final ArrayWorker worker = new ArrayWorker(size) {
+                    @Override
+                    public boolean divide() {
+                        return size > 1;
+                    }
+                    @Override
+                    public void work(final int start, final int end) {
+                        for (int i = start; i < end; i++) {
+                            if (batch[i] != null) {
+                                res[i] = decrypt(label, batch[i], tabs);
+                            }
+                        }
+                    }
+                };
+            worker.work();
+
+            for (int i = 0; i < size; i++) {
+                valid[index] = res[i] != null;
+                if (valid[index]) {
+                    plaintexts.write(new ByteTree(res[i]));
+                } else {
+                    plaintexts.write(new ByteTree());
+                }
+                index++;
+            }
+        }
+        return valid;
+    }
+
     // Documented in Marshalizable.java
 
     @Override
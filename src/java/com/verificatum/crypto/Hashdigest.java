@@ -26,8 +26,13 @@
 
 package com.verificatum.crypto;
 
+import java.nio.ByteBuffer;
+
 /**
- * Interface for a digest of a collision-free hash function.
+ * Interface for a digest of a collision-free hash function. The
+ * methods that process buffers and write digests to given arrays have
+ * default implementations in terms of the other methods, so
+ * implementations only need to override them if they can do better.
  *
  * @author Douglas Wikstrom
  */
@@ -49,10 +54,48 @@ public interface Hashdigest {
      */
     void update(byte[] data, int offset, int length);
 
+    /**
+     * Update the digest with the remaining bytes of the buffer. The
+     * position of the buffer is advanced to its limit. The default
+     * implementation copies the bytes of a direct buffer to the heap
+     * in small pieces.
+     *
+     * @param buffer Data to be hashed.
+     */
+    default void update(final ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(),
+                   buffer.arrayOffset() + buffer.position(),
+                   buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            final byte[] tmp = new byte[Math.min(buffer.remaining(), 4096)];
+            while (buffer.hasRemaining()) {
+                final int len = Math.min(tmp.length, buffer.remaining());
+                buffer.get(tmp, 0, len);
+                update(tmp, 0, len);
+            }
+        }
+    }
+
     /**
      * Finalizes and returns the digest.
      *
      * @return Digest.
      */
     byte[] digest();
+
+    /**
+     * Finalizes the digest and writes it to the given array. The
+     * default implementation copies the output of {@link #digest()}.
+     *
+     * @param output Destination of digest.
+     * @param offset Index where to start writing.
+     * @return Number of bytes written.
+     */
+    default int digest(final byte[] output, final int offset) {
+        final byte[] res = digest();
+        System.arraycopy(res, 0, output, offset, res.length);
+        return res.length;
+    }
 }
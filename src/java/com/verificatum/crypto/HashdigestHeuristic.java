@@ -26,6 +26,8 @@
 
 package com.verificatum.crypto;
 
+import java.nio.ByteBuffer;
+import java.security.DigestException;
 import java.security.MessageDigest;
 
 /**
@@ -63,8 +65,22 @@ public final class HashdigestHeuristic implements Hashdigest {
         md.update(data, offset, length);
     }
 
+    @Override
+    public void update(final ByteBuffer buffer) {
+        md.update(buffer);
+    }
+
     @Override
     public byte[] digest() {
         return md.digest();
     }
+
+    @Override
+    public int digest(final byte[] output, final int offset) {
+        try {
+            return md.digest(output, offset, md.getDigestLength());
+        } catch (final DigestException de) {
+            throw new CryptoError("Unable to write digest!", de);
+        }
+    }
 }
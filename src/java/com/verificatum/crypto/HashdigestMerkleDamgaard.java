@@ -26,6 +26,7 @@
 
 package com.verificatum.crypto;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -99,60 +100,60 @@ public final class HashdigestMerkleDamgaard implements Hashdigest {
 
     // Documented in Hashdigest.java
 
+    /**
+     * Processes the temporary block if it is filled, i.e., hashes
+     * it and copies the result back to the beginning of the block.
+     */
+    private void processIfFull() {
+        if (tempIndex == temp.length) {
+            System.arraycopy(hffl.hash(temp), 0, temp, inputByteOffset,
+                             outputByteLength);
+            tempIndex = outputByteLength + inputByteOffset;
+        }
+    }
+
     @Override
     public void update(final byte[]... data) {
+        for (int i = 0; i < data.length; i++) {
+            update(data[i], 0, data[i].length);
+        }
+    }
+
+    @Override
+    public void update(final byte[] data, final int offset, final int length) {
 
-        int i = 0; // Indexes the input arrays.
-        int dataIndex = 0; // Index within the current input array.
+        int dataIndex = offset;
+        final int dataEnd = offset + length;
 
-        for (;;) {
+        while (dataIndex < dataEnd) {
 
-            // Copy as much as possible from the current input array.
-            final int len = Math.min(inputByteLength - tempIndex, // Space
-                                     // left
-                                     data[i].length - dataIndex); // Data left
-            System.arraycopy(data[i], dataIndex, temp, tempIndex, len);
+            // Copy as much as possible from the input array.
+            final int len = Math.min(inputByteLength - tempIndex,
+                                     dataEnd - dataIndex);
+            System.arraycopy(data, dataIndex, temp, tempIndex, len);
 
-            // Update the total length
             totalLength += len;
-
-            // Update the index in the current input array.
             dataIndex += len;
-
-            // Update the index in the temporary array.
             tempIndex += len;
 
-            // If the temporary block is filled, then we hash it,
-            // and copy the result back to the beginning of the
-            // temporary block.
-            if (tempIndex == temp.length) {
-                System.arraycopy(hffl.hash(temp), 0, temp, inputByteOffset,
-                                 outputByteLength);
-                tempIndex = outputByteLength + inputByteOffset;
-            }
-
-            // If there is no data left to process in the current
-            // data block, then we:
-            if (dataIndex == data[i].length) {
-
-                // Check if there are more input blocks to
-                // process, in which case we move on to the next
-                // input block.
-                if (i < data.length - 1) {
-                    dataIndex = 0;
-                    i++;
-
-                    // or if there are no more blocks, then return.
-                } else {
-                    return;
-                }
-            }
+            processIfFull();
         }
     }
 
     @Override
-    public void update(final byte[] data, final int offset, final int length) {
-        update(Arrays.copyOfRange(data, offset, offset + length));
+    public void update(final ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+
+            // Copy as much as possible from the buffer.
+            final int len = Math.min(inputByteLength - tempIndex,
+                                     buffer.remaining());
+            buffer.get(temp, tempIndex, len);
+
+            totalLength += len;
+            tempIndex += len;
+
+            processIfFull();
+        }
     }
 
     @Override
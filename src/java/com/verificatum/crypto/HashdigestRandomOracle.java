@@ -26,6 +26,8 @@
 
 package com.verificatum.crypto;
 
+import java.nio.ByteBuffer;
+
 import com.verificatum.eio.ExtIO;
 
 /**
@@ -84,8 +86,20 @@ public final class HashdigestRandomOracle implements Hashdigest {
         hd.update(data, offset, length);
     }
 
+    @Override
+    public void update(final ByteBuffer buffer) {
+        hd.update(buffer);
+    }
+
     @Override
     public byte[] digest() {
+        final byte[] res = new byte[(outputLength + 7) / 8];
+        digest(res, 0);
+        return res;
+    }
+
+    @Override
+    public int digest(final byte[] output, final int offset) {
 
         final PRGHeuristic prg = new PRGHeuristic(hashfunction);
 
@@ -95,12 +109,14 @@ public final class HashdigestRandomOracle implements Hashdigest {
 
         final int len = (outputLength + 7) / 8;
 
-        final byte[] res = prg.getBytes(len);
+        // The output is written directly to the destination.
+        prg.getBytes(0, output, offset, len);
 
         if (outputLength % 8 != 0) {
-            res[0] = (byte) (res[0] & (0xFF >>> (8 - outputLength % 8)));
+            output[offset] =
+                (byte) (output[offset] & (0xFF >>> (8 - outputLength % 8)));
         }
 
-        return res;
+        return len;
     }
 }
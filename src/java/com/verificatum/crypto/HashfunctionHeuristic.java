@@ -60,6 +60,19 @@ public final class HashfunctionHeuristic implements Hashfunction {
      */
     int outputLength;
 
+    /**
+     * Message digest of each thread. It is reset before each use and
+     * never leaves this instance, so at most one computation uses it
+     * at any time. This avoids looking up the provider on each call.
+     */
+    private final ThreadLocal<MessageDigest> threadDigest =
+        new ThreadLocal<MessageDigest>() {
+            @Override
+            protected MessageDigest initialValue() {
+                return newMessageDigest();
+            }
+        };
+
     /**
      * Constructs an instance corresponding to the input.
      *
@@ -107,11 +120,14 @@ public final class HashfunctionHeuristic implements Hashfunction {
 
     // Documented in Hashfunction.java
 
-    @Override
-    public Hashdigest getDigest() {
+    /**
+     * Returns a new message digest of the algorithm of this instance.
+     *
+     * @return Message digest.
+     */
+    private MessageDigest newMessageDigest() {
         try {
-            final MessageDigest innerMd = MessageDigest.getInstance(algorithm);
-            return new HashdigestHeuristic(innerMd);
+            return MessageDigest.getInstance(algorithm);
 
         // UNCOVERABLE (Verified above.)
         } catch (final NoSuchAlgorithmException nsae) {
@@ -119,21 +135,40 @@ public final class HashfunctionHeuristic implements Hashfunction {
         }
     }
 
-    // Apparently Sun did not make a thread safe implementation of
-    // SHA-2. Thus, we need to add some synchronization here.
+    /**
+     * Returns the message digest of the current thread in its
+     * initial state.
+     *
+     * @return Message digest of the current thread.
+     */
+    private MessageDigest threadDigest() {
+        final MessageDigest md = threadDigest.get();
+        md.reset();
+        return md;
+    }
+
     @Override
-    public byte[] hash(final byte[]... datas) {
+    public Hashdigest getDigest() {
+
+        // The digest is handed out, so we return a copy of the
+        // digest of the current thread.
         try {
-            final MessageDigest md = MessageDigest.getInstance(algorithm);
-            for (int i = 0; i < datas.length; i++) {
-                md.update(datas[i]);
-            }
-            return md.digest();
+            return new HashdigestHeuristic((MessageDigest)
+                                           threadDigest().clone());
+        } catch (final CloneNotSupportedException cnse) {
+            return new HashdigestHeuristic(newMessageDigest());
+        }
+    }
 
-        // UNCOVERABLE (Verified above.)
-        } catch (final NoSuchAlgorithmException nsae) {
-            throw new CryptoError("Unsupported algorithm!", nsae);
+    // Apparently Sun did not make a thread safe implementation of
+    // SHA-2. Thus, each thread uses its own message digest.
+    @Override
+    public byte[] hash(final byte[]... datas) {
+        final MessageDigest md = threadDigest();
+        for (int i = 0; i < datas.length; i++) {
+            md.update(datas[i]);
         }
+        return md.digest();
     }
 
     @Override
@@ -34,12 +34,14 @@ import com.verificatum.arithm.PField;
 import com.verificatum.arithm.PFieldElement;
 import com.verificatum.arithm.PGroup;
 import com.verificatum.arithm.PGroupElement;
+import com.verificatum.arithm.PGroupSimExpTab;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeContainer;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.Marshalizer;
 import com.verificatum.ui.Util;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Functions;
 
 
@@ -79,6 +81,12 @@ public final class HashfunctionPedersen implements HashfunctionFixedLength {
      */
     PGroupElement[] generators;
 
+    /**
+     * Tables of pre-computed products of the generators. This is
+     * computed when needed by {@link #getTabs()}.
+     */
+    private PGroupSimExpTab[] tabs;
+
     /**
      * Constructs an instance from the given representation.
      *
@@ -174,6 +182,37 @@ public final class HashfunctionPedersen implements HashfunctionFixedLength {
         return sb.toString();
     }
 
+    /**
+     * Returns tables of pre-computed products of the generators,
+     * which are computed the first time this method is called and
+     * then reused by all invocations of the hash function. Since the
+     * cost of the tables is amortized, each table covers up to
+     * {@link #MAX_WIDTH} generators, which is wider than what is
+     * optimal for a single power-product.
+     *
+     * @return Tables of pre-computed products of the generators.
+     */
+    private synchronized PGroupSimExpTab[] getTabs() {
+        if (tabs == null) {
+
+            final PGroup pGroup = generators[0].getPGroup();
+            final int numberOfTabs =
+                (generators.length + MAX_WIDTH - 1) / MAX_WIDTH;
+
+            final PGroupSimExpTab[] newTabs =
+                new PGroupSimExpTab[numberOfTabs];
+            int offset = 0;
+            for (int i = 0; i < numberOfTabs; i++) {
+                final int width =
+                    Math.min(MAX_WIDTH, generators.length - offset);
+                newTabs[i] = pGroup.simExpTab(generators, offset, width);
+                offset += width;
+            }
+            tabs = newTabs;
+        }
+        return tabs;
+    }
+
     // Documented in FixedLengthHashfunction.java.
 
     @Override
@@ -182,18 +221,58 @@ public final class HashfunctionPedersen implements HashfunctionFixedLength {
             throw new CryptoError("Input has wrong length!");
         }
 
-        final PFieldElement[] exponents = new PFieldElement[generators.length];
+        final LargeInteger[] exponents = new LargeInteger[generators.length];
         final PField pField = generators[0].getPGroup().getPRing().getPField();
         int offset = 0;
         for (int i = 0; i < exponents.length; i++) {
             final LargeInteger li =
                 LargeInteger.toPositive(input, offset, expLength);
-            exponents[i] = pField.toElement(li);
+            final PFieldElement exponent = pField.toElement(li);
+            exponents[i] = exponent.toLargeInteger();
             offset += expLength;
         }
 
-        return generators[0].getPGroup().expProd(generators, exponents)
-            .toByteArray();
+        final PGroupSimExpTab[] theTabs = getTabs();
+        final int bitLength = 8 * expLength;
+
+        PGroupElement res = theTabs[0].expProd(exponents, 0, bitLength);
+        offset = theTabs[0].getWidth();
+        for (int i = 1; i < theTabs.length; i++) {
+            res = res.mul(theTabs[i].expProd(exponents, offset, bitLength));
+            offset += theTabs[i].getWidth();
+        }
+        return res.toByteArray();
+    }
+
+    /**
+     * Evaluates the hash function on each of the inputs. The outputs
+     * are computed in parallel.
+     *
+     * @param inputs Inputs to the hash function.
+     * @return Outputs of the hash function.
+     */
+    public byte[][] hash(final byte[][] inputs) {
+
+        // Make sure that the tables are computed before we start.
+        getTabs();
+
+        final byte[][] outputs = new byte[inputs.length][];
+
+        final ArrayWorker worker = new ArrayWorker(inputs.length) {
+                @Override
+                public boolean divide() {
+                    return inputs.length > 1;
+                }
+                @Override
+                public void work(final int start, final int end) {
+                    for (int i = start; i < end; i++) {
+                        outputs[i] = hash(inputs[i]);
+                    }
+                }
+            };
+        worker.work();
+
+        return outputs;
     }
 
     @Override
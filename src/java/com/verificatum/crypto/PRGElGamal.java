@@ -26,9 +26,7 @@
 
 package com.verificatum.crypto;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.verificatum.arithm.ArithmException;
 import com.verificatum.arithm.ArithmFormatException;
@@ -38,6 +36,7 @@ import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.EIOException;
 import com.verificatum.ui.Util;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Functions;
 
 
@@ -102,6 +101,11 @@ public final class PRGElGamal extends PRG {
      */
     public static final int DEFAULT_STATDIST = 100;
 
+    /**
+     * Width of the tables used for fixed base exponentiation.
+     */
+    static final int FIX_MODPOW_WIDTH = 15;
+
     /**
      * Safe prime modulus.
      */
@@ -120,14 +124,21 @@ public final class PRGElGamal extends PRG {
     LargeIntegerFixModPowTab[] g;
 
     /**
-     * Buffer containing randomness generated so far that may be used
-     * by applications.
+     * Buffer containing the randomness generated in the last
+     * iteration of the generator. It is filled completely by each
+     * iteration and then consumed from the beginning.
+     */
+    byte[] buffer;
+
+    /**
+     * Index of the first unused byte in the buffer.
      */
-    List<byte[]> buffer;
+    int bufferPos;
 
     /**
      * Pseudo random exponent used in the next iteration of the random
-     * generator.
+     * generator. This is derived from the seed already when the seed
+     * is set.
      */
     LargeInteger r;
 
@@ -286,13 +297,12 @@ public final class PRGElGamal extends PRG {
                 throw new CryptoError("Seed is too short!");
             }
 
-            // Create buffer.
-            this.buffer = new ArrayList<byte[]>();
+            // Create an empty buffer.
+            this.buffer = new byte[(g.length - 1) * blockLength()];
+            this.bufferPos = buffer.length;
 
             free();
 
-            final int fixModPowWidth = 15;
-
             // If we have width 2, then we can use the seed directly.
             if (g.length == 2) {
 
@@ -318,7 +328,7 @@ public final class PRGElGamal extends PRG {
                     this.g[i] =
                         new LargeIntegerFixModPowTab(gi,
                                                      modulus.bitLength(),
-                                                     fixModPowWidth, modulus);
+                                                     FIX_MODPOW_WIDTH, modulus);
                     offset += len;
                 }
 
@@ -328,7 +338,8 @@ public final class PRGElGamal extends PRG {
                 // seed we need due to our greater width.
             } else {
 
-                final PRG prg = new PRGElGamal(modulus, 2, statDist);
+                final PRGElGamal prg = new PRGElGamal(modulus, 2, statDist);
+
                 prg.setSeed(seedBytes);
 
                 // Extract random exponent.
@@ -336,20 +347,42 @@ public final class PRGElGamal extends PRG {
                     new LargeInteger(groupOrder.bitLength() + statDist, prg);
 
                 // Extract random generators.
+                final LargeInteger[] gis = new LargeInteger[g.length];
                 for (int i = 0; i < g.length; i++) {
-                    LargeInteger gi = new LargeInteger(modulus.bitLength()
-                                                       + statDist, prg);
-                    gi = gi.modPow(LargeInteger.TWO, modulus);
-                    this.g[i] =
-                        new LargeIntegerFixModPowTab(gi,
-                                                     modulus.bitLength(),
-                                                     fixModPowWidth,
-                                                     modulus);
+                    gis[i] = new LargeInteger(modulus.bitLength()
+                                              + statDist, prg);
                 }
 
+                // Compute the tables in parallel.
+                final ArrayWorker worker = new ArrayWorker(g.length) {
+                        @Override
+                        public boolean divide() {
+                            return true;
+                        }
+                        @Override
+                        public void work(final int start, final int end) {
+                            for (int i = start; i < end; i++) {
+                                final LargeInteger gi =
+                                    gis[i].modPow(LargeInteger.TWO, modulus);
+                                g[i] = new LargeIntegerFixModPowTab(
+                                    gi,
+                                    modulus.bitLength(),
+                                    FIX_MODPOW_WIDTH,
+                                    modulus);
+                            }
+                        }
+                    };
+                worker.work();
+
                 // Explicit deallocation of potential native table.
-                ((PRGElGamal) prg).free();
+                prg.free();
             }
+
+            // Derive the exponent of the first iteration. This allows
+            // each iteration to compute all powers of a common
+            // exponent, including the power that gives the exponent
+            // of the next iteration.
+            this.r = toGroupOrder(g[0].modPow(r));
         }
     }
 
@@ -366,6 +399,31 @@ public final class PRGElGamal extends PRG {
         }
     }
 
+    /**
+     * Returns the number of bytes derived from each power in an
+     * iteration of the generator.
+     *
+     * @return Number of bytes derived from each power.
+     */
+    private int blockLength() {
+        return modulus.bitLength() / 8 - (statDist + 7) / 8;
+    }
+
+    /**
+     * Maps a square modulo the safe prime modulus to an integer
+     * modulo the group order.
+     *
+     * @param li Square modulo the safe prime modulus.
+     * @return Integer modulo the group order.
+     */
+    private LargeInteger toGroupOrder(final LargeInteger li) {
+        if (li.compareTo(groupOrder) > 0) {
+            return modulus.sub(li).mod(groupOrder);
+        } else {
+            return li;
+        }
+    }
+
     /**
      * Fills the given array with pseudo-random bytes.
      *
@@ -379,108 +437,90 @@ public final class PRGElGamal extends PRG {
                 throw new CryptoError("The PRG is not seeded yet!");
             }
 
-            int length = array.length;
             int index = 0;
 
-            for (;;) {
+            while (index < array.length) {
 
                 // Buffer contains nothing.
-                if (buffer.isEmpty()) {
+                if (bufferPos == buffer.length) {
                     iter();
-
-                // Buffer contains data.
-                } else {
-
-                    // Get a byte[] from our buffer.
-                    final byte[] partial = buffer.remove(0);
-
-                    // If partial contains more bytes than needed, we
-                    // put the remaining bytes back in the buffer.
-                    if (length < partial.length) {
-
-                        System.arraycopy(partial, 0, array, index, length);
-                        buffer.add(0, Arrays.copyOfRange(partial, length,
-                                                         partial.length));
-                        return;
-
-                    // Otherwise we copy the contents of partial into
-                    // our destination array and update the index and
-                    // length.
-                    } else {
-
-                        System.arraycopy(partial, 0,
-                                         array, index,
-                                         partial.length);
-                        index += partial.length;
-                        length -= partial.length;
-                        if (length == 0) {
-                            return;
-                        }
-                    }
                 }
+
+                // Copy as much as we need or as much as is available.
+                final int len = Math.min(array.length - index,
+                                         buffer.length - bufferPos);
+                System.arraycopy(buffer, bufferPos, array, index, len);
+                bufferPos += len;
+                index += len;
             }
         }
     }
 
     /**
      * Produces some more bits to the internal buffer. The randomness
-     * to make another iteration is stored separately.
+     * to make another iteration is stored separately. All powers of
+     * the current exponent are computed in parallel.
      */
     protected void iter() {
 
         synchronized (this) {
 
-            for (int i = 0; i < g.length; i++) {
-
-                // Exponentiation by r gives a pseudo-random square
-                // modulo the safe prime modulus.
-                LargeInteger li = g[i].modPow(r);
-
-                // We map the square to an integer modulo the group order.
-                if (li.compareTo(groupOrder) > 0) {
-                    li = modulus.sub(li).mod(groupOrder);
-                }
-
-                // Make sure we can iterate again at a later time.
-                if (i == 0) {
-
-                    r = li;
+            final LargeInteger exponent = r;
+            final LargeInteger[] powers = new LargeInteger[g.length];
 
-                } else {
-
-                    // The result is a pseudorandom integer between 0
-                    // and groupOrder-1. To turn it into a
-                    // pseudo-random array of bytes, the statDist most
-                    // significant bits are ignored.
-                    final byte[] liBytes = li.toByteArray();
-
-                    final int origSkip = (statDist + 7) / 8;
-
-                    // Space for storing the derived pseudo-random bits.
-                    final byte[] bufferBytes =
-                        new byte[modulus.bitLength() / 8 - origSkip];
-
-                    final int liOffset = liBytes.length - bufferBytes.length;
-
-                    // To understand this code, note that liBytes may be
-                    // shorter than bufferBytes.
-                    System.arraycopy(liBytes,
-                                     Math.max(liOffset, 0), bufferBytes,
-                                     Math.max(0, -liOffset),
-                                     Math.min(bufferBytes.length,
-                                              liBytes.length));
-
-                    // If the most significant bits in li happens to
-                    // be zero, then we need to set them explicitly,
-                    // since when an integer is turned into a byte[]
-                    // these zeros are eliminated.
-                    Arrays.fill(bufferBytes,
-                                0, Math.max(0, -liOffset),
-                                (byte) 0);
-
-                    buffer.add(bufferBytes);
-                }
+            // Exponentiation by the exponent gives pseudo-random
+            // squares modulo the safe prime modulus, which we map to
+            // integers modulo the group order.
+            final ArrayWorker worker = new ArrayWorker(g.length) {
+                    @Override
+                    public boolean divide() {
+                        return true;
+                    }
+                    @Override
+                    public void work(final int start, final int end) {
+                        for (int i = start; i < end; i++) {
+                            powers[i] = toGroupOrder(g[i].modPow(exponent));
+                        }
+                    }
+                };
+            worker.work();
+
+            // Make sure we can iterate again at a later time.
+            r = powers[0];
+
+            final int blockLength = blockLength();
+            for (int i = 1; i < g.length; i++) {
+
+                // The result is a pseudorandom integer between 0 and
+                // groupOrder-1. To turn it into a pseudo-random array
+                // of bytes, the statDist most significant bits are
+                // ignored.
+                final byte[] liBytes = powers[i].toByteArray();
+
+                // Position of the derived pseudo-random bits in the
+                // buffer.
+                final int bufferOffset = (i - 1) * blockLength;
+
+                final int liOffset = liBytes.length - blockLength;
+
+                // To understand this code, note that liBytes may be
+                // shorter than the block.
+                System.arraycopy(liBytes,
+                                 Math.max(liOffset, 0),
+                                 buffer,
+                                 bufferOffset + Math.max(0, -liOffset),
+                                 Math.min(blockLength, liBytes.length));
+
+                // If the most significant bits in li happens to be
+                // zero, then we need to set them explicitly, since
+                // when an integer is turned into a byte[] these zeros
+                // are eliminated.
+                Arrays.fill(buffer,
+                            bufferOffset,
+                            bufferOffset + Math.max(0, -liOffset),
+                            (byte) 0);
             }
+            bufferPos = 0;
         }
     }
 
@@ -33,6 +33,7 @@ import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.Marshalizer;
 import com.verificatum.ui.Util;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Functions;
 
 
@@ -41,10 +42,24 @@ import com.verificatum.util.Functions;
  * concatenated with a counter, i.e., a natural construction of a PRG
  * from a pseudo-random function.
  *
+ * <p>
+ *
+ * The output is a sequence of blocks, where the <i>i</i>th block is
+ * the digest of the seed concatenated with <i>i</i> as a 4-byte
+ * integer. Thus, any block can be computed directly from its index
+ * (see {@link #getBytes(long,byte[])}), and large requests are
+ * computed in parallel on all cores without changing the output.
+ *
  * @author Douglas Wikstrom
  */
 public final class PRGHeuristic extends PRG {
 
+    /**
+     * Minimal number of blocks in a request for the blocks to be
+     * computed in parallel.
+     */
+    static final int PARALLEL_BLOCKS = 1024;
+
     /**
      * Underlying hashfunction.
      */
@@ -147,6 +162,119 @@ public final class PRGHeuristic extends PRG {
         }
     }
 
+    /**
+     * Returns the number of bytes in each block of output.
+     *
+     * @return Number of bytes in each block of output.
+     */
+    public int getBlockLength() {
+        return (hashfunction.getOutputLength() + 7) / 8;
+    }
+
+    /**
+     * Writes consecutive blocks of output to the given part of the
+     * array. The last block is truncated if the length is not a
+     * multiple of the block length. The blocks are computed in
+     * parallel if there are sufficiently many of them.
+     *
+     * @param seedInput Seed followed by room for the counter.
+     * @param firstBlock Index of the first block.
+     * @param array Destination of output.
+     * @param offset Index of first byte to write.
+     * @param length Number of bytes to write.
+     */
+    private void generate(final byte[] seedInput,
+                          final long firstBlock,
+                          final byte[] array,
+                          final int offset,
+                          final int length) {
+
+        final int blockLength = getBlockLength();
+        final int blocks = (length + blockLength - 1) / blockLength;
+        final int counterIndex = minNoSeedBytes();
+
+        final ArrayWorker worker = new ArrayWorker(blocks) {
+                @Override
+                public boolean divide() {
+                    return blocks >= PARALLEL_BLOCKS;
+                }
+                @Override
+                public void work(final int start, final int end) {
+
+                    final byte[] localInput =
+                        Arrays.copyOf(seedInput, seedInput.length);
+
+                    for (int j = start; j < end; j++) {
+
+                        // Plug in the counter of the block.
+                        final int blockCounter = (int) (firstBlock + j);
+                        int i = counterIndex;
+                        localInput[i++] = (byte) (blockCounter >>> 24 & 0xff);
+                        localInput[i++] = (byte) (blockCounter >>> 16 & 0xff);
+                        localInput[i++] = (byte) (blockCounter >>> 8 & 0xff);
+                        localInput[i++] = (byte) (blockCounter & 0xff);
+
+                        final byte[] block = hashfunction.hash(localInput);
+
+                        final int blockOffset = j * blockLength;
+                        final int len =
+                            Math.min(blockLength, length - blockOffset);
+                        System.arraycopy(block, 0,
+                                         array, offset + blockOffset,
+                                         len);
+                    }
+                }
+            };
+        worker.work();
+    }
+
+    /**
+     * Fills the given array with output of the generator starting at
+     * the beginning of the block with the given index, i.e., at byte
+     * position <code>blockOffset * getBlockLength()</code> of the
+     * stream of output of the seeded generator. This does not change
+     * the state of the generator and is consistent with {@link
+     * #getBytes(byte[])}. Only the 32 least significant bits of the
+     * block index are used, since the counter wraps around.
+     *
+     * @param blockOffset Index of the first block.
+     * @param dst Destination of output.
+     *
+     * @throws CryptoError If the generator is not seeded.
+     */
+    public void getBytes(final long blockOffset, final byte[] dst)
+        throws CryptoError {
+        getBytes(blockOffset, dst, 0, dst.length);
+    }
+
+    /**
+     * Writes output of the generator to the given part of the array
+     * starting at the beginning of the block with the given index,
+     * see {@link #getBytes(long,byte[])}.
+     *
+     * @param blockOffset Index of the first block.
+     * @param dst Destination of output.
+     * @param offset Index of first byte to write.
+     * @param length Number of bytes to write.
+     *
+     * @throws CryptoError If the generator is not seeded.
+     */
+    public void getBytes(final long blockOffset,
+                         final byte[] dst,
+                         final int offset,
+                         final int length)
+        throws CryptoError {
+
+        final byte[] seedInput;
+        synchronized (this) {
+            if (data == null) {
+                throw new CryptoError("The PRG is not seeded yet!");
+            }
+            seedInput = Arrays.copyOf(input, input.length);
+        }
+        generate(seedInput, blockOffset, dst, offset, length);
+    }
+
     // Documented in com.verificatum.crypto.RandomSource.java.
 
     @Override
@@ -164,6 +292,9 @@ public final class PRGHeuristic extends PRG {
                 final int len =
                     Math.min(array.length - index, data.length - datapos);
 
+                final int fullBlocks =
+                    (array.length - index) / getBlockLength();
+
                 if (len > 0) {
 
                     // Copy available output bytes.
@@ -171,6 +302,15 @@ public final class PRGHeuristic extends PRG {
                     datapos += len;
                     index += len;
 
+                } else if (fullBlocks >= PARALLEL_BLOCKS) {
+
+                    // Compute many complete blocks in parallel.
+                    final int parallelLength = fullBlocks * getBlockLength();
+                    generate(input, counter, array, index, parallelLength);
+
+                    counter += fullBlocks;
+                    index += parallelLength;
+
                 } else {
 
                     // Plug in the current counter.
@@ -26,11 +26,13 @@
 
 package com.verificatum.crypto;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeReader;
@@ -58,19 +60,96 @@ import com.verificatum.util.Functions;
  * since there is no way to release the underlying file descriptor
  * with certainty.
  *
+ * <p>
+ *
+ * The device is read in pieces of at least {@link #PIECE_SIZE} bytes
+ * and at most {@link #MAX_PIECE_SIZE} bytes, where larger pieces are
+ * only read to serve large requests. Requesting threads reserve
+ * disjoint ranges of the current piece without locking, so no bytes
+ * are ever output twice, and a thread that exhausts the current
+ * piece reads the next piece itself. Thus, the device is only read
+ * when bytes are requested, and no threads are started.
+ *
  * @author Douglas Wikstrom
  */
 public final class RandomDevice extends RandomSource {
 
+    /**
+     * Minimal number of bytes requested from the device at a time.
+     */
+    static final int PIECE_SIZE = 1 << 12;
+
+    /**
+     * Maximal number of bytes requested from the device at a time.
+     */
+    static final int MAX_PIECE_SIZE = 1 << 16;
+
     /**
      * Random device from where we read random bits.
      */
     private File file;
 
     /**
-     * Stream from the random device.
+     * Stream from the random device. This is only read while holding
+     * the lock of {@link #current}.
      */
-    private BufferedInputStream bis;
+    private FileInputStream fis;
+
+    /**
+     * Piece from which bytes are currently handed out.
+     */
+    private final AtomicReference<Piece> current =
+        new AtomicReference<Piece>(new Piece(new byte[0]));
+
+    /**
+     * Bytes read from the device along with the position of the
+     * first byte that has not been handed out.
+     */
+    static final class Piece {
+
+        /**
+         * Bytes read from the device.
+         */
+        final byte[] bytes;
+
+        /**
+         * Position of the first byte that has not been handed out.
+         */
+        final AtomicInteger position = new AtomicInteger();
+
+        /**
+         * Creates a piece.
+         *
+         * @param bytes Bytes read from the device.
+         */
+        Piece(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Copies bytes that are not handed out to any other thread
+         * to the given array.
+         *
+         * @param array Destination of bytes.
+         * @param index Index of first byte to write.
+         * @return Number of bytes written, which is zero if this
+         * piece is exhausted.
+         */
+        int get(final byte[] array, final int index) {
+            int start;
+            int len;
+            do {
+                start = position.get();
+                len = Math.min(array.length - index, bytes.length - start);
+                if (len <= 0) {
+                    return 0;
+                }
+            } while (!position.compareAndSet(start, start + len));
+
+            System.arraycopy(bytes, start, array, index, len);
+            return len;
+        }
+    }
 
     /**
      * Constructs an instance corresponding to the input.
@@ -93,7 +172,7 @@ public final class RandomDevice extends RandomSource {
     private void setupDevice(final File file) {
         synchronized (this) {
             try {
-                bis = new BufferedInputStream(new FileInputStream(file));
+                fis = new FileInputStream(file);
             } catch (final FileNotFoundException fnfe) {
                 throw new CryptoError("File not found!", fnfe);
             } catch (final SecurityException se) {
@@ -140,21 +219,52 @@ public final class RandomDevice extends RandomSource {
         }
     }
 
+    /**
+     * Replaces the given exhausted piece by a piece read from the
+     * device unless another thread has done so already.
+     *
+     * @param exhausted Exhausted piece.
+     * @param needed Number of bytes needed by the caller.
+     *
+     * @throws CryptoError If reading from the device failed.
+     */
+    private void nextPiece(final Piece exhausted, final int needed)
+        throws CryptoError {
+        synchronized (current) {
+            if (current.get() == exhausted) {
+
+                final int size =
+                    Math.min(Math.max(needed, PIECE_SIZE), MAX_PIECE_SIZE);
+                final byte[] bytes = new byte[size];
+                try {
+                    final int len = fis.read(bytes);
+                    if (len < 0) {
+                        throw new IOException("End of device!");
+                    }
+                    current.set(new Piece(len == size
+                                          ? bytes
+                                          : Arrays.copyOf(bytes, len)));
+                } catch (final IOException ioe) {
+                    throw new CryptoError("Unable to read from random "
+                                          + "device!", ioe);
+                }
+            }
+        }
+    }
+
     // Documented in com.verificatum.crypto.RandomSource.
 
     @Override
     public void getBytes(final byte[] array) {
-        synchronized (this) {
-            try {
-                int index = 0;
-                final int len = array.length;
+        int index = 0;
+        while (index < array.length) {
 
-                while (index < len) {
-                    index += bis.read(array, index, len - index);
-                }
-            } catch (final IOException ioe) {
-                throw new CryptoError("Unable to read from random device!",
-                                      ioe);
+            final Piece piece = current.get();
+            final int len = piece.get(array, index);
+            if (len == 0) {
+                nextPiece(piece, array.length - index);
+            } else {
+                index += len;
             }
         }
     }
@@ -129,6 +129,35 @@ public final class RandomOracle implements Hashfunction {
         return new HashdigestRandomOracle(roHashfunction, outputLength);
     }
 
+    /**
+     * Evaluates the random oracle on the encoding of the given byte
+     * tree without computing the encoding as an array.
+     *
+     * @param data Input byte tree.
+     * @return Output of the random oracle.
+     */
+    public byte[] hash(final ByteTreeBasic data) {
+        final Hashdigest d = getDigest();
+        data.update(d);
+        return d.digest();
+    }
+
+    /**
+     * Evaluates the random oracle on the encoding of the byte tree
+     * read by the given reader, which is streamed and never stored in
+     * memory.
+     *
+     * @param data Source of input byte tree.
+     * @return Output of the random oracle.
+     *
+     * @throws EIOException If the input can not be read.
+     */
+    public byte[] hash(final ByteTreeReader data) throws EIOException {
+        final Hashdigest d = getDigest();
+        data.update(d);
+        return d.digest();
+    }
+
     // Documented in Marshalizable.java
 
     @Override
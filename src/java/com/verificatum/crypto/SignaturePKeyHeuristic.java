@@ -59,6 +59,29 @@ public final class SignaturePKeyHeuristic implements SignaturePKey {
      */
     public static final String ALGORITHM = "RSA";
 
+    /**
+     * Name of the algorithm used to verify digests.
+     */
+    static final String SIGNATURE_ALGORITHM = "SHA256with" + ALGORITHM;
+
+    /**
+     * Verification engine of each thread. An engine is initialized
+     * with the public key before each use, so it can be shared by all
+     * keys.
+     */
+    private static final ThreadLocal<Signature> THREAD_SIGNATURE =
+        new ThreadLocal<Signature>() {
+            @Override
+            protected Signature initialValue() {
+                try {
+                    return Signature.getInstance(SIGNATURE_ALGORITHM);
+                } catch (final NoSuchAlgorithmException nsae) {
+                    throw new CryptoError("Failed to instantiate public key!",
+                                          nsae);
+                }
+            }
+        };
+
     /**
      * Bit length of modulus.
      */
@@ -140,15 +163,12 @@ public final class SignaturePKeyHeuristic implements SignaturePKey {
     public boolean verifyDigest(final byte[] signature, final byte[] d) {
         try {
 
-            final Signature sig =
-                Signature.getInstance("SHA256with" + ALGORITHM);
+            final Signature sig = THREAD_SIGNATURE.get();
             sig.initVerify(pub);
             sig.update(d);
 
             return sig.verify(signature);
 
-        } catch (final NoSuchAlgorithmException nsae) {
-            throw new CryptoError("Failed to instantiate public key!", nsae);
         } catch (final InvalidKeyException ike) {
             throw new CryptoError("Invalid public key!", ike);
         } catch (final SignatureException se) {
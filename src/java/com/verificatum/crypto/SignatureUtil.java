@@ -0,0 +1,75 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.crypto;
+
+import com.verificatum.util.ArrayWorker;
+
+/**
+ * Utility class for working with signatures.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class SignatureUtil {
+
+    /**
+     * Avoid accidental instantiation.
+     */
+    private SignatureUtil() { }
+
+    /**
+     * Verifies the signatures of the given digests in parallel, where
+     * the <i>i</i>th signature is verified using the <i>i</i>th key
+     * and the <i>i</i>th digest.
+     *
+     * @param pkeys Public keys.
+     * @param signatures Candidate signatures.
+     * @param digests Digests of signed messages.
+     * @return Array of verdicts, one for each signature.
+     */
+    public static boolean[] verifyDigests(final SignaturePKey[] pkeys,
+                                          final byte[][] signatures,
+                                          final byte[][] digests) {
+        final boolean[] verdicts = new boolean[pkeys.length];
+
+        final ArrayWorker worker = new ArrayWorker(pkeys.length) {
+                @Override
+                public boolean divide() {
+                    return pkeys.length > 1;
+                }
+                @Override
+                public void work(final int start, final int end) {
+                    for (int i = start; i < end; i++) {
+                        verdicts[i] =
+                            pkeys[i].verifyDigest(signatures[i], digests[i]);
+                    }
+                }
+            };
+        worker.work();
+
+        return verdicts;
+    }
+}
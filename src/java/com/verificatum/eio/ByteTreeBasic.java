@@ -71,6 +71,18 @@ import com.verificatum.crypto.Hashdigest;
  *
  * <p>
  *
+ * A byte tree on file whose number of bytes of data or number of
+ * children does not fit in an int is stored in large-tree mode. In
+ * this mode the type byte is two for a leaf and three for an inner
+ * node, and it is followed by eight bytes giving the length (a
+ * long). Large-tree mode is only used when needed, so every byte tree
+ * that fits in memory is encoded as above. Large byte trees can only
+ * be handled by the file based classes, and readers and verification
+ * of the format reject headers in large-tree mode unless this is
+ * explicitly requested.
+ *
+ * <p>
+ *
  * The implementation consists of the following classes.
  *
  * <ul>
@@ -125,11 +137,126 @@ public abstract class ByteTreeBasic {
      */
     public static final byte LEAF = 1;
 
+    /**
+     * Tag used to label the instance as a leaf with a long number of
+     * bytes.
+     */
+    public static final byte LARGE_LEAF = 2;
+
+    /**
+     * Tag used to label the instance as a node with a long number of
+     * children.
+     */
+    public static final byte LARGE_NODE = 3;
+
+    /**
+     * Number of bytes in a header in large-tree mode.
+     */
+    static final int LARGE_HEADER_SIZE = 9;
+
     /**
      * Indentation used for each block when pretty printing.
      */
     public static final int INDENT = 2;
 
+    /**
+     * Verifies the number of bytes or children of a header with the
+     * given known type byte. Headers in large-tree mode are only
+     * accepted for values that do not fit in an int, since every
+     * byte tree must have a unique encoding.
+     *
+     * @param type Type byte of header.
+     * @param value Number of bytes or children.
+     * @param large Indicates if headers in large-tree mode are
+     * accepted.
+     *
+     * @throws EIOException If the header is malformed.
+     */
+    static void checkValue(final byte type,
+                           final long value,
+                           final boolean large)
+        throws EIOException {
+        if (type == LARGE_LEAF || type == LARGE_NODE) {
+            if (!large) {
+                throw new EIOException("Unexpected large-tree header!");
+            }
+            if (value <= Integer.MAX_VALUE) {
+                throw new EIOException("Non-canonical large header!");
+            }
+        } else if (value < 0) {
+            throw new EIOException("Negative length!");
+        }
+    }
+
+    /**
+     * Reads the number of bytes or children following the given type
+     * byte of a header, see {@link #checkValue(byte,long,boolean)}.
+     *
+     * @param type Type byte of header.
+     * @param fcis Source of header.
+     * @param large Indicates if headers in large-tree mode are
+     * accepted.
+     * @return Number of bytes or children.
+     *
+     * @throws IOException If reading fails.
+     * @throws EIOException If the header is malformed.
+     */
+    static long readValue(final byte type,
+                          final FileChannelInputStream fcis,
+                          final boolean large)
+        throws IOException, EIOException {
+        final long value;
+        if (type == LEAF || type == NODE) {
+            value = fcis.readInt();
+        } else if (type == LARGE_LEAF || type == LARGE_NODE) {
+            value = fcis.readLong();
+        } else {
+            throw new EIOException("Unknown type!");
+        }
+        checkValue(type, value, large);
+        return value;
+    }
+
+    /**
+     * Reads the number of bytes or children following the given type
+     * byte of a header. Headers in large-tree mode are accepted.
+     *
+     * @param type Type byte of header.
+     * @param fcis Source of header.
+     * @return Number of bytes or children.
+     *
+     * @throws IOException If reading fails.
+     * @throws EIOException If the header is malformed.
+     */
+    static long readValue(final byte type, final FileChannelInputStream fcis)
+        throws IOException, EIOException {
+        return readValue(type, fcis, true);
+    }
+
+    /**
+     * Returns the header of a leaf or node with the given number of
+     * bytes or children. The header is in large-tree mode if and only
+     * if the value does not fit in an int.
+     *
+     * @param leaf Indicates if the header is the header of a leaf.
+     * @param value Number of bytes or children.
+     * @return Header of leaf or node.
+     */
+    static byte[] header(final boolean leaf, final long value) {
+        if (value > Integer.MAX_VALUE) {
+            final byte[] header = new byte[LARGE_HEADER_SIZE];
+            header[0] = leaf ? LARGE_LEAF : LARGE_NODE;
+            ExtIO.writeInt(header, 1, (int) (value >>> 32));
+            ExtIO.writeInt(header, 5, (int) value);
+            return header;
+        } else {
+            final byte[] header = new byte[5];
+            header[0] = leaf ? LEAF : NODE;
+            ExtIO.writeInt(header, 1, (int) value);
+            return header;
+        }
+    }
+
     /**
      * Returns a reader of this instance.
      *
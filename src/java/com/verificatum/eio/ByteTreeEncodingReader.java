@@ -0,0 +1,204 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads the encodings of the children of a byte tree on file one by
+ * one without decoding them. This allows moving children between
+ * files, e.g., during sorting, without creating any {@link ByteTree}
+ * instances.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ByteTreeEncodingReader implements Closeable {
+
+    /**
+     * Source of encodings.
+     */
+    private final FileChannelInputStream dis;
+
+    /**
+     * Length of the underlying file.
+     */
+    private final long length;
+
+    /**
+     * Number of children remaining to be read.
+     */
+    private long remaining;
+
+    /**
+     * Creates a reader of the children of the byte tree on the given
+     * file.
+     *
+     * @param file File containing a byte tree.
+     *
+     * @throws EIOException If the file can not be opened or if it
+     * does not contain a node.
+     */
+    ByteTreeEncodingReader(final File file) throws EIOException {
+        try {
+            this.dis = new FileChannelInputStream(file);
+            this.length = file.length();
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to open file!", ioe);
+        }
+        try {
+            final byte type = dis.readByte();
+            if (type != ByteTreeBasic.NODE
+                && type != ByteTreeBasic.LARGE_NODE) {
+                throw new EIOException("Byte tree is not a node!");
+            }
+            remaining = ByteTreeBasic.readValue(type, dis);
+        } catch (final IOException ioe) {
+            close();
+            throw new EIOException("Unable to read header!", ioe);
+        } catch (final EIOException eioe) {
+            close();
+            throw eioe;
+        }
+    }
+
+    /**
+     * Returns the number of children remaining to be read.
+     *
+     * @return Number of children remaining to be read.
+     */
+    long getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Returns the number of bytes remaining in the underlying file.
+     *
+     * @return Number of bytes remaining.
+     */
+    private long remainingBytes() {
+        return length - dis.position();
+    }
+
+    /**
+     * Reads the encoding of a byte tree following the given
+     * header. The length in the header is checked against the number
+     * of bytes remaining in the file before any memory is allocated.
+     *
+     * @param header Header of byte tree.
+     * @return Encoding of byte tree.
+     *
+     * @throws IOException If reading fails.
+     * @throws EIOException If the input is not a byte tree.
+     */
+    private byte[] readEncoding(final byte[] header)
+        throws IOException, EIOException {
+
+        final int value = ExtIO.readInt(header, 1);
+        if (value < 0) {
+            throw new EIOException("Negative length!");
+        }
+
+        if (header[0] == ByteTreeBasic.LEAF) {
+
+            if (value > remainingBytes()) {
+                throw new EIOException("Leaf exceeds file!");
+            }
+            if (value > Integer.MAX_VALUE - 5) {
+                throw new EIOException("Child does not fit in memory!");
+            }
+            final byte[] res = new byte[5 + value];
+            System.arraycopy(header, 0, res, 0, 5);
+            dis.readFully(res, 5, value);
+            return res;
+
+        } else if (header[0] == ByteTreeBasic.NODE) {
+
+            // Each child has a header of five bytes.
+            if (value > remainingBytes() / 5) {
+                throw new EIOException("Node exceeds file!");
+            }
+
+            final byte[][] children = new byte[value][];
+            long total = 5;
+            for (int i = 0; i < value; i++) {
+                final byte[] childHeader = new byte[5];
+                dis.readFully(childHeader, 0, 5);
+                children[i] = readEncoding(childHeader);
+                total += children[i].length;
+                if (total > Integer.MAX_VALUE) {
+                    throw new EIOException("Child does not fit in memory!");
+                }
+            }
+
+            final byte[] res = new byte[(int) total];
+            System.arraycopy(header, 0, res, 0, 5);
+            int offset = 5;
+            for (int i = 0; i < value; i++) {
+                System.arraycopy(children[i], 0, res, offset,
+                                 children[i].length);
+                offset += children[i].length;
+            }
+            return res;
+
+        } else if (header[0] == ByteTreeBasic.LARGE_LEAF
+                   || header[0] == ByteTreeBasic.LARGE_NODE) {
+            throw new EIOException("Child does not fit in memory!");
+        } else {
+            throw new EIOException("Unknown type!");
+        }
+    }
+
+    /**
+     * Returns the encoding of the next child, or <code>null</code>
+     * if there are no more children.
+     *
+     * @return Encoding of next child or <code>null</code>.
+     *
+     * @throws EIOException If the child can not be read.
+     */
+    byte[] next() throws EIOException {
+        if (remaining == 0) {
+            return null;
+        }
+        try {
+            final byte[] header = new byte[5];
+            dis.readFully(header, 0, 5);
+            final byte[] res = readEncoding(header);
+            remaining--;
+            return res;
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to read child!", ioe);
+        }
+    }
+
+    @Override
+    public void close() {
+        ExtIO.strictClose(dis);
+    }
+}
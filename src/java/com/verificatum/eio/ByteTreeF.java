@@ -29,6 +29,7 @@ package com.verificatum.eio;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -84,6 +85,16 @@ public final class ByteTreeF extends ByteTreeBasic {
         return new ByteTreeReaderF(null, this);
     }
 
+    /**
+     * Returns a reader of this instance that accepts headers in
+     * large-tree mode, see {@link ByteTreeBasic}.
+     *
+     * @return Reader of this instance.
+     */
+    public ByteTreeReader getLargeByteTreeReader() {
+        return new ByteTreeReaderF(null, this, true);
+    }
+
     @Override
     public void update(final Hashdigest digest) {
         FileInputStream fis = null;
@@ -170,7 +181,8 @@ public final class ByteTreeF extends ByteTreeBasic {
     /**
      * Returns true or false depending on if the contents of the given
      * file is a valid byte tree or not. This provides the first
-     * shield against malformed inputs.
+     * shield against malformed inputs. Headers in large-tree mode
+     * are rejected.
      *
      * @param file File to verify.
      * @param maximalRecursiveDepth Maximal recursion depth of the
@@ -180,6 +192,25 @@ public final class ByteTreeF extends ByteTreeBasic {
      */
     public static boolean verifyFormat(final File file,
                                        final int maximalRecursiveDepth) {
+        return verifyFormat(file, maximalRecursiveDepth, false);
+    }
+
+    /**
+     * Returns true or false depending on if the contents of the given
+     * file is a valid byte tree or not. This provides the first
+     * shield against malformed inputs.
+     *
+     * @param file File to verify.
+     * @param maximalRecursiveDepth Maximal recursion depth of the
+     * given byte tree.
+     * @param large Indicates if headers in large-tree mode are
+     * accepted.
+     * @return true or false depending on if the contents of the given
+     *         file is a valid byte tree or not.
+     */
+    public static boolean verifyFormat(final File file,
+                                       final int maximalRecursiveDepth,
+                                       final boolean large) {
 
         DataInputStream dis = null;
         boolean res = true;
@@ -191,7 +222,7 @@ public final class ByteTreeF extends ByteTreeBasic {
             dis = new DataInputStream(bis);
 
             // Check that there is a properly constructed byte tree.
-            verifyFormat(dis, maximalRecursiveDepth);
+            verifyFormat(dis, maximalRecursiveDepth, large);
 
             // Check that there is nothing more.
             if (dis.read() != -1) {
@@ -211,7 +242,8 @@ public final class ByteTreeF extends ByteTreeBasic {
     /**
      * Returns true or false depending on if the contents of the given
      * stream is a valid byte tree or not. This provides the first
-     * shield against malformed inputs.
+     * shield against malformed inputs. Headers in large-tree mode
+     * are rejected.
      *
      * @param dis Stream to verify.
      * @param maximalRecursiveDepth Maximal recursion depth of the
@@ -223,20 +255,60 @@ public final class ByteTreeF extends ByteTreeBasic {
     public static void verifyFormat(final DataInputStream dis,
                                     final int maximalRecursiveDepth)
         throws IOException, EIOException {
+        verifyFormat(dis, maximalRecursiveDepth, false);
+    }
 
-        final int type = dis.readByte();
-        final int length = dis.readInt();
+    /**
+     * Verifies that the contents of the given stream is a valid
+     * byte tree. This provides the first shield against malformed
+     * inputs.
+     *
+     * @param dis Stream to verify.
+     * @param maximalRecursiveDepth Maximal recursion depth of the
+     * given byte tree.
+     * @param large Indicates if headers in large-tree mode are
+     * accepted.
+     * @throws IOException If the stream can not be read.
+     * @throws EIOException If the format of the input file is
+     *  incorrect.
+     */
+    public static void verifyFormat(final DataInputStream dis,
+                                    final int maximalRecursiveDepth,
+                                    final boolean large)
+        throws IOException, EIOException {
 
-        if (type == ByteTreeBasic.LEAF) {
+        final byte type = dis.readByte();
+        final long length;
+        if (type == ByteTreeBasic.LARGE_LEAF
+            || type == ByteTreeBasic.LARGE_NODE) {
+            length = dis.readLong();
+        } else {
+            length = dis.readInt();
+        }
+        ByteTreeBasic.checkValue(type, length, large);
+
+        if (type == ByteTreeBasic.LEAF || type == ByteTreeBasic.LARGE_LEAF) {
 
             // If we are supposed to be a leaf, we attempt to skip a
             // suitable number of bytes.
-            int len = length;
+            long len = length;
             while (len > 0) {
-                len -= dis.skipBytes(len);
+                int skipped =
+                    dis.skipBytes((int) Math.min(len, Integer.MAX_VALUE));
+
+                // Make sure that we do not loop forever at the end of
+                // the stream.
+                if (skipped == 0) {
+                    if (dis.read() < 0) {
+                        throw new EOFException();
+                    }
+                    skipped = 1;
+                }
+                len -= skipped;
             }
 
-        } else if (type == ByteTreeBasic.NODE) {
+        } else if (type == ByteTreeBasic.NODE
+                   || type == ByteTreeBasic.LARGE_NODE) {
 
             // If a we are a node, then we attempt to call ourselves
             // recursively to read the correct number of children.
@@ -244,9 +316,9 @@ public final class ByteTreeF extends ByteTreeBasic {
                 throw new EIOException("Too deep recursion!");
             }
 
-            for (int i = 0; i < length; i++) {
+            for (long i = 0; i < length; i++) {
 
-                verifyFormat(dis, maximalRecursiveDepth - 1);
+                verifyFormat(dis, maximalRecursiveDepth - 1, large);
 
             }
         } else {
@@ -254,6 +326,20 @@ public final class ByteTreeF extends ByteTreeBasic {
         }
     }
 
+    /**
+     * Returns the index of this instance, which allows seeking
+     * directly to any child. The index is built by scanning the
+     * headers of this instance, see {@link ByteTreeIndexF#index(File)}.
+     *
+     * @return Index of this instance.
+     *
+     * @throws EIOException If this instance is not a node, or if the
+     * index can not be built.
+     */
+    public ByteTreeIndexF getIndex() throws EIOException {
+        return ByteTreeIndexF.index(file);
+    }
+
     /**
      * Free resources allocated by this instance.
      */
@@ -0,0 +1,371 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.verificatum.crypto.Hashdigest;
+import com.verificatum.crypto.Hashfunction;
+import com.verificatum.util.ArrayWorker;
+
+/**
+ * Parallel tree hash of the byte array representation of a byte
+ * tree. This is an alternative to {@link
+ * ByteTreeBasic#update(Hashdigest)} for large byte trees stored on
+ * file, but it gives a different digest.
+ *
+ * <p>
+ *
+ * The representation is divided into chunks of {@link #CHUNK_SIZE}
+ * bytes, where the last chunk may be shorter. The digest of the
+ * <i>i</i>th chunk is computed as <i>H</i>(0x00 | chunk). The
+ * digest of the byte tree is then computed as
+ *
+ * <p>
+ *
+ * <i>H</i>(0x01 | version | chunk size | total length | digest of
+ * first chunk | ... | digest of last chunk),
+ *
+ * <p>
+ *
+ * where the version and the chunk size are represented as 4-byte
+ * integers and the total length as an 8-byte integer, all in
+ * big-endian byte order. Chunks are hashed on all cores, and files
+ * are read using positional reads and closed when the digest has
+ * been computed.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class ByteTreeHash {
+
+    /**
+     * Version of the tree hash.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Number of bytes in each chunk.
+     */
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Prefix of chunks.
+     */
+    static final byte CHUNK_PREFIX = 0;
+
+    /**
+     * Prefix of the root.
+     */
+    static final byte ROOT_PREFIX = 1;
+
+    /**
+     * Data in memory of the segments of the representation, where
+     * segments stored on file are <code>null</code>.
+     */
+    private final List<byte[]> datas;
+
+    /**
+     * Open files of the segments of the representation, where
+     * segments stored in memory are <code>null</code>.
+     */
+    private final List<FileChannel> files;
+
+    /**
+     * Starting positions of the segments and the total length as the
+     * last element.
+     */
+    private final long[] starts;
+
+    /**
+     * Creates an instance holding the segments of the representation
+     * of the given byte tree.
+     *
+     * @param byteTree Byte tree to be hashed.
+     */
+    private ByteTreeHash(final ByteTreeBasic byteTree) {
+        this.datas = new ArrayList<byte[]>();
+        this.files = new ArrayList<FileChannel>();
+
+        final List<Long> lengths = new ArrayList<Long>();
+        try {
+            addSegments(byteTree, lengths);
+        } catch (final EIOError eioe) {
+            close();
+            throw eioe;
+        }
+
+        starts = new long[lengths.size() + 1];
+        for (int i = 0; i < lengths.size(); i++) {
+            starts[i + 1] = starts[i] + lengths.get(i);
+        }
+    }
+
+    /**
+     * Adds the header of a leaf or node as a segment.
+     *
+     * @param leaf Indicates if the header is the header of a leaf.
+     * @param value Number of bytes or children.
+     * @param lengths Destination of the lengths of the segments.
+     */
+    private void addHeader(final boolean leaf,
+                           final long value,
+                           final List<Long> lengths) {
+        final byte[] header = ByteTreeBasic.header(leaf, value);
+        datas.add(header);
+        files.add(null);
+        lengths.add(Long.valueOf(header.length));
+    }
+
+    /**
+     * Adds the segments of the representation of the given byte
+     * tree.
+     *
+     * @param byteTree Byte tree.
+     * @param lengths Destination of the lengths of the segments.
+     */
+    private void addSegments(final ByteTreeBasic byteTree,
+                             final List<Long> lengths) {
+
+        if (byteTree instanceof ByteTreeF) {
+
+            final File file = ((ByteTreeF) byteTree).file;
+            try {
+                final FileChannel channel =
+                    new RandomAccessFile(file, "r").getChannel();
+                datas.add(null);
+                files.add(channel);
+                lengths.add(channel.size());
+            } catch (final IOException ioe) {
+                throw new EIOError("Unable to open file!", ioe);
+            }
+
+        } else if (byteTree instanceof ByteTreeContainer) {
+
+            final ByteTreeBasic[] children =
+                ((ByteTreeContainer) byteTree).children;
+
+            addHeader(false, children.length, lengths);
+
+            for (int i = 0; i < children.length; i++) {
+                addSegments(children[i], lengths);
+            }
+
+        } else if (byteTree instanceof ByteTree
+                   && byteTree.totalByteSize() > CHUNK_SIZE) {
+
+            // The data of large leaves is hashed in place to avoid
+            // copying large byte trees in memory, whereas small
+            // subtrees are represented by their encodings.
+            final ByteTree bt = (ByteTree) byteTree;
+
+            if (bt.value == null) {
+
+                addHeader(false, bt.children.length, lengths);
+
+                for (int i = 0; i < bt.children.length; i++) {
+                    addSegments(bt.children[i], lengths);
+                }
+
+            } else {
+
+                addHeader(true, bt.value.length, lengths);
+
+                datas.add(bt.value);
+                files.add(null);
+                lengths.add(Long.valueOf(bt.value.length));
+            }
+
+        } else {
+
+            final byte[] data = byteTree.toByteArray();
+            datas.add(data);
+            files.add(null);
+            lengths.add(Long.valueOf(data.length));
+        }
+    }
+
+    /**
+     * Updates the digest with the given range of the representation.
+     *
+     * @param hd Digest.
+     * @param start Position of first byte.
+     * @param end Position following the last byte.
+     * @param buffer Buffer used to read from files, which must hold
+     * at least <code>end - start</code> bytes.
+     */
+    private void update(final Hashdigest hd,
+                        final long start,
+                        final long end,
+                        final byte[] buffer) {
+
+        // Find the last segment starting at or before the start.
+        int index = Arrays.binarySearch(starts, start);
+        if (index < 0) {
+            index = -index - 2;
+        }
+
+        long position = start;
+        while (position < end) {
+
+            // Skip empty segments.
+            while (starts[index + 1] <= position) {
+                index++;
+            }
+
+            final long offset = position - starts[index];
+            final long segmentEnd = Math.min(end, starts[index + 1]);
+
+            final byte[] data = datas.get(index);
+            if (data == null) {
+
+                final int len = (int) (segmentEnd - position);
+                read(files.get(index), offset, buffer, len);
+                hd.update(buffer, 0, len);
+
+            } else {
+
+                hd.update(data, (int) offset, (int) (segmentEnd - position));
+            }
+            position = segmentEnd;
+        }
+    }
+
+    /**
+     * Reads the given number of bytes from the given position of a
+     * file. Positional reads do not modify the channel, so threads
+     * may read from the same file concurrently.
+     *
+     * @param channel Source of bytes.
+     * @param position Position of the first byte in the file.
+     * @param buffer Destination of bytes.
+     * @param length Number of bytes to read.
+     *
+     * @throws EIOError If the bytes can not be read.
+     */
+    private static void read(final FileChannel channel,
+                             final long position,
+                             final byte[] buffer,
+                             final int length)
+        throws EIOError {
+        final ByteBuffer bb = ByteBuffer.wrap(buffer, 0, length);
+        try {
+            while (bb.hasRemaining()) {
+                final int len =
+                    channel.read(bb, position + bb.position());
+                if (len < 0) {
+                    throw new EIOError("File was truncated!");
+                }
+            }
+        } catch (final IOException ioe) {
+            throw new EIOError("Unable to read file!", ioe);
+        }
+    }
+
+    /**
+     * Closes the files of the representation.
+     */
+    private void close() {
+        for (final FileChannel channel : files) {
+            ExtIO.strictClose(channel);
+        }
+    }
+
+    /**
+     * Computes the tree hash of the representation.
+     *
+     * @param hashfunction Underlying hash function.
+     * @return Tree hash.
+     */
+    private byte[] digest(final Hashfunction hashfunction) {
+
+        final long total = starts[starts.length - 1];
+        final int chunks = (int) ((total + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        final byte[][] chunkDigests = new byte[chunks][];
+
+        final ArrayWorker worker = new ArrayWorker(chunks) {
+                @Override
+                public boolean divide() {
+                    return chunks > 1;
+                }
+                @Override
+                public void work(final int start, final int end) {
+                    final byte[] prefix = new byte[] {CHUNK_PREFIX};
+                    final byte[] buffer =
+                        new byte[(int) Math.min(total, CHUNK_SIZE)];
+                    for (int i = start; i < end; i++) {
+
+                        final long chunkStart = ((long) i) * CHUNK_SIZE;
+                        final long chunkEnd =
+                            Math.min(total, chunkStart + CHUNK_SIZE);
+
+                        final Hashdigest hd = hashfunction.getDigest();
+                        hd.update(prefix);
+                        update(hd, chunkStart, chunkEnd, buffer);
+                        chunkDigests[i] = hd.digest();
+                    }
+                }
+            };
+        worker.work();
+
+        final byte[] header = new byte[17];
+        header[0] = ROOT_PREFIX;
+        ExtIO.writeInt(header, 1, VERSION);
+        ExtIO.writeInt(header, 5, CHUNK_SIZE);
+        ExtIO.writeInt(header, 9, (int) (total >>> 32));
+        ExtIO.writeInt(header, 13, (int) total);
+
+        final Hashdigest hd = hashfunction.getDigest();
+        hd.update(header);
+        hd.update(chunkDigests);
+        return hd.digest();
+    }
+
+    /**
+     * Returns the tree hash of the byte array representation of the
+     * given byte tree.
+     *
+     * @param hashfunction Underlying hash function.
+     * @param byteTree Byte tree to be hashed.
+     * @return Tree hash of the byte tree.
+     */
+    public static byte[] digest(final Hashfunction hashfunction,
+                                final ByteTreeBasic byteTree) {
+        final ByteTreeHash byteTreeHash = new ByteTreeHash(byteTree);
+        try {
+            return byteTreeHash.digest(hashfunction);
+        } finally {
+            byteTreeHash.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Index of the positions of the children of a byte tree on file. The
+ * index is a sequence of big-endian longs, where the ith long is the
+ * position of the ith child and the last long is the length of the
+ * byte tree file. This allows seeking directly to any child, and
+ * splitting a byte tree into ranges of children that can be read
+ * independently.
+ *
+ * <p>
+ *
+ * An index is either written along with the byte tree by a {@link
+ * ByteTreeWriterF}, see {@link ByteTreeWriterF#getIndex()}, or built
+ * by scanning the headers of the byte tree using {@link
+ * #index(File)}. The index is written to a temporary file, see
+ * {@link TempFile}, which is deleted as soon as it is mapped. Thus,
+ * nothing is ever written next to the byte tree, and an index only
+ * lives as long as the instance, which callers that need it
+ * repeatedly should keep.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class ByteTreeIndexF {
+
+    /**
+     * Number of bytes used to store each position.
+     */
+    static final int POSITION_SIZE = 8;
+
+    /**
+     * Underlying byte tree file.
+     */
+    final File file;
+
+    /**
+     * Number of children of the byte tree.
+     */
+    final long size;
+
+    /**
+     * Mapped contents of the index.
+     */
+    final MappedFile mappedFile;
+
+    /**
+     * Creates an instance.
+     *
+     * @param file Underlying byte tree file.
+     * @param size Number of children of the byte tree.
+     * @param mappedFile Mapped contents of the index.
+     */
+    private ByteTreeIndexF(final File file,
+                           final long size,
+                           final MappedFile mappedFile) {
+        this.file = file;
+        this.size = size;
+        this.mappedFile = mappedFile;
+    }
+
+    /**
+     * Maps the index of the byte tree on the given file that was just
+     * written to the given temporary file. The caller deletes the
+     * temporary file afterwards, which leaves the mapping intact.
+     *
+     * @param file Byte tree file.
+     * @param size Number of children of the byte tree.
+     * @param tmpFile Temporary file holding the index.
+     * @return Index of the byte tree.
+     *
+     * @throws EIOException If the index is inconsistent with the byte
+     * tree.
+     */
+    static ByteTreeIndexF map(final File file,
+                              final long size,
+                              final File tmpFile)
+        throws EIOException {
+
+        if (tmpFile.length() != (size + 1) * POSITION_SIZE) {
+            throw new EIOException("Malformed index!");
+        }
+
+        final MappedFile mappedFile =
+            MappedFile.unsafeMappedFile(tmpFile, tmpFile.length(), false);
+        final ByteTreeIndexF index =
+            new ByteTreeIndexF(file, size, mappedFile);
+
+        if (index.position(size) != file.length()) {
+            throw new EIOException("Malformed index!");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the byte tree on the given file. The index
+     * is built by scanning the headers of the byte tree, so callers
+     * that need the index repeatedly should keep the returned
+     * instance. Only the byte tree file is read.
+     *
+     * @param file Byte tree file.
+     * @return Index of the byte tree.
+     *
+     * @throws EIOException If the file does not contain a node, or
+     * if the index can not be built.
+     */
+    public static ByteTreeIndexF index(final File file) throws EIOException {
+
+        final File tmpFile = TempFile.getFile();
+
+        FileChannelInputStream fcis = null;
+        DataOutputStream dos = null;
+        try {
+
+            fcis = new FileChannelInputStream(file);
+            dos = new DataOutputStream(new FileChannelOutputStream(tmpFile));
+
+            final byte type = fcis.readByte();
+            if (type != ByteTreeBasic.NODE
+                && type != ByteTreeBasic.LARGE_NODE) {
+                throw new EIOException("Byte tree is not a node!");
+            }
+            final long size = ByteTreeBasic.readValue(type, fcis);
+
+            for (long i = 0; i < size; i++) {
+                dos.writeLong(fcis.position());
+                skip(fcis);
+            }
+            final long end = fcis.position();
+            if (end != file.length()) {
+                throw new EIOException("Malformed byte tree!");
+            }
+            dos.writeLong(end);
+            dos.close();
+            dos = null;
+
+            return map(file, size, tmpFile);
+
+        } catch (final EOFException eofe) {
+            throw new EIOException("Byte tree is truncated!", eofe);
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to build index!", ioe);
+        } finally {
+            ExtIO.strictClose(fcis);
+            ExtIO.strictClose(dos);
+            ExtIO.delete(tmpFile);
+        }
+    }
+
+    /**
+     * Skips a byte tree by reading its headers. The data of leaves is
+     * never read.
+     *
+     * @param fcis Source of byte tree.
+     *
+     * @throws IOException If reading fails.
+     * @throws EIOException If the input is not a byte tree.
+     */
+    private static void skip(final FileChannelInputStream fcis)
+        throws IOException, EIOException {
+
+        // Number of byte trees that remain to be skipped.
+        long pending = 1;
+        while (pending > 0) {
+
+            final byte type = fcis.readByte();
+            final long value = ByteTreeBasic.readValue(type, fcis);
+            pending--;
+
+            if (type == ByteTreeBasic.LEAF
+                || type == ByteTreeBasic.LARGE_LEAF) {
+                fcis.skipFully(value);
+            } else {
+                pending += value;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of children of the byte tree.
+     *
+     * @return Number of children.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the position in the byte tree file of the child with
+     * the given index. The position of the child following the last
+     * child is the length of the file.
+     *
+     * @param index Index of child.
+     * @return Position of child.
+     */
+    public long position(final long index) {
+        return mappedFile.getLong(index * POSITION_SIZE);
+    }
+
+    /**
+     * Returns a reader of all children. The reader behaves as a
+     * reader of the node, except that it skips children by seeking
+     * directly to the next child using this index.
+     *
+     * @return Reader of all children.
+     *
+     * @throws EIOError If the byte tree file can not be opened.
+     */
+    public ByteTreeReader getByteTreeReader() throws EIOError {
+        return getByteTreeReader(0, size);
+    }
+
+    /**
+     * Returns a reader of the children with indices in the given
+     * range. The reader behaves as a reader of a node with these
+     * children, and skips children using this index.
+     *
+     * @param startIndex Index of first child.
+     * @param endIndex Index following the last child.
+     * @return Reader of range of children.
+     *
+     * @throws EIOError If the byte tree file can not be opened.
+     */
+    public ByteTreeReader getByteTreeReader(final long startIndex,
+                                            final long endIndex)
+        throws EIOError {
+        if (startIndex < 0 || endIndex < startIndex || endIndex > size) {
+            throw new EIOError("Invalid range!");
+        }
+        return new ByteTreeReaderF(this, startIndex, endIndex);
+    }
+
+    /**
+     * Returns readers of the given number of consecutive ranges of
+     * children that cover all children. The ranges contain roughly
+     * the same number of children and can be read independently,
+     * e.g., in parallel by distinct threads.
+     *
+     * @param parts Number of ranges.
+     * @return Readers of ranges of children.
+     *
+     * @throws EIOError If the byte tree file can not be opened.
+     */
+    public ByteTreeReader[] getByteTreeReaders(final int parts)
+        throws EIOError {
+        final ByteTreeReader[] res = new ByteTreeReader[parts];
+        for (int i = 0; i < parts; i++) {
+            res[i] = getByteTreeReader(size / parts * i
+                                       + size % parts * i / parts,
+                                       size / parts * (i + 1)
+                                       + size % parts * (i + 1) / parts);
+        }
+        return res;
+    }
+
+    /**
+     * Writes the encodings of the children with indices in the given
+     * range to the given writer. The encodings are transferred
+     * directly between the files without decoding.
+     *
+     * @param startIndex Index of first child to write.
+     * @param endIndex Index following the last child to write.
+     * @param btw Destination of children.
+     *
+     * @throws EIOError If writing fails.
+     */
+    public void transferTo(final long startIndex,
+                           final long endIndex,
+                           final ByteTreeWriterF btw)
+        throws EIOError {
+        final long start = position(startIndex);
+        btw.unsafeTransfer(file, start, position(endIndex) - start);
+    }
+}
@@ -0,0 +1,267 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.File;
+
+/**
+ * Read-only view of a byte tree on file, that consists of a node
+ * where all children have the same number of bytes in their
+ * encodings. The file is mapped into memory, so each child can be
+ * located directly from its index, and distinct threads may read
+ * distinct children concurrently.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class ByteTreeMappedF {
+
+    /**
+     * Number of bytes in the header of a node.
+     */
+    static final int HEADER_SIZE = 5;
+
+    /**
+     * Number of children of the byte tree.
+     */
+    final int size;
+
+    /**
+     * Number of bytes in the encoding of each child.
+     */
+    final int width;
+
+    /**
+     * Mapped contents of the file.
+     */
+    final MappedFile mappedFile;
+
+    /**
+     * Creates an instance.
+     *
+     * @param size Number of children of the byte tree.
+     * @param width Number of bytes in the encoding of each child.
+     * @param mappedFile Mapped contents of the file.
+     */
+    private ByteTreeMappedF(final int size,
+                            final int width,
+                            final MappedFile mappedFile) {
+        this.size = size;
+        this.width = width;
+        this.mappedFile = mappedFile;
+    }
+
+    /**
+     * Maps the given file, which is expected to contain a node with
+     * the given number of children, each of which is encoded using
+     * the given number of bytes. The length of the file and the
+     * header of the node are verified, but the children are only
+     * verified when they are accessed.
+     *
+     * @param file Underlying file.
+     * @param size Expected number of children.
+     * @param width Expected number of bytes in the encoding of each
+     * child.
+     * @return Mapped view of the file, or <code>null</code> if the
+     * file does not have the expected length or header.
+     *
+     * @throws EIOError If the file can not be mapped.
+     */
+    public static ByteTreeMappedF map(final File file,
+                                      final int size,
+                                      final int width)
+        throws EIOError {
+
+        if (size <= 0 || width < HEADER_SIZE
+            || file.length() != HEADER_SIZE + ((long) size) * width) {
+            return null;
+        }
+
+        final MappedFile mappedFile =
+            MappedFile.unsafeMappedFile(file, file.length(), false);
+
+        final byte[] header = new byte[HEADER_SIZE];
+        mappedFile.get(0, header, 0, HEADER_SIZE);
+
+        if (header[0] != ByteTreeBasic.NODE
+            || ExtIO.readInt(header, 1) != size) {
+            return null;
+        }
+        return new ByteTreeMappedF(size, width, mappedFile);
+    }
+
+    /**
+     * Returns the number of children.
+     *
+     * @return Number of children.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes in the encoding of each child.
+     *
+     * @return Number of bytes in the encoding of each child.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the position of the child with the given index in the
+     * file. The header of the child is verified to be the header of
+     * a byte tree that fits within the width of a child and the
+     * mapped length of the file.
+     *
+     * @param index Index of child.
+     * @return Position of child.
+     *
+     * @throws EIOException If the index is out of range or the header
+     * of the child is not valid.
+     */
+    private long position(final int index) throws EIOException {
+
+        if (index < 0 || index >= size) {
+            throw new EIOException("Index out of range!");
+        }
+
+        final long position = HEADER_SIZE + ((long) index) * width;
+        final long limit = Math.min(position + width, mappedFile.size());
+
+        final byte[] header = new byte[HEADER_SIZE];
+        mappedFile.get(position, header, 0, HEADER_SIZE);
+        final int value = ExtIO.readInt(header, 1);
+
+        if (value < 0) {
+            throw new EIOException("Negative length of child!");
+        }
+
+        if (header[0] == ByteTreeBasic.LEAF) {
+
+            // A leaf must fill the child exactly.
+            if (position + HEADER_SIZE + value != limit) {
+                throw new EIOException("Leaf does not match width!");
+            }
+
+        } else if (header[0] == ByteTreeBasic.NODE) {
+
+            // Each child of a node has a header.
+            if (position + HEADER_SIZE * (1 + (long) value) > limit) {
+                throw new EIOException("Node exceeds width!");
+            }
+
+        } else {
+            throw new EIOException("Unknown type of child!");
+        }
+        return position;
+    }
+
+    /**
+     * Returns the encoding of the child with the given index.
+     *
+     * @param index Index of child.
+     * @return Encoding of child.
+     *
+     * @throws EIOException If the index is out of range or the child
+     * is not a byte tree of the expected width.
+     */
+    public byte[] getChild(final int index) throws EIOException {
+        final byte[] res = new byte[width];
+        mappedFile.get(position(index), res, 0, width);
+
+        if (ByteTreeUtil.encodedLength(res, 0, width) != width) {
+            throw new EIOException("Child has wrong length!");
+        }
+        return res;
+    }
+
+    /**
+     * Returns a reader of the child with the given index.
+     *
+     * @param index Index of child.
+     * @return Reader of child.
+     *
+     * @throws EIOException If the index is out of range or the child
+     * is not a byte tree of the expected width.
+     */
+    public ByteTreeReader getChildReader(final int index)
+        throws EIOException {
+        return new ByteTree(getChild(index), null).getByteTreeReader();
+    }
+
+    /**
+     * Writes the encodings of the children with indices in the given
+     * range to the given writer. The encodings are transferred
+     * directly between the files without decoding, but the header of
+     * each child is verified first.
+     *
+     * @param startIndex Index of first child to write.
+     * @param endIndex Index following the last child to write.
+     * @param btw Destination of children.
+     *
+     * @throws EIOException If the range is out of bounds or the
+     * header of some child is not valid.
+     * @throws EIOError If writing fails.
+     */
+    public void transferTo(final int startIndex,
+                           final int endIndex,
+                           final ByteTreeWriterF btw)
+        throws EIOException, EIOError {
+        for (int i = startIndex; i < endIndex; i++) {
+            position(i);
+        }
+        btw.unsafeTransfer(mappedFile.getFile(),
+                           HEADER_SIZE + ((long) startIndex) * width,
+                           ((long) (endIndex - startIndex)) * width);
+    }
+
+    /**
+     * Writes a node to the given file with copies of the children
+     * with indices in the given range. The encodings of the children
+     * are transferred directly between the files without decoding.
+     *
+     * @param startIndex Index of first child to copy.
+     * @param endIndex Index following the last child to copy.
+     * @param file Destination file.
+     *
+     * @throws EIOException If the range is out of bounds or the
+     * header of some child is not valid.
+     * @throws EIOError If the copying fails.
+     */
+    public void copyOfRange(final int startIndex,
+                            final int endIndex,
+                            final File file)
+        throws EIOException, EIOError {
+        final ByteTreeWriterF btw =
+            ByteTreeWriterF.unsafeByteTreeWriterF(endIndex - startIndex, file);
+        try {
+            transferTo(startIndex, endIndex, btw);
+        } finally {
+            btw.close();
+        }
+    }
+}
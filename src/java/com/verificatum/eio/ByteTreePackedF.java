@@ -0,0 +1,278 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reader of the packed children of a node on file, where all children
+ * have a given {@link ByteTreePacking}, e.g., the encodings of the
+ * elements of an array. The node is either stored in the standard
+ * format, or in the packed format, which is a single leaf holding the
+ * packed children one after the other. Thus, the packed format has a
+ * single header, and the number of children is the number of bytes
+ * of the leaf divided by {@link ByteTreePacking#getDataWidth()}.
+ *
+ * <p>
+ *
+ * The packed format requires less space and allows decoding many
+ * children directly from a single <code>byte[]</code>. The two
+ * formats can be converted losslessly into each other using {@link
+ * #pack(File,File,ByteTreePacking)} and {@link
+ * #unpack(File,File,ByteTreePacking)}, so the standard format can
+ * be used when publishing data.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class ByteTreePackedF implements Closeable {
+
+    /**
+     * Layout of the children.
+     */
+    final ByteTreePacking packing;
+
+    /**
+     * Source of children.
+     */
+    final FileChannelInputStream fcis;
+
+    /**
+     * Indicates if the source is in the packed format.
+     */
+    final boolean packed;
+
+    /**
+     * Number of children remaining to be read.
+     */
+    long remaining;
+
+    /**
+     * Creates a reader of the children of the node on the given file.
+     *
+     * @param file Node in standard or packed format.
+     * @param packing Layout of the children.
+     *
+     * @throws EIOException If the file can not be opened, or if it
+     * does not contain a node of the expected format.
+     */
+    public ByteTreePackedF(final File file, final ByteTreePacking packing)
+        throws EIOException {
+        this.packing = packing;
+        try {
+            this.fcis = new FileChannelInputStream(file);
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to open file!", ioe);
+        }
+        try {
+
+            final byte type = fcis.readByte();
+            final long value = ByteTreeBasic.readValue(type, fcis);
+
+            packed = type == ByteTreeBasic.LEAF
+                || type == ByteTreeBasic.LARGE_LEAF;
+
+            if (packed) {
+                if (value % packing.getDataWidth() != 0) {
+                    throw new EIOException("Partial packed child!");
+                }
+                remaining = value / packing.getDataWidth();
+            } else {
+                remaining = value;
+            }
+
+        } catch (final IOException ioe) {
+            close();
+            throw new EIOException("Unable to read header!", ioe);
+        } catch (final EIOException eioe) {
+            close();
+            throw eioe;
+        }
+    }
+
+    /**
+     * Returns true if the underlying file is in the packed format.
+     *
+     * @return True if the underlying file is in the packed format.
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Returns the number of children remaining to be read.
+     *
+     * @return Number of children remaining to be read.
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Reads the given number of children and returns them packed one
+     * after the other.
+     *
+     * @param count Number of children.
+     * @return Packed children.
+     *
+     * @throws EIOException If there are not enough children or if a
+     * child does not have the expected layout.
+     */
+    public byte[] read(final int count) throws EIOException {
+        if (count < 0 || count > remaining) {
+            throw new EIOException("Not enough children!");
+        }
+        final int dataWidth = packing.getDataWidth();
+        final byte[] data = new byte[count * dataWidth];
+
+        try {
+            if (packed) {
+
+                fcis.readFully(data, 0, data.length);
+
+            } else {
+
+                final int width = packing.getWidth();
+                final byte[] encoding = new byte[width];
+                for (int i = 0; i < count; i++) {
+                    fcis.readFully(encoding, 0, width);
+                    if (!packing.pack(encoding, 0, data, i * dataWidth)) {
+                        throw new EIOException("Child has wrong layout!");
+                    }
+                }
+            }
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to read children!", ioe);
+        }
+        remaining -= count;
+        return data;
+    }
+
+    @Override
+    public void close() {
+        ExtIO.strictClose(fcis);
+    }
+
+    /**
+     * Returns the number of children to read at a time when
+     * converting between formats.
+     *
+     * @param packing Layout of the children.
+     * @return Number of children.
+     */
+    private static int chunkSize(final ByteTreePacking packing) {
+        return Math.max(1, DirectBufferPool.BUFFER_SIZE / packing.getWidth());
+    }
+
+    /**
+     * Writes the children of the node on the source file to the
+     * destination file in packed format.
+     *
+     * @param source Node in standard or packed format.
+     * @param destination Destination of node in packed format.
+     * @param packing Layout of the children.
+     *
+     * @throws EIOException If the source can not be read or does not
+     * have the expected format, or if the destination can not be
+     * written.
+     */
+    public static void pack(final File source,
+                            final File destination,
+                            final ByteTreePacking packing)
+        throws EIOException {
+
+        final ByteTreePackedF reader = new ByteTreePackedF(source, packing);
+        FileChannelOutputStream fcos = null;
+        try {
+
+            fcos = new FileChannelOutputStream(destination);
+            final long length = reader.getRemaining() * packing.getDataWidth();
+            fcos.write(ByteTreeBasic.header(true, length));
+
+            final int chunkSize = chunkSize(packing);
+            while (reader.getRemaining() > 0) {
+                final int count =
+                    (int) Math.min(chunkSize, reader.getRemaining());
+                fcos.write(reader.read(count));
+            }
+
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to write packed node!", ioe);
+        } finally {
+            reader.close();
+            ExtIO.strictClose(fcos);
+        }
+    }
+
+    /**
+     * Writes the children of the node on the source file to the
+     * destination file in standard format.
+     *
+     * @param source Node in standard or packed format.
+     * @param destination Destination of node in standard format.
+     * @param packing Layout of the children.
+     *
+     * @throws EIOException If the source can not be read or does not
+     * have the expected format, or if the destination can not be
+     * written.
+     */
+    public static void unpack(final File source,
+                              final File destination,
+                              final ByteTreePacking packing)
+        throws EIOException {
+
+        final ByteTreePackedF reader = new ByteTreePackedF(source, packing);
+        FileChannelOutputStream fcos = null;
+        try {
+
+            fcos = new FileChannelOutputStream(destination);
+            fcos.write(ByteTreeBasic.header(false, reader.getRemaining()));
+
+            final int width = packing.getWidth();
+            final int dataWidth = packing.getDataWidth();
+            final int chunkSize = chunkSize(packing);
+            while (reader.getRemaining() > 0) {
+                final int count =
+                    (int) Math.min(chunkSize, reader.getRemaining());
+                final byte[] data = reader.read(count);
+
+                final byte[] encodings = new byte[count * width];
+                for (int i = 0; i < count; i++) {
+                    packing.unpack(data, i * dataWidth, encodings, i * width);
+                }
+                fcos.write(encodings);
+            }
+
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to write node!", ioe);
+        } finally {
+            reader.close();
+            ExtIO.strictClose(fcos);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+/**
+ * Layout of byte trees with a fixed shape, e.g., the encodings of
+ * the elements of a group, that all have the headers of a given
+ * template and only differ in the data of their leaves. A byte tree
+ * with this layout is packed by removing its headers, i.e., only the
+ * data of its leaves is kept, and unpacked by inserting the headers
+ * of the template. This is lossless. See {@link ByteTreePackedF} for
+ * the packed encoding of a node with such children.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class ByteTreePacking {
+
+    /**
+     * Encoding of the template.
+     */
+    final byte[] template;
+
+    /**
+     * Number of bytes of data in the leaves of the template.
+     */
+    final int dataWidth;
+
+    /**
+     * Positions in the template of the data of the leaves.
+     */
+    final int[] dataOffsets;
+
+    /**
+     * Number of bytes of data of the leaves.
+     */
+    final int[] dataLengths;
+
+    /**
+     * Creates the layout of byte trees with the same shape and leaf
+     * lengths as the given template.
+     *
+     * @param template Encoding of a byte tree.
+     *
+     * @throws EIOException If the template is not the encoding of a
+     * byte tree, or if it does not contain any data.
+     */
+    public ByteTreePacking(final byte[] template) throws EIOException {
+
+        if (ByteTreeUtil.encodedLength(template, 0, template.length)
+            != template.length) {
+            throw new EIOException("Malformed template!");
+        }
+        this.template = template;
+
+        // The headers of a byte tree appear in depth-first order, so
+        // the leaves are found by a single scan.
+        int noLeaves = 0;
+        int position = 0;
+        while (position < template.length) {
+            if (template[position] == ByteTreeBasic.LEAF) {
+                noLeaves++;
+                position += 5 + ExtIO.readInt(template, position + 1);
+            } else {
+                position += 5;
+            }
+        }
+
+        dataOffsets = new int[noLeaves];
+        dataLengths = new int[noLeaves];
+
+        int width = 0;
+        int leaf = 0;
+        position = 0;
+        while (position < template.length) {
+            if (template[position] == ByteTreeBasic.LEAF) {
+                dataOffsets[leaf] = position + 5;
+                dataLengths[leaf] = ExtIO.readInt(template, position + 1);
+                width += dataLengths[leaf];
+                position = dataOffsets[leaf] + dataLengths[leaf];
+                leaf++;
+            } else {
+                position += 5;
+            }
+        }
+        if (width == 0) {
+            throw new EIOException("Template does not contain any data!");
+        }
+        this.dataWidth = width;
+    }
+
+    /**
+     * Returns the number of bytes in the encoding of a byte tree with
+     * this layout.
+     *
+     * @return Number of bytes in encoding.
+     */
+    public int getWidth() {
+        return template.length;
+    }
+
+    /**
+     * Returns the number of bytes of data in the leaves of a byte
+     * tree with this layout, i.e., the number of bytes of a packed
+     * byte tree.
+     *
+     * @return Number of bytes of data.
+     */
+    public int getDataWidth() {
+        return dataWidth;
+    }
+
+    /**
+     * Packs the encoding of a byte tree with this layout.
+     *
+     * @param encoding Encoding of byte tree.
+     * @param offset Position of byte tree in encoding.
+     * @param data Destination of packed byte tree.
+     * @param dataOffset Position of packed byte tree in destination.
+     * @return True if the encoding has the headers of this layout,
+     * and false otherwise, in which case the destination is
+     * undefined.
+     */
+    public boolean pack(final byte[] encoding,
+                        final int offset,
+                        final byte[] data,
+                        final int dataOffset) {
+        int position = 0;
+        int dataPosition = dataOffset;
+        for (int i = 0; i < dataOffsets.length; i++) {
+
+            for (int j = position; j < dataOffsets[i]; j++) {
+                if (encoding[offset + j] != template[j]) {
+                    return false;
+                }
+            }
+            System.arraycopy(encoding, offset + dataOffsets[i],
+                             data, dataPosition, dataLengths[i]);
+
+            position = dataOffsets[i] + dataLengths[i];
+            dataPosition += dataLengths[i];
+        }
+        for (int j = position; j < template.length; j++) {
+            if (encoding[offset + j] != template[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unpacks a packed byte tree with this layout into its encoding.
+     *
+     * @param data Packed byte tree.
+     * @param dataOffset Position of packed byte tree.
+     * @param encoding Destination of encoding of byte tree.
+     * @param offset Position of byte tree in destination.
+     */
+    public void unpack(final byte[] data,
+                       final int dataOffset,
+                       final byte[] encoding,
+                       final int offset) {
+        System.arraycopy(template, 0, encoding, offset, template.length);
+
+        int dataPosition = dataOffset;
+        for (int i = 0; i < dataOffsets.length; i++) {
+            System.arraycopy(data, dataPosition,
+                             encoding, offset + dataOffsets[i],
+                             dataLengths[i]);
+            dataPosition += dataLengths[i];
+        }
+    }
+}
@@ -26,36 +26,25 @@
 
 package com.verificatum.eio;
 
-import java.io.Serializable;
-import java.util.Comparator;
-
 /**
- * Comparator of queues of byte trees. Note that this comparator
- * compares the first elements in two queues of byte trees. Note that
- * this comparator imposes orderings that are inconsistent with
- * equals.
+ * Comparator of byte trees that can also compare byte trees directly
+ * from their encodings. Sorting byte trees on file using such a
+ * comparator avoids decoding the children.
  *
  * @author Douglas Wikstrom
  */
-public class ByteTreeQueueComparator
-    implements Comparator<ByteTreeQueue>, Serializable {
+public interface ByteTreeRawComparator extends ByteTreeComparator {
 
     /**
-     * Underlying comparator of byte trees.
-     */
-    private final ByteTreeComparator comparator;
-
-    /**
-     * Underlying comparator of byte trees.
+     * Compares the byte trees with the given encodings. The result
+     * must be consistent with the comparison of the decoded byte
+     * trees.
      *
-     * @param comparator Comparator of byte trees.
+     * @param left Encoding of left byte tree.
+     * @param right Encoding of right byte tree.
+     * @return Negative, zero, or positive integer depending on if the
+     * left byte tree is smaller, equal, or greater than the right
+     * byte tree.
      */
-    public ByteTreeQueueComparator(final ByteTreeComparator comparator) {
-        this.comparator = comparator;
-    }
-
-    @Override
-    public int compare(final ByteTreeQueue left, final ByteTreeQueue right) {
-        return comparator.compare(left.peekByteTree(), right.peekByteTree());
-    }
+    int compare(byte[] left, byte[] right);
 }
@@ -29,6 +29,8 @@ package com.verificatum.eio;
 import java.io.Closeable;
 import java.io.UnsupportedEncodingException;
 
+import com.verificatum.crypto.Hashdigest;
+
 /**
  * Abstract class of a reader of {@link ByteTree} instances. Reading
  * corresponds to a depth-first traversal of the tree, and such a
@@ -44,9 +46,16 @@ import java.io.UnsupportedEncodingException;
 public abstract class ByteTreeReader implements Closeable {
 
     /**
-     * Number of children/bytes remaining to be read.
+     * Number of children/bytes remaining to be read. This only
+     * exceeds the maximal int for byte trees on file in large-tree
+     * mode.
+     */
+    protected long remaining;
+
+    /**
+     * Maximal number of bytes in buffer used to skip leaves.
      */
-    protected int remaining;
+    static final int SKIP_BUFFER_SIZE = 1 << 20;
 
     /**
      * Instance that spawned this one (null if this is the root).
@@ -96,8 +105,11 @@ public abstract class ByteTreeReader implements Closeable {
      * already been processed fully.
      *
      * @return Next child to read.
+     *
+     * @throws EIOException If the header of the child is malformed.
      */
-    protected abstract ByteTreeReader getNextChildInner();
+    protected abstract ByteTreeReader getNextChildInner()
+        throws EIOException;
 
     /**
      * Reads data into the given array. Subclasses implementing this
@@ -154,7 +166,13 @@ public abstract class ByteTreeReader implements Closeable {
         }
 
         activeChild = true;
-        final ByteTreeReader res = getNextChildInner();
+        final ByteTreeReader res;
+        try {
+            res = getNextChildInner();
+        } catch (final EIOException eioe) {
+            close();
+            throw eioe;
+        }
 
         remaining--;
         return res;
@@ -184,12 +202,30 @@ public abstract class ByteTreeReader implements Closeable {
      * @throws EIOException If there is no file to be skipped.
      */
     public void skipChild() throws EIOException {
-        final ByteTreeReader btr = getNextChild();
-        if (btr.isLeaf()) {
-            btr.read();
+        getNextChild().skip();
+    }
+
+    /**
+     * Skips the remaining data of this instance, i.e., the remaining
+     * bytes of a leaf or the remaining children of a node. This
+     * allows the traversal of the parent to continue with the next
+     * sibling of this instance.
+     *
+     * @throws EIOException If the data can not be skipped.
+     */
+    public void skip() throws EIOException {
+        if (isLeaf()) {
+
+            // An empty leaf must also be read to allow the traversal
+            // to continue with the next sibling.
+            final byte[] buffer =
+                new byte[(int) Math.min(remaining, SKIP_BUFFER_SIZE)];
+            do {
+                read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            } while (remaining > 0);
         } else {
-            while (btr.getRemaining() > 0) {
-                btr.skipChild();
+            while (remaining > 0) {
+                skipChild();
             }
         }
     }
@@ -292,11 +328,25 @@ public abstract class ByteTreeReader implements Closeable {
     }
 
     /**
-     * Returns the number of children/bytes remaining to be read.
+     * Returns the number of children/bytes remaining to be read. This
+     * always fits in an int, except for readers of byte trees on file
+     * that explicitly accept large-tree mode. For such readers the
+     * result saturates at the maximal int, so it is safe to read
+     * until this is zero, and {@link #getLongRemaining()} gives the
+     * exact number.
      *
      * @return Number of children/bytes remaining to be read.
      */
     public int getRemaining() {
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of children/bytes remaining to be read.
+     *
+     * @return Number of children/bytes remaining to be read.
+     */
+    public long getLongRemaining() {
         return remaining;
     }
 
@@ -336,8 +386,12 @@ public abstract class ByteTreeReader implements Closeable {
      * @throws EIOException If there is no data to read.
      */
     public byte[] read() throws EIOException {
-        final byte[] tmp = new byte[remaining];
-        read(tmp, 0, remaining);
+        if (remaining > Integer.MAX_VALUE) {
+            close();
+            throw new EIOException("Leaf does not fit in memory!");
+        }
+        final byte[] tmp = new byte[(int) remaining];
+        read(tmp, 0, tmp.length);
         return tmp;
     }
 
@@ -377,6 +431,60 @@ public abstract class ByteTreeReader implements Closeable {
         return readByteTree(this);
     }
 
+    /**
+     * Updates the given digest with the encoding of the byte tree
+     * read by the given reader, using the given buffer for the data
+     * of leaves.
+     *
+     * @param btr Source of byte tree.
+     * @param digest Digest to be updated.
+     * @param buffer Buffer used to read data of leaves.
+     *
+     * @throws EIOException If there is no data to read.
+     */
+    private static void update(final ByteTreeReader btr,
+                               final Hashdigest digest,
+                               final byte[] buffer)
+        throws EIOException {
+
+        if (btr.isLeaf()) {
+
+            digest.update(ByteTreeBasic.header(true, btr.remaining));
+
+            // An empty leaf must also be read to allow the traversal
+            // to continue with the next sibling.
+            do {
+                final int len = (int) Math.min(buffer.length, btr.remaining);
+                btr.read(buffer, 0, len);
+                digest.update(buffer, 0, len);
+            } while (btr.remaining > 0);
+
+        } else {
+
+            digest.update(ByteTreeBasic.header(false, btr.remaining));
+
+            while (btr.remaining > 0) {
+                update(btr.getNextChild(), digest, buffer);
+            }
+        }
+    }
+
+    /**
+     * Updates the given digest with the encoding of the byte tree
+     * read by this instance. This gives the same result as {@link
+     * ByteTreeBasic#update(Hashdigest)} for the underlying byte tree,
+     * but the byte tree is streamed and never stored in memory. This
+     * instance must not have been read from before and is fully read
+     * afterwards.
+     *
+     * @param digest Digest to be updated.
+     *
+     * @throws EIOException If there is no data to read.
+     */
+    public void update(final Hashdigest digest) throws EIOException {
+        update(this, digest, new byte[ByteTreeF.DIGEST_BUFFER_SIZE]);
+    }
+
     /**
      * Read four bytes and return them as an int.
      *
@@ -476,6 +584,10 @@ public abstract class ByteTreeReader implements Closeable {
      * @throws EIOException If there is no string to be read.
      */
     public String readString() throws EIOException {
-        return readString(remaining);
+        if (remaining > Integer.MAX_VALUE) {
+            close();
+            throw new EIOException("Leaf does not fit in memory!");
+        }
+        return readString((int) remaining);
     }
 }
@@ -81,7 +81,7 @@ public final class ByteTreeReaderBT extends ByteTreeReader {
 
     @Override
     protected ByteTreeReader getNextChildInner() {
-        final ByteTree child = bt.children[bt.children.length - remaining];
+        final ByteTree child = bt.children[bt.children.length - getRemaining()];
         return new ByteTreeReaderBT(this, child);
     }
 
@@ -89,8 +89,8 @@ public final class ByteTreeReaderBT extends ByteTreeReader {
     protected void readInner(final byte[] destination,
                              final int offset,
                              final int length) {
-        System.arraycopy(bt.value, bt.value.length - remaining, destination,
-                         offset, length);
+        System.arraycopy(bt.value, bt.value.length - getRemaining(),
+                         destination, offset, length);
     }
 
     @Override
@@ -26,29 +26,34 @@
 
 package com.verificatum.eio;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
 /**
- * A reader of {@link ByteTreeF} instances.
+ * A reader of {@link ByteTreeF} instances. The file is read through
+ * a channel into a large direct buffer, and reading is not
+ * interruptible.
  *
  * @author Douglas Wikstrom
  */
 public final class ByteTreeReaderF extends ByteTreeReader {
 
     /**
-     * Size of buffer for underlying {@link BufferedInputStream}.
+     * Size of buffer used to read the underlying file.
      */
-    public static final int BUFFER_SIZE = 16384;
+    public static final int BUFFER_SIZE = DirectBufferPool.BUFFER_SIZE;
+
+    /**
+     * Minimal number of children skipped using an index. Skipping a
+     * few children directly is cheaper than looking up the index.
+     */
+    static final int MIN_INDEXED_SKIP = 16;
 
     /**
      * Source of data.
      */
-    DataInputStream dis;
+    FileChannelInputStream dis;
 
     /**
      * Indicates if this instance points to a leaf or not.
@@ -60,26 +65,66 @@ public final class ByteTreeReaderF extends ByteTreeReader {
      */
     boolean opener;
 
+    /**
+     * Indicates that headers in large-tree mode are accepted.
+     */
+    boolean large;
+
+    /**
+     * Index used to skip children if this instance reads a range of
+     * children using a {@link ByteTreeIndexF}, and <code>null</code>
+     * otherwise.
+     */
+    ByteTreeIndexF index;
+
+    /**
+     * Index of the child following the last child read by this
+     * instance if it reads a range of children using an index.
+     */
+    long endIndex;
+
     /**
      * Creates an instance with the given parent and underlying byte
-     * tree.
+     * tree. Headers in large-tree mode are rejected.
      *
      * @param parent Instance that spawned this one.
      * @param bt Underlying byte tree.
      */
     public ByteTreeReaderF(final ByteTreeReader parent, final ByteTreeF bt) {
+        this(parent, bt, false);
+    }
+
+    /**
+     * Creates an instance with the given parent and underlying byte
+     * tree.
+     *
+     * @param parent Instance that spawned this one.
+     * @param bt Underlying byte tree.
+     * @param large Indicates if headers in large-tree mode are
+     * accepted.
+     */
+    public ByteTreeReaderF(final ByteTreeReader parent,
+                           final ByteTreeF bt,
+                           final boolean large) {
         try {
 
-            final FileInputStream fis = new FileInputStream(bt.file);
-            final BufferedInputStream bis =
-                new BufferedInputStream(fis, BUFFER_SIZE);
-            this.dis = new DataInputStream(bis);
-            final ByteTreeReaderF btr = new ByteTreeReaderF(parent, dis);
+            this.dis = new FileChannelInputStream(bt.file);
+            final ByteTreeReaderF btr;
+            try {
+                btr = new ByteTreeReaderF(parent, dis, large);
+            } catch (final EIOException eioe) {
+                ExtIO.strictClose(dis);
+                throw new EIOError("Malformed byte tree!", eioe);
+            } catch (final EIOError eioe) {
+                ExtIO.strictClose(dis);
+                throw eioe;
+            }
 
             this.parent = parent;
             this.isLeaf = btr.isLeaf;
             this.remaining = btr.remaining;
             this.opener = true;
+            this.large = large;
 
         } catch (final FileNotFoundException fnfe) {
             throw new EIOError("File not found!", fnfe);
@@ -99,24 +144,62 @@ public final class ByteTreeReaderF extends ByteTreeReader {
         this.isLeaf = tmp.isLeaf;
         this.remaining = tmp.remaining;
         this.opener = tmp.opener;
+        this.large = tmp.large;
+    }
+
+    /**
+     * Creates a reader of a node with the children in the given range
+     * of the byte tree indexed by the given index. The index is used
+     * to skip children. Building the index accepts large-tree mode,
+     * so the reader does as well.
+     *
+     * @param index Index of the underlying byte tree.
+     * @param startIndex Index of first child.
+     * @param endIndex Index following the last child.
+     */
+    ByteTreeReaderF(final ByteTreeIndexF index,
+                    final long startIndex,
+                    final long endIndex) {
+        try {
+            this.dis = new FileChannelInputStream(index.file,
+                                                  index.position(startIndex));
+        } catch (final FileNotFoundException fnfe) {
+            throw new EIOError("File not found!", fnfe);
+        }
+        this.parent = null;
+        this.isLeaf = false;
+        this.remaining = endIndex - startIndex;
+        this.opener = true;
+        this.large = true;
+        this.index = index;
+        this.endIndex = endIndex;
     }
 
     /**
      * Creates an instance with the given parent and reading from the
-     * given data source.
+     * given data source. The header is verified in the same way as
+     * when scanning or verifying byte trees on file.
      *
      * @param parent Instance that spawned this one.
      * @param dis Source of data.
+     * @param large Indicates if headers in large-tree mode are
+     * accepted.
+     *
+     * @throws EIOException If the header is malformed.
      */
     protected ByteTreeReaderF(final ByteTreeReader parent,
-                              final DataInputStream dis) {
+                              final FileChannelInputStream dis,
+                              final boolean large)
+        throws EIOException {
         try {
 
             this.parent = parent;
             this.dis = dis;
-            this.isLeaf = dis.readByte() == ByteTreeBasic.LEAF;
-
-            this.remaining = dis.readInt();
+            this.large = large;
+            final byte type = dis.readByte();
+            this.remaining = ByteTreeBasic.readValue(type, dis, large);
+            this.isLeaf = type == ByteTreeBasic.LEAF
+                || type == ByteTreeBasic.LARGE_LEAF;
 
             this.opener = false;
 
@@ -132,9 +215,32 @@ public final class ByteTreeReaderF extends ByteTreeReader {
         return isLeaf;
     }
 
+    /**
+     * Skips a number of children when reading. If this instance was
+     * created by a {@link ByteTreeIndexF}, then the children are
+     * skipped by seeking directly to the next child.
+     *
+     * @param n Number of children to skip.
+     *
+     * @throws EIOException If there are not n files that can be skipped.
+     */
     @Override
-    protected ByteTreeReader getNextChildInner() {
-        return new ByteTreeReaderF(this, dis);
+    public void skipChildren(final int n) throws EIOException {
+        // We never skip the last child, since this would require
+        // updating the parent.
+        if (index != null && !activeChild && n >= MIN_INDEXED_SKIP
+            && n < remaining) {
+
+            dis.seek(index.position(endIndex - remaining + n));
+            remaining -= n;
+            return;
+        }
+        super.skipChildren(n);
+    }
+
+    @Override
+    protected ByteTreeReader getNextChildInner() throws EIOException {
+        return new ByteTreeReaderF(this, dis, large);
     }
 
     @Override
@@ -143,12 +249,7 @@ public final class ByteTreeReaderF extends ByteTreeReader {
                              final int length) {
         try {
 
-            int currentOffset = offset;
-            final int end = currentOffset + length;
-            while (currentOffset < end) {
-                currentOffset +=
-                    dis.read(destination, currentOffset, end - currentOffset);
-            }
+            dis.readFully(destination, offset, length);
         } catch (final IOException ioe) {
             throw new EIOError("Unable to read!", ioe);
         }
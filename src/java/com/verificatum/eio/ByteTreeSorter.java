@@ -0,0 +1,611 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.verificatum.util.ArrayWorker;
+
+/**
+ * External sorting of the children of byte trees on file. The input
+ * is read in runs that are sorted in memory, written to temporary
+ * files, and then merged. Reading the next run overlaps with sorting
+ * the previous run, which is sorted by sorting parts of it in
+ * parallel and merging the parts as the run is written. Runs are
+ * merged with a loser tree.
+ *
+ * <p>
+ *
+ * Children are moved as raw encodings. They are only decoded if the
+ * comparator can not compare encodings directly, i.e., if it is not
+ * a {@link ByteTreeRawComparator}, and then at most once during each
+ * pass.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ByteTreeSorter {
+
+    /**
+     * Minimal number of children in a run for sorting it in
+     * parallel.
+     */
+    static final int MIN_PARALLEL_SIZE = 1024;
+
+    /**
+     * Comparator of byte trees.
+     */
+    private final ByteTreeComparator comparator;
+
+    /**
+     * Comparator of encodings of byte trees, or <code>null</code> if
+     * byte trees must be decoded before comparing them.
+     */
+    private final ByteTreeRawComparator rawComparator;
+
+    /**
+     * Comparator of entries induced by the comparator of byte trees.
+     */
+    private final Comparator<Entry> entryComparator;
+
+    /**
+     * Encoding of a byte tree along with the decoded byte tree if it
+     * is needed for comparison.
+     */
+    static final class Entry {
+
+        /**
+         * Encoding of byte tree.
+         */
+        final byte[] encoding;
+
+        /**
+         * Decoded byte tree or <code>null</code>.
+         */
+        final ByteTree byteTree;
+
+        /**
+         * Creates an entry.
+         *
+         * @param encoding Encoding of byte tree.
+         * @param byteTree Decoded byte tree or <code>null</code>.
+         */
+        Entry(final byte[] encoding, final ByteTree byteTree) {
+            this.encoding = encoding;
+            this.byteTree = byteTree;
+        }
+    }
+
+    /**
+     * Source of entries in sorted order.
+     */
+    abstract static class Source {
+
+        /**
+         * Returns the next entry, or <code>null</code> if there are no
+         * more entries.
+         *
+         * @return Next entry or <code>null</code>.
+         *
+         * @throws EIOException If the next entry can not be read.
+         */
+        abstract Entry next() throws EIOException;
+    }
+
+    /**
+     * Creates a sorter using the given comparator.
+     *
+     * @param comparator Comparator of byte trees.
+     */
+    ByteTreeSorter(final ByteTreeComparator comparator) {
+        this.comparator = comparator;
+        if (comparator instanceof ByteTreeRawComparator) {
+            this.rawComparator = (ByteTreeRawComparator) comparator;
+        } else {
+            this.rawComparator = null;
+        }
+        this.entryComparator = new Comparator<Entry>() {
+                @Override
+                public int compare(final Entry left, final Entry right) {
+                    return ByteTreeSorter.this.compare(left, right);
+                }
+            };
+    }
+
+    /**
+     * Compares the byte trees of the given entries.
+     *
+     * @param left Left entry.
+     * @param right Right entry.
+     * @return Result of comparison.
+     */
+    int compare(final Entry left, final Entry right) {
+        if (rawComparator == null) {
+            return comparator.compare(left.byteTree, right.byteTree);
+        } else {
+            return rawComparator.compare(left.encoding, right.encoding);
+        }
+    }
+
+    /**
+     * Returns an entry of the given encoding, or <code>null</code> if
+     * the input is <code>null</code>.
+     *
+     * @param encoding Encoding of byte tree or <code>null</code>.
+     * @return Entry of encoding or <code>null</code>.
+     *
+     * @throws EIOException If the encoding must be decoded, but is not
+     * a valid byte tree.
+     */
+    Entry entry(final byte[] encoding) throws EIOException {
+        if (encoding == null) {
+            return null;
+        } else if (rawComparator == null) {
+            return new Entry(encoding, new ByteTree(encoding, null));
+        } else {
+            return new Entry(encoding, null);
+        }
+    }
+
+    /**
+     * Returns a source of the entries of a reader.
+     *
+     * @param reader Source of encodings of byte trees.
+     * @return Source of entries.
+     */
+    Source source(final ByteTreeEncodingReader reader) {
+        return new Source() {
+            @Override
+            Entry next() throws EIOException {
+                return entry(reader.next());
+            }
+        };
+    }
+
+    /**
+     * Returns a source of the entries in the given range of an array.
+     *
+     * @param entries Array of entries.
+     * @param start Index of first entry.
+     * @param end Index following the last entry.
+     * @return Source of entries.
+     */
+    static Source source(final Entry[] entries,
+                         final int start,
+                         final int end) {
+        return new Source() {
+            private int index = start;
+            @Override
+            Entry next() {
+                if (index < end) {
+                    return entries[index++];
+                } else {
+                    return null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Tournament tree of losers used to merge a fixed number of
+     * sorted sources. Each entry costs a logarithmic number of
+     * comparisons in the number of sources, and ties are broken in
+     * favor of the source with the smallest index, which makes the
+     * merge stable.
+     */
+    final class LoserTree {
+
+        /**
+         * Sources of entries.
+         */
+        private final Source[] sources;
+
+        /**
+         * Current first entry of each source.
+         */
+        private final Entry[] heads;
+
+        /**
+         * Losers of the internal nodes, and the index of the winner
+         * at index zero.
+         */
+        private final int[] tree;
+
+        /**
+         * Creates a tree merging the given sources.
+         *
+         * @param sources Sources of entries.
+         *
+         * @throws EIOException If the first entries can not be read.
+         */
+        LoserTree(final Source[] sources) throws EIOException {
+            this.sources = sources;
+            this.heads = new Entry[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                heads[i] = sources[i].next();
+            }
+            this.tree = new int[Math.max(1, sources.length)];
+            if (sources.length > 0) {
+                tree[0] = build(1);
+            }
+        }
+
+        /**
+         * Returns true if and only if the current entry of the first
+         * source precedes the current entry of the second source.
+         *
+         * @param i Index of first source.
+         * @param j Index of second source.
+         * @return True if the first source wins.
+         */
+        private boolean beats(final int i, final int j) {
+            if (heads[i] == null) {
+                return false;
+            }
+            if (heads[j] == null) {
+                return true;
+            }
+            final int cmp = compare(heads[i], heads[j]);
+            return cmp < 0 || cmp == 0 && i < j;
+        }
+
+        /**
+         * Plays the tournament in the subtree of the given node and
+         * records the losers.
+         *
+         * @param node Index of node.
+         * @return Index of the winning source.
+         */
+        private int build(final int node) {
+            if (node >= sources.length) {
+                return node - sources.length;
+            }
+            final int left = build(2 * node);
+            final int right = build(2 * node + 1);
+            if (beats(right, left)) {
+                tree[node] = left;
+                return right;
+            } else {
+                tree[node] = right;
+                return left;
+            }
+        }
+
+        /**
+         * Returns the next entry in sorted order, or <code>null</code>
+         * if all sources are exhausted.
+         *
+         * @return Next entry or <code>null</code>.
+         *
+         * @throws EIOException If an entry can not be read.
+         */
+        Entry next() throws EIOException {
+            if (sources.length == 0) {
+                return null;
+            }
+
+            int winner = tree[0];
+            final Entry res = heads[winner];
+            if (res == null) {
+                return null;
+            }
+            heads[winner] = sources[winner].next();
+
+            // Replay the matches on the path from the winner to the
+            // root.
+            for (int node = (winner + sources.length) / 2;
+                 node > 0;
+                 node /= 2) {
+                if (beats(tree[node], winner)) {
+                    final int tmp = tree[node];
+                    tree[node] = winner;
+                    winner = tmp;
+                }
+            }
+            tree[0] = winner;
+
+            return res;
+        }
+    }
+
+    /**
+     * Writes the entries of the given sources in sorted order to a
+     * new byte tree on file.
+     *
+     * @param sources Sorted sources.
+     * @param size Total number of entries.
+     * @return Byte tree on file.
+     *
+     * @throws EIOException If merging fails.
+     */
+    private ByteTreeF write(final Source[] sources, final long size)
+        throws EIOException {
+
+        final LoserTree loserTree = new LoserTree(sources);
+
+        final File file = TempFile.getFile();
+        ByteTreeWriterF btw = null;
+        try {
+            btw = new ByteTreeWriterF(size, file);
+
+            Entry entry = loserTree.next();
+            while (entry != null) {
+                btw.unsafeWriteEncoding(entry.encoding);
+                entry = loserTree.next();
+            }
+
+        } catch (final IOException ioe) {
+            throw new EIOException("Unable to write!", ioe);
+        } finally {
+            ExtIO.strictClose(btw);
+        }
+        return new ByteTreeF(file);
+    }
+
+    /**
+     * Sorts the given entries in parallel and writes them to a new
+     * byte tree on file. Parts of the array are sorted by distinct
+     * threads and then merged while writing.
+     *
+     * @param entries Entries to be sorted.
+     * @return Byte tree on file.
+     *
+     * @throws EIOException If writing fails.
+     */
+    ByteTreeF sortRun(final Entry[] entries) throws EIOException {
+
+        final List<int[]> parts =
+            Collections.synchronizedList(new ArrayList<int[]>());
+
+        final ArrayWorker worker = new ArrayWorker(entries.length) {
+                @Override
+                public boolean divide() {
+                    return entries.length >= MIN_PARALLEL_SIZE;
+                }
+                @Override
+                public void work(final int start, final int end) {
+                    Arrays.sort(entries, start, end, entryComparator);
+                    parts.add(new int[] {start, end});
+                }
+            };
+        worker.work();
+
+        // Order the parts by position to keep the sort stable.
+        final int[][] sortedParts = parts.toArray(new int[parts.size()][]);
+        Arrays.sort(sortedParts, new Comparator<int[]>() {
+                @Override
+                public int compare(final int[] left, final int[] right) {
+                    return Integer.compare(left[0], right[0]);
+                }
+            });
+
+        final Source[] sources = new Source[sortedParts.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = source(entries, sortedParts[i][0], sortedParts[i][1]);
+        }
+        return write(sources, entries.length);
+    }
+
+    /**
+     * Merges byte trees on file with sorted children. At most {@link
+     * ByteTreeUtil#MAX_NO_READERS} byte trees can be merged.
+     *
+     * @param parts Byte trees with sorted children.
+     * @return Byte tree with the children of all inputs in sorted
+     * order.
+     *
+     * @throws EIOException If merging fails.
+     */
+    ByteTreeF merge(final List<ByteTreeF> parts) throws EIOException {
+
+        final ByteTreeEncodingReader[] readers =
+            new ByteTreeEncodingReader[parts.size()];
+        try {
+
+            long size = 0;
+            final Source[] sources = new Source[readers.length];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new ByteTreeEncodingReader(parts.get(i).file);
+                size += readers[i].getRemaining();
+                sources[i] = source(readers[i]);
+            }
+            return write(sources, size);
+
+        } finally {
+            for (int i = 0; i < readers.length; i++) {
+                if (readers[i] != null) {
+                    readers[i].close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the children of the given byte tree on file and writes
+     * the sorted runs to temporary files. The next run is read while
+     * the previous run is sorted and written by a separate thread, so
+     * if more than one run is needed, then each run holds at most
+     * half of the given number of children. Thus, at most the given
+     * number of children are kept in memory. If sorting fails, then
+     * the runs already written are deleted.
+     *
+     * @param byteTree Byte tree on file.
+     * @param maxRunSize Maximal number of children kept in memory.
+     * @return Byte trees on file with sorted children.
+     *
+     * @throws EIOException If sorting fails.
+     */
+    List<ByteTreeF> sortRuns(final ByteTreeF byteTree, final int maxRunSize)
+        throws EIOException {
+
+        final List<ByteTreeF> runs = new ArrayList<ByteTreeF>();
+
+        final ByteTreeEncodingReader reader =
+            new ByteTreeEncodingReader(byteTree.file);
+
+        RunSorter pending = null;
+        boolean done = false;
+        try {
+
+            // Two runs are kept in memory if they overlap.
+            final int overlapSize = Math.max(1, maxRunSize / 2);
+            final int fullSize =
+                reader.getRemaining() <= maxRunSize ? maxRunSize : overlapSize;
+            do {
+
+                final int runSize =
+                    (int) Math.min(fullSize, reader.getRemaining());
+                final Entry[] entries = new Entry[runSize];
+                for (int i = 0; i < runSize; i++) {
+                    entries[i] = entry(reader.next());
+                }
+
+                if (pending != null) {
+                    runs.add(pending.finish());
+                }
+                pending = new RunSorter(entries);
+
+            } while (reader.getRemaining() > 0);
+
+            runs.add(pending.finish());
+            pending = null;
+            done = true;
+
+        } finally {
+            reader.close();
+
+            // Delete the runs already written if we failed.
+            if (!done) {
+                if (pending != null) {
+                    pending.finishQuietly();
+                }
+                for (final ByteTreeF run : runs) {
+                    run.free();
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Thread that sorts and writes a run.
+     */
+    final class RunSorter {
+
+        /**
+         * Thread sorting the run.
+         */
+        private final Thread thread;
+
+        /**
+         * Resulting byte tree on file.
+         */
+        private volatile ByteTreeF result;
+
+        /**
+         * Failure of sorting, if any.
+         */
+        private volatile Throwable failure;
+
+        /**
+         * Starts sorting the given entries.
+         *
+         * @param entries Entries to sort.
+         */
+        RunSorter(final Entry[] entries) {
+            this.thread = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            result = sortRun(entries);
+                        } catch (final EIOException eioe) {
+                            failure = eioe;
+                        } catch (final RuntimeException re) {
+                            failure = re;
+                        } catch (final Error e) {
+                            failure = e;
+                        }
+                    }
+                };
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Waits until the run is written and returns it. Unchecked
+         * exceptions and errors of the sorting thread are rethrown
+         * as they are.
+         *
+         * @return Sorted run on file.
+         *
+         * @throws EIOException If sorting the run failed.
+         */
+        ByteTreeF finish() throws EIOException {
+            try {
+                thread.join();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new EIOException("Interrupted while sorting!", ie);
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new EIOException("Unable to sort run!", failure);
+            }
+            return result;
+        }
+
+        /**
+         * Waits until the run is written and deletes it, ignoring
+         * any failure, since the original failure is already being
+         * reported.
+         */
+        void finishQuietly() {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (result != null) {
+                result.free();
+            }
+        }
+    }
+}
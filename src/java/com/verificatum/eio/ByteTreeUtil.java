@@ -31,7 +31,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import com.verificatum.arithm.LargeIntegerArray;
 
@@ -55,87 +54,53 @@ public final class ByteTreeUtil {
     }
 
     /**
-     * Merge byte trees whose children are already sorted. At most
-     * {@link MAX_NO_READERS} byte trees can be merged.
+     * Returns the number of bytes in the representation of the byte
+     * tree starting at the given offset, or -1 if there is no
+     * complete byte tree before the given limit.
      *
-     * @param parts Byte trees storing already sorted byte trees.
-     * @param comparator Procedure used to order byte trees.
-     * @return Byte tree such that its children are the children of
-     * the input byte trees, but in sorted order.
+     * @param data Representation of byte tree.
+     * @param offset Offset of first byte of the representation.
+     * @param limit Index after the last byte that may be used.
+     * @return Number of bytes in the representation or -1.
      */
-    private static ByteTreeF mergeInner(final List<ByteTreeF> parts,
-                                        final ByteTreeComparator comparator) {
-
-        // Create induced comparator for queues of byte trees from
-        // comparator of byte trees.
-        final ByteTreeQueueComparator queueComparator =
-            new ByteTreeQueueComparator(comparator);
+    public static int encodedLength(final byte[] data,
+                                    final int offset,
+                                    final int limit) {
 
-        // Set up a priority queue for the parts viewed as sorted
-        // queues, sorted with respect to the first byte tree in of
-        // each queue.
+        if (limit - offset < 5) {
+            return -1;
+        }
 
-        final PriorityQueue<ByteTreeQueue> queues =
-            new PriorityQueue<ByteTreeQueue>(parts.size(), queueComparator);
+        final int value = ((data[offset + 1] & 0xFF) << 24)
+            | ((data[offset + 2] & 0xFF) << 16)
+            | ((data[offset + 3] & 0xFF) << 8)
+            | (data[offset + 4] & 0xFF);
 
-        ByteTreeWriterF btw = null;
-        try {
-
-            // Set up priority queue of queues and determine total
-            // length.
-            int totalLength = 0;
-            for (final ByteTreeF part : parts) {
+        if (value < 0) {
+            return -1;
+        }
 
-                final ByteTreeReader btr = part.getByteTreeReader();
-                totalLength = totalLength + btr.getRemaining();
+        if (data[offset] == ByteTreeBasic.LEAF) {
 
-                queues.add(new ByteTreeQueue(btr));
+            if (value > limit - offset - 5) {
+                return -1;
             }
+            return 5 + value;
 
-            // Prepare for the result.
-            final File file = TempFile.getFile();
-            btw = new ByteTreeWriterF(totalLength, file);
-
-            // Write the top element of the top queue to the output.
-            while (queues.size() > 0) {
-
-                // Fetch the first queue according to the comparator.
-                final ByteTreeQueue btq = queues.peek();
-
-                // Read the first byte tree in the chosen queue, which
-                // is assumed to be sorted.
-                final ByteTree byteTree = btq.popByteTree();
-
-                // Write byte tree to result.
-                btw.unsafeWrite(byteTree);
-
-                // We remove it *after* performing IO to make sure
-                // that it is closed properly in "finally" in the
-                // event of a failure.
-                queues.poll();
+        } else if (data[offset] == ByteTreeBasic.NODE) {
 
-                // If there are more byte trees in the queue, then we
-                // remove and put it back in the priority queue and
-                // otherwise we have one less queue to worry about.
-                if (btq.getRemaining() > 0) {
-                    queues.add(btq);
-                } else {
-                    btq.close();
+            int position = offset + 5;
+            for (int i = 0; i < value; i++) {
+                final int len = encodedLength(data, position, limit);
+                if (len < 0) {
+                    return -1;
                 }
+                position += len;
             }
+            return position - offset;
 
-            return new ByteTreeF(file);
-
-        } catch (final IOException ioe) {
-            throw new EIOError("Fatal error during merge!", ioe);
-        } catch (final EIOException eioe) {
-            throw new EIOError("Fatal error during merge!", eioe);
-        } finally {
-
-            for (final ByteTreeQueue queue : queues) {
-                ExtIO.strictClose(queue);
-            }
-            ExtIO.strictClose(btw);
+        } else {
+            return -1;
         }
     }
 
@@ -182,6 +147,8 @@ public final class ByteTreeUtil {
     public static ByteTreeF merge(final List<ByteTreeF> parts,
                                   final ByteTreeComparator comparator) {
 
+        final ByteTreeSorter sorter = new ByteTreeSorter(comparator);
+
         List<ByteTreeF> current = parts;
 
         while (current.size() > 1) {
@@ -191,7 +158,11 @@ public final class ByteTreeUtil {
 
             for (final List<ByteTreeF> slice : slices) {
 
-                current.add(mergeInner(slice, comparator));
+                try {
+                    current.add(sorter.merge(slice));
+                } catch (final EIOException eioe) {
+                    throw new EIOError("Fatal error during merge!", eioe);
+                }
 
                 for (final ByteTreeF part : slice) {
                     part.free();
@@ -203,7 +174,10 @@ public final class ByteTreeUtil {
     }
 
     /**
-     * Sorts the children of a byte tree.
+     * Sorts the children of a byte tree. The children are read in
+     * runs that are sorted in parallel with reading and then merged.
+     * Children are only decoded if the comparator is not a {@link
+     * ByteTreeRawComparator}.
      *
      * @param byteTree Source byte tree.
      * @param comparator Comparison function.
@@ -213,47 +187,18 @@ public final class ByteTreeUtil {
     public static ByteTreeF sort(final ByteTreeF byteTree,
                                  final ByteTreeComparator comparator) {
 
-        // Maximal number of byte trees stored in memory at any given
-        // time. This clearly makes implicit assumptions on the size
-        // of each byte tree.
+        // Maximal number of byte trees stored in memory while
+        // sorting runs. This clearly makes implicit assumptions on
+        // the size of each byte tree.
         final int maxBatchSize = LargeIntegerArray.getBatchSize();
 
-        // Source byte tree reader.
-        final ByteTreeReader btr = byteTree.getByteTreeReader();
-
         // List of sorted subsets of the children of the input.
-        final List<ByteTreeF> parts = new ArrayList<ByteTreeF>();
-
+        final List<ByteTreeF> parts;
         try {
-            do {
-
-                // Read a batch.
-                final int batchSize =
-                    Math.min(maxBatchSize, btr.getRemaining());
-                final ByteTree[] byteTrees = new ByteTree[batchSize];
-                for (int i = 0; i < batchSize; i++) {
-                    byteTrees[i] = btr.getNextChild().readByteTree();
-                }
-
-                // Sort batch.
-                Arrays.sort(byteTrees, comparator);
-
-                // Create byte tree for batch.
-                final ByteTree batchByteTree = new ByteTree(byteTrees);
-
-                // Write batch to file.
-                final File file = TempFile.getFile();
-                batchByteTree.unsafeWriteTo(file);
-
-                // Add byte tree on file to list of sorted parts.
-                parts.add(new ByteTreeF(file));
-
-            } while (btr.getRemaining() > 0);
-
+            parts = new ByteTreeSorter(comparator).sortRuns(byteTree,
+                                                            maxBatchSize);
         } catch (final EIOException eioe) {
             throw new EIOError("Fatal error when reading!", eioe);
-        } finally {
-            btr.close();
         }
 
         return merge(parts, comparator);
@@ -271,18 +216,18 @@ public final class ByteTreeUtil {
     public static ByteTreeF zip(final ByteTreeF leftByteTree,
                                 final ByteTreeF rightByteTree) {
 
-        ByteTreeReader leftReader = null;
-        ByteTreeReader rightReader = null;
+        ByteTreeEncodingReader leftReader = null;
+        ByteTreeEncodingReader rightReader = null;
         ByteTreeWriterF resultWriter = null;
 
         try {
 
             // Open both byte trees for reading.
-            leftReader = leftByteTree.getByteTreeReader();
-            final int leftRemaining = leftReader.getRemaining();
+            leftReader = new ByteTreeEncodingReader(leftByteTree.file);
+            final long leftRemaining = leftReader.getRemaining();
 
-            rightReader = rightByteTree.getByteTreeReader();
-            final int rightRemaining = rightReader.getRemaining();
+            rightReader = new ByteTreeEncodingReader(rightByteTree.file);
+            final long rightRemaining = rightReader.getRemaining();
 
             // Check that their lengths are equal.
             if (leftRemaining != rightRemaining) {
@@ -297,18 +242,23 @@ public final class ByteTreeUtil {
             final File resultFile = TempFile.getFile();
             resultWriter = new ByteTreeWriterF(leftRemaining, resultFile);
 
-            // Write the combined byte trees to the resulting byte tree.
-            for (int i = 0; i < leftRemaining; i++) {
+            // Write the combined byte trees to the resulting byte
+            // tree. The encodings of the children are copied without
+            // decoding them.
+            for (long i = 0; i < leftRemaining; i++) {
 
-                final ByteTree leftChild =
-                    leftReader.getNextChild().readByteTree();
-                final ByteTree rightChild =
-                    rightReader.getNextChild().readByteTree();
+                final byte[] leftChild = leftReader.next();
+                final byte[] rightChild = rightReader.next();
 
-                final ByteTree resultByteTree =
-                    new ByteTree(leftChild, rightChild);
+                final byte[] result =
+                    new byte[5 + leftChild.length + rightChild.length];
+                result[0] = ByteTreeBasic.NODE;
+                ExtIO.writeInt(result, 1, 2);
+                System.arraycopy(leftChild, 0, result, 5, leftChild.length);
+                System.arraycopy(rightChild, 0, result, 5 + leftChild.length,
+                                 rightChild.length);
 
-                resultWriter.unsafeWrite(resultByteTree);
+                resultWriter.unsafeWriteEncoding(result);
             }
 
             return new ByteTreeF(resultFile);
@@ -336,39 +286,42 @@ public final class ByteTreeUtil {
      */
     public static ByteTreeF project(final ByteTreeF byteTree, final int index) {
 
-        ByteTreeReader btr = null;
+        ByteTreeEncodingReader reader = null;
         ByteTreeWriterF btw = null;
 
         try {
 
             // Prepare source and determine number of inputs.
-            btr = byteTree.getByteTreeReader();
-            final int remaining = btr.getRemaining();
+            reader = new ByteTreeEncodingReader(byteTree.file);
+            final long remaining = reader.getRemaining();
 
             // Prepare resulting byte tree.
             final File file = TempFile.getFile();
 
             btw = new ByteTreeWriterF(remaining, file);
 
-            for (int i = 0; i < remaining; i++) {
+            for (long i = 0; i < remaining; i++) {
 
                 // Read next byte tree and verify that it has at least
                 // index children.
-                final ByteTreeReader child = btr.getNextChild();
-                if (child.isLeaf()) {
+                final byte[] child = reader.next();
+                if (child[0] != ByteTreeBasic.NODE) {
                     throw new EIOError("Child is a leaf!");
                 }
-                if (!(0 <= index || index < child.getRemaining())) {
+                if (index < 0 || index >= ExtIO.readInt(child, 1)) {
                     throw new EIOError("Invalid index!");
                 }
-                child.skipChildren(index);
 
-                final ByteTree chosenChild =
-                    child.getNextChild().readByteTree();
-
-                child.skipChildren(child.getRemaining());
+                // Locate the chosen child within the encoding.
+                int offset = 5;
+                for (int j = 0; j < index; j++) {
+                    offset += encodedLength(child, offset, child.length);
+                }
+                final int length = encodedLength(child, offset, child.length);
 
-                btw.unsafeWrite(chosenChild);
+                btw.unsafeWriteEncoding(Arrays.copyOfRange(child,
+                                                           offset,
+                                                           offset + length));
             }
 
             return new ByteTreeF(file);
@@ -378,7 +331,7 @@ public final class ByteTreeUtil {
         } catch (final IOException ioe) {
             throw new EIOError("Attempting to project invalid inputs!", ioe);
         } finally {
-            ExtIO.strictClose(btr);
+            ExtIO.strictClose(reader);
             ExtIO.strictClose(btw);
         }
     }
@@ -26,12 +26,10 @@
 
 package com.verificatum.eio;
 
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 
@@ -39,16 +37,57 @@ import java.io.IOException;
  * A writer of byte tree instances to file. The functionality of this
  * class does not match that of {@link ByteTreeReader}. This class
  * should be used inside in classes operating on files internally.
+ * The file is written through a channel from a large direct buffer,
+ * and writing is not interruptible. The node is written in
+ * large-tree mode if the number of children does not fit in an int.
  *
  * @author Douglas Wikstrom
  */
 public final class ByteTreeWriterF implements Closeable {
 
+    /**
+     * Underlying stream writing to the file.
+     */
+    final FileChannelOutputStream fcos;
+
     /**
      * Destination of instances.
      */
     DataOutputStream dos;
 
+    /**
+     * Underlying file.
+     */
+    final File file;
+
+    /**
+     * Number of children declared to be written.
+     */
+    final long size;
+
+    /**
+     * Destination of the index of the underlying file, or
+     * <code>null</code> if no index is written.
+     */
+    DataOutputStream ios;
+
+    /**
+     * Temporary file holding the index until it is complete, or
+     * <code>null</code> if no index is written.
+     */
+    File tmpIndexFile;
+
+    /**
+     * Index of the underlying file if it was written completely, and
+     * <code>null</code> otherwise.
+     */
+    ByteTreeIndexF index;
+
+    /**
+     * Number of children written.
+     */
+    long written;
+
     /**
      * Creates an instance with the given number of children/bytes to
      * be written.
@@ -60,13 +99,42 @@ public final class ByteTreeWriterF implements Closeable {
      * @throws IOException If the output file can not be opened or not
      * written.
      */
-    public ByteTreeWriterF(final int remaining, final File file)
+    public ByteTreeWriterF(final long remaining, final File file)
         throws IOException {
-        final FileOutputStream fos = new FileOutputStream(file);
-        final BufferedOutputStream bos = new BufferedOutputStream(fos);
-        this.dos = new DataOutputStream(bos);
-        dos.writeByte(ByteTreeBasic.NODE);
-        dos.writeInt(remaining);
+        this(remaining, file, false);
+    }
+
+    /**
+     * Creates an instance with the given number of children to be
+     * written, which optionally writes a {@link ByteTreeIndexF} of
+     * the file along with the byte tree to a temporary file, see
+     * {@link TempFile}. The index is only kept if the declared number
+     * of children are written and no data is transferred using
+     * {@link #unsafeTransfer(File,long,long)}, and it is then returned
+     * by {@link #getIndex()} after the writer is closed.
+     *
+     * @param remaining Number of children (supposedly) remaining to
+     * be written.
+     * @param file Destination of instances.
+     * @param index Determines if an index is written.
+     *
+     * @throws IOException If the output file can not be opened or not
+     * written.
+     */
+    public ByteTreeWriterF(final long remaining,
+                           final File file,
+                           final boolean index)
+        throws IOException {
+        this.file = file;
+        this.size = remaining;
+        this.fcos = new FileChannelOutputStream(file);
+        this.dos = new DataOutputStream(fcos);
+        dos.write(ByteTreeBasic.header(false, remaining));
+        if (index) {
+            this.tmpIndexFile = TempFile.getFile();
+            this.ios =
+                new DataOutputStream(new FileChannelOutputStream(tmpIndexFile));
+        }
     }
 
     /**
@@ -81,11 +149,32 @@ public final class ByteTreeWriterF implements Closeable {
      * @throws EIOError If the output file can not be opened or not
      * written.
      */
-    public static ByteTreeWriterF unsafeByteTreeWriterF(final int remaining,
+    public static ByteTreeWriterF unsafeByteTreeWriterF(final long remaining,
                                                         final File file)
         throws EIOError {
+        return unsafeByteTreeWriterF(remaining, file, false);
+    }
+
+    /**
+     * Creates an instance with the given number of children to be
+     * written, which optionally writes a {@link ByteTreeIndexF} of
+     * the file along with the byte tree.
+     *
+     * @param remaining Number of children (supposedly) remaining to
+     * be written.
+     * @param file Destination of instances.
+     * @param index Determines if an index is written.
+     * @return Byte tree writer.
+     *
+     * @throws EIOError If the output file can not be opened or not
+     * written.
+     */
+    public static ByteTreeWriterF unsafeByteTreeWriterF(final long remaining,
+                                                        final File file,
+                                                        final boolean index)
+        throws EIOError {
         try {
-            return new ByteTreeWriterF(remaining, file);
+            return new ByteTreeWriterF(remaining, file, index);
         } catch (final FileNotFoundException fnfe) {
             throw new EIOError("Unable to create writer!", fnfe);
         } catch (final IOException ioe) {
@@ -93,15 +182,73 @@ public final class ByteTreeWriterF implements Closeable {
         }
     }
 
+    /**
+     * Records the position of the next child in the index, if an
+     * index is written.
+     */
+    private void indexChild() {
+        if (ios != null) {
+            try {
+                ios.writeLong(fcos.position());
+            } catch (final IOException ioe) {
+                throw new EIOError("Unable to write index!", ioe);
+            }
+        }
+        written++;
+    }
+
     /**
      * Writes a byte tree to the underlying file.
      *
      * @param bt Byte tree to be written.
      */
     public void unsafeWrite(final ByteTreeBasic bt) {
+        indexChild();
         bt.unsafeWriteTo(dos);
     }
 
+    /**
+     * Writes the given encoding of a byte tree to the underlying
+     * file. The encoding is not verified.
+     *
+     * @param encoding Encoding of byte tree.
+     */
+    public void unsafeWriteEncoding(final byte[] encoding) {
+        indexChild();
+        try {
+            dos.write(encoding);
+        } catch (final IOException ioe) {
+            throw new EIOError("Unable to write!", ioe);
+        }
+    }
+
+    /**
+     * Writes the given number of bytes starting at the given position
+     * of the given file to the underlying file. The bytes are
+     * transferred directly between the files without passing through
+     * the heap, and they are not verified. This is used to copy the
+     * encodings of consecutive children of a byte tree on file. The
+     * index of the file is not written if this method is used.
+     *
+     * @param source Source file.
+     * @param position Position of the first byte in the source file.
+     * @param count Number of bytes to transfer.
+     */
+    public void unsafeTransfer(final File source,
+                               final long position,
+                               final long count) {
+        if (ios != null) {
+            ExtIO.strictClose(ios);
+            ios = null;
+            ExtIO.delete(tmpIndexFile);
+        }
+        try {
+            fcos.transferFrom(source, position, count);
+        } catch (final IOException ioe) {
+            throw new EIOError("Unable to transfer!", ioe);
+        }
+    }
+
     /**
      * Writes a byte tree to the underlying file.
      *
@@ -109,6 +256,7 @@ public final class ByteTreeWriterF implements Closeable {
      * @throws EIOException If writing fails.
      */
     public void write(final ByteTreeBasic bt) throws EIOException {
+        indexChild();
         bt.writeTo(dos);
     }
 
@@ -138,9 +286,42 @@ public final class ByteTreeWriterF implements Closeable {
     }
 
     /**
-     * Closes the underlying file.
+     * Closes the underlying file, and completes the index if it is
+     * written.
      */
     public void close() {
-        ExtIO.strictClose(dos);
+        if (ios == null) {
+            ExtIO.strictClose(dos);
+            return;
+        }
+        try {
+            final long end = fcos.position();
+            dos.close();
+            if (written == size) {
+                ios.writeLong(end);
+            }
+            ios.close();
+            ios = null;
+            if (written == size) {
+                index = ByteTreeIndexF.map(file, size, tmpIndexFile);
+            }
+        } catch (final IOException ioe) {
+            throw new EIOError("Unable to close!", ioe);
+        } catch (final EIOException eioe) {
+            throw new EIOError("Unable to complete index!", eioe);
+        } finally {
+            ExtIO.delete(tmpIndexFile);
+        }
+    }
+
+    /**
+     * Returns the index written along with the byte tree, or
+     * <code>null</code> if no complete index was written. This must
+     * only be called after the writer is closed.
+     *
+     * @return Index of the byte tree or <code>null</code>.
+     */
+    public ByteTreeIndexF getIndex() {
+        return index;
     }
 }
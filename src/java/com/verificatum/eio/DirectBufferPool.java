@@ -0,0 +1,106 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of large direct buffers used to read and write files through
+ * channels. Direct buffers are expensive to allocate and are only
+ * released by the garbage collector, so buffers of closed readers and
+ * writers are kept for reuse.
+ *
+ * @author Douglas Wikstrom
+ */
+final class DirectBufferPool {
+
+    /**
+     * Number of bytes in each buffer.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Maximal number of buffers kept for reuse.
+     */
+    static final int MAX_POOLED = 32;
+
+    /**
+     * Buffers available for reuse.
+     */
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL =
+        new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * Number of buffers available for reuse.
+     */
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    /**
+     * Avoid accidental instantiation.
+     */
+    private DirectBufferPool() {
+    }
+
+    /**
+     * Returns a cleared buffer. If the direct memory is exhausted,
+     * then a buffer on the heap is returned instead.
+     *
+     * @return Cleared buffer.
+     */
+    static ByteBuffer take() {
+        final ByteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            try {
+                return ByteBuffer.allocateDirect(BUFFER_SIZE);
+            } catch (final OutOfMemoryError oome) {
+                return ByteBuffer.allocate(BUFFER_SIZE);
+            }
+        }
+        POOLED.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns the given buffer to the pool. The buffer must not be
+     * used afterwards. Buffers on the heap are simply dropped.
+     *
+     * @param buffer Buffer that is no longer used.
+     */
+    static void give(final ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.add(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream reading a file through a channel into a large direct
+ * buffer. Reads are positional, so if the channel is closed because
+ * the reading thread is interrupted, then the file is simply
+ * re-opened and the read repeated. The interrupt status of the thread
+ * is preserved. Thus, like an ordinary stream, reading is not
+ * interruptible. This is important, since threads that are
+ * interrupted restore their interrupt status and continue.
+ *
+ * <p>
+ *
+ * Unlike {@link java.io.BufferedInputStream}, this class is not
+ * thread safe and its methods are not synchronized.
+ *
+ * @author Douglas Wikstrom
+ */
+final class FileChannelInputStream extends InputStream {
+
+    /**
+     * Underlying file.
+     */
+    private final File file;
+
+    /**
+     * Channel of the underlying file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Buffered data. The data that has not been read yet is found
+     * between the position and the limit.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Position in the file of the first byte that is not buffered.
+     */
+    private long filePosition;
+
+    /**
+     * Creates a stream reading the given file.
+     *
+     * @param file Underlying file.
+     *
+     * @throws FileNotFoundException If the file can not be opened.
+     */
+    FileChannelInputStream(final File file) throws FileNotFoundException {
+        this(file, 0);
+    }
+
+    /**
+     * Creates a stream reading the given file starting at the given
+     * position.
+     *
+     * @param file Underlying file.
+     * @param position Position of the first byte to read.
+     *
+     * @throws FileNotFoundException If the file can not be opened.
+     */
+    FileChannelInputStream(final File file, final long position)
+        throws FileNotFoundException {
+        super();
+        this.file = file;
+        this.channel = new FileInputStream(file).getChannel();
+        this.buffer = DirectBufferPool.take();
+        this.filePosition = position;
+        buffer.limit(0);
+    }
+
+    /**
+     * Returns the position in the file of the next byte to be read.
+     *
+     * @return Position of the next byte to be read.
+     */
+    long position() {
+        return filePosition - buffer.remaining();
+    }
+
+    /**
+     * Moves to the given position in the file. Data that is already
+     * buffered is kept if the position is within the buffer.
+     *
+     * @param position Position of the next byte to be read.
+     */
+    void seek(final long position) {
+        final long start = filePosition - buffer.limit();
+        if (start <= position && position <= filePosition) {
+            buffer.position((int) (position - start));
+        } else {
+            buffer.limit(0);
+            filePosition = position;
+        }
+    }
+
+    /**
+     * Skips the given number of bytes without reading them.
+     *
+     * @param length Number of bytes to skip.
+     */
+    void skipFully(final long length) {
+        seek(position() + length);
+    }
+
+    /**
+     * Reads more data into the buffer.
+     *
+     * @return Number of bytes read or -1 at the end of the file.
+     *
+     * @throws IOException If reading fails.
+     */
+    private int fill() throws IOException {
+        buffer.compact();
+
+        // The channel may throw an exception after it has read data
+        // into the buffer, so the position of the buffer is restored
+        // before the read is repeated.
+        final int start = buffer.position();
+
+        boolean interrupted = false;
+        int read;
+        try {
+            while (true) {
+                try {
+                    read = channel.read(buffer, filePosition);
+                    break;
+                } catch (final ClosedByInterruptException cbie) {
+                    buffer.position(start);
+                    interrupted = Thread.interrupted() || interrupted;
+                    channel = new FileInputStream(file).getChannel();
+                }
+            }
+        } finally {
+            buffer.flip();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (read > 0) {
+            filePosition += read;
+        }
+        return read;
+    }
+
+    /**
+     * Makes sure that the given number of bytes are buffered.
+     *
+     * @param length Number of bytes.
+     *
+     * @throws IOException If there is not enough data.
+     */
+    private void ensure(final int length) throws IOException {
+        while (buffer.remaining() < length) {
+            if (fill() < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return Byte read.
+     *
+     * @throws IOException If there is no more data.
+     */
+    byte readByte() throws IOException {
+        ensure(1);
+        return buffer.get();
+    }
+
+    /**
+     * Reads an integer in big-endian byte order.
+     *
+     * @return Integer read.
+     *
+     * @throws IOException If there is not enough data.
+     */
+    int readInt() throws IOException {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads a long in big-endian byte order.
+     *
+     * @return Long read.
+     *
+     * @throws IOException If there is not enough data.
+     */
+    long readLong() throws IOException {
+        ensure(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads exactly the given number of bytes.
+     *
+     * @param destination Destination of bytes.
+     * @param offset Offset of first byte in destination.
+     * @param length Number of bytes to read.
+     *
+     * @throws IOException If there is not enough data.
+     */
+    void readFully(final byte[] destination,
+                   final int offset,
+                   final int length)
+        throws IOException {
+        int currentOffset = offset;
+        final int end = offset + length;
+        while (currentOffset < end) {
+            final int len = read(destination, currentOffset,
+                                 end - currentOffset);
+            if (len < 0) {
+                throw new EOFException();
+            }
+            currentOffset += len;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!buffer.hasRemaining() && fill() <= 0) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] destination,
+                    final int offset,
+                    final int length)
+        throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining() && fill() <= 0) {
+            return -1;
+        }
+        final int len = Math.min(length, buffer.remaining());
+        buffer.get(destination, offset, len);
+        return len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            DirectBufferPool.give(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+}
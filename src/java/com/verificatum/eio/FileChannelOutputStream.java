@@ -0,0 +1,236 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output stream writing a file through a channel from a large direct
+ * buffer. Writes are positional, so if the channel is closed because
+ * the writing thread is interrupted, then the file is re-opened and
+ * the write is repeated. The interrupt status of the thread is
+ * preserved, i.e., writing is not interruptible. Data can also be
+ * transferred directly from another file.
+ *
+ * <p>
+ *
+ * Unlike {@link java.io.BufferedOutputStream}, this class is not
+ * thread safe and its methods are not synchronized.
+ *
+ * @author Douglas Wikstrom
+ */
+final class FileChannelOutputStream extends OutputStream {
+
+    /**
+     * Underlying file.
+     */
+    private final File file;
+
+    /**
+     * Channel of the underlying file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Buffered data that has not been written yet.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Position in the file of the first byte that is buffered.
+     */
+    private long filePosition;
+
+    /**
+     * Creates a stream writing to the given file. Any previous
+     * contents of the file are discarded.
+     *
+     * @param file Underlying file.
+     *
+     * @throws FileNotFoundException If the file can not be opened.
+     */
+    FileChannelOutputStream(final File file) throws FileNotFoundException {
+        super();
+        this.file = file;
+        this.channel = new FileOutputStream(file).getChannel();
+        this.buffer = DirectBufferPool.take();
+    }
+
+    /**
+     * Returns the position in the file of the next byte to be
+     * written.
+     *
+     * @return Position of the next byte to be written.
+     */
+    long position() {
+        return filePosition + buffer.position();
+    }
+
+    /**
+     * Re-opens the channel after it was closed due to an interrupt
+     * and clears the interrupt status of the current thread.
+     *
+     * @return True if the current thread was interrupted.
+     *
+     * @throws IOException If the file can not be opened.
+     */
+    private boolean reopen() throws IOException {
+        final boolean interrupted = Thread.interrupted();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        return interrupted;
+    }
+
+    /**
+     * Writes the buffered data to the file.
+     *
+     * @throws IOException If writing fails.
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+
+        boolean interrupted = false;
+        try {
+            while (buffer.hasRemaining()) {
+
+                // The channel may throw an exception after it has
+                // written data from the buffer, so the position of the
+                // buffer is restored before the write is repeated.
+                final int start = buffer.position();
+                try {
+                    filePosition += channel.write(buffer, filePosition);
+                } catch (final ClosedByInterruptException cbie) {
+                    buffer.position(start);
+                    interrupted = reopen() || interrupted;
+                }
+            }
+        } finally {
+            buffer.compact();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Transfers the given number of bytes starting at the given
+     * position of the given file to this stream without buffering
+     * them in memory.
+     *
+     * @param source Source file.
+     * @param position Position of first byte in the source file.
+     * @param count Number of bytes to transfer.
+     *
+     * @throws IOException If the transfer fails.
+     */
+    void transferFrom(final File source, final long position, final long count)
+        throws IOException {
+        writeBuffer();
+
+        boolean interrupted = false;
+        long sourcePosition = position;
+        long remaining = count;
+        try {
+            while (remaining > 0) {
+
+                final FileChannel sourceChannel =
+                    new RandomAccessFile(source, "r").getChannel();
+                try {
+                    while (remaining > 0) {
+                        final long transferred =
+                            channel.transferFrom(sourceChannel.position(
+                                                     sourcePosition),
+                                                 filePosition,
+                                                 remaining);
+                        if (transferred <= 0) {
+                            throw new IOException("Source is truncated!");
+                        }
+                        sourcePosition += transferred;
+                        filePosition += transferred;
+                        remaining -= transferred;
+                    }
+                } catch (final ClosedByInterruptException cbie) {
+                    interrupted = reopen() || interrupted;
+                } finally {
+                    sourceChannel.close();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] data, final int offset, final int length)
+        throws IOException {
+        int currentOffset = offset;
+        final int end = offset + length;
+        while (currentOffset < end) {
+            if (!buffer.hasRemaining()) {
+                writeBuffer();
+            }
+            final int len = Math.min(end - currentOffset, buffer.remaining());
+            buffer.put(data, currentOffset, len);
+            currentOffset += len;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            try {
+                writeBuffer();
+            } finally {
+                DirectBufferPool.give(buffer);
+                buffer = null;
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.eio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A file mapped into memory in segments, which allows random access
+ * to the contents of files larger than a single
+ * {@link MappedByteBuffer} can hold. All integers are stored in
+ * big-endian byte order. Reads and writes at absolute positions do
+ * not modify any shared state, so threads may access disjoint parts
+ * of an instance concurrently.
+ *
+ * <p>
+ *
+ * There is no way to explicitly unmap a file in Java, so the memory
+ * is released when an instance is garbage collected. Deleting the
+ * underlying file is still safe on the platforms we support.
+ *
+ * @author Douglas Wikstrom
+ */
+public final class MappedFile {
+
+    /**
+     * Logarithm of the number of bytes in each segment.
+     */
+    static final int SEGMENT_BITS = 30;
+
+    /**
+     * Number of bytes in each segment.
+     */
+    static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    /**
+     * Underlying file.
+     */
+    final File file;
+
+    /**
+     * Number of bytes in the mapped file.
+     */
+    final long size;
+
+    /**
+     * Mapped segments of the file.
+     */
+    final MappedByteBuffer[] segments;
+
+    /**
+     * Maps the given number of bytes of the given file into
+     * memory. If the file is writable and shorter than requested,
+     * then it is extended with zero bytes.
+     *
+     * @param file Underlying file.
+     * @param size Number of bytes to map.
+     * @param writable Determines if the mapping is writable.
+     *
+     * @throws IOException If the file can not be opened or mapped.
+     */
+    public MappedFile(final File file, final long size, final boolean writable)
+        throws IOException {
+        this.file = file;
+        this.size = size;
+
+        final int noSegments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[noSegments];
+
+        RandomAccessFile raf = null;
+        try {
+
+            if (writable) {
+                raf = new RandomAccessFile(file, "rw");
+                if (raf.length() < size) {
+                    raf.setLength(size);
+                }
+            } else {
+                raf = new RandomAccessFile(file, "r");
+            }
+            final FileChannel channel = raf.getChannel();
+
+            FileChannel.MapMode mode;
+            if (writable) {
+                mode = FileChannel.MapMode.READ_WRITE;
+            } else {
+                mode = FileChannel.MapMode.READ_ONLY;
+            }
+
+            for (int i = 0; i < noSegments; i++) {
+                final long position = ((long) i) << SEGMENT_BITS;
+                final long length = Math.min(SEGMENT_SIZE, size - position);
+                segments[i] = channel.map(mode, position, length);
+            }
+
+        } finally {
+            ExtIO.strictClose(raf);
+        }
+    }
+
+    /**
+     * Maps the given number of bytes of the given file into
+     * memory. If the file is writable and shorter than requested,
+     * then it is extended with zero bytes.
+     *
+     * @param file Underlying file.
+     * @param size Number of bytes to map.
+     * @param writable Determines if the mapping is writable.
+     * @return Mapped file.
+     *
+     * @throws EIOError If the file can not be opened or mapped.
+     */
+    public static MappedFile unsafeMappedFile(final File file,
+                                              final long size,
+                                              final boolean writable)
+        throws EIOError {
+        try {
+            return new MappedFile(file, size, writable);
+        } catch (final IOException ioe) {
+            throw new EIOError("Unable to map file!", ioe);
+        }
+    }
+
+    /**
+     * Returns the underlying file.
+     *
+     * @return Underlying file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of mapped bytes.
+     *
+     * @return Number of mapped bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the integer stored at the given position, which must be
+     * a multiple of four.
+     *
+     * @param position Position of integer.
+     * @return Integer stored at the given position.
+     */
+    public int getInt(final long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)]
+            .getInt((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Stores an integer at the given position, which must be a
+     * multiple of four.
+     *
+     * @param position Position of integer.
+     * @param value Integer to store.
+     */
+    public void putInt(final long position, final int value) {
+        segments[(int) (position >>> SEGMENT_BITS)]
+            .putInt((int) (position & (SEGMENT_SIZE - 1)), value);
+    }
+
+    /**
+     * Returns the long stored at the given position, which must be a
+     * multiple of eight.
+     *
+     * @param position Position of long.
+     * @return Long stored at the given position.
+     */
+    public long getLong(final long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)]
+            .getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Reads bytes starting at the given position.
+     *
+     * @param position Position of first byte.
+     * @param destination Destination of bytes.
+     * @param offset Offset in destination.
+     * @param length Number of bytes to read.
+     */
+    public void get(final long position,
+                    final byte[] destination,
+                    final int offset,
+                    final int length) {
+        long pos = position;
+        int off = offset;
+        int len = length;
+        while (len > 0) {
+            final int index = (int) (pos & (SEGMENT_SIZE - 1));
+            final int chunk = Math.min(len, SEGMENT_SIZE - index);
+
+            // Duplicates share content but not position.
+            final MappedByteBuffer segment =
+                segments[(int) (pos >>> SEGMENT_BITS)];
+            final ByteBuffer view = segment.duplicate();
+            view.position(index);
+            view.get(destination, off, chunk);
+
+            pos += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Writes bytes starting at the given position.
+     *
+     * @param position Position of first byte.
+     * @param source Source of bytes.
+     * @param offset Offset in source.
+     * @param length Number of bytes to write.
+     */
+    public void put(final long position,
+                    final byte[] source,
+                    final int offset,
+                    final int length) {
+        long pos = position;
+        int off = offset;
+        int len = length;
+        while (len > 0) {
+            final int index = (int) (pos & (SEGMENT_SIZE - 1));
+            final int chunk = Math.min(len, SEGMENT_SIZE - index);
+
+            final MappedByteBuffer segment =
+                segments[(int) (pos >>> SEGMENT_BITS)];
+            final ByteBuffer view = segment.duplicate();
+            view.position(index);
+            view.put(source, off, chunk);
+
+            pos += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+}
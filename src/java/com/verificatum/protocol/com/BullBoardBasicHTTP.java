@@ -29,16 +29,21 @@ package com.verificatum.protocol.com;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 
 import com.verificatum.crypto.Hashdigest;
 import com.verificatum.crypto.Hashfunction;
+import com.verificatum.crypto.HashfunctionHeuristic;
 import com.verificatum.crypto.SignatureKeyPair;
 import com.verificatum.crypto.SignaturePKey;
 import com.verificatum.crypto.SignatureSKey;
+import com.verificatum.crypto.SignatureUtil;
 import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeContainer;
 import com.verificatum.eio.ByteTreeF;
+import com.verificatum.eio.ByteTreeHash;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.ExtIO;
 import com.verificatum.eio.Marshalizer;
@@ -49,6 +54,7 @@ import com.verificatum.ui.UI;
 import com.verificatum.ui.info.PartyInfo;
 import com.verificatum.ui.info.PrivateInfo;
 import com.verificatum.ui.info.ProtocolInfo;
+import com.verificatum.util.ArrayWorker;
 import com.verificatum.util.Pair;
 import com.verificatum.util.Timer;
 import com.verificatum.util.Triple;
@@ -99,6 +105,33 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
      */
     public static final String HTTPL = "httpl";
 
+    /**
+     * Name of the digest mode tag.
+     */
+    public static final String DIGEST_MODE = "bbdigest";
+
+    /**
+     * Digest mode where messages are hashed sequentially.
+     */
+    public static final String SEQUENTIAL_DIGEST = "sequential";
+
+    /**
+     * Digest mode where the tree hash of messages is hashed, see
+     * {@link ByteTreeHash}.
+     */
+    public static final String TREE_DIGEST = "tree";
+
+    /**
+     * Name of the tag of the hash function used to compute tree
+     * hashes of messages.
+     */
+    public static final String TREE_HASH = "bbtreehash";
+
+    /**
+     * Default hash function used to compute tree hashes of messages.
+     */
+    public static final String DEFAULT_TREE_HASH = "SHA-256";
+
     /**
      * Default number of milliseconds to wait inbetween download
      * attempts.
@@ -164,6 +197,38 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
      */
     protected boolean external;
 
+    /**
+     * Determines if the tree hashes of messages are hashed instead of
+     * the messages themselves.
+     */
+    protected boolean treeDigest;
+
+    /**
+     * Hash function used to compute tree hashes of messages.
+     */
+    protected Hashfunction treeHashfunction;
+
+    /**
+     * Message of which the tree hash was last computed.
+     */
+    private ByteTreeBasic treeHashMessage;
+
+    /**
+     * Index of the publisher of the message of which the tree hash
+     * was last computed.
+     */
+    private int treeHashPublisher;
+
+    /**
+     * Label of the message of which the tree hash was last computed.
+     */
+    private String treeHashLabel;
+
+    /**
+     * Tree hash that was last computed.
+     */
+    private byte[] treeHash;
+
     /**
      * Creates an instance.
      *
@@ -236,6 +301,17 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
             throw new ProtocolError("Malformed party info!", murle);
         }
 
+        // The sequential digest is used unless the tree digest is
+        // explicitly chosen in the protocol info file.
+        treeDigest = protocolInfo.hasValue(DIGEST_MODE)
+            && TREE_DIGEST.equals(protocolInfo.getStringValue(DIGEST_MODE));
+
+        String treeHash = DEFAULT_TREE_HASH;
+        if (protocolInfo.hasValue(TREE_HASH)) {
+            treeHash = protocolInfo.getStringValue(TREE_HASH);
+        }
+        treeHashfunction = new HashfunctionHeuristic(treeHash);
+
         // We should probably allow programmer to change this value.
         this.pauseTime = DEFAULT_PAUSE_TIME;
 
@@ -577,6 +653,57 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
 
     // ############### Computes digests ###########################
 
+    /**
+     * Returns the tree hash of the full message. The tree hash of the
+     * last message is kept, since the same message is hashed with
+     * the hash function of each signer.
+     *
+     * @param l Index of original sender.
+     * @param messageLabel Message label under which the message is
+     * published.
+     * @param message Original message.
+     * @return Tree hash of the full message.
+     */
+    protected synchronized byte[]
+        treeHashOfMessage(final int l,
+                          final String messageLabel,
+                          final ByteTreeBasic message) {
+        if (message != treeHashMessage
+            || l != treeHashPublisher
+            || !messageLabel.equals(treeHashLabel)) {
+
+            treeHash = ByteTreeHash.digest(treeHashfunction,
+                                           fullMessage(l,
+                                                       messageLabel,
+                                                       message));
+            treeHashMessage = message;
+            treeHashPublisher = l;
+            treeHashLabel = messageLabel;
+        }
+        return treeHash;
+    }
+
+    /**
+     * Updates the digest with the full message, or with its tree hash
+     * depending on the digest mode.
+     *
+     * @param hd Digest to be updated.
+     * @param l Index of original sender.
+     * @param messageLabel Message label under which the message is
+     * published.
+     * @param message Original message.
+     */
+    protected void updateDigest(final Hashdigest hd,
+                                final int l,
+                                final String messageLabel,
+                                final ByteTreeBasic message) {
+        if (treeDigest) {
+            hd.update(treeHashOfMessage(l, messageLabel, message));
+        } else {
+            fullMessage(l, messageLabel, message).update(hd);
+        }
+    }
+
     /**
      * Computes a digest of a message.
      *
@@ -593,7 +720,7 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
                                      final ByteTreeBasic message,
                                      final int s) {
         final Hashdigest hd = pkeys[s].getDigest();
-        fullMessage(l, messageLabel, message).update(hd);
+        updateDigest(hd, l, messageLabel, message);
         return hd.digest();
     }
 
@@ -614,7 +741,7 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
                              final ByteTreeBasic message,
                              final Hashfunction jointHashfunction) {
         final Hashdigest hd = jointHashfunction.getDigest();
-        fullMessage(l, messageLabel, message).update(hd);
+        updateDigest(hd, l, messageLabel, message);
         return hd.digest();
     }
 
@@ -637,88 +764,132 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
 
     /**
      * Spends at most the time given by the timer to download, from
-     * Party <code>loc</code>, a valid signature computed by Party
+     * Party <code>loc</code>, a candidate signature computed by Party
      * <code>s</code> of a message originally published by Party
-     * <code>l</code> or a joint digest (depending on the parameters).
+     * <code>l</code> or a joint digest. The signature is not
+     * verified, see {@link #verifySignatures}.
      *
      * @param loc Index of party that should have put the file on its
      * HTTP server.
      * @param l Index of supposed producer of message.
      * @param messageLabel Message label of requested message.
      * @param s Index of supposed signer.
-     * @param message Message of which we seek a signature. This
-     * should be null to use the joint digest instead.
-     * @param jointDigest Joint digest of message of which we seek a
-     * signature. This should be null if the message is
-     * used directly.
      * @param maximalSignatureByteLength Maximal number of bytes in a
      * signature.
      * @param timer Timer indicating how much time we can spend on
      * downloading a signature.
      * @param log Log context.
-     * @return <code>true</code> or <code>false</code> depending on if
-     * a valid signature could be downloaded or not.
-     */
-    protected Pair<Boolean, Long>
-        readSignature(final int loc,
-                      final int l,
-                      final String messageLabel,
-                      final int s,
-                      final ByteTreeBasic message,
-                      final byte[] jointDigest,
-                      final int maximalSignatureByteLength,
-                      final Timer timer,
-                      final Log log) {
-
-        // Download signature.
-        final Pair<ByteTreeBasic, Long> fetchSignature =
+     * @return Candidate signature, or <code>null</code> if no
+     * candidate signature could be downloaded.
+     */
+    protected byte[] downloadSignature(final int loc,
+                                       final int l,
+                                       final String messageLabel,
+                                       final int s,
+                                       final int maximalSignatureByteLength,
+                                       final Timer timer,
+                                       final Log log) {
+
+        final ByteTreeBasic signature =
             readData(loc,
                      sigPostfix(partyPrefix(l, messageLabel), s),
                      maximalSignatureByteLength,
                      0, // This implies that the signature must be a leaf.
                      timer,
-                     log);
+                     log).first;
 
-        final ByteTreeBasic signature = fetchSignature.first;
-        final long readTime = fetchSignature.second;
-
-        // Did we download a candidate signature?
         if (signature == null) {
-
             log.info("Unable to download signature!");
-            return new Pair<Boolean, Long>(false, readTime);
+            return null;
+        }
 
-        } else {
+        try {
 
-            try {
+            // Reading like this is safe since the signature is a leaf
+            // of limited size.
+            return signature.getByteTreeReader().read();
 
-                // Compute digest.
-                byte[] digest;
-                if (message == null) {
-                    digest = digestOfJointDigest(jointDigest, s);
-                } else {
-                    digest = digestOfMessage(l, messageLabel, message, s);
-                }
+        } catch (final EIOException eioe) {
+            log.info("Unable to extract signature from ByteTree!");
+            log.register(eioe);
+            return null;
+        }
+    }
+
+    /**
+     * Verifies the given candidate signatures of a message originally
+     * published by Party <code>l</code> or of a joint digest
+     * (depending on the parameters). The digests and the signatures
+     * are computed and verified in parallel.
+     *
+     * @param l Index of supposed producer of message.
+     * @param messageLabel Message label of message.
+     * @param signers Indices of the supposed signers.
+     * @param signatures Candidate signatures of the signers.
+     * @param message Message of which we have signatures. This should
+     * be null to use the joint digest instead.
+     * @param jointDigest Joint digest of message of which we have
+     * signatures. This should be null if the message is used
+     * directly.
+     * @param log Log context.
+     * @return Index of the first signer in the list with an invalid
+     * signature, or zero if all signatures are valid.
+     */
+    protected int verifySignatures(final int l,
+                                   final String messageLabel,
+                                   final List<Integer> signers,
+                                   final List<byte[]> signatures,
+                                   final ByteTreeBasic message,
+                                   final byte[] jointDigest,
+                                   final Log log) {
+
+        final int size = signers.size();
+
+        final SignaturePKey[] keys = new SignaturePKey[size];
+        final byte[][] sigs = new byte[size][];
+        final byte[][] digests = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            keys[i] = pkeys[signers.get(i)];
+            sigs[i] = signatures.get(i);
+        }
+
+        // The tree hash is computed once for all signers.
+        if (message != null && treeDigest) {
+            treeHashOfMessage(l, messageLabel, message);
+        }
 
-                // Is the candidate signature valid? (Reading like
-                // this is safe since the signature is a leaf of
-                // limited size.)
-                final byte[] signatureBytes =
-                    signature.getByteTreeReader().read();
-                final boolean res =
-                    pkeys[s].verifyDigest(signatureBytes, digest);
-                if (!res) {
-                    log.info("Invalid signature!");
+        // Compute digests.
+        final ArrayWorker worker = new ArrayWorker(size) {
+                @Override
+                public boolean divide() {
+                    return size > 1;
                 }
-                return new Pair<Boolean, Long>(res, readTime);
+                @Override
+                public void work(final int start, final int end) {
+                    for (int i = start; i < end; i++) {
+                        final int s = signers.get(i);
+                        if (message == null) {
+                            digests[i] = digestOfJointDigest(jointDigest, s);
+                        } else {
+                            digests[i] =
+                                digestOfMessage(l, messageLabel, message, s);
+                        }
+                    }
+                }
+            };
+        worker.work();
 
-            } catch (final EIOException eioe) {
-                log.info("Unable to extract signature from ByteTree!");
-                log.register(eioe);
+        final boolean[] verdicts =
+            SignatureUtil.verifyDigests(keys, sigs, digests);
 
-                return new Pair<Boolean, Long>(false, readTime);
+        for (int i = 0; i < size; i++) {
+            if (!verdicts[i]) {
+                log.info("Invalid signature from Party "
+                         + signers.get(i) + "!");
+                return signers.get(i);
             }
         }
+        return 0;
     }
 
     /**
@@ -844,20 +1015,25 @@ public abstract class BullBoardBasicHTTP extends BullBoardBasic {
                 }
 
                 // Read signature.
-                final Pair<Boolean, Long> fetchSignature =
-                    readSignature(loc,
-                                  l,
-                                  messageLabel,
-                                  l,
-                                  message,
-                                  jointDigest,
-                                  maximalSignatureByteLength,
-                                  timer,
-                                  log);
+                final byte[] signature =
+                    downloadSignature(loc,
+                                      l,
+                                      messageLabel,
+                                      l,
+                                      maximalSignatureByteLength,
+                                      timer,
+                                      log);
 
                 // If the signature was not valid, then we attempt to
                 // download a new message and signature.
-                if (!fetchSignature.first) {
+                if (signature == null
+                    || verifySignatures(l,
+                                        messageLabel,
+                                        Collections.singletonList(l),
+                                        Collections.singletonList(signature),
+                                        message,
+                                        jointDigest,
+                                        log) > 0) {
                     message = null;
                 }
             }
@@ -95,8 +95,38 @@ public class BullBoardBasicHTTPGen extends BullBoardBasicGen {
         + "which may be different from the HTTP address used to access "
         + "it, e.g., if it is behind a NAT.";
 
+    /**
+     * Description of digest mode field.
+     */
+    public static final String DIGEST_MODE_DESCRIPTION =
+        "Decides how messages are hashed before they are signed. Legal "
+        + "values are \"sequential\" and \"tree\", where the latter "
+        + "computes a tree hash of each message on all cores. This is "
+        + "faster for large messages, but all parties must use the same "
+        + "mode. The sequential mode is used if this field is omitted.";
+
+    /**
+     * Description of tree hash function field.
+     */
+    public static final String TREE_HASH_DESCRIPTION =
+        "Hash function used to compute tree hashes of messages in the "
+        + "\"tree\" digest mode. Legal values are \"SHA-256\", "
+        + "\"SHA-384\", and \"SHA-512\", and all parties must use the "
+        + "same hash function. SHA-256 is used if this field is omitted.";
+
     @Override
     public void addProtocolInfo(final ProtocolInfo pri) {
+        final StringField digestModeField =
+            new StringField(BullBoardBasicHTTP.DIGEST_MODE,
+                            DIGEST_MODE_DESCRIPTION, 0, 1).
+            setPattern(BullBoardBasicHTTP.SEQUENTIAL_DIGEST + "|"
+                       + BullBoardBasicHTTP.TREE_DIGEST);
+        pri.addInfoFields(digestModeField);
+        final StringField treeHashField =
+            new StringField(BullBoardBasicHTTP.TREE_HASH,
+                            TREE_HASH_DESCRIPTION, 0, 1).
+            setPattern("SHA-256|SHA-384|SHA-512");
+        pri.addInfoFields(treeHashField);
         pri.getFactory()
             .addInfoFields(new StringField(BullBoardBasicHTTP.PUB_KEY,
                                            PUB_KEY_DESCRIPTION, 1, 1),
@@ -28,6 +28,8 @@ package com.verificatum.protocol.com;
 
 import java.net.InetSocketAddress;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.verificatum.crypto.Hashfunction;
 import com.verificatum.eio.ByteTree;
@@ -78,6 +80,13 @@ public final class BullBoardBasicHTTPW extends BullBoardBasicHTTP {
     public static final int DEFAULT_MAXIMAL_SIGNATURE_BYTE_LENGTH =
         1000 * 1024;
 
+    /**
+     * Number of downloaded signatures that are verified together in
+     * parallel.
+     */
+    static final int SIGNATURE_BATCH_SIZE =
+        Runtime.getRuntime().availableProcessors();
+
     /**
      * Socket addresses of the hint servers of all parties.
      */
@@ -316,24 +325,45 @@ public final class BullBoardBasicHTTPW extends BullBoardBasicHTTP {
 
         int index = signatureIndex;
 
-        // This is false iff a valid signature could not be downloaded
-        // from some party.
+        // Signers and downloaded signatures that are not verified
+        // yet.
+        final List<Integer> signers = new ArrayList<Integer>();
+        final List<byte[]> signatures = new ArrayList<byte[]>();
+
+        // This is false iff a signature could not be downloaded from
+        // some party.
         boolean verdict = true;
 
         // Provided that we have successfully downloaded a message and
         // valid signature from the publisher, we try to download the
         // signatures of other parties and sign the message downloaded
-        // from the publisher.
+        // from the publisher. Signatures are downloaded in order, but
+        // verified in batches. We stop at the first batch containing
+        // an invalid signature.
         while (0 < index && index <= k && verdict) {
 
             // Ignore parties that are not active.
             if (getActive(index)) {
 
                 // If it is our turn, we make our signature of the
-                // message available on our HTTP server.
+                // message available on our HTTP server, but only if
+                // the signatures of all previous parties are valid.
 
                 if (index == j) {
 
+                    final int invalid = verifySignatures(l,
+                                                         messageLabel,
+                                                         signers,
+                                                         signatures,
+                                                         message,
+                                                         jointDigest,
+                                                         log);
+                    if (invalid > 0) {
+                        return invalid;
+                    }
+                    signers.clear();
+                    signatures.clear();
+
                     writeSignature(l,
                                    messageLabel,
                                    message,
@@ -345,18 +375,37 @@ public final class BullBoardBasicHTTPW extends BullBoardBasicHTTP {
                 // have already downloaded that signature.
                 } else if (index != l) {
 
-                    final Pair<Boolean, Long> fetchVerdict =
-                        readSignature(index,
-                                      l,
-                                      messageLabel,
-                                      index,
-                                      message,
-                                      jointDigest,
-                                      maximalSignatureByteLength,
-                                      timer,
-                                      log);
-
-                    verdict = fetchVerdict.first;
+                    final byte[] signature =
+                        downloadSignature(index,
+                                          l,
+                                          messageLabel,
+                                          index,
+                                          maximalSignatureByteLength,
+                                          timer,
+                                          log);
+
+                    if (signature == null) {
+                        verdict = false;
+                    } else {
+                        signers.add(index);
+                        signatures.add(signature);
+                    }
+
+                    if (signers.size() >= SIGNATURE_BATCH_SIZE) {
+
+                        final int invalid = verifySignatures(l,
+                                                             messageLabel,
+                                                             signers,
+                                                             signatures,
+                                                             message,
+                                                             jointDigest,
+                                                             log);
+                        if (invalid > 0) {
+                            return invalid;
+                        }
+                        signers.clear();
+                        signatures.clear();
+                    }
                 }
             }
 
@@ -364,6 +413,19 @@ public final class BullBoardBasicHTTPW extends BullBoardBasicHTTP {
                 index++;
             }
         }
+
+        // An invalid signature takes precedence over a later
+        // signature that could not be downloaded.
+        final int invalid = verifySignatures(l,
+                                             messageLabel,
+                                             signers,
+                                             signatures,
+                                             message,
+                                             jointDigest,
+                                             log);
+        if (invalid > 0) {
+            return invalid;
+        }
         return index;
     }
 
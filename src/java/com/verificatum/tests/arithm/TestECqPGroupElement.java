@@ -29,8 +29,12 @@ package com.verificatum.tests.arithm;
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.arithm.ECqPGroupElement;
 import com.verificatum.arithm.ECqPGroupParams;
+import com.verificatum.arithm.LargeInteger;
 import com.verificatum.arithm.ModPGroup;
+import com.verificatum.arithm.PGroupElement;
+import com.verificatum.arithm.PGroupFixExp;
 import com.verificatum.test.TestParameters;
+import com.verificatum.util.Timer;
 
 
 /**
@@ -54,4 +58,71 @@ public class TestECqPGroupElement extends TestPGroupElement {
               new ModPGroup(512),
               tp);
     }
+
+    /**
+     * Verifies exponentiation against repeated multiplication in
+     * affine coordinates.
+     */
+    public void expAffine() {
+
+        final Timer timer = new Timer(testTime);
+
+        while (!timer.timeIsUp()) {
+
+            final PGroupElement x = pGroup.randomElement(rs, 10);
+            final LargeInteger e = new LargeInteger(8, rs);
+
+            PGroupElement y = pGroup.getONE();
+            for (int i = 0; i < e.intValue(); i++) {
+                y = y.mul(x);
+            }
+
+            assert x.exp(e).equals(y) : "Exponentiation failed!";
+            assert x.exp(e.neg()).equals(y.inv())
+                : "Exponentiation with negative exponent failed!";
+        }
+    }
+
+    /**
+     * Verifies fixed-base exponentiation of the standard generator
+     * and of random bases.
+     */
+    public void fixExpTab() {
+
+        final Timer timer = new Timer(testTime);
+
+        final int bitLength =
+            pGroup.getPRing().getPField().getOrder().bitLength();
+
+        int width = 1;
+
+        while (!timer.timeIsUp()) {
+
+            final PGroupElement[] bases = new PGroupElement[2];
+            bases[0] = pGroup.getg();
+            bases[1] = pGroup.randomElement(rs, 10);
+
+            for (int i = 0; i < bases.length; i++) {
+
+                final PGroupFixExp tab =
+                    pGroup.fixExpTab(bases[i], bitLength, width);
+
+                final LargeInteger[] es = new LargeInteger[5];
+                for (int j = 0; j < es.length; j++) {
+                    es[j] = new LargeInteger(bitLength, rs);
+                    assert tab.exp(es[j]).equals(bases[i].exp(es[j]))
+                        : "Fixed-base exponentiation failed!";
+                }
+
+                final PGroupElement[] res = new PGroupElement[es.length];
+                tab.exp(es, res, 1, es.length);
+                for (int j = 1; j < es.length; j++) {
+                    assert res[j].equals(bases[i].exp(es[j]))
+                        : "Fixed-base batch exponentiation failed!";
+                }
+            }
+
+            width = width % 8 + 1;
+        }
+    }
 }
@@ -26,9 +26,17 @@
 
 package com.verificatum.tests.arithm;
 
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
 import com.verificatum.arithm.ArithmFormatException;
+import com.verificatum.arithm.BPGroup;
+import com.verificatum.arithm.BPGroupElementArrayF;
 import com.verificatum.arithm.ECqPGroupParams;
 import com.verificatum.arithm.ModPGroup;
+import com.verificatum.arithm.PGroupElementArray;
+import com.verificatum.eio.ByteTreeF;
 import com.verificatum.test.TestParameters;
 
 
@@ -55,4 +63,86 @@ public class TestECqPGroupElementArray extends TestPGroupElementArray {
               new ModPGroup(512),
               tp);
     }
+
+    /**
+     * Packed representations of file-based arrays of elements.
+     *
+     * @throws ArithmFormatException If a test failed.
+     * @throws IOException If a test failed.
+     */
+    public void packedF() throws ArithmFormatException, IOException {
+        TestLargeIntegerArray.fileBased(TEST_BATCH_SIZE);
+
+        final BPGroup pGroup =
+            (BPGroup) ECqPGroupParams.getECqPGroup("P-256");
+        final PGroupElementArray x = pGroup.randomElementArray(25, rs, 20);
+
+        final ByteTreeF packed =
+            ((BPGroupElementArrayF) x).toPackedByteTree();
+        assert packed.file.length()
+            == 5 + x.size() * pGroup.getPacking().getDataWidth()
+            : "Failed to pack!";
+
+        final PGroupElementArray y = pGroup.unpackElementArray(packed.file);
+        assert y.equals(x) : "Failed to unpack!";
+        assert x.mul(y).equals(x.mul(x))
+            : "Failed to decode batches!";
+
+        TestLargeIntegerArray.memoryBased();
+        final PGroupElementArray z = pGroup.unpackElementArray(packed.file);
+        assert Arrays.equals(z.elements(), x.elements())
+            : "Failed to unpack in memory!";
+        TestLargeIntegerArray.fileBased(TEST_BATCH_SIZE);
+
+        // Elements that are not on the curve are rejected.
+        final RandomAccessFile raf = new RandomAccessFile(packed.file, "rw");
+        raf.seek(6);
+        final int b = raf.read();
+        raf.seek(6);
+        raf.write(b ^ 1);
+        raf.close();
+
+        boolean invalid = false;
+        try {
+            pGroup.unpackElementArray(packed.file);
+        } catch (final ArithmFormatException afe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject invalid element!";
+
+        packed.free();
+        x.free();
+        y.free();
+        z.free();
+
+        TestLargeIntegerArray.resetBased();
+    }
+
+    /**
+     * File-based arrays of elements are mapped. Only mapped arrays
+     * can be packed, so packing fails if the width used to map the
+     * file is wrong.
+     *
+     * @throws ArithmFormatException If a test failed.
+     */
+    public void mappedF() throws ArithmFormatException {
+        TestLargeIntegerArray.fileBased(TEST_BATCH_SIZE);
+
+        final BPGroup pGroup =
+            (BPGroup) ECqPGroupParams.getECqPGroup("P-256");
+        final PGroupElementArray x = pGroup.randomElementArray(25, rs, 20);
+        final PGroupElementArray y =
+            pGroup.toElementArray(0, x.toByteTree().getByteTreeReader());
+
+        ((BPGroupElementArrayF) x).toPackedByteTree().free();
+        ((BPGroupElementArrayF) y).toPackedByteTree().free();
+
+        for (int i = 0; i < x.size(); i++) {
+            assert y.get(i).equals(x.get(i)) : "Failed to read mapped!";
+        }
+        x.free();
+        y.free();
+
+        TestLargeIntegerArray.resetBased();
+    }
 }
@@ -33,6 +33,9 @@ import com.verificatum.arithm.ArithmError;
 import com.verificatum.arithm.ArithmException;
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.arithm.LargeInteger;
+import com.verificatum.arithm.LargeIntegerFixModPowTab;
+import com.verificatum.arithm.LargeIntegerMontgomery;
+import com.verificatum.crypto.PRGHeuristic;
 import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeBasic;
 import com.verificatum.eio.ByteTreeReader;
@@ -860,6 +863,16 @@ public class TestLargeInteger extends TestClass {
             }
             assert res == null : "Failed to fail on inversion of zero!";
 
+            // The same holds when zero is at the end of the array.
+            try {
+                integers[0] = LargeInteger.ONE;
+                integers[integers.length - 1] = prime;
+                res = LargeInteger.modInv(integers, prime);
+            } catch (final ArithmException ae) {
+                res = null;
+            }
+            assert res == null : "Failed to fail on inversion of zero!";
+
             size++;
         }
     }
@@ -924,6 +937,90 @@ public class TestLargeInteger extends TestClass {
         }
     }
 
+    /**
+     * Modular power product of many integers, i.e., large enough to
+     * use the bucket method.
+     */
+    public void modPowProdLarge() {
+
+        final Timer timer = new Timer(testTime);
+
+        int size = 512;
+
+        while (!timer.timeIsUp()) {
+
+            final LargeInteger[] bases = LargeInteger.random(size, 512, rs);
+            final LargeInteger[] exponents = LargeInteger.random(size, 256, rs);
+
+            final LargeInteger res1 =
+                LargeInteger.naiveModPowProd(bases, exponents, modulus);
+
+            final LargeInteger res2 =
+                LargeInteger.modPowProd(bases, exponents, modulus);
+
+            assert res1.equals(res2)
+                : "Failed to compute modular power product!";
+
+            size += 256;
+        }
+    }
+
+    /**
+     * Montgomery arithmetic, and modular power products and fixed
+     * base exponentiation using a Montgomery context.
+     */
+    public void montgomery() {
+
+        final Timer timer = new Timer(testTime);
+
+        int size = 1;
+
+        while (!timer.timeIsUp()) {
+
+            final LargeInteger odd =
+                new LargeInteger(64 * size + 1, rs).setBit(0);
+            final LargeIntegerMontgomery montgomery =
+                LargeIntegerMontgomery.newInstance(odd);
+            final LargeInteger even = odd.add(LargeInteger.ONE);
+            assert montgomery != null
+                && LargeIntegerMontgomery.newInstance(even) == null
+                : "Failed to create context!";
+            final BigInteger m = odd.toBigInteger();
+
+            final BigInteger a = new LargeInteger(odd, 20, rs).toBigInteger();
+            final BigInteger b = new LargeInteger(odd, 20, rs).toBigInteger();
+
+            final int[] am = montgomery.toMontgomery(a);
+            final int[] bm = montgomery.toMontgomery(b);
+
+            assert montgomery.fromMontgomery(am).equals(a)
+                : "Failed to convert to and from Montgomery form!";
+            assert montgomery.fromMontgomery(montgomery.mul(am, bm))
+                .equals(a.multiply(b).mod(m))
+                : "Failed to multiply in Montgomery form!";
+
+            final LargeInteger[] bases = LargeInteger.random(size, 512, rs);
+            final LargeInteger[] exponents =
+                LargeInteger.random(size, 512, rs);
+
+            assert LargeInteger.modPowProd(bases, exponents, odd, montgomery)
+                .equals(LargeInteger.naiveModPowProd(bases, exponents, odd))
+                : "Failed to compute modular power product!";
+
+            final LargeIntegerFixModPowTab tab =
+                new LargeIntegerFixModPowTab(bases[0], 512, 4, odd,
+                                             montgomery);
+            for (int i = 0; i < size; i++) {
+                assert tab.modPow(exponents[i])
+                    .equals(bases[0].modPow(exponents[i], odd))
+                    : "Failed to compute fixed base powers!";
+            }
+            tab.free();
+
+            size++;
+        }
+    }
+
     /**
      * Modular product of elements of primitive array.
      */
@@ -1118,4 +1215,35 @@ public class TestLargeInteger extends TestClass {
         assert LargeInteger.jacobiSymbol(BigInteger.ZERO, BigInteger.ZERO) == 0
             : "Failed to fail on zero value!";
     }
+
+    /**
+     * Verify that generating an array of random integers gives the
+     * same integers as generating them one by one.
+     */
+    public void randomArray() {
+
+        int size = 1;
+        int round = 0;
+
+        final Timer timer = new Timer(testTime);
+
+        while (!timer.timeIsUp()) {
+
+            // The bit length is bounded, since the size grows.
+            final int bitLength = 8 * (round % 32) + round % 8 + 1;
+            final byte[] seed = rs.getBytes(100);
+
+            final LargeInteger[] x =
+                LargeInteger.random(size, bitLength, new PRGHeuristic(seed));
+
+            final PRGHeuristic prg = new PRGHeuristic(seed);
+            for (int i = 0; i < size; i++) {
+                assert x[i].equals(new LargeInteger(bitLength, prg))
+                    : "Failed to generate random array!";
+            }
+
+            size *= 2;
+            round++;
+        }
+    }
 }
@@ -27,6 +27,8 @@
 package com.verificatum.tests.arithm;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 
 import com.verificatum.arithm.ArithmError;
@@ -34,6 +36,7 @@ import com.verificatum.arithm.ArithmException;
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.arithm.LargeInteger;
 import com.verificatum.arithm.LargeIntegerArray;
+import com.verificatum.arithm.LargeIntegerArrayF;
 import com.verificatum.arithm.LargeIntegerArrayIM;
 import com.verificatum.arithm.LargeIntegerIterator;
 import com.verificatum.arithm.LargeIntegerIteratorF;
@@ -41,7 +44,14 @@ import com.verificatum.arithm.Permutation;
 import com.verificatum.arithm.PermutationIM;
 import com.verificatum.arithm.PermutationF;
 import com.verificatum.eio.ByteTree;
+import com.verificatum.eio.ByteTreeBasic;
+import com.verificatum.eio.ByteTreeF;
+import com.verificatum.eio.ByteTreeIndexF;
+import com.verificatum.eio.ByteTreeMappedF;
+import com.verificatum.eio.ByteTreePackedF;
+import com.verificatum.eio.ByteTreePacking;
 import com.verificatum.eio.ByteTreeReader;
+import com.verificatum.eio.ByteTreeWriterF;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.TempFile;
 import com.verificatum.test.TestClass;
@@ -609,9 +619,22 @@ public final class TestLargeIntegerArray extends TestClass {
 
             assert yya.equals(ya) : "Failed to copy range of integers!";
 
+            // Fixed byte length allows direct access to integers.
+            xa.toByteTree(modulus.toByteArray().length);
+
+            final LargeIntegerArray zza = xa.copyOfRange(startIndex, endIndex);
+
+            assert zza.equals(ya) : "Failed to copy range of integers!";
+
+            for (int i = startIndex; i < endIndex; i++) {
+                assert xa.get(i).equals(y[i - startIndex])
+                    : "Failed to get integer!";
+            }
+
             xa.free();
             ya.free();
             yya.free();
+            zza.free();
 
             size++;
         }
@@ -745,6 +768,278 @@ public final class TestLargeIntegerArray extends TestClass {
         resetBased();
     }
 
+    /**
+     * Children of a mapped byte tree with corrupted headers are
+     * rejected when they are accessed.
+     *
+     * @throws EIOException If a test failed.
+     * @throws IOException If a test failed.
+     */
+    public void mappedCorruptF() throws EIOException, IOException {
+        final File file = TempFile.getFile();
+        final File copy = TempFile.getFile();
+
+        // The second of three leaves claims more bytes than its
+        // width and the file holds.
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeByte(ByteTreeBasic.NODE);
+        raf.writeInt(3);
+        for (int i = 0; i < 3; i++) {
+            raf.writeByte(ByteTreeBasic.LEAF);
+            raf.writeInt(i == 1 ? 1000 : 4);
+            raf.writeInt(i);
+        }
+        raf.close();
+
+        final ByteTreeMappedF mapped = ByteTreeMappedF.map(file, 3, 9);
+        assert mapped.getChild(2)[8] == 2 : "Failed to read valid child!";
+
+        boolean invalid = false;
+        try {
+            mapped.getChild(1);
+        } catch (final EIOException eioe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject corrupted child!";
+
+        invalid = false;
+        try {
+            mapped.getChild(3);
+        } catch (final EIOException eioe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject index out of range!";
+
+        invalid = false;
+        try {
+            mapped.copyOfRange(0, 3, copy);
+        } catch (final EIOException eioe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject copying corrupted child!";
+
+        TempFile.delete(file);
+        TempFile.delete(copy);
+    }
+
+    /**
+     * Random access to file-based arrays of integers of distinct
+     * byte lengths through an index.
+     *
+     * @throws ArithmFormatException If a test failed.
+     * @throws EIOException If a test failed.
+     * @throws IOException If a test failed.
+     */
+    public void indexF()
+        throws ArithmFormatException, EIOException, IOException {
+        fileBased(TEST_BATCH_SIZE);
+
+        final int size = 50;
+        final LargeInteger[] x = new LargeInteger[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = new LargeInteger(1 + 8 * (i % 7), rs);
+        }
+        final LargeIntegerArray xa = LargeIntegerArray.toLargeIntegerArray(x);
+
+        for (int i = 0; i < size; i++) {
+            assert xa.get(i).equals(x[i]) : "Failed to get!";
+        }
+        final LargeIntegerArray ya = xa.copyOfRange(17, 41);
+        assert Arrays.equals(ya.integers(), Arrays.copyOfRange(x, 17, 41))
+            : "Failed to copy range!";
+        xa.free();
+        ya.free();
+
+        // Index written along with the byte tree.
+        final File file = TempFile.getFile();
+        final int files =
+            file.getAbsoluteFile().getParentFile().list().length + 1;
+        final ByteTreeWriterF btw =
+            ByteTreeWriterF.unsafeByteTreeWriterF(size, file, true);
+        btw.unsafeWrite(x);
+        btw.close();
+
+        final ByteTreeF bt = new ByteTreeF(file);
+        final ByteTreeIndexF index = btw.getIndex();
+        assert index != null && index.size() == size
+            : "Failed to write index!";
+
+        final ByteTreeReader btr = index.getByteTreeReader();
+        btr.skipChildren(30);
+        assert new LargeInteger(btr.getNextChild()).equals(x[30])
+            : "Failed to skip using index!";
+        btr.close();
+
+        final ByteTreeReader[] btrs = bt.getIndex().getByteTreeReaders(3);
+        int i = 0;
+        for (int j = 0; j < btrs.length; j++) {
+            while (btrs[j].getRemaining() > 0) {
+                assert new LargeInteger(btrs[j].getNextChild()).equals(x[i])
+                    : "Failed to read range!";
+                i++;
+            }
+            btrs[j].close();
+        }
+        assert i == size : "Failed to cover all children!";
+
+        // Nothing is written next to the byte tree.
+        final File parent = file.getAbsoluteFile().getParentFile();
+        assert parent.list().length == files
+            : "Index left files behind!";
+        bt.free();
+
+        resetBased();
+    }
+
+    /**
+     * Byte trees on file in large-tree mode. A leaf with more bytes
+     * than fit in an int is stored in a sparse file.
+     *
+     * @throws ArithmFormatException If a test failed.
+     * @throws EIOException If a test failed.
+     * @throws IOException If a test failed.
+     */
+    public void largeTreeF()
+        throws ArithmFormatException, EIOException, IOException {
+        fileBased(TEST_BATCH_SIZE);
+
+        final long length = (1L << 31) + 7;
+        final File file = TempFile.getFile();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeByte(ByteTreeBasic.NODE);
+        raf.writeInt(2);
+        raf.writeByte(ByteTreeBasic.LARGE_LEAF);
+        raf.writeLong(length);
+        raf.setLength(raf.getFilePointer() + length);
+        raf.seek(raf.length());
+        raf.writeByte(ByteTreeBasic.LEAF);
+        raf.writeInt(1);
+        raf.writeByte(7);
+        raf.close();
+
+        assert ByteTreeF.verifyFormat(file, 2, true) : "Failed to verify!";
+        assert !ByteTreeF.verifyFormat(file, 2)
+            : "Failed to reject large header by default!";
+
+        final ByteTreeF bt = new ByteTreeF(file);
+
+        // Large headers are only accepted if requested.
+        ByteTreeReader btr = bt.getByteTreeReader();
+        boolean invalid = false;
+        try {
+            btr.getNextChild();
+        } catch (final EIOException eioe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject large header by default!";
+
+        btr = bt.getLargeByteTreeReader();
+        final ByteTreeReader child = btr.getNextChild();
+        assert child.isLeaf() && child.getLongRemaining() == length
+            && child.getRemaining() == Integer.MAX_VALUE
+            : "Failed to read large header!";
+        btr.close();
+
+        final ByteTreeIndexF index = bt.getIndex();
+        assert index.position(1) == 5 + 9 + length
+            : "Failed to index large leaf!";
+        final ByteTreeReader last = index.getByteTreeReader(1, 2);
+        assert last.getNextChild().read()[0] == 7
+            : "Failed to read after large leaf!";
+        last.close();
+        bt.free();
+
+        // A large node can not be converted to an array.
+        raf = new RandomAccessFile(file, "rw");
+        raf.writeByte(ByteTreeBasic.LARGE_NODE);
+        raf.writeLong(1L << 31);
+        raf.close();
+
+        final ByteTreeReader large = bt.getLargeByteTreeReader();
+        invalid = false;
+        try {
+            LargeIntegerArray.toLargeIntegerArray(0, large,
+                                                  LargeInteger.ZERO,
+                                                  LargeInteger.ONE);
+        } catch (final ArithmFormatException afe) {
+            invalid = true;
+        } finally {
+            large.close();
+        }
+        assert invalid : "Failed to reject large node!";
+
+        // Large headers are only used when needed.
+        raf = new RandomAccessFile(file, "rw");
+        raf.writeByte(ByteTreeBasic.LARGE_LEAF);
+        raf.writeLong(0);
+        raf.close();
+        assert !ByteTreeF.verifyFormat(file, 1)
+            : "Failed to reject non-canonical header!";
+        bt.free();
+
+        resetBased();
+    }
+
+    /**
+     * Packed representations of file-based arrays of integers of
+     * fixed byte length.
+     *
+     * @throws ArithmFormatException If a test failed.
+     * @throws EIOException If a test failed.
+     */
+    public void packedF()
+        throws ArithmFormatException, EIOException {
+        fileBased(TEST_BATCH_SIZE);
+
+        final int size = 40;
+        final int byteLength = 17;
+        final LargeInteger[] x = new LargeInteger[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = new LargeInteger(8 * (byteLength - 1), rs);
+        }
+        final LargeIntegerArray xa = LargeIntegerArray.toLargeIntegerArray(x);
+        final ByteTreeF bt = (ByteTreeF) xa.toByteTree(byteLength);
+
+        assert Arrays.equals(xa.integers(), x) : "Failed to decode packed!";
+
+        final ByteTreeF packed = ((LargeIntegerArrayF) xa).toPackedByteTree();
+        assert packed.file.length() == 5 + size * byteLength
+            : "Failed to pack!";
+
+        final LargeIntegerArray ya = LargeIntegerArray.unpack(byteLength,
+                                                              packed.file);
+        assert Arrays.equals(ya.integers(), x) : "Failed to unpack!";
+        assert Arrays.equals(ya.toByteTree(byteLength).toByteArray(),
+                             bt.toByteArray())
+            : "Failed to unpack losslessly!";
+
+        final ByteTreePacking packing =
+            new ByteTreePacking(new ByteTree(new byte[byteLength])
+                                .toByteArray());
+        final File file = TempFile.getFile();
+        ByteTreePackedF.unpack(packed.file, file, packing);
+        assert Arrays.equals(new ByteTreeF(file).toByteArray(),
+                             bt.toByteArray())
+            : "Failed to convert to standard format!";
+
+        // Integers of the wrong byte length are rejected.
+        boolean invalid = false;
+        try {
+            LargeIntegerArray.unpack(byteLength + 1, file);
+        } catch (final ArithmFormatException afe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject wrong byte length!";
+
+        TempFile.delete(file);
+        packed.free();
+        xa.free();
+        ya.free();
+
+        resetBased();
+    }
+
     /**
      * Shift and push.
      */
@@ -794,6 +1089,83 @@ public final class TestLargeIntegerArray extends TestClass {
         resetBased();
     }
 
+    /**
+     * Reading and writing file-based arrays is not affected by the
+     * interrupt status of the current thread, and the interrupt
+     * status is preserved.
+     */
+    public void interruptedF() {
+        fileBased(TEST_BATCH_SIZE);
+
+        final LargeInteger[] x = LargeInteger.random(3 * TEST_BATCH_SIZE,
+                                                     100, rs);
+
+        Thread.currentThread().interrupt();
+        try {
+            final LargeIntegerArray xa =
+                LargeIntegerArray.toLargeIntegerArray(x);
+            final LargeIntegerArray ya = xa.shiftPush(LargeInteger.ONE);
+            final LargeInteger[] y = ya.integers();
+
+            assert Thread.currentThread().isInterrupted()
+                : "Failed to preserve interrupt status!";
+
+            assert y[0].equals(LargeInteger.ONE) : "Failed to push!";
+            for (int i = 1; i < y.length; i++) {
+                assert y[i].equals(x[i - 1]) : "Failed to shift!";
+            }
+            xa.free();
+            ya.free();
+        } finally {
+            Thread.interrupted();
+            resetBased();
+        }
+    }
+
+    /**
+     * Reading and writing file-based arrays is not affected by the
+     * thread being interrupted repeatedly while data is transferred.
+     *
+     * @throws InterruptedException If a test failed.
+     */
+    public void interruptedTransferF() throws InterruptedException {
+        fileBased(TEST_BATCH_SIZE);
+
+        final LargeInteger[] x = LargeInteger.random(20000, 1000, rs);
+        final LargeInteger[][] y = new LargeInteger[1][];
+        final Throwable[] failure = new Throwable[1];
+
+        final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final LargeIntegerArray xa =
+                            LargeIntegerArray.toLargeIntegerArray(x);
+                        y[0] = xa.integers();
+                        xa.free();
+                    } catch (final Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            };
+        thread.start();
+
+        // Interrupt the thread until it is done, but let it make
+        // progress in between.
+        try {
+            while (thread.isAlive()) {
+                thread.interrupt();
+                Thread.sleep(1);
+            }
+            thread.join();
+        } finally {
+            resetBased();
+        }
+
+        assert failure[0] == null : "Failed to read or write!";
+        assert Arrays.equals(y[0], x) : "Failed to preserve data!";
+    }
+
     /**
      * Modular reduction.
      */
@@ -28,8 +28,10 @@ package com.verificatum.tests.arithm;
 
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.arithm.ECqPGroupParams;
+import com.verificatum.arithm.LargeIntegerArrayF;
 import com.verificatum.arithm.ModPGroup;
 import com.verificatum.arithm.ModPGroupElementArray;
+import com.verificatum.arithm.PGroupElementArray;
 import com.verificatum.test.TestParameters;
 
 
@@ -54,4 +56,37 @@ public class TestModPGroupElementArray extends TestPGroupElementArray {
               ECqPGroupParams.getECqPGroup("P-256"),
               tp);
     }
+
+    /**
+     * File-based arrays of elements read from a byte tree are
+     * mapped. Only mapped arrays of integers can be packed, so
+     * packing fails if the integers are not stored with a fixed
+     * width.
+     *
+     * @throws ArithmFormatException If a test failed.
+     */
+    public void mappedF() throws ArithmFormatException {
+        TestLargeIntegerArray.fileBased(TEST_BATCH_SIZE);
+
+        final ModPGroup pGroup = new ModPGroup(512);
+        final PGroupElementArray x = pGroup.randomElementArray(25, rs, 20);
+        final PGroupElementArray y =
+            pGroup.toElementArray(0, x.toByteTree().getByteTreeReader());
+
+        final LargeIntegerArrayF values =
+            (LargeIntegerArrayF) ((ModPGroupElementArray) y).values;
+        assert values.expectedByteLength > 0
+            : "Failed to store fixed width!";
+        values.toPackedByteTree().free();
+
+        for (int i = 0; i < x.size(); i++) {
+            assert y.get(i).equals(x.get(i)) : "Failed to read mapped!";
+        }
+        assert y.copyOfRange(3, 17).equals(x.copyOfRange(3, 17))
+            : "Failed to copy mapped range!";
+        x.free();
+        y.free();
+
+        TestLargeIntegerArray.resetBased();
+    }
 }
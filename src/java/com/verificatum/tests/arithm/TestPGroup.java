@@ -254,6 +254,71 @@ public abstract class TestPGroup extends TestClass {
         }
     }
 
+    /**
+     * Power product of many elements, i.e., large enough to use the
+     * bucket method.
+     */
+    public void expProdLarge() {
+
+        final Timer timer = new Timer(testTime);
+
+        int size = 512;
+        final int bitLength =
+            pGroup.getPRing().getPField().getOrder().bitLength();
+
+        while (!timer.timeIsUp()) {
+
+            final PGroupElement[] bases =
+                pGroup.randomElementArray(size, rs, 10).elements();
+            final LargeInteger[] integers =
+                LargeInteger.random(size, bitLength, rs);
+
+            final PGroupElement r =
+                pGroup.expProd(bases, integers, bitLength);
+
+            PGroupElement s = pGroup.getONE();
+            for (int i = 0; i < size; i++) {
+                s = s.mul(bases[i].exp(integers[i]));
+            }
+
+            assert r.equals(s) : "Failed to compute power product!";
+
+            size += 256;
+        }
+    }
+
+    /**
+     * Power product of many elements with short exponents, i.e., with
+     * a bit length much smaller than that of the order of the group.
+     */
+    public void expProdShort() {
+
+        final Timer timer = new Timer(testTime);
+
+        int size = 512;
+        final int bitLength = 20;
+
+        while (!timer.timeIsUp()) {
+
+            final PGroupElement[] bases =
+                pGroup.randomElementArray(size, rs, 10).elements();
+            final LargeInteger[] integers =
+                LargeInteger.random(size, bitLength, rs);
+
+            final PGroupElement r =
+                pGroup.expProd(bases, integers, bitLength);
+
+            PGroupElement s = pGroup.getONE();
+            for (int i = 0; i < size; i++) {
+                s = s.mul(bases[i].exp(integers[i]));
+            }
+
+            assert r.equals(s) : "Failed to compute power product!";
+
+            size += 256;
+        }
+    }
+
     /**
      * Equals for arrays.
      */
@@ -499,6 +499,10 @@ public class TestPGroupElementArray extends TestClass {
             final PGroupElementArray w = x.copyOfRange(1, end);
             assert wc.equals(w) : "Failed to copy range!";
 
+            for (int i = 0; i < size; i++) {
+                assert x.get(i).equals(xs[i]) : "Failed to get element!";
+            }
+
             x.free();
             yc.free();
             y.free();
@@ -26,17 +26,28 @@
 
 package com.verificatum.tests.arithm;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 
 import com.verificatum.arithm.ArithmError;
 import com.verificatum.arithm.ArithmException;
 import com.verificatum.arithm.ArithmFormatException;
+import com.verificatum.arithm.LargeInteger;
 import com.verificatum.arithm.LargeIntegerArray;
 import com.verificatum.arithm.Permutation;
+import com.verificatum.arithm.PermutationComparator;
 import com.verificatum.crypto.PRGHeuristic;
 import com.verificatum.eio.ExtIO;
 import com.verificatum.eio.ByteTree;
+import com.verificatum.eio.ByteTreeComparator;
+import com.verificatum.eio.ByteTreeF;
 import com.verificatum.eio.ByteTreeReader;
+import com.verificatum.eio.ByteTreeUtil;
+import com.verificatum.eio.EIOError;
+import com.verificatum.eio.EIOException;
+import com.verificatum.eio.TempFile;
 import com.verificatum.test.TestClass;
 import com.verificatum.test.TestParameters;
 import com.verificatum.util.Timer;
@@ -89,6 +100,7 @@ public class TestPermutation extends TestClass {
             x = Permutation.random(size, rs, 10);
             btr = x.toByteTree().getByteTreeReader();
             y = Permutation.toPermutation(x.size(), btr);
+            assert x.equals(y) : "Failed to recover permutation!";
             x.free();
             y.free();
 
@@ -109,6 +121,56 @@ public class TestPermutation extends TestClass {
             invalid = true;
         }
         assert invalid : "Failed to fail on bad byte tree!";
+
+        // Repeated indices do not represent a permutation.
+        invalid = false;
+        try {
+            final ByteTree zero = new LargeInteger(0).toByteTree(1);
+            btr = new ByteTree(zero, zero).getByteTreeReader();
+            Permutation.unsafeToPermutation(2, btr);
+        } catch (final ArithmError ae) {
+            invalid = true;
+        }
+        assert invalid : "Failed to fail on repeated index!";
+
+        // Indices need not use the fixed byte length.
+        final ByteTree[] children = new ByteTree[300];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new LargeInteger(i).toByteTree();
+        }
+        btr = new ByteTree(children).getByteTreeReader();
+        final Permutation z = Permutation.unsafeToPermutation(300, btr);
+        final Permutation w = new IdentityPermutation(300);
+        assert z.equals(Permutation.identity(300))
+            && w.size() == 300 && w.map(299) == 299
+            : "Failed to read indices of varying length!";
+        z.free();
+        w.free();
+    }
+
+    /**
+     * Subclass using the public constructor of {@link Permutation}.
+     */
+    static class IdentityPermutation extends Permutation {
+
+        /**
+         * Creates the identity permutation of the given size.
+         *
+         * @param size Size of permutation.
+         */
+        IdentityPermutation(final int size) {
+            super(size);
+        }
+
+        @Override
+        public Permutation inv() {
+            return this;
+        }
+
+        @Override
+        public Permutation shrink(final int size) {
+            return new IdentityPermutation(size);
+        }
     }
 
     /**
@@ -165,6 +227,26 @@ public class TestPermutation extends TestClass {
         TestLargeIntegerArray.resetBased();
     }
 
+    /**
+     * Subclasses that rely on the table of the base class.
+     */
+    public void subclass() {
+        final int size = 10;
+        final Permutation permutation = new IdentityPermutation(size);
+        final Permutation identity = Permutation.identity(size);
+
+        assert permutation.size() == size : "Wrong size!";
+        for (int i = 0; i < size; i++) {
+            assert permutation.map(i) == i : "Failed to map index!";
+        }
+        assert Arrays.equals(permutation.toByteTree().toByteArray(),
+                             identity.toByteTree().toByteArray())
+            : "Failed to convert to byte tree!";
+
+        permutation.free();
+        identity.free();
+    }
+
     /**
      * Excercise hashCode.
      */
@@ -405,6 +487,82 @@ public class TestPermutation extends TestClass {
         TestLargeIntegerArray.resetBased();
     }
 
+    /**
+     * Random permutations stored in memory and on file are identical
+     * when generated from identical sources of randomness.
+     *
+     * @param blockSize Expected number of indices in each block, or
+     * zero if the default is used.
+     */
+    private void random(final int blockSize) {
+
+        final Timer timer = new Timer(testTime);
+
+        int size = 1;
+
+        while (!timer.timeIsUp()) {
+
+            final byte[] seed = rs.getBytes(64);
+
+            TestLargeIntegerArray.memoryBased();
+            final Permutation x = random(size, seed, blockSize);
+
+            TestLargeIntegerArray.fileBased(TEST_BATCH_SIZE);
+            final Permutation y = random(size, seed, blockSize);
+            TestLargeIntegerArray.resetBased();
+
+            final boolean[] seen = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                final int j = x.map(i);
+                assert !seen[j] : "Repeated index!";
+                seen[j] = true;
+
+                assert y.map(i) == j : "Permutations differ!";
+            }
+
+            x.free();
+            y.free();
+
+            size++;
+        }
+    }
+
+    /**
+     * Returns a random permutation generated from the given seed.
+     *
+     * @param size Size of permutation.
+     * @param seed Seed of source of randomness.
+     * @param blockSize Expected number of indices in each block, or
+     * zero if the default is used.
+     * @return Random permutation.
+     */
+    private static Permutation random(final int size,
+                                      final byte[] seed,
+                                      final int blockSize) {
+        if (blockSize == 0) {
+            return Permutation.random(size, new PRGHeuristic(seed), 10);
+        } else {
+            return Permutation.random(size, new PRGHeuristic(seed), 10,
+                                      blockSize);
+        }
+    }
+
+    /**
+     * Random permutations stored in memory and on file are identical
+     * when generated from identical sources of randomness.
+     */
+    public void random() {
+        random(0);
+    }
+
+    /**
+     * Random permutation with a small block size, i.e., sampled block
+     * by block.
+     */
+    public void randomBlocks() {
+        random(4);
+    }
+
     /**
      * Apply permutation.
      */
@@ -460,4 +618,114 @@ public class TestPermutation extends TestClass {
         applyPermutation();
         TestLargeIntegerArray.resetBased();
     }
+
+    /**
+     * Sorts byte trees on file using the given comparator and returns
+     * the result in memory.
+     *
+     * @param children Children to be sorted.
+     * @param comparator Comparator used to sort.
+     * @return Sorted byte tree.
+     *
+     * @throws EIOException If a test failed.
+     */
+    private ByteTree sort(final ByteTree[] children,
+                          final ByteTreeComparator comparator)
+        throws EIOException {
+
+        final File file = TempFile.getFile();
+        new ByteTree(children).unsafeWriteTo(file);
+        final ByteTreeF byteTree = new ByteTreeF(file);
+
+        final ByteTreeF sorted = ByteTreeUtil.sort(byteTree, comparator);
+        final ByteTreeReader btr = sorted.getByteTreeReader();
+        final ByteTree res = btr.readByteTree();
+        btr.close();
+
+        byteTree.free();
+        sorted.free();
+
+        return res;
+    }
+
+    /**
+     * Sorting byte trees on file with and without decoding them.
+     *
+     * @throws EIOException If a test failed.
+     * @throws IOException If a test failed.
+     */
+    public void sortByteTrees()
+        throws EIOException, IOException {
+
+        final PermutationComparator comparator = new PermutationComparator();
+
+        // Forces the byte trees to be decoded.
+        final ByteTreeComparator decodingComparator =
+            new ByteTreeComparator() {
+                private static final long serialVersionUID = 1L;
+                @Override
+                public int compare(final ByteTree left,
+                                   final ByteTree right) {
+                    return comparator.compare(left, right);
+                }
+            };
+
+        final int[] batchSizes = new int[] {TEST_BATCH_SIZE, 2000};
+        for (final int batchSize : batchSizes) {
+
+            TestLargeIntegerArray.fileBased(batchSize);
+
+            // Indices of varying lengths with repetitions.
+            final int size = 3000;
+            final ByteTree[] children = new ByteTree[size];
+            for (int i = 0; i < size; i++) {
+                final byte[] index = rs.getBytes(1 + i % 2);
+                final byte[] value = new byte[4];
+                ExtIO.writeInt(value, 0, i);
+                children[i] =
+                    new ByteTree(new ByteTree(index), new ByteTree(value));
+            }
+
+            final ByteTree sorted = sort(children, comparator);
+            final ByteTree decodedSorted = sort(children, decodingComparator);
+
+            assert Arrays.equals(sorted.toByteArray(),
+                                 decodedSorted.toByteArray())
+                : "Sorting with and without decoding differs!";
+
+            final ByteTreeReader btr = sorted.getByteTreeReader();
+            assert btr.getRemaining() == size : "Wrong number of children!";
+            ByteTree previous = btr.getNextChild().readByteTree();
+            for (int i = 1; i < size; i++) {
+                final ByteTree current = btr.getNextChild().readByteTree();
+                assert comparator.compare(previous, current) <= 0
+                    : "Byte trees are not sorted!";
+                previous = current;
+            }
+
+            TestLargeIntegerArray.resetBased();
+        }
+
+        // A header claiming more bytes than remain in the file.
+        final byte[] malformed = new byte[10];
+        malformed[0] = ByteTree.NODE;
+        ExtIO.writeInt(malformed, 1, 1);
+        malformed[5] = ByteTree.LEAF;
+        ExtIO.writeInt(malformed, 6, Integer.MAX_VALUE);
+
+        final File file = TempFile.getFile();
+        final FileOutputStream fos = new FileOutputStream(file);
+        fos.write(malformed);
+        fos.close();
+
+        final ByteTreeF byteTree = new ByteTreeF(file);
+        boolean invalid = false;
+        try {
+            ByteTreeUtil.sort(byteTree, comparator);
+        } catch (final EIOError eioe) {
+            invalid = true;
+        }
+        assert invalid : "Failed to reject malformed header!";
+        byteTree.free();
+    }
 }
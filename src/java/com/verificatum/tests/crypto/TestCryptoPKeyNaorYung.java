@@ -26,8 +26,12 @@
 
 package com.verificatum.tests.crypto;
 
+import java.util.Arrays;
+
 import com.verificatum.arithm.ArithmFormatException;
+import com.verificatum.crypto.CryptoKeyPair;
 import com.verificatum.crypto.CryptoPKeyNaorYung;
+import com.verificatum.crypto.CryptoSKey;
 import com.verificatum.test.TestParameters;
 
 
@@ -48,4 +52,33 @@ public final class TestCryptoPKeyNaorYung extends TestCryptoPKey {
         throws ArithmFormatException {
         super(tp, TestCryptoKeyGenNaorYung.keyGen(tp));
     }
+
+    /**
+     * Batch encryption.
+     */
+    public void batchEncryption() {
+
+        final CryptoKeyPair keyPair = keyGen.gen(rs, 10);
+        final CryptoPKeyNaorYung pkey =
+            (CryptoPKeyNaorYung) keyPair.getPKey();
+        final CryptoSKey skey = keyPair.getSKey();
+
+        final byte[] label = rs.getBytes(10);
+
+        final byte[][] messages = new byte[7][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = rs.getBytes(20 * i);
+        }
+
+        final byte[][] ciphertexts = pkey.encrypt(label, messages, rs, 10);
+
+        assert ciphertexts.length == messages.length
+            : "Wrong number of ciphertexts!";
+
+        for (int i = 0; i < messages.length; i++) {
+            assert Arrays.equals(skey.decrypt(label, ciphertexts[i]),
+                                 messages[i])
+                : "Batch encryption failed!";
+        }
+    }
 }
@@ -26,8 +26,18 @@
 
 package com.verificatum.tests.crypto;
 
+import java.io.File;
+import java.util.Arrays;
+
 import com.verificatum.arithm.ArithmFormatException;
+import com.verificatum.crypto.CryptoPKey;
 import com.verificatum.crypto.CryptoSKeyNaorYung;
+import com.verificatum.eio.ByteTree;
+import com.verificatum.eio.ByteTreeReader;
+import com.verificatum.eio.ByteTreeReaderF;
+import com.verificatum.eio.ByteTreeWriterF;
+import com.verificatum.eio.EIOException;
+import com.verificatum.eio.TempFile;
 import com.verificatum.test.TestParameters;
 
 
@@ -48,4 +58,62 @@ public final class TestCryptoSKeyNaorYung extends TestCryptoSKey {
         throws ArithmFormatException {
         super(tp, TestCryptoKeyGenNaorYung.keyGen(tp));
     }
+
+    /**
+     * Bulk decryption.
+     *
+     * @throws EIOException If a test fails.
+     */
+    public void bulkDecryption() throws EIOException {
+
+        final CryptoPKey pkey = keyPair.getPKey();
+        final CryptoSKeyNaorYung skey =
+            (CryptoSKeyNaorYung) keyPair.getSKey();
+
+        final byte[] label = rs.getBytes(10);
+
+        final int size = 7;
+        final int invalidIndex = 3;
+        final int nodeIndex = 5;
+
+        final byte[][] messages = new byte[size][];
+        final ByteTree[] ciphertexts = new ByteTree[size];
+        for (int i = 0; i < size; i++) {
+            messages[i] = rs.getBytes(i + 1);
+            ciphertexts[i] =
+                new ByteTree(pkey.encrypt(label, messages[i], rs, 10));
+        }
+        ciphertexts[invalidIndex] =
+            new ByteTree(pkey.encrypt(rs.getBytes(10), messages[0], rs, 10));
+
+        // A malformed entry does not prevent decrypting the others.
+        ciphertexts[nodeIndex] =
+            new ByteTree(new ByteTree(new byte[1]), new ByteTree());
+
+        final File file = TempFile.getFile();
+        final ByteTreeWriterF btw =
+            ByteTreeWriterF.unsafeByteTreeWriterF(size, file);
+        final boolean[] valid =
+            skey.decrypt(label,
+                         new ByteTree(ciphertexts).getByteTreeReader(),
+                         btw);
+        btw.close();
+
+        final ByteTreeReader btr = new ByteTreeReaderF(file);
+        for (int i = 0; i < size; i++) {
+
+            final byte[] plaintext = btr.getNextChild().read();
+
+            if (i == invalidIndex || i == nodeIndex) {
+                assert !valid[i] && plaintext.length == 0
+                    : "Invalid ciphertext was not detected!";
+            } else {
+                assert valid[i] && Arrays.equals(plaintext, messages[i])
+                    : "Bulk decryption failed!";
+            }
+        }
+        btr.close();
+
+        TempFile.delete(file);
+    }
 }
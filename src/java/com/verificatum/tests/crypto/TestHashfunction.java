@@ -26,11 +26,21 @@
 
 package com.verificatum.tests.crypto;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.verificatum.crypto.Hashdigest;
 import com.verificatum.crypto.Hashfunction;
+import com.verificatum.eio.ByteTree;
 import com.verificatum.eio.ByteTreeBasic;
+import com.verificatum.eio.ByteTreeContainer;
+import com.verificatum.eio.ByteTreeF;
+import com.verificatum.eio.ByteTreeHash;
 import com.verificatum.eio.ByteTreeReader;
 import com.verificatum.eio.EIOException;
 import com.verificatum.eio.Marshalizer;
+import com.verificatum.eio.TempFile;
 import com.verificatum.test.TestClass;
 import com.verificatum.test.TestParameters;
 import com.verificatum.util.Timer;
@@ -137,4 +147,124 @@ public class TestHashfunction extends TestClass {
             hashfunction.hash(input);
         }
     }
+
+    /**
+     * Verify that all ways of feeding a digest give the same result
+     * as hashing directly.
+     */
+    public void digesting() {
+
+        int size = 1;
+
+        final Timer timer = new Timer(testTime);
+
+        while (!timer.timeIsUp()) {
+
+            final byte[] input1 = rs.getBytes(size);
+            final byte[] input2 = rs.getBytes(2 * size + 1);
+            final byte[] expected = hashfunction.hash(input1, input2);
+
+            final Hashdigest hd1 = hashfunction.getDigest();
+            hd1.update(input1, input2);
+            assert Arrays.equals(hd1.digest(), expected)
+                : "Failed to digest arrays!";
+
+            final byte[] padded = new byte[input2.length + 2];
+            System.arraycopy(input2, 0, padded, 1, input2.length);
+
+            final Hashdigest hd2 = hashfunction.getDigest();
+            hd2.update(input1, 0, input1.length);
+            hd2.update(padded, 1, input2.length);
+            assert Arrays.equals(hd2.digest(), expected)
+                : "Failed to digest ranges!";
+
+            final Hashdigest hd3 = hashfunction.getDigest();
+            hd3.update(ByteBuffer.wrap(input1));
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(input2.length);
+            buffer.put(input2);
+            buffer.flip();
+            hd3.update(buffer);
+            assert !buffer.hasRemaining() : "Failed to consume buffer!";
+
+            final byte[] output = new byte[expected.length + 1];
+            final int len = hd3.digest(output, 1);
+            assert len == expected.length
+                && Arrays.equals(Arrays.copyOfRange(output, 1, 1 + len),
+                                 expected)
+                : "Failed to digest buffers!";
+
+            size++;
+        }
+    }
+
+    /**
+     * Verify that the tree hash of a byte tree only depends on its
+     * representation and not on where it is stored.
+     */
+    public void treeHashing() {
+
+        final int size = ByteTreeHash.CHUNK_SIZE + ByteTreeHash.CHUNK_SIZE / 2;
+
+        final ByteTree first = new ByteTree(rs.getBytes(size));
+        final ByteTree second = new ByteTree(rs.getBytes(size / 3));
+
+        final ByteTree inMemory = new ByteTree(first, second);
+        final byte[] expected = ByteTreeHash.digest(hashfunction, inMemory);
+
+        final File file = TempFile.getFile();
+        inMemory.unsafeWriteTo(file);
+        final ByteTreeF onFile = new ByteTreeF(file);
+        assert Arrays.equals(ByteTreeHash.digest(hashfunction, onFile),
+                             expected)
+            : "Failed to hash byte tree on file!";
+
+        final File firstFile = TempFile.getFile();
+        first.unsafeWriteTo(firstFile);
+        final ByteTreeF firstOnFile = new ByteTreeF(firstFile);
+        final ByteTreeContainer mixed =
+            new ByteTreeContainer(firstOnFile, second);
+        assert Arrays.equals(ByteTreeHash.digest(hashfunction, mixed),
+                             expected)
+            : "Failed to hash mixed byte tree!";
+
+        assert !Arrays.equals(ByteTreeHash.digest(hashfunction, first),
+                              expected)
+            : "Distinct byte trees have the same tree hash!";
+
+        TempFile.delete(file);
+        TempFile.delete(firstFile);
+    }
+
+    /**
+     * Verify that streaming a byte tree from a reader into a digest
+     * gives the same digest as its encoding.
+     *
+     * @throws EIOException If the test failed.
+     */
+    public void readerHashing()
+        throws EIOException {
+
+        final ByteTree bt =
+            new ByteTree(new ByteTree(rs.getBytes(100000)),
+                         new ByteTree(new byte[0]),
+                         new ByteTree(new ByteTree(rs.getBytes(3))));
+        final byte[] expected = hashfunction.hash(bt.toByteArray());
+
+        Hashdigest hd = hashfunction.getDigest();
+        bt.getByteTreeReader().update(hd);
+        assert Arrays.equals(hd.digest(), expected)
+            : "Failed to hash reader of byte tree in memory!";
+
+        final File file = TempFile.getFile();
+        bt.unsafeWriteTo(file);
+        final ByteTreeReader btr = new ByteTreeF(file).getByteTreeReader();
+
+        hd = hashfunction.getDigest();
+        btr.update(hd);
+        btr.close();
+        assert Arrays.equals(hd.digest(), expected)
+            : "Failed to hash reader of byte tree on file!";
+
+        TempFile.delete(file);
+    }
 }
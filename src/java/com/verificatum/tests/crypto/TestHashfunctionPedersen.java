@@ -29,8 +29,13 @@ package com.verificatum.tests.crypto;
 import java.util.Arrays;
 
 import com.verificatum.arithm.ArithmFormatException;
+import com.verificatum.arithm.ECqPGroupParams;
+import com.verificatum.arithm.LargeInteger;
 import com.verificatum.arithm.ModPGroup;
+import com.verificatum.arithm.PField;
+import com.verificatum.arithm.PFieldElement;
 import com.verificatum.arithm.PGroup;
+import com.verificatum.arithm.PGroupElement;
 import com.verificatum.crypto.HashfunctionFixedLength;
 import com.verificatum.crypto.HashfunctionPedersen;
 import com.verificatum.eio.ByteTreeBasic;
@@ -137,4 +142,60 @@ public final class TestHashfunctionPedersen extends TestClass {
         assert !hf.equals(new Object())
             : "Inequality with instance of different class failed!";
     }
+
+    /**
+     * Verify that hashing with pre-computed tables, also in batches,
+     * gives the power-product of the generators.
+     *
+     * @param pGroup Underlying group.
+     */
+    private void hashing(final PGroup pGroup) {
+
+        final PGroupElement[] generators = new PGroupElement[7];
+        for (int i = 0; i < generators.length; i++) {
+            generators[i] = pGroup.randomElement(rs, 50);
+        }
+        final HashfunctionPedersen hfp = new HashfunctionPedersen(generators);
+
+        final PField pField = pGroup.getPRing().getPField();
+        final int expLength = pField.getEncodeLength();
+
+        final byte[][] inputs = new byte[3][];
+        final byte[][] expected = new byte[inputs.length][];
+        for (int j = 0; j < inputs.length; j++) {
+
+            inputs[j] = rs.getBytes(hfp.getInputLength() / 8);
+
+            final PFieldElement[] exponents =
+                new PFieldElement[generators.length];
+            for (int i = 0; i < exponents.length; i++) {
+                final LargeInteger li =
+                    LargeInteger.toPositive(inputs[j], i * expLength,
+                                            expLength);
+                exponents[i] = pField.toElement(li);
+            }
+            expected[j] = pGroup.expProd(generators, exponents).toByteArray();
+
+            assert Arrays.equals(hfp.hash(inputs[j]), expected[j])
+                : "Failed to hash!";
+        }
+
+        final byte[][] outputs = hfp.hash(inputs);
+        for (int j = 0; j < inputs.length; j++) {
+            assert Arrays.equals(outputs[j], expected[j])
+                : "Failed to hash batch!";
+        }
+    }
+
+    /**
+     * Verify that hashing with pre-computed tables, also in batches,
+     * gives the power-product of the generators.
+     *
+     * @throws ArithmFormatException If the test fails.
+     */
+    public void hashing()
+        throws ArithmFormatException {
+        hashing(new ModPGroup(512));
+        hashing(ECqPGroupParams.getECqPGroup("P-256"));
+    }
 }
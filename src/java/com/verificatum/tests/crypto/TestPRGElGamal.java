@@ -26,6 +26,8 @@
 
 package com.verificatum.tests.crypto;
 
+import java.util.Arrays;
+
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.arithm.LargeInteger;
 import com.verificatum.arithm.SafePrimeTable;
@@ -110,4 +112,32 @@ public final class TestPRGElGamal extends TestPRG {
         }
         assert invalid : "Failed to fail on bad byte tree!";
     }
+
+    /**
+     * Verify that the output does not depend on how it is divided
+     * into requests.
+     */
+    public void consistency() {
+
+        for (int i = 0; i < prgs.length; i++) {
+
+            final byte[] seedBytes = rs.getBytes(prgs[i].minNoSeedBytes());
+
+            prgs[i].setSeed(seedBytes);
+            final byte[] expected = prgs[i].getBytes(1000);
+
+            prgs[i].setSeed(seedBytes);
+            final byte[] pieces = new byte[expected.length];
+            int index = 0;
+            int length = 1;
+            while (index < pieces.length) {
+                final int len = Math.min(length, pieces.length - index);
+                prgs[i].getBytes(pieces, index, len);
+                index += len;
+                length += 13;
+            }
+            assert Arrays.equals(pieces, expected)
+                : "Output depends on the division into requests!";
+        }
+    }
 }
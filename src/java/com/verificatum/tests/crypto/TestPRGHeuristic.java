@@ -26,6 +26,8 @@
 
 package com.verificatum.tests.crypto;
 
+import java.util.Arrays;
+
 import com.verificatum.arithm.ArithmFormatException;
 import com.verificatum.crypto.CryptoFormatException;
 import com.verificatum.crypto.PRG;
@@ -77,4 +79,45 @@ public final class TestPRGHeuristic extends TestPRG {
         }
         assert invalid : "Failed to fail on bad byte tree!";
     }
+
+    /**
+     * Verify that seekable and parallel output agrees with sequential
+     * output.
+     */
+    public void seekable() {
+
+        final byte[] seed = rs.getBytes(100);
+        final PRGHeuristic sequential = new PRGHeuristic(seed);
+        final PRGHeuristic bulk = new PRGHeuristic(seed);
+        final int blockLength = bulk.getBlockLength();
+
+        // Produce output in small pieces to avoid the parallel path.
+        final int length = 3 * 1024 * blockLength + 17;
+        final byte[] expected = new byte[length];
+        int index = 0;
+        int pieceLength = 1;
+        while (index < length) {
+            final int len = Math.min(pieceLength, length - index);
+            sequential.getBytes(expected, index, len);
+            index += len;
+            pieceLength = pieceLength % 37 + 1;
+        }
+
+        final byte[] prefix = new byte[5];
+        bulk.getBytes(prefix);
+        final byte[] rest = new byte[length - prefix.length];
+        bulk.getBytes(rest);
+        assert Arrays.equals(prefix, Arrays.copyOfRange(expected, 0, 5))
+            && Arrays.equals(rest, Arrays.copyOfRange(expected, 5, length))
+            : "Parallel output differs from sequential output!";
+
+        final int blockOffset = 7;
+        final byte[] seeked = new byte[length - blockOffset * blockLength];
+        bulk.getBytes(blockOffset, seeked);
+        assert Arrays.equals(seeked,
+                             Arrays.copyOfRange(expected,
+                                                blockOffset * blockLength,
+                                                length))
+            : "Seekable output differs from sequential output!";
+    }
 }
@@ -27,11 +27,16 @@
 package com.verificatum.tests.crypto;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.verificatum.crypto.RandomDevice;
 import com.verificatum.crypto.RandomSource;
 import com.verificatum.eio.ByteTreeBasic;
+import com.verificatum.eio.ExtIO;
 import com.verificatum.eio.Marshalizer;
+import com.verificatum.eio.TempFile;
 import com.verificatum.test.TestParameters;
 import com.verificatum.util.Timer;
 import com.verificatum.test.TestClass;
@@ -118,4 +123,51 @@ public final class TestRandomDevice extends TestClass {
     public void excHumanDescription() {
         new RandomDevice().humanDescription(true);
     }
+
+    /**
+     * Verify that bytes are never handed out twice when many threads
+     * read concurrently.
+     *
+     * @throws Exception If a test fails.
+     */
+    public void concurrent() throws Exception {
+
+        // A file of distinct integers acts as a device.
+        final int numberOfInts = 1 << 19;
+        final byte[] content = new byte[4 * numberOfInts];
+        for (int i = 0; i < numberOfInts; i++) {
+            ExtIO.writeInt(content, 4 * i, i);
+        }
+        final File file = TempFile.getFile();
+        Files.write(file.toPath(), content);
+
+        final RandomDevice device = new RandomDevice(file);
+        final Set<Integer> read = new HashSet<Integer>();
+
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < 200; j++) {
+                            final byte[] bytes = device.getBytes(4 * (j + 1));
+                            synchronized (read) {
+                                for (int k = 0; k < bytes.length; k += 4) {
+                                    read.add(ExtIO.readInt(bytes, k));
+                                }
+                            }
+                        }
+                    }
+                };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+
+        assert read.size() == threads.length * 200 * 201 / 2
+            : "Bytes were read twice or not at all!";
+
+        TempFile.delete(file);
+    }
 }
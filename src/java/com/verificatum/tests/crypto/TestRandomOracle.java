@@ -101,5 +101,26 @@ public final class TestRandomOracle extends TestHashfunction {
 
         assert !ro1.equals(ro2) : "Failed to fail on different lengths!";
     }
-}
 
+    /**
+     * Hashing of byte trees and readers of byte trees.
+     *
+     * @throws EIOException If the test failed.
+     */
+    public void byteTreeHashing()
+        throws EIOException {
+
+        final RandomOracle ro = (RandomOracle) hashfunction;
+
+        final ByteTree bt =
+            new ByteTree(new ByteTree(rs.getBytes(100)),
+                         new ByteTree(new ByteTree(new byte[0]),
+                                      new ByteTree(rs.getBytes(10000))));
+        final byte[] expected = ro.hash(bt.toByteArray());
+
+        assert Arrays.equals(ro.hash(bt), expected)
+            : "Failed to hash byte tree!";
+        assert Arrays.equals(ro.hash(bt.getByteTreeReader()), expected)
+            : "Failed to hash reader of byte tree!";
+    }
+}
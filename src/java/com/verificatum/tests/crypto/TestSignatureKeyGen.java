@@ -34,6 +34,7 @@ import com.verificatum.crypto.SignatureKeyGenHeuristic;
 import com.verificatum.crypto.SignatureKeyPair;
 import com.verificatum.crypto.SignaturePKey;
 import com.verificatum.crypto.SignatureSKey;
+import com.verificatum.crypto.SignatureUtil;
 import com.verificatum.eio.ExtIO;
 import com.verificatum.eio.Marshalizer;
 import com.verificatum.test.TestParameters;
@@ -178,4 +179,44 @@ public final class TestSignatureKeyGen {
             }
         }
     }
+
+    /**
+     * Verify that batches of signatures are verified correctly.
+     *
+     * @param tp Test parameters configuration of the servers.
+     * @throws Exception when failing test.
+     */
+    public static void verifyDigests(final TestParameters tp)
+        throws Exception {
+
+        for (int i = 0; i < NO_KEYGEN; i++) {
+
+            setupKeyGen(tp, i);
+
+            final int size = 5;
+            final SignaturePKey[] pkeys = new SignaturePKey[size];
+            final byte[][] signatures = new byte[size][];
+            final byte[][] digests = new byte[size][];
+
+            for (int j = 0; j < size; j++) {
+                final SignatureKeyPair keyPair = keygen.gen(rs);
+                pkeys[j] = keyPair.getPKey();
+                digests[j] = rs.getBytes(32);
+                signatures[j] = keyPair.getSKey().signDigest(rs, digests[j]);
+            }
+
+            // Use the wrong key for one of the signatures.
+            final SignaturePKey tmp = pkeys[3];
+            pkeys[3] = pkeys[4];
+
+            final boolean[] verdicts =
+                SignatureUtil.verifyDigests(pkeys, signatures, digests);
+            for (int j = 0; j < size; j++) {
+                assert verdicts[j] == (j != 3)
+                    : "Failed to verify batch of signatures!";
+            }
+
+            pkeys[3] = tmp;
+        }
+    }
 }
@@ -95,7 +95,8 @@ public final class InfoTool {
 
     /**
      * Extracts a comma separated string containing the names of all
-     * options.
+     * options. Fields that may be omitted and have no default value
+     * are optional, and are only written if the user gives a value.
      *
      * @param defaultInfo Info instance containing some default
      * values.
@@ -108,9 +109,10 @@ public final class InfoTool {
         final StringBuilder sb = new StringBuilder();
         for (final InfoField inf : defaultInfo.infoFields) {
             final String name = inf.getName();
+            final boolean isRequired =
+                !defaultInfo.hasValue(name) && inf.minOccurs > 0;
 
-            if (!name.equals(RootInfo.VERSION)
-                && defaultInfo.hasValue(inf.getName()) != required) {
+            if (!name.equals(RootInfo.VERSION) && isRequired == required) {
                 sb.append(",-");
                 sb.append(name);
             }
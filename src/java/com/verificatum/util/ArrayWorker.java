@@ -66,6 +66,19 @@ public abstract class ArrayWorker {
         return true;
     }
 
+    /**
+     * Returns the maximal number of parts per core the work is
+     * divided into when work stealing is used. By default the work is
+     * split evenly, since parts often have a large fixed cost.
+     * Subclasses where the cost of operations varies can divide the
+     * work more finely to let idle cores steal parts.
+     *
+     * @return Maximal number of parts per core.
+     */
+    public int partsPerCore() {
+        return ForkJoinWorkers.PARTS_PER_CORE;
+    }
+
     /**
      * Performs the work delegated to a given core.
      *
@@ -92,7 +105,11 @@ public abstract class ArrayWorker {
      * @param size Length of arrays.
      */
     private static void divideWork(final ArrayWorker worker, final int size) {
-        if (worker.divide()) {
+        if (worker.divide() && ForkJoinWorkers.ENABLED) {
+
+            ForkJoinWorkers.work(worker, size);
+
+        } else if (worker.divide()) {
 
             // Fetch a pool of threads.
             final UniformExecutor executor = UniformExecutors.get();
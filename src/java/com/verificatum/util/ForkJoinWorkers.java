@@ -0,0 +1,332 @@
+
+/* Copyright 2008-2019 Douglas Wikstrom
+ *
+ * This file is part of Verificatum Core Routines (VCR).
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS
+ * BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.verificatum.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Work stealing backend of {@link ArrayWorker} and {@link
+ * SplitWorker}. The work is divided into several parts per core,
+ * which are scheduled by a shared fork-join pool. Thus, a core that
+ * finishes early steals parts from the other cores, and workers
+ * invoked from within other workers execute their parts in the same
+ * pool instead of allocating additional threads.
+ *
+ * <p>
+ *
+ * This backend is only used if the system property {@link #PROPERTY}
+ * is set to <code>forkjoin</code> at startup. Otherwise the work is
+ * split evenly on a fixed pool with one thread for each core.
+ *
+ * @author Douglas Wikstrom
+ */
+final class ForkJoinWorkers {
+
+    /**
+     * Name of system property used to choose the backend.
+     */
+    static final String PROPERTY = "com.verificatum.util.scheduler";
+
+    /**
+     * Indicates if this backend is used.
+     */
+    static final boolean ENABLED =
+        "forkjoin".equals(System.getProperty(PROPERTY));
+
+    /**
+     * Default maximal number of parts per core.
+     */
+    static final int PARTS_PER_CORE = 1;
+
+    /**
+     * Number of cores.
+     */
+    static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pool of threads with maximum priority shared by all workers.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * Avoid instantiation of this class.
+     */
+    private ForkJoinWorkers() {
+    }
+
+    /**
+     * Returns the shared pool, which is created upon first use.
+     *
+     * @return Shared pool.
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            final ForkJoinPool.ForkJoinWorkerThreadFactory factory =
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    @Override
+                    public ForkJoinWorkerThread newThread(final ForkJoinPool
+                                                          p) {
+                        final ForkJoinWorkerThread thread =
+                            ForkJoinPool.defaultForkJoinWorkerThreadFactory
+                            .newThread(p);
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MAX_PRIORITY);
+                        return thread;
+                    }
+                };
+            pool = new ForkJoinPool(CORES, factory, null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Executes the given task. If the caller is itself executed in
+     * the shared pool, then the task is executed directly by the
+     * caller.
+     *
+     * @param <T> Return type of task.
+     * @param task Task to execute.
+     * @return Result of task.
+     */
+    private static <T> T invoke(final ForkJoinTask<T> task) {
+        final ForkJoinPool shared = getPool();
+        if (ForkJoinTask.getPool() == shared) {
+            return task.invoke();
+        } else {
+            return shared.invoke(task);
+        }
+    }
+
+    /**
+     * Returns the number of parts to use.
+     *
+     * @param partsPerCore Maximal number of parts per core.
+     * @param total Total amount of work.
+     * @return Number of parts.
+     */
+    private static int parts(final int partsPerCore, final int total) {
+        final long parts = ((long) CORES) * Math.max(1, partsPerCore);
+        return (int) Math.max(1, Math.min(parts, total));
+    }
+
+    /**
+     * Returns the index where the given part starts when the total
+     * amount of work is divided into parts of roughly equal size.
+     *
+     * @param part Index of part.
+     * @param parts Number of parts.
+     * @param total Total amount of work.
+     * @return Start of part.
+     */
+    static int start(final int part, final int parts, final int total) {
+        return (int) (((long) part) * total / parts);
+    }
+
+    /**
+     * Performs the work of the given worker.
+     *
+     * @param worker Encapsulation of work to be done.
+     * @param size Length of arrays.
+     */
+    static void work(final ArrayWorker worker, final int size) {
+        final int parts = parts(worker.partsPerCore(), size);
+        invoke(new ArrayTask(worker, 0, parts, parts, size));
+    }
+
+    /**
+     * Performs the work of the given worker.
+     *
+     * @param <T> Return type of each part.
+     * @param worker Encapsulation of work to be done.
+     * @param totalOperations Total number of operations performed.
+     * @return List of results of all parts.
+     */
+    static <T> List<T> work(final SplitWorker<T> worker,
+                            final int totalOperations) {
+        final int parts = parts(worker.partsPerCore(), totalOperations);
+        return invoke(new SplitTask<T>(worker, 0, parts, parts,
+                                       totalOperations));
+    }
+
+    /**
+     * Task processing a range of parts of arrays.
+     */
+    static final class ArrayTask extends RecursiveAction {
+
+        /**
+         * Serial version identifier.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Underlying worker.
+         */
+        private final ArrayWorker worker;
+
+        /**
+         * First part processed by this task.
+         */
+        private final int first;
+
+        /**
+         * Part following the last part processed by this task.
+         */
+        private final int last;
+
+        /**
+         * Total number of parts.
+         */
+        private final int parts;
+
+        /**
+         * Length of arrays.
+         */
+        private final int size;
+
+        /**
+         * Creates a task.
+         *
+         * @param worker Underlying worker.
+         * @param first First part processed by this task.
+         * @param last Part following the last part processed by this
+         * task.
+         * @param parts Total number of parts.
+         * @param size Length of arrays.
+         */
+        ArrayTask(final ArrayWorker worker,
+                  final int first,
+                  final int last,
+                  final int parts,
+                  final int size) {
+            this.worker = worker;
+            this.first = first;
+            this.last = last;
+            this.parts = parts;
+            this.size = size;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                worker.work(start(first, parts, size),
+                            start(last, parts, size));
+            } else {
+                final int middle = (first + last) >>> 1;
+                invokeAll(new ArrayTask(worker, first, middle, parts, size),
+                          new ArrayTask(worker, middle, last, parts, size));
+            }
+        }
+    }
+
+    /**
+     * Task processing a range of parts of operations.
+     *
+     * @param <T> Return type of each part.
+     */
+    static final class SplitTask<T> extends RecursiveTask<List<T>> {
+
+        /**
+         * Serial version identifier.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Underlying worker.
+         */
+        private final SplitWorker<T> worker;
+
+        /**
+         * First part processed by this task.
+         */
+        private final int first;
+
+        /**
+         * Part following the last part processed by this task.
+         */
+        private final int last;
+
+        /**
+         * Total number of parts.
+         */
+        private final int parts;
+
+        /**
+         * Total number of operations.
+         */
+        private final int totalOperations;
+
+        /**
+         * Creates a task.
+         *
+         * @param worker Underlying worker.
+         * @param first First part processed by this task.
+         * @param last Part following the last part processed by this
+         * task.
+         * @param parts Total number of parts.
+         * @param totalOperations Total number of operations.
+         */
+        SplitTask(final SplitWorker<T> worker,
+                  final int first,
+                  final int last,
+                  final int parts,
+                  final int totalOperations) {
+            this.worker = worker;
+            this.first = first;
+            this.last = last;
+            this.parts = parts;
+            this.totalOperations = totalOperations;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (last - first == 1) {
+                final int operations = start(last, parts, totalOperations)
+                    - start(first, parts, totalOperations);
+                final List<T> result = new ArrayList<T>();
+                result.add(worker.work(operations));
+                return result;
+            } else {
+                final int middle = (first + last) >>> 1;
+                final SplitTask<T> right =
+                    new SplitTask<T>(worker, middle, last, parts,
+                                     totalOperations);
+                right.fork();
+                final List<T> result =
+                    new SplitTask<T>(worker, first, middle, parts,
+                                     totalOperations).compute();
+                result.addAll(right.join());
+                return result;
+            }
+        }
+    }
+}